@@ -0,0 +1,69 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.journal.CallJournal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Sustained append rate of the call journal with the background flush running, and the
+ * append latency distribution (SampleTime reports p99 and p99.9). Run with several threads
+ * ({@code -t}) to see what the segment lock costs when many rooms write at once.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallJournalBenchmark {
+
+    private static final int ROOMS = 1024;
+
+    @Param({"200"})
+    public long flushIntervalMs;
+
+    private Path dir;
+    private CallJournal journal;
+    private String[] rooms;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("call-journal-bench");
+        journal = new CallJournal(true, dir.toString(), 64 * 1024 * 1024, flushIntervalMs);
+        rooms = new String[ROOMS];
+        for (int i = 0; i < ROOMS; i++) {
+            rooms[i] = "room-" + i;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public void join(Cursor cursor) {
+        int i = cursor.next++;
+        journal.join(rooms[i & (ROOMS - 1)], "user-42");
+    }
+
+    @Benchmark
+    public void error(Cursor cursor) {
+        int i = cursor.next++;
+        journal.error(rooms[i & (ROOMS - 1)], "user-42", "RATE_LIMITED");
+    }
+}
@@ -0,0 +1,193 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.config.ForwardingConfig;
+import com.anishsarkar.webrtcvideocall.controller.VideoCallController;
+import com.anishsarkar.webrtcvideocall.dto.AnswerMessage;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.journal.CallJournal;
+import com.anishsarkar.webrtcvideocall.listener.SessionActivityTracker;
+import com.anishsarkar.webrtcvideocall.logging.SignalingEventLog;
+import com.anishsarkar.webrtcvideocall.messaging.CborMessageConverter;
+import com.anishsarkar.webrtcvideocall.messaging.SignalMailbox;
+import com.anishsarkar.webrtcvideocall.messaging.SignalingCodecRegistry;
+import com.anishsarkar.webrtcvideocall.metrics.NegotiationTracer;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.RoomRegistry;
+import com.anishsarkar.webrtcvideocall.service.IceCandidateCoalescer;
+import com.anishsarkar.webrtcvideocall.service.IceServerCache;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One inbound STOMP SEND through the annotation handler, {@link VideoCallController} and the
+ * broker {@link SimpMessagingTemplate}, all in process on the calling thread: argument
+ * conversion, membership checks, session lookup and outbound encoding. Broker routing and
+ * the WebSocket write are not included. ICE batching is off so every candidate is relayed
+ * on its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ControllerDispatchBenchmark {
+
+    static final String ROOM = "room-42";
+
+    @Param({"offer", "answer", "ice-candidate"})
+    public String destination;
+
+    private AnnotationConfigApplicationContext context;
+    private ExecutorSubscribableChannel inboundChannel;
+    private Message<byte[]> inbound;
+    private long sent;
+    private long delivered;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Keep the console out of the measurement
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("benchmark", Map.of("signaling.ice.batch-window-ms", "0")));
+        context.register(DispatchConfig.class);
+        context.refresh();
+
+        ExecutorSubscribableChannel brokerChannel = context.getBean("brokerChannel", ExecutorSubscribableChannel.class);
+        brokerChannel.subscribe(message -> delivered++);
+        inboundChannel = context.getBean("clientInboundChannel", ExecutorSubscribableChannel.class);
+
+        ObjectMapper mapper = new ObjectMapper();
+        inboundChannel.send(inbound("join", "session-alice", mapper.writeValueAsBytes(new JoinRoomMessage(ROOM, "alice", "Alice"))));
+        inboundChannel.send(inbound("join", "session-bob", mapper.writeValueAsBytes(new JoinRoomMessage(ROOM, "bob", "Bob"))));
+
+        BaseMessage message = switch (destination) {
+            case "offer" -> new OfferMessage(ROOM, "alice", "bob", SignalingCodecBenchmark.sdp("offer"));
+            case "answer" -> new AnswerMessage(ROOM, "bob", "alice", SignalingCodecBenchmark.sdp("answer"));
+            default -> new IceCandidateMessage(ROOM, "alice", "bob", SignalingCodecBenchmark.candidate(0));
+        };
+        inbound = inbound(destination, "session-" + message.getUserId(), mapper.writerFor(BaseMessage.class).writeValueAsBytes(message));
+        delivered = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // Exactly one relayed message per SEND, anything else means the benchmark hit an error path
+        System.out.printf("%n%s: %d sent, %d delivered to the broker%n", destination, sent, delivered);
+        context.close();
+    }
+
+    @Benchmark
+    public boolean dispatch() {
+        sent++;
+        return inboundChannel.send(inbound);
+    }
+
+    private static Message<byte[]> inbound(String destination, String sessionId, byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/app/" + destination);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(new HashMap<>());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+
+    /**
+     * The beans {@code @EnableWebSocketMessageBroker} would set up for the application
+     * destinations, with channels that deliver on the sending thread.
+     */
+    @Configuration
+    @Import({VideoCallController.class, RoomService.class, UserSessionRegistry.class,
+            IceCandidateCoalescer.class, SignalingCodecRegistry.class, SignalingMetrics.class,
+            SignalingEventLog.class, SessionActivityTracker.class, SessionResumption.class, SignalMailbox.class,
+            ForwardingConfig.class, IceServerCache.class, CallJournal.class, NegotiationTracer.class})
+    static class DispatchConfig {
+
+        @Bean
+        public RoomRegistry roomRegistry(@Value("${signaling.room.max-size:8}") int maxRoomSize) {
+            return new InMemoryRoomRegistry(maxRoomSize);
+        }
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        public ExecutorSubscribableChannel clientInboundChannel() {
+            return new ExecutorSubscribableChannel();
+        }
+
+        @Bean
+        public ExecutorSubscribableChannel clientOutboundChannel() {
+            return new ExecutorSubscribableChannel();
+        }
+
+        @Bean
+        public ExecutorSubscribableChannel brokerChannel() {
+            return new ExecutorSubscribableChannel();
+        }
+
+        @Bean
+        public MessageConverter brokerMessageConverter() {
+            // Same order as WebSocketConfig plus Spring's defaults
+            return new CompositeMessageConverter(List.of(new CborMessageConverter(), new StringMessageConverter(),
+                    new ByteArrayMessageConverter(), new MappingJackson2MessageConverter()));
+        }
+
+        @Bean
+        public SimpMessagingTemplate brokerMessagingTemplate() {
+            SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel());
+            template.setMessageConverter(brokerMessageConverter());
+            return template;
+        }
+
+        @Bean
+        public SimpAnnotationMethodMessageHandler simpAnnotationMethodMessageHandler() {
+            SimpAnnotationMethodMessageHandler handler = new SimpAnnotationMethodMessageHandler(
+                    clientInboundChannel(), clientOutboundChannel(), brokerMessagingTemplate());
+            handler.setDestinationPrefixes(List.of("/app"));
+            handler.setMessageConverter(brokerMessageConverter());
+            return handler;
+        }
+    }
+}
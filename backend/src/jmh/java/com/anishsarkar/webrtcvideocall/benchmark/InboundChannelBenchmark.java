@@ -0,0 +1,138 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.messaging.RoomAffinityExecutor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Client inbound channel with Spring's default pool vs {@link RoomAffinityExecutor}.
+ * Each producer thread owns a slice of the rooms and sends a burst of messages across
+ * them, optionally with a share of the traffic going to one hot room; an operation
+ * completes when the whole burst has been handled. Throughput is per message, the
+ * sample-time p99 is the burst completion latency. Per-room reorderings are counted
+ * and printed at the end of each trial.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class InboundChannelBenchmark {
+
+    static final int BURST = 64;
+    // Consecutive messages a room gets within a burst, like an offer followed by its candidates
+    static final int PER_ROOM = 4;
+
+    @Param({"pool", "room-affinity"})
+    public String executor;
+
+    @Param({"1000"})
+    public int rooms;
+
+    @Param({"0", "30"})
+    public int hotRoomPercent;
+
+    private TaskExecutor taskExecutor;
+    private ExecutorSubscribableChannel channel;
+    private AtomicLongArray lastSeq;
+    private final AtomicLong reordered = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        if ("pool".equals(executor)) {
+            // Same settings Spring applies to clientInboundChannel when nothing is configured
+            ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+            pool.setCorePoolSize(threads);
+            pool.setMaxPoolSize(Integer.MAX_VALUE);
+            pool.setKeepAliveSeconds(60);
+            pool.setThreadNamePrefix("clientInboundChannel-");
+            pool.initialize();
+            taskExecutor = pool;
+        } else {
+            taskExecutor = new RoomAffinityExecutor(threads);
+        }
+
+        lastSeq = new AtomicLongArray(rooms);
+        channel = new ExecutorSubscribableChannel(taskExecutor);
+        channel.subscribe(message -> {
+            Signal signal = (Signal) message.getPayload();
+            // Stand-in for membership lookups and JSON conversion in the controller
+            Blackhole.consumeCPU(2_000);
+            if (signal.ordered) {
+                long previous = lastSeq.getAndSet(signal.room, signal.seq);
+                if (previous > signal.seq) {
+                    reordered.incrementAndGet();
+                }
+            }
+            signal.done.countDown();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%s, hot room %d%%: %d messages handled out of order%n", executor, hotRoomPercent, reordered.get());
+        if (taskExecutor instanceof ThreadPoolTaskExecutor pool) {
+            pool.shutdown();
+        } else {
+            ((RoomAffinityExecutor) taskExecutor).destroy();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        int thread;
+        int threads;
+        long seq;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams params) {
+            thread = params.getThreadIndex();
+            threads = params.getThreadCount();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burst(Producer producer) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BURST);
+        for (int i = 0; i < BURST; i++) {
+            boolean hot = hotRoomPercent > 0 && (i * 100 / BURST) < hotRoomPercent;
+            int room;
+            if (hot) {
+                room = 0;
+            } else {
+                // Rooms 1..n are partitioned between producers so each has a single sender
+                int owned = Math.max(1, (rooms - 1) / producer.threads);
+                room = 1 + producer.thread + producer.threads * ((producer.cursor++ / PER_ROOM) % owned);
+            }
+            channel.send(message(room, ++producer.seq, !hot, done));
+        }
+        done.await();
+    }
+
+    private static Message<Signal> message(int room, long seq, boolean ordered, CountDownLatch done) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId("session-" + room);
+        accessor.setNativeHeader(RoomAffinityExecutor.ROOM_ID_HEADER, "room-" + room);
+        return MessageBuilder.createMessage(new Signal(room, seq, ordered, done), accessor.getMessageHeaders());
+    }
+
+    record Signal(int room, long seq, boolean ordered, CountDownLatch done) {}
+}
@@ -0,0 +1,92 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.dto.*;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polymorphic {@link BaseMessage} serialization and deserialization for every message type,
+ * with the {@code ObjectMapper} the broker's JSON converter uses. Each message carries the
+ * fields a browser client actually sends; signaling payloads come from
+ * {@link SignalingCodecBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageSerializationBenchmark {
+
+    // Every constant when no values are listed
+    @Param
+    public MessageType type;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private BaseMessage message;
+    private byte[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        writer = converter.getObjectMapper().writerFor(BaseMessage.class);
+        reader = converter.getObjectMapper().readerFor(BaseMessage.class);
+        message = message(type);
+        json = writer.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public BaseMessage deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+
+    static BaseMessage message(MessageType type) throws IOException {
+        String roomId = "room-42";
+        return switch (type) {
+            case JOIN_ROOM -> new JoinRoomMessage(roomId, "alice", "Alice");
+            case LEAVE_ROOM -> new LeaveRoomMessage(roomId, "alice");
+            case OFFER -> new OfferMessage(roomId, "alice", "bob", SignalingCodecBenchmark.sdp("offer"));
+            case ANSWER -> new AnswerMessage(roomId, "bob", "alice", SignalingCodecBenchmark.sdp("answer"));
+            case ICE_CANDIDATE -> new IceCandidateMessage(roomId, "alice", "bob", SignalingCodecBenchmark.candidate(0));
+            case ICE_CANDIDATE_BATCH -> {
+                List<RawPayload> candidates = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    candidates.add(SignalingCodecBenchmark.candidate(i));
+                }
+                yield new IceCandidateBatchMessage(roomId, "alice", "bob", candidates);
+            }
+            case USER_JOINED -> new UserJoinedMessage(roomId, "alice", "Alice", 7);
+            case USER_LEFT -> new UserLeftMessage(roomId, "alice", 8);
+            case ERROR -> new ErrorMessage(roomId, "alice", "User not in room", "USER_NOT_IN_ROOM");
+            case ROOM_SNAPSHOT -> {
+                Map<String, String> members = new LinkedHashMap<>();
+                for (int i = 0; i < 8; i++) {
+                    members.put("user-" + i, "User " + i);
+                }
+                RoomSnapshotMessage snapshot = new RoomSnapshotMessage(roomId, "user-0", 7, members);
+                snapshot.setTopology(Topology.MESH);
+                yield snapshot;
+            }
+            case TOPOLOGY_CHANGED -> new TopologyChangedMessage(roomId, Topology.SFU);
+            case SFU_OFFER -> new SfuOfferMessage(roomId, "alice", SignalingCodecBenchmark.sdp("offer"));
+            case SFU_ANSWER -> new SfuAnswerMessage(roomId, "alice", SignalingCodecBenchmark.sdp("answer"));
+            case SFU_ICE_CANDIDATE -> new SfuIceCandidateMessage(roomId, "alice", SignalingCodecBenchmark.candidate(0));
+            case MIGRATE -> new MigrateMessage(roomId, "alice", 4_250);
+        };
+    }
+}
@@ -0,0 +1,178 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.LeaveRoomMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpSubscriptionMatcher;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frames and payload bytes the broker writes to clients when one user joins and then leaves
+ * a room that already holds {@code roomSize - 1} members, every one of them subscribed to the
+ * room topic and its own signal queue. Runs the controller behind a {@link SimpleBrokerMessageHandler}
+ * and counts what reaches the outbound channel; STOMP frame headers are not included in the bytes.
+ * Averages per join and per leave are printed after each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoomJoinFanoutBenchmark {
+
+    static final String ROOM = "room-42";
+
+    @Param({"2", "10", "50"})
+    public int roomSize;
+
+    private AnnotationConfigApplicationContext context;
+    private ExecutorSubscribableChannel inboundChannel;
+    private Message<byte[]> join;
+    private Message<byte[]> leave;
+    private long frames;
+    private long bytes;
+    private long invocations;
+    private long joinFrames;
+    private long joinBytes;
+    private long leaveFrames;
+    private long leaveBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources()
+                .addFirst(new MapPropertySource("benchmark", Map.of("signaling.ice.batch-window-ms", "0",
+                        "signaling.room.max-size", Integer.toString(roomSize))));
+        context.register(ControllerDispatchBenchmark.DispatchConfig.class);
+        context.refresh();
+
+        inboundChannel = context.getBean("clientInboundChannel", ExecutorSubscribableChannel.class);
+        ExecutorSubscribableChannel outboundChannel = context.getBean("clientOutboundChannel", ExecutorSubscribableChannel.class);
+        ExecutorSubscribableChannel brokerChannel = context.getBean("brokerChannel", ExecutorSubscribableChannel.class);
+
+        SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(inboundChannel, outboundChannel, brokerChannel,
+                List.of("/topic", "/queue"));
+        broker.start();
+        // Session ids double as user names for /user destinations, as in the application
+        UserDestinationMessageHandler userDestinations = new UserDestinationMessageHandler(inboundChannel, brokerChannel,
+                new DefaultUserDestinationResolver(new NoUsers()));
+        userDestinations.start();
+
+        outboundChannel.subscribe(message -> {
+            if (message.getPayload() instanceof byte[] payload && payload.length > 0) {
+                frames++;
+                bytes += payload.length;
+            }
+        });
+
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < roomSize; i++) {
+            String sessionId = "session-" + i;
+            inboundChannel.send(control(SimpMessageType.CONNECT, sessionId, null));
+            inboundChannel.send(subscribe(sessionId, "/topic/room/" + ROOM));
+            inboundChannel.send(subscribe(sessionId, "/user/queue/signal"));
+            if (i > 0) {
+                inboundChannel.send(send("join", sessionId, mapper.writeValueAsBytes(new JoinRoomMessage(ROOM, "user-" + i, "User " + i))));
+            }
+        }
+        join = send("join", "session-0", mapper.writeValueAsBytes(new JoinRoomMessage(ROOM, "user-0", "User 0")));
+        leave = send("leave", "session-0", mapper.writeValueAsBytes(new LeaveRoomMessage(ROOM, "user-0")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nroom of %d: join %.1f frames / %.0f bytes, leave %.1f frames / %.0f bytes%n", roomSize,
+                (double) joinFrames / invocations, (double) joinBytes / invocations,
+                (double) leaveFrames / invocations, (double) leaveBytes / invocations);
+        context.close();
+    }
+
+    @Benchmark
+    public void joinAndLeave() {
+        invocations++;
+        frames = 0;
+        bytes = 0;
+        inboundChannel.send(join);
+        joinFrames += frames;
+        joinBytes += bytes;
+
+        frames = 0;
+        bytes = 0;
+        inboundChannel.send(leave);
+        leaveFrames += frames;
+        leaveBytes += bytes;
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String destination) {
+        return control(SimpMessageType.SUBSCRIBE, sessionId, destination);
+    }
+
+    private static Message<byte[]> control(SimpMessageType type, String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        if (destination != null) {
+            accessor.setDestination(destination);
+            accessor.setSubscriptionId("sub-" + destination.hashCode());
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> send(String destination, String sessionId, byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/app/" + destination);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(new HashMap<>());
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+
+    /** No authenticated users; /user destinations resolve by session id only. */
+    private static class NoUsers implements SimpUserRegistry {
+        @Override
+        public SimpUser getUser(String userName) {
+            return null;
+        }
+
+        @Override
+        public Set<SimpUser> getUsers() {
+            return Set.of();
+        }
+
+        @Override
+        public int getUserCount() {
+            return 0;
+        }
+
+        @Override
+        public Set<SimpSubscription> findSubscriptions(SimpSubscriptionMatcher matcher) {
+            return Set.of();
+        }
+    }
+}
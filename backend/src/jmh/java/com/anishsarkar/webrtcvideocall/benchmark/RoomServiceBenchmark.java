@@ -0,0 +1,88 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RoomService} with the in-memory registry under contention. In the {@code churn}
+ * group a few threads keep joining and leaving while the rest do the membership checks
+ * every relayed offer, answer and candidate makes; {@code rooms=1} puts everyone in the
+ * same room, the larger value spreads them out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoomServiceBenchmark {
+
+    // Members per room that stay put, so lookups always have something to find
+    static final int RESIDENTS = 4;
+
+    @Param({"1", "1000"})
+    public int rooms;
+
+    private RoomService roomService;
+    // Ids are built up front so string concatenation stays out of the measurement
+    private String[] roomIds;
+    private String[][] residentIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        roomService = new RoomService();
+        roomIds = new String[rooms];
+        residentIds = new String[rooms][RESIDENTS];
+        for (int room = 0; room < rooms; room++) {
+            roomIds[room] = "room-" + room;
+            for (int user = 0; user < RESIDENTS; user++) {
+                residentIds[room][user] = "user-" + room + "-" + user;
+                roomService.joinRoom(roomIds[room], residentIds[room][user], "resident");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        String guestId;
+        int cursor;
+
+        int next() {
+            return cursor++ & Integer.MAX_VALUE;
+        }
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams params) {
+            guestId = "guest-" + params.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(2)
+    public void joinAndLeave(Caller caller) {
+        String roomId = roomIds[caller.next() % rooms];
+        roomService.joinRoom(roomId, caller.guestId, "guest");
+        roomService.leaveRoom(roomId, caller.guestId);
+    }
+
+    @Benchmark
+    @Group("churn")
+    @GroupThreads(6)
+    public boolean isUserInRoom(Caller caller) {
+        int pick = caller.next();
+        int room = pick % rooms;
+        return roomService.isUserInRoom(roomIds[room], residentIds[room][(pick / rooms) % RESIDENTS]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean isUserInRoomReadOnly(Caller caller) {
+        int pick = caller.next();
+        int room = pick % rooms;
+        return roomService.isUserInRoom(roomIds[room], residentIds[room][(pick / rooms) % RESIDENTS]);
+    }
+}
@@ -0,0 +1,102 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateBatchMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.messaging.CborMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of the signaling messages through the broker's JSON converter and
+ * the CBOR one, for an offer carrying a full browser SDP, a single trickled candidate and a
+ * batch of 16, plus the decode-and-encode round trip of forwarding one. Encoded sizes are
+ * printed once per trial; run with {@code -prof gc} for allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SignalingCodecBenchmark {
+
+    @Param({"json", "cbor"})
+    public String codec;
+
+    @Param({"offer", "candidate", "candidate-batch"})
+    public String message;
+
+    private MessageConverter converter;
+    private MessageHeaders headers;
+    private BaseMessage payload;
+    private Message<?> encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        MimeType contentType = "cbor".equals(codec) ? CborMessageConverter.APPLICATION_CBOR : MimeTypeUtils.APPLICATION_JSON;
+        converter = "cbor".equals(codec) ? new CborMessageConverter() : new MappingJackson2MessageConverter();
+        headers = new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, contentType));
+        payload = switch (message) {
+            case "offer" -> new OfferMessage("room-42", "alice", "bob", sdp("offer"));
+            case "candidate" -> new IceCandidateMessage("room-42", "alice", "bob", candidate(0));
+            default -> {
+                List<RawPayload> candidates = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    candidates.add(candidate(i));
+                }
+                yield new IceCandidateBatchMessage("room-42", "alice", "bob", candidates);
+            }
+        };
+        encoded = converter.toMessage(payload, headers);
+        System.out.printf("%n%s %s: %d bytes%n", codec, message, ((byte[]) encoded.getPayload()).length);
+    }
+
+    @Benchmark
+    public Message<?> encode() {
+        return converter.toMessage(payload, headers);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return converter.fromMessage(encoded, BaseMessage.class);
+    }
+
+    // What the controller does per signaling message: decode, route, encode for the target
+    @Benchmark
+    public Message<?> forward() {
+        return converter.toMessage(converter.fromMessage(encoded, BaseMessage.class), headers);
+    }
+
+    static RawPayload sdp(String type) throws IOException {
+        // Chrome offer with audio, video (VP8/VP9/H264/AV1 + RTX) and a data channel
+        String sdp = new ClassPathResource("sdp/chrome-offer.sdp").getContentAsString(StandardCharsets.UTF_8);
+        return RawPayload.of(new ObjectMapper().createObjectNode().put("type", type).put("sdp", sdp.replace("\n", "\r\n")));
+    }
+
+    static RawPayload candidate(int index) {
+        return RawPayload.of(JsonNodeFactory.instance.objectNode()
+                .put("candidate", "candidate:" + (3027581904L + index) + " 1 udp 2122260223 192.168.1." + (20 + index)
+                        + " " + (50000 + index) + " typ host generation 0 ufrag Xw9r network-id 1 network-cost 10")
+                .put("sdpMid", "0")
+                .put("sdpMLineIndex", 0)
+                .put("usernameFragment", "Xw9r"));
+    }
+}
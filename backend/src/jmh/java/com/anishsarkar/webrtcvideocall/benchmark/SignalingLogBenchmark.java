@@ -0,0 +1,118 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.logging.SignalingEventLog;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging cost of relaying one ICE candidate, with lines going to a file:
+ * <ul>
+ *   <li>{@code sync-info}: the controller's former two INFO lines per message through a
+ *   synchronous appender</li>
+ *   <li>{@code sampled}: {@link SignalingEventLog} with its default budget, async appender</li>
+ *   <li>{@code sampled-debug-room}: the same with one of the rooms in debug mode</li>
+ * </ul>
+ * Lines written per trial are printed so dropped or sampled output is visible.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class SignalingLogBenchmark {
+
+    static final int ROOMS = 100;
+
+    @Param({"sync-info", "sampled", "sampled-debug-room"})
+    public String mode;
+
+    private final Logger controllerLogger = LoggerFactory.getLogger("com.anishsarkar.webrtcvideocall.controller.VideoCallController");
+    private SignalingEventLog eventLog;
+    private String[] roomIds;
+    private Path file;
+    private LoggerContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("signaling-log-benchmark", ".log");
+        context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        // Close to Spring Boot's console pattern
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p %pid --- [%15.15t] %-40.40logger{39} : %m%n");
+        encoder.start();
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.toString());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (!"sync-info".equals(mode)) {
+            // As configured in logback-spring.xml
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(16384);
+            async.setNeverBlock(true);
+            async.addAppender(fileAppender);
+            async.start();
+            appender = async;
+        }
+        ch.qos.logback.classic.Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(ch.qos.logback.classic.Level.INFO);
+        root.addAppender(appender);
+
+        eventLog = new SignalingEventLog(5, 30, 10_000);
+        roomIds = new String[ROOMS];
+        for (int i = 0; i < ROOMS; i++) {
+            roomIds[i] = "room-" + i;
+        }
+        if ("sampled-debug-room".equals(mode)) {
+            eventLog.enableDebug(roomIds[0]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.stop();
+        long lines;
+        try (var stream = Files.lines(file)) {
+            lines = stream.count();
+        }
+        System.out.printf("%n%s: %d lines, %d KB written%n", mode, lines, Files.size(file) / 1024);
+        Files.delete(file);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public void relayCandidate(Cursor cursor) {
+        String roomId = roomIds[(cursor.next++ & Integer.MAX_VALUE) % ROOMS];
+        if ("sync-info".equals(mode)) {
+            controllerLogger.info("Handling ICE candidate from {} to {} in room {}", "alice", "bob", roomId);
+            controllerLogger.info("ICE candidate forwarded from {} to {} in room {}", "alice", "bob", roomId);
+        } else {
+            eventLog.relayed(MessageType.ICE_CANDIDATE, roomId, "alice", "bob", 1, 140);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.anishsarkar.webrtcvideocall.benchmark;
+
+import com.anishsarkar.webrtcvideocall.dto.IceServer;
+import com.anishsarkar.webrtcvideocall.service.IceServerCache;
+import com.anishsarkar.webrtcvideocall.service.TurnCredentials;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a join pays for its ICE servers: {@code issue} computes a TURN credential the way a
+ * per-join scheme would, {@code cached} reads the list {@link IceServerCache} keeps ready.
+ * Run with several threads ({@code -t}) to see the per-thread HMAC hold up under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TurnCredentialBenchmark {
+
+    private static final List<String> URLS = List.of("turn:turn.example.com:3478", "turns:turn.example.com:5349");
+
+    private TurnCredentials credentials;
+    private IceServerCache cache;
+    private long expiresAt;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        credentials = new TurnCredentials("benchmark-secret");
+        cache = new IceServerCache("stun:stun.example.com:3478", "turn:turn.example.com:3478,eu=turn:eu.example.com:3478",
+                "benchmark-secret", 86400, "webrtc");
+        expiresAt = System.currentTimeMillis() / 1000 + 86400;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.shutdown();
+    }
+
+    @Benchmark
+    public IceServer issue() {
+        return credentials.issue(URLS, expiresAt, "user-42");
+    }
+
+    @Benchmark
+    public List<IceServer> cached() {
+        return cache.servers("eu");
+    }
+}
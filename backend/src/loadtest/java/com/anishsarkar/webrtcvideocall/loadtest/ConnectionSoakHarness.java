@@ -0,0 +1,233 @@
+package com.anishsarkar.webrtcvideocall.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds many idle signaling sockets open while a smaller set of active peers trickles ICE
+ * candidates to each other, and reports connection counts and message rates every few
+ * seconds. Peers are paired into two-person rooms. STOMP frames are written by hand on top
+ * of the JDK WebSocket client so the harness itself stays cheap per socket.
+ *
+ * <pre>
+ * java -jar target/webrtc-backend.jar --spring.threads.virtual.enabled=true
+ * ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="idle=10000 active=1000 duration=60"
+ * </pre>
+ */
+public class ConnectionSoakHarness {
+
+    private final URI uri;
+    private final int idle;
+    private final int active;
+    private final int durationSeconds;
+    private final int ratePerPeer;
+    private final int connectConcurrency;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final AtomicLong open = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public ConnectionSoakHarness(Map<String, String> options) {
+        this.uri = URI.create(options.getOrDefault("url", "ws://localhost:8000/ws"));
+        this.idle = Integer.parseInt(options.getOrDefault("idle", "10000"));
+        this.active = Integer.parseInt(options.getOrDefault("active", "1000"));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        this.ratePerPeer = Integer.parseInt(options.getOrDefault("rate", "10"));
+        this.connectConcurrency = Integer.parseInt(options.getOrDefault("connect-concurrency", "200"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+        new ConnectionSoakHarness(options).run();
+    }
+
+    public void run() throws Exception {
+        System.out.printf("Target %s: %d idle + %d active sockets, %d candidates/s per active peer, %ds%n",
+                uri, idle, active, ratePerPeer, durationSeconds);
+
+        long connectStart = System.nanoTime();
+        List<Peer> idlePeers = connectAll("idle", idle);
+        List<Peer> activePeers = connectAll("active", active);
+        System.out.printf("Connected %d sockets (%d failed) in %.1fs%n",
+                open.get(), failed.get(), (System.nanoTime() - connectStart) / 1e9);
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        // Send in 100 ms ticks so the load is spread over each second
+        int perTick = Math.max(1, ratePerPeer / 10);
+        scheduler.scheduleAtFixedRate(() -> activePeers.forEach(peer -> {
+            for (int i = 0; i < perTick; i++) {
+                peer.sendCandidate();
+            }
+        }), 100, 100, TimeUnit.MILLISECONDS);
+
+        long[] last = {sent.get(), candidates.get()};
+        long started = System.nanoTime();
+        while (System.nanoTime() - started < TimeUnit.SECONDS.toNanos(durationSeconds)) {
+            Thread.sleep(5000);
+            long nowSent = sent.get();
+            long nowReceived = candidates.get();
+            System.out.printf("open=%d closed=%d errors=%d sent=%d/s received=%d candidates/s in %d frames%n",
+                    open.get(), closed.get(), errors.get(), (nowSent - last[0]) / 5, (nowReceived - last[1]) / 5, frames.get());
+            last[0] = nowSent;
+            last[1] = nowReceived;
+        }
+        scheduler.shutdownNow();
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%nSummary: %d/%d sockets held open, %d closed by server, %d send errors%n",
+                open.get(), idle + active, closed.get(), errors.get());
+        System.out.printf("Sent %.0f msg/s, received %.0f candidates/s (%d frames)%n",
+                sent.get() / seconds, candidates.get() / seconds, frames.get());
+
+        idlePeers.forEach(Peer::close);
+        activePeers.forEach(Peer::close);
+    }
+
+    private List<Peer> connectAll(String kind, int count) throws InterruptedException {
+        List<Peer> peers = new ArrayList<>(count);
+        Semaphore inFlight = new Semaphore(connectConcurrency);
+        for (int i = 0; i < count; i++) {
+            // Two consecutive peers share a room and signal each other
+            String room = kind + "-room-" + (i / 2);
+            Peer peer = new Peer(room, kind + "-" + i, kind + "-" + (i % 2 == 0 ? i + 1 : i - 1));
+            inFlight.acquire();
+            peer.connect().whenComplete((ok, e) -> inFlight.release());
+            peers.add(peer);
+        }
+        inFlight.acquire(connectConcurrency);
+        return peers;
+    }
+
+    private class Peer implements WebSocket.Listener {
+        private final String roomId;
+        private final String userId;
+        private final String partnerId;
+        private final StringBuilder partial = new StringBuilder();
+        private final CompletableFuture<Void> connected = new CompletableFuture<>();
+        private CompletableFuture<WebSocket> sendChain;
+        private long sequence;
+
+        Peer(String roomId, String userId, String partnerId) {
+            this.roomId = roomId;
+            this.userId = userId;
+            this.partnerId = partnerId;
+        }
+
+        CompletableFuture<Void> connect() {
+            sendChain = httpClient.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .subprotocols("v12.stomp")
+                    .buildAsync(uri, this);
+            send(frame("CONNECT", Map.of("accept-version", "1.2", "host", uri.getHost(), "heart-beat", "0,0"), ""));
+            sendChain.whenComplete((ws, e) -> {
+                if (e != null) {
+                    failed.incrementAndGet();
+                    connected.complete(null);
+                }
+            });
+            return connected.orTimeout(60, TimeUnit.SECONDS).exceptionally(e -> null);
+        }
+
+        void sendCandidate() {
+            String body = "{\"type\":\"ICE_CANDIDATE\",\"roomId\":\"" + roomId + "\",\"userId\":\"" + userId
+                    + "\",\"targetUserId\":\"" + partnerId + "\",\"timestamp\":" + System.currentTimeMillis()
+                    + ",\"candidate\":{\"candidate\":\"candidate:" + (sequence++)
+                    + " 1 udp 2122260223 10.0.0.1 50000 typ host\",\"sdpMid\":\"0\",\"sdpMLineIndex\":0}}";
+            send(frame("SEND", Map.of("destination", "/app/ice-candidate", "content-type", "application/json",
+                    "roomId", roomId), body));
+            sent.incrementAndGet();
+        }
+
+        void close() {
+            sendChain.thenAccept(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, "done"));
+        }
+
+        private synchronized void send(String frame) {
+            // The JDK client allows one outstanding send per socket, so chain them
+            sendChain = sendChain.thenCompose(ws -> ws.sendText(frame, true)).exceptionally(e -> {
+                errors.incrementAndGet();
+                return null;
+            });
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String text = partial.toString();
+                partial.setLength(0);
+                onFrame(text);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        private void onFrame(String text) {
+            if (text.startsWith("CONNECTED")) {
+                open.incrementAndGet();
+                send(frame("SUBSCRIBE", Map.of("id", "0", "destination", "/topic/room/" + roomId, "roomId", roomId), ""));
+                send(frame("SUBSCRIBE", Map.of("id", "1", "destination", "/user/queue/signal", "roomId", roomId), ""));
+                send(frame("SEND", Map.of("destination", "/app/join", "content-type", "application/json", "roomId", roomId),
+                        "{\"type\":\"JOIN_ROOM\",\"roomId\":\"" + roomId + "\",\"userId\":\"" + userId
+                                + "\",\"userName\":\"" + userId + "\",\"timestamp\":" + System.currentTimeMillis() + "}"));
+                connected.complete(null);
+            } else if (text.startsWith("MESSAGE")) {
+                frames.incrementAndGet();
+                candidates.addAndGet(count(text, "candidate:"));
+            } else if (text.startsWith("ERROR")) {
+                errors.incrementAndGet();
+            }
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (open.get() > 0 && statusCode != WebSocket.NORMAL_CLOSURE) {
+                closed.incrementAndGet();
+            }
+            open.decrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            errors.incrementAndGet();
+            connected.complete(null);
+        }
+    }
+
+    private static String frame(String command, Map<String, String> headers, String body) {
+        StringBuilder frame = new StringBuilder(command).append('\n');
+        headers.forEach((name, value) -> frame.append(name).append(':').append(value).append('\n'));
+        return frame.append('\n').append(body).append('\0').toString();
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,65 @@
+package com.anishsarkar.webrtcvideocall.loadtest;
+
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Heap held by the in-memory registry for idle two-person rooms. Ids are made before the
+ * first reading, so only what the registry itself keeps per room is counted. Heap readings
+ * depend on the collector actually running, so this is a report rather than a unit test;
+ * run it on its own JVM.
+ *
+ * <pre>
+ * ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.main=RoomFootprintReport -Dloadtest.args="rooms=100000"
+ * </pre>
+ */
+public class RoomFootprintReport {
+
+    private final int rooms;
+
+    public RoomFootprintReport(Map<String, String> options) {
+        this.rooms = Integer.parseInt(options.getOrDefault("rooms", "100000"));
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+        new RoomFootprintReport(options).run();
+    }
+
+    public void run() {
+        String[] roomIds = new String[rooms];
+        String[][] userIds = new String[rooms][2];
+        for (int i = 0; i < rooms; i++) {
+            roomIds[i] = "room-" + i;
+            userIds[i][0] = "alice-" + i;
+            userIds[i][1] = "bob-" + i;
+        }
+
+        long before = usedHeap();
+        InMemoryRoomRegistry registry = new InMemoryRoomRegistry();
+        for (int i = 0; i < rooms; i++) {
+            registry.join(roomIds[i], userIds[i][0], "Alice");
+            registry.join(roomIds[i], userIds[i][1], "Bob");
+        }
+        long used = usedHeap() - before;
+
+        System.out.printf("in-memory registry: %.1f MB for %d idle two-person rooms (%d members), %d bytes per room%n",
+                used / 1e6, rooms, registry.userCount(), used / rooms);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
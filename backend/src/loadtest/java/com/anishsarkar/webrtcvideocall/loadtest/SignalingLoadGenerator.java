@@ -0,0 +1,408 @@
+package com.anishsarkar.webrtcvideocall.loadtest;
+
+import com.anishsarkar.webrtcvideocall.dto.AnswerMessage;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateBatchMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulated peers that join rooms and negotiate with every other member the way the
+ * frontend does: the peer that joined first sends an offer, the other answers, and both
+ * trickle ICE candidates. Each pair renegotiates for the whole run. Join latency (SEND to
+ * our own USER_JOINED), offer/answer round trip and candidate delivery are recorded in
+ * HdrHistograms and summarised with throughput and error counts at the end.
+ *
+ * <pre>
+ * java -jar target/webrtc-backend.jar
+ * ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.main=SignalingLoadGenerator \
+ *     -Dloadtest.args="peers=2000 room-size=4 duration=60 hgrm-dir=target/loadtest"
+ * </pre>
+ */
+public class SignalingLoadGenerator {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final String url;
+    private final int peers;
+    private final int roomSize;
+    private final int durationSeconds;
+    private final int intervalMillis;
+    private final int candidatesPerSide;
+    private final int timeoutMillis;
+    private final int connectConcurrency;
+    private final String hgrmDir;
+
+    private final WebSocketStompClient stompClient;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    // Unique per run so rooms left behind by an earlier run are never reused
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final RawPayload sdp;
+    private volatile boolean running = true;
+
+    private final Histogram joinLatency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+    private final Histogram roundTrip = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+    private final Histogram candidateDelivery = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong negotiations = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong joinTimeouts = new AtomicLong();
+    private final AtomicLong answerTimeouts = new AtomicLong();
+    private final AtomicLong stompErrors = new AtomicLong();
+    private final AtomicLong serverErrors = new AtomicLong();
+
+    public SignalingLoadGenerator(Map<String, String> options) throws IOException {
+        this.url = options.getOrDefault("url", "ws://localhost:8000/ws");
+        this.peers = Integer.parseInt(options.getOrDefault("peers", "1000"));
+        this.roomSize = Math.max(2, Integer.parseInt(options.getOrDefault("room-size", "4")));
+        this.durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        this.intervalMillis = Integer.parseInt(options.getOrDefault("interval", "1000"));
+        this.candidatesPerSide = Integer.parseInt(options.getOrDefault("candidates", "4"));
+        this.timeoutMillis = Integer.parseInt(options.getOrDefault("timeout", "5000"));
+        this.connectConcurrency = Integer.parseInt(options.getOrDefault("connect-concurrency", "200"));
+        this.hgrmDir = options.get("hgrm-dir");
+
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setInboundMessageSizeLimit(256 * 1024);
+
+        // The same browser SDP the codec benchmark and tests use
+        String text = new ClassPathResource("sdp/chrome-offer.sdp").getContentAsString(StandardCharsets.UTF_8);
+        sdp = RawPayload.of(JsonNodeFactory.instance.objectNode().put("type", "offer").put("sdp", text.replace("\n", "\r\n")));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+        new SignalingLoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    public void run() throws Exception {
+        System.out.printf("Target %s: %d peers in rooms of %d, renegotiating every %d ms with %d candidates per side, %ds%n",
+                url, peers, roomSize, intervalMillis, candidatesPerSide, durationSeconds);
+
+        long connectStart = System.nanoTime();
+        List<Peer> all = connectAndJoin();
+        System.out.printf("Connected and joined %d peers (%d connect failures, %d join timeouts) in %.1fs%n",
+                all.size(), connectFailures.get(), joinTimeouts.get(), (System.nanoTime() - connectStart) / 1e9);
+
+        // Throughput covers the negotiation phase only
+        long startSent = sent.get();
+        long startReceived = received.get();
+        for (int i = 0; i < all.size(); i++) {
+            Peer peer = all.get(i);
+            for (int j = i + 1; j < all.size() && all.get(j).roomId.equals(peer.roomId); j++) {
+                Peer target = all.get(j);
+                scheduler.schedule(() -> peer.offer(target.userId),
+                        ThreadLocalRandom.current().nextInt(Math.max(1, intervalMillis)), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        long started = System.nanoTime();
+        long[] last = {startSent, startReceived};
+        while (System.nanoTime() - started < TimeUnit.SECONDS.toNanos(durationSeconds)) {
+            Thread.sleep(5000);
+            long nowSent = sent.get();
+            long nowReceived = received.get();
+            System.out.printf("sent=%d/s received=%d/s negotiations=%d rtt p99=%.1fms errors=%d%n",
+                    (nowSent - last[0]) / 5, (nowReceived - last[1]) / 5, negotiations.get(),
+                    roundTrip.getValueAtPercentile(99) / 1000.0, errors());
+            last[0] = nowSent;
+            last[1] = nowReceived;
+        }
+        running = false;
+        double seconds = (System.nanoTime() - started) / 1e9;
+        // Let answers and candidates already in flight arrive
+        Thread.sleep(Math.min(timeoutMillis, 2000));
+
+        report(seconds, sent.get() - startSent, received.get() - startReceived);
+        all.forEach(Peer::disconnect);
+        scheduler.shutdownNow();
+    }
+
+    private List<Peer> connectAndJoin() throws InterruptedException {
+        List<Peer> joined = new ArrayList<>(peers);
+        List<CompletableFuture<Boolean>> pending = new ArrayList<>(peers);
+        Semaphore inFlight = new Semaphore(connectConcurrency);
+        for (int i = 0; i < peers; i++) {
+            Peer peer = new Peer("load-" + runId + "-" + (i / roomSize), "peer-" + i);
+            inFlight.acquire();
+            CompletableFuture<Boolean> done = peer.connectAndJoin();
+            done.whenComplete((ok, e) -> inFlight.release());
+            pending.add(done);
+            joined.add(peer);
+        }
+        inFlight.acquire(connectConcurrency);
+        List<Peer> ready = new ArrayList<>(peers);
+        for (int i = 0; i < peers; i++) {
+            if (pending.get(i).join()) {
+                ready.add(joined.get(i));
+            }
+        }
+        return ready;
+    }
+
+    private long errors() {
+        return connectFailures.get() + joinTimeouts.get() + answerTimeouts.get() + stompErrors.get() + serverErrors.get();
+    }
+
+    private void report(double seconds, long sentMessages, long receivedMessages) throws IOException {
+        System.out.printf("%nThroughput over %.0fs: sent %.0f msg/s, received %.0f msg/s, %.1f negotiations/s%n",
+                seconds, sentMessages / seconds, receivedMessages / seconds, negotiations.get() / seconds);
+        System.out.printf("%n%-20s %10s %10s %10s %10s %10s%n", "latency (ms)", "count", "p50", "p99", "p999", "max");
+        printRow("join", joinLatency);
+        printRow("offer -> answer", roundTrip);
+        printRow("candidate delivery", candidateDelivery);
+        System.out.printf("%nErrors: connect=%d join-timeout=%d answer-timeout=%d stomp=%d server=%d%n",
+                connectFailures.get(), joinTimeouts.get(), answerTimeouts.get(), stompErrors.get(), serverErrors.get());
+
+        if (hgrmDir != null) {
+            Path dir = Files.createDirectories(Path.of(hgrmDir));
+            writeHgrm(dir.resolve("join.hgrm"), joinLatency);
+            writeHgrm(dir.resolve("offer-answer.hgrm"), roundTrip);
+            writeHgrm(dir.resolve("candidate-delivery.hgrm"), candidateDelivery);
+            System.out.println("Percentile distributions written to " + dir.toAbsolutePath());
+        }
+    }
+
+    private static void printRow(String name, Histogram histogram) {
+        System.out.printf("%-20s %10d %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0, histogram.getMaxValue() / 1000.0);
+    }
+
+    private static void writeHgrm(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)) {
+            // Values are recorded in microseconds, the file is in milliseconds
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static long micros(long startNanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    private class Peer extends StompSessionHandlerAdapter {
+        private final String roomId;
+        private final String userId;
+        private final CompletableFuture<Boolean> joined = new CompletableFuture<>();
+        // Target userId -> nanoTime the outstanding offer was sent
+        private final Map<String, Long> pendingOffers = new ConcurrentHashMap<>();
+        private volatile StompSession session;
+        private long joinSentAt;
+        private long candidateSequence;
+
+        Peer(String roomId, String userId) {
+            this.roomId = roomId;
+            this.userId = userId;
+        }
+
+        CompletableFuture<Boolean> connectAndJoin() {
+            stompClient.connectAsync(url, new WebSocketHttpHeaders(), new StompHeaders(), this)
+                    .whenComplete((s, e) -> {
+                        if (e != null && joined.complete(false)) {
+                            connectFailures.incrementAndGet();
+                        }
+                    });
+            return joined.completeOnTimeout(null, 60, TimeUnit.SECONDS).thenApply(ok -> {
+                if (ok == null) {
+                    joinTimeouts.incrementAndGet();
+                    return false;
+                }
+                return ok;
+            });
+        }
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            this.session = session;
+            subscribe("/topic/room/" + roomId);
+            subscribe("/user/queue/signal");
+            joinSentAt = System.nanoTime();
+            send("/app/join", new JoinRoomMessage(roomId, userId, userId));
+        }
+
+        private void subscribe(String destination) {
+            // The room header puts the subscription on the same inbound lane as the join that follows
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination(destination);
+            headers.set("roomId", roomId);
+            session.subscribe(headers, this);
+        }
+
+        void offer(String targetUserId) {
+            if (!running) {
+                return;
+            }
+            long sentAt = System.nanoTime();
+            pendingOffers.put(targetUserId, sentAt);
+            send("/app/offer", new OfferMessage(roomId, userId, targetUserId, sdp));
+            trickle(targetUserId);
+            scheduler.schedule(() -> {
+                // Still the same outstanding offer: the answer never came
+                if (pendingOffers.remove(targetUserId, sentAt)) {
+                    answerTimeouts.incrementAndGet();
+                    offer(targetUserId);
+                }
+            }, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void trickle(String targetUserId) {
+            for (int i = 0; i < candidatesPerSide; i++) {
+                long sequence;
+                synchronized (this) {
+                    sequence = candidateSequence++;
+                }
+                RawPayload candidate = RawPayload.of(JsonNodeFactory.instance.objectNode()
+                        .put("candidate", "candidate:" + sequence + " 1 udp 2122260223 10.0.0.1 " + (50000 + i) + " typ host")
+                        .put("sdpMid", "0")
+                        .put("sdpMLineIndex", 0)
+                        // Not part of RTCIceCandidate; carried through untouched for delivery latency
+                        .put("sentAt", System.nanoTime()));
+                send("/app/ice-candidate", new IceCandidateMessage(roomId, userId, targetUserId, candidate));
+            }
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return BaseMessage.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            if (!(payload instanceof BaseMessage message)) {
+                // STOMP ERROR frame with an empty body
+                stompErrors.incrementAndGet();
+                return;
+            }
+            received.incrementAndGet();
+            switch (message.getType()) {
+                case USER_JOINED -> {
+                    if (userId.equals(message.getUserId()) && !joined.isDone()) {
+                        joinLatency.recordValue(micros(joinSentAt));
+                        joined.complete(true);
+                    }
+                }
+                case OFFER -> {
+                    OfferMessage offer = (OfferMessage) message;
+                    if (userId.equals(offer.getTargetUserId())) {
+                        send("/app/answer", new AnswerMessage(roomId, userId, offer.getUserId(), sdp));
+                        trickle(offer.getUserId());
+                    }
+                }
+                case ANSWER -> {
+                    AnswerMessage answer = (AnswerMessage) message;
+                    Long sentAt = userId.equals(answer.getTargetUserId()) ? pendingOffers.remove(answer.getUserId()) : null;
+                    if (sentAt != null) {
+                        roundTrip.recordValue(micros(sentAt));
+                        negotiations.incrementAndGet();
+                        scheduler.schedule(() -> offer(answer.getUserId()), intervalMillis, TimeUnit.MILLISECONDS);
+                    }
+                }
+                case ICE_CANDIDATE -> {
+                    IceCandidateMessage candidate = (IceCandidateMessage) message;
+                    if (userId.equals(candidate.getTargetUserId())) {
+                        recordCandidate(candidate.getCandidate());
+                    }
+                }
+                case ICE_CANDIDATE_BATCH -> {
+                    IceCandidateBatchMessage batch = (IceCandidateBatchMessage) message;
+                    if (userId.equals(batch.getTargetUserId())) {
+                        batch.getCandidates().forEach(this::recordCandidate);
+                    }
+                }
+                case ERROR -> {
+                    if (userId.equals(message.getUserId())) {
+                        serverErrors.incrementAndGet();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private void recordCandidate(RawPayload candidate) {
+            JsonNode sentAt = candidate != null ? candidate.toTree().get("sentAt") : null;
+            if (sentAt != null) {
+                candidateDelivery.recordValue(micros(sentAt.asLong()));
+            }
+        }
+
+        private void send(String destination, BaseMessage message) {
+            StompSession current = session;
+            if (current == null || !current.isConnected()) {
+                return;
+            }
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination(destination);
+            headers.set("roomId", roomId);
+            // The socket allows one writer at a time and replies go out from the receiving thread
+            synchronized (this) {
+                current.send(headers, message);
+            }
+            sent.incrementAndGet();
+        }
+
+        void disconnect() {
+            StompSession current = session;
+            if (current != null && current.isConnected()) {
+                current.disconnect();
+            }
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            stompErrors.incrementAndGet();
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            if (joined.complete(false)) {
+                connectFailures.incrementAndGet();
+            } else if (running) {
+                stompErrors.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.anishsarkar.webrtcvideocall.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Starts the backend again and again and measures the time from launching the JVM to the
+ * first STOMP CONNECTED on /ws, and the resident memory of the process at that moment. Three
+ * ways of starting are compared: the fat jar as it is, the same jar with the AOT-generated
+ * bean definitions, and the unpacked AOT layout of the Docker image with a Class Data Sharing
+ * archive from a training run. The layout is prepared under target/startup the first time.
+ * RSS is read from /proc, so it is only reported on Linux.
+ *
+ * <pre>
+ * ./mvnw -Paot package -DskipTests
+ * ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.main=StartupBenchmark -Dloadtest.args="runs=5"
+ * </pre>
+ */
+public class StartupBenchmark {
+
+    private static final String MAIN_CLASS = "com.anishsarkar.webrtcvideocall.VideoCallApplication";
+
+    private final Path jar;
+    private final Path layout;
+    private final int runs;
+    private final int port;
+    private final long timeoutMillis;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    public StartupBenchmark(Map<String, String> options) {
+        this.jar = Paths.get(options.getOrDefault("jar", "target/webrtc-backend.jar"));
+        this.layout = Paths.get(options.getOrDefault("layout", "target/startup"));
+        this.runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        this.port = Integer.parseInt(options.getOrDefault("port", "18000"));
+        this.timeoutMillis = Long.parseLong(options.getOrDefault("timeout-ms", "60000"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(pair[0], pair.length > 1 ? pair[1] : "true");
+        }
+        new StartupBenchmark(options).run();
+    }
+
+    public void run() throws Exception {
+        Path archive = prepareLayout();
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("fat jar", List.of("-jar", jar.toString()));
+        variants.put("fat jar + AOT", List.of("-Dspring.aot.enabled=true", "-jar", jar.toString()));
+        variants.put("AOT + CDS layout", List.of("-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true",
+                "-jar", layout.resolve("application.jar").toString()));
+
+        System.out.printf("%d runs each, first accepted STOMP connection on ws://localhost:%d/ws%n%n", runs, port);
+        System.out.printf("%-20s %14s %14s %12s %12s%n", "", "ready p50 ms", "ready min ms", "RSS p50 MB", "RSS min MB");
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            long[] ready = new long[runs];
+            long[] rss = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                Result result = start(variant.getValue());
+                ready[i] = result.readyMillis;
+                rss[i] = result.rssKb;
+            }
+            Arrays.sort(ready);
+            Arrays.sort(rss);
+            System.out.printf("%-20s %14d %14d %12.0f %12.0f%n", variant.getKey(),
+                    ready[runs / 2], ready[0], rss[runs / 2] / 1024.0, rss[0] / 1024.0);
+        }
+    }
+
+    private Result start(List<String> launch) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(launch);
+        command.addAll(List.of("--server.port=" + port, "--signaling.snapshot.enabled=false",
+                "--signaling.drain.shutdown-timeout-ms=0", "--logging.level.root=WARN"));
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            URI uri = URI.create("ws://localhost:" + port + "/ws");
+            long deadline = launched + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (!stompConnects(uri)) {
+                if (!process.isAlive() || System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Backend never accepted a connection: " + command);
+                }
+                Thread.sleep(10);
+            }
+            long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launched);
+            return new Result(readyMillis, rssKb(process.pid()));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private boolean stompConnects(URI uri) {
+        CompletableFuture<Boolean> connected = new CompletableFuture<>();
+        try {
+            WebSocket webSocket = httpClient.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(1))
+                    .subprotocols("v12.stomp")
+                    .buildAsync(uri, new WebSocket.Listener() {
+                        @Override
+                        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                            connected.complete(data.toString().startsWith("CONNECTED"));
+                            return null;
+                        }
+
+                        @Override
+                        public void onError(WebSocket webSocket, Throwable error) {
+                            connected.complete(false);
+                        }
+                    })
+                    .get(2, TimeUnit.SECONDS);
+            webSocket.sendText("CONNECT\naccept-version:1.2\nhost:localhost\nheart-beat:0,0\n\n\0", true);
+            boolean accepted = connected.get(5, TimeUnit.SECONDS);
+            webSocket.abort();
+            return accepted;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static long rssKb(long pid) throws IOException {
+        Path status = Paths.get("/proc", Long.toString(pid), "status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("\\D", ""));
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Same steps as the Dockerfile: libraries to lib/, the application classes to a jar whose
+     * manifest lists them in the fat jar's order, then a training run that writes the archive.
+     */
+    private Path prepareLayout() throws Exception {
+        Path archive = layout.resolve("application.jsa");
+        if (Files.exists(archive) && Files.getLastModifiedTime(archive).compareTo(Files.getLastModifiedTime(jar)) > 0) {
+            return archive;
+        }
+        System.out.println("Preparing the AOT + CDS layout in " + layout);
+        Files.createDirectories(layout.resolve("lib"));
+        try (JarFile fatJar = new JarFile(jar.toFile())) {
+            if (fatJar.getEntry("BOOT-INF/classes/" + MAIN_CLASS.replace('.', '/') + "__ApplicationContextInitializer.class") == null) {
+                throw new IllegalStateException(jar + " has no AOT-generated classes; build it with -Paot");
+            }
+            List<String> classPath = new ArrayList<>();
+            for (String line : new String(fatJar.getInputStream(fatJar.getEntry("BOOT-INF/classpath.idx")).readAllBytes(),
+                    StandardCharsets.UTF_8).split("\n")) {
+                String library = line.replaceFirst("^- \"BOOT-INF/(lib/.*)\"$", "$1");
+                try (InputStream in = fatJar.getInputStream(fatJar.getEntry("BOOT-INF/" + library))) {
+                    Files.copy(in, layout.resolve(library), StandardCopyOption.REPLACE_EXISTING);
+                }
+                classPath.add(library);
+            }
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, MAIN_CLASS);
+            manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, String.join(" ", classPath));
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(layout.resolve("application.jar")), manifest)) {
+                for (JarEntry entry : Collections.list(fatJar.entries())) {
+                    String name = entry.getName();
+                    if (name.startsWith("BOOT-INF/classes/") && name.length() > "BOOT-INF/classes/".length()) {
+                        out.putNextEntry(new JarEntry(name.substring("BOOT-INF/classes/".length())));
+                        try (InputStream in = fatJar.getInputStream(entry)) {
+                            in.transferTo(out);
+                        }
+                        out.closeEntry();
+                    }
+                }
+            }
+        }
+        Process training = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-XX:ArchiveClassesAtExit=" + archive, "-Dspring.aot.enabled=true", "-Dspring.context.exit=onRefresh",
+                "-jar", layout.resolve("application.jar").toString(), "--signaling.snapshot.enabled=false")
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        if (training.waitFor() != 0 || !Files.exists(archive)) {
+            throw new IllegalStateException("Training run failed with exit code " + training.exitValue());
+        }
+        return archive;
+    }
+
+    private record Result(long readyMillis, long rssKb) {
+    }
+}
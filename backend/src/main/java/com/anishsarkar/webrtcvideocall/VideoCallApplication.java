@@ -1,9 +1,12 @@
 package com.anishsarkar.webrtcvideocall;
 
+import com.anishsarkar.webrtcvideocall.config.SignalingRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(SignalingRuntimeHints.class)
 public class VideoCallApplication {
     public static void main(String[] args) {
         SpringApplication.run(VideoCallApplication.class, args);
@@ -0,0 +1,18 @@
+package com.anishsarkar.webrtcvideocall.config;
+
+import com.anishsarkar.webrtcvideocall.forwarding.LoopbackMediaForwarder;
+import com.anishsarkar.webrtcvideocall.forwarding.MediaForwarder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ForwardingConfig {
+
+    // An adapter for a real forwarding server replaces this by declaring its own MediaForwarder
+    @Bean
+    @ConditionalOnMissingBean(MediaForwarder.class)
+    public MediaForwarder loopbackMediaForwarder() {
+        return new LoopbackMediaForwarder();
+    }
+}
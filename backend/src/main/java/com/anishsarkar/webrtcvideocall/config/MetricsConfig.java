@@ -0,0 +1,41 @@
+package com.anishsarkar.webrtcvideocall.config;
+
+import com.anishsarkar.webrtcvideocall.messaging.OutboundBacklog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder brokerChannelMetrics(@Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel,
+                                            @Qualifier("brokerChannel") AbstractSubscribableChannel brokerChannel,
+                                            OutboundBacklog outboundBacklog) {
+        return registry -> {
+            bindQueueDepth(registry, "clientOutboundChannel", clientOutboundChannel);
+            bindQueueDepth(registry, "brokerChannel", brokerChannel);
+            // Counted whatever runs the outbound channel, unlike the executor queue above
+            Gauge.builder("signaling.outbound.backlog", outboundBacklog, OutboundBacklog::pending)
+                    .description("Frames handed to the client outbound channel and not yet written to their socket")
+                    .register(registry);
+        };
+    }
+
+    private static void bindQueueDepth(MeterRegistry registry, String name, AbstractSubscribableChannel channel) {
+        // Synchronous channels and virtual-thread executors have no queue to report
+        if (channel instanceof ExecutorSubscribableChannel executorChannel
+                && executorChannel.getExecutor() instanceof ThreadPoolTaskExecutor pool) {
+            Gauge.builder("signaling.channel.queue.depth", pool, ThreadPoolTaskExecutor::getQueueSize)
+                    .description("Messages waiting for a thread on the channel's executor")
+                    .tag("channel", name)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.anishsarkar.webrtcvideocall.config;
+
+import com.anishsarkar.webrtcvideocall.registry.ClusterMessageBridge;
+import com.anishsarkar.webrtcvideocall.registry.ClusterStore;
+import com.anishsarkar.webrtcvideocall.registry.ClusteredRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.RedisClusterStore;
+import com.anishsarkar.webrtcvideocall.registry.RoomRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.MessageChannel;
+
+@Configuration
+public class RegistryConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "signaling.registry.type", havingValue = "memory", matchIfMissing = true)
+    public RoomRegistry inMemoryRoomRegistry(@Value("${signaling.room.max-size:8}") int maxRoomSize) {
+        return new InMemoryRoomRegistry(maxRoomSize);
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "signaling.registry.type", havingValue = "cluster")
+    static class ClusterRegistryConfig {
+
+        @Value("${signaling.cluster.key-prefix:webrtc:}")
+        private String keyPrefix;
+
+        @Value("${signaling.room.max-size:8}")
+        private int maxRoomSize;
+
+        @Bean
+        public RoomRegistry clusteredRoomRegistry(ClusterStore clusterStore) {
+            return new ClusteredRoomRegistry(clusterStore, keyPrefix, maxRoomSize);
+        }
+
+        // Not needed when an external STOMP broker already fans messages out across nodes
+        @Bean
+        @ConditionalOnProperty(name = "signaling.broker.mode", havingValue = "simple", matchIfMissing = true)
+        public ClusterMessageBridge clusterMessageBridge(ClusterStore clusterStore,
+                                                         @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+            return new ClusterMessageBridge(clusterStore, keyPrefix + "broadcast", brokerChannel, "/user/");
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "signaling.registry.type", havingValue = "cluster")
+    @ConditionalOnMissingBean(ClusterStore.class)
+    static class RedisStoreConfig {
+
+        @Bean
+        public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            return container;
+        }
+
+        @Bean
+        public ClusterStore redisClusterStore(RedisConnectionFactory connectionFactory,
+                                              RedisMessageListenerContainer listenerContainer) {
+            return new RedisClusterStore(connectionFactory, listenerContainer);
+        }
+    }
+}
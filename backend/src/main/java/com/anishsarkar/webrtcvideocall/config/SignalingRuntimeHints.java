@@ -0,0 +1,26 @@
+package com.anishsarkar.webrtcvideocall.config;
+
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection hints for the signaling messages, which Jackson picks by their {@code type} and
+ * binds reflectively. The subtypes are read from {@link BaseMessage}'s {@link JsonSubTypes}, so
+ * a new message only needs to be listed there; nested DTOs and the custom payload serializers
+ * are followed from the message properties. Used by the AOT build.
+ */
+public class SignalingRuntimeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingHints.registerReflectionHints(hints.reflection(), BaseMessage.class);
+        for (JsonSubTypes.Type subtype : BaseMessage.class.getAnnotation(JsonSubTypes.class).value()) {
+            bindingHints.registerReflectionHints(hints.reflection(), subtype.value());
+        }
+    }
+}
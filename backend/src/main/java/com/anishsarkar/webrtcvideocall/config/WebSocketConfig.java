@@ -1,26 +1,185 @@
 package com.anishsarkar.webrtcvideocall.config;
 
+import com.anishsarkar.webrtcvideocall.listener.SessionActivityTracker;
+import com.anishsarkar.webrtcvideocall.messaging.BinaryFrameHandlerDecorator;
+import com.anishsarkar.webrtcvideocall.messaging.CborMessageConverter;
+import com.anishsarkar.webrtcvideocall.messaging.NodeDrain;
+import com.anishsarkar.webrtcvideocall.messaging.OutboundBacklog;
+import com.anishsarkar.webrtcvideocall.messaging.RoomAffinityExecutor;
+import com.anishsarkar.webrtcvideocall.messaging.SignalMailbox;
+import com.anishsarkar.webrtcvideocall.messaging.SignalingAdmissionInterceptor;
+import com.anishsarkar.webrtcvideocall.registry.ClusterMessageBridge;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.lang.NonNull;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${signaling.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${signaling.broker.relay-host:localhost}")
+    private String relayHost;
+
+    @Value("${signaling.broker.relay-port:61613}")
+    private int relayPort;
+
+    @Value("${signaling.broker.relay-login:guest}")
+    private String relayLogin;
+
+    @Value("${signaling.broker.relay-passcode:guest}")
+    private String relayPasscode;
+
+    // 0 = two lanes per core, the same size as Spring's default inbound pool
+    @Value("${signaling.inbound.lanes:0}")
+    private int inboundLanes;
+
+    // Spring Boot's switch, which also puts Tomcat request handling on virtual threads
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${signaling.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimit;
+
+    @Value("${signaling.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${signaling.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    // Both directions, 0 = off; half-open connections then surface as a disconnect
+    @Value("${signaling.heartbeat.interval-ms:10000}")
+    private long heartbeatInterval;
+
+    @Autowired
+    private ObjectProvider<ClusterMessageBridge> clusterMessageBridge;
+
+    @Autowired
+    private ObjectProvider<RoomAffinityExecutor> roomAffinityExecutor;
+
+    @Autowired
+    private SessionActivityTracker sessionActivityTracker;
+
+    @Autowired
+    private NodeDrain nodeDrain;
+
+    @Autowired
+    private SignalingAdmissionInterceptor signalingAdmissionInterceptor;
+
+    @Autowired
+    private OutboundBacklog outboundBacklog;
+
+    @Autowired
+    private SignalMailbox signalMailbox;
+
+    // Created by the broker configuration itself, hence lazy
+    @Lazy
+    @Autowired
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    @Bean
+    @ConditionalOnProperty(name = "signaling.inbound.executor", havingValue = "room-affinity", matchIfMissing = true)
+    public RoomAffinityExecutor roomAffinityExecutor() {
+        int lanes = inboundLanes > 0 ? inboundLanes : Runtime.getRuntime().availableProcessors() * 2;
+        if (virtualThreads) {
+            return new RoomAffinityExecutor(lanes, Thread.ofVirtual().name("signaling-lane-", 1).factory());
+        }
+        return new RoomAffinityExecutor(lanes);
+    }
+
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
-        // Enable simple broker for broadcasting messages
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equals(brokerMode)) {
+            // External STOMP broker shared by all backend nodes
+            config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(relayLogin)
+                .setClientPasscode(relayPasscode)
+                .setSystemLogin(relayLogin)
+                .setSystemPasscode(relayPasscode)
+                .setUserDestinationBroadcast("/topic/unresolved-user")
+                .setUserRegistryBroadcast("/topic/user-registry");
+        } else {
+            // Enable simple broker for broadcasting messages
+            config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[] {heartbeatInterval, heartbeatInterval})
+                .setTaskScheduler(messageBrokerTaskScheduler);
+            // Replicate broker traffic to the other nodes when the registry is clustered
+            clusterMessageBridge.ifAvailable(bridge -> config.configureBrokerChannel().interceptors(bridge));
+        }
+        // Outbound writes run thread-per-message on virtual threads; keep them in order per session
+        config.setPreservePublishOrder(virtualThreads);
         // Set application destination prefix
         config.setApplicationDestinationPrefixes("/app");
         // Set user destination prefix for private messages
         config.setUserDestinationPrefix("/user");
     }
 
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        // Every inbound frame, heartbeats included, counts as activity for the stale session reaper
+        registration.interceptors(sessionActivityTracker);
+        // While draining, joins are answered with a MIGRATE instead of reaching a lane
+        registration.interceptors(nodeDrain);
+        // Rate limits and backpressure, applied before a frame is queued on a lane
+        registration.interceptors(signalingAdmissionInterceptor);
+        // Confirms signal queue subscriptions, releasing what was held for the session
+        registration.interceptors(signalMailbox);
+        // Hash each room onto its own single-threaded lane instead of the shared pool
+        RoomAffinityExecutor lanes = roomAffinityExecutor.getIfAvailable();
+        if (lanes != null) {
+            registration.executor(lanes);
+        } else if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("clientInboundChannel-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(@NonNull ChannelRegistration registration) {
+        // Frames not yet written to their socket, the backpressure signal for admission control
+        registration.interceptors(outboundBacklog);
+        // A socket write blocked by a slow client only parks its own virtual thread
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("clientOutboundChannel-"));
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
+        // Sessions that cannot keep up are closed instead of buffering without bound
+        registration.setSendTimeLimit(sendTimeLimit)
+            .setSendBufferSizeLimit(sendBufferSizeLimit)
+            .setMessageSizeLimit(messageSizeLimit)
+            // CBOR bodies must go out as binary WebSocket messages
+            .addDecoratorFactory(BinaryFrameHandlerDecorator::new);
+    }
+
+    @Override
+    public boolean configureMessageConverters(@NonNull List<MessageConverter> messageConverters) {
+        // Opt-in binary codec, picked only for frames with content-type application/cbor
+        messageConverters.add(new CborMessageConverter());
+        return true;
+    }
+
    @Override
     public void registerStompEndpoints(@NonNull StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
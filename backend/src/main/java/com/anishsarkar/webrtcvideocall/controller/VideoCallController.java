@@ -1,12 +1,29 @@
 package com.anishsarkar.webrtcvideocall.controller;
 
 import com.anishsarkar.webrtcvideocall.dto.*;
+import com.anishsarkar.webrtcvideocall.forwarding.MediaForwarder;
+import com.anishsarkar.webrtcvideocall.journal.CallJournal;
+import com.anishsarkar.webrtcvideocall.listener.SessionActivityTracker;
+import com.anishsarkar.webrtcvideocall.logging.SignalingEventLog;
+import com.anishsarkar.webrtcvideocall.messaging.SignalingCodecRegistry;
+import com.anishsarkar.webrtcvideocall.metrics.NegotiationTracer;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import com.anishsarkar.webrtcvideocall.messaging.SignalMailbox;
+import com.anishsarkar.webrtcvideocall.registry.JoinRejection;
+import com.anishsarkar.webrtcvideocall.registry.JoinResult;
+import com.anishsarkar.webrtcvideocall.service.IceCandidateCoalescer;
+import com.anishsarkar.webrtcvideocall.service.IceServerCache;
 import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 import org.slf4j.Logger;
@@ -19,157 +36,436 @@ public class VideoCallController {
 
     private static final Logger logger = LoggerFactory.getLogger(VideoCallController.class);
 
+    // Per-session queue, subscribed by clients as /user/queue/signal
+    static final String SIGNAL_QUEUE = "/queue/signal";
+
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
     @Autowired
     private RoomService roomService;
 
+    @Autowired
+    private UserSessionRegistry userSessionRegistry;
+
+    @Autowired
+    private IceCandidateCoalescer iceCandidateCoalescer;
+
+    @Autowired
+    private SignalingCodecRegistry signalingCodecRegistry;
+
+    @Autowired
+    private SignalingMetrics signalingMetrics;
+
+    @Autowired
+    private SignalingEventLog signalingEventLog;
+
+    @Autowired
+    private SessionActivityTracker sessionActivityTracker;
+
+    @Autowired
+    private SessionResumption sessionResumption;
+
+    @Autowired
+    private SignalMailbox signalMailbox;
+
+    @Autowired
+    private MediaForwarder mediaForwarder;
+
+    @Autowired
+    private IceServerCache iceServerCache;
+
+    @Autowired
+    private CallJournal callJournal;
+
+    @Autowired
+    private NegotiationTracer negotiationTracer;
+
+    // Rooms above this many members move to the forwarder, 0 keeps every room a mesh
+    @Value("${signaling.topology.sfu-threshold:0}")
+    private int sfuThreshold;
+
     @MessageMapping("/join")
     public void joinRoom(@Payload JoinRoomMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        long start = System.nanoTime();
         try {
             String roomId = message.getRoomId();
             String userId = message.getUserId();
             String userName = message.getUserName();
-
-            logger.info("User {} joining room {}", userId, roomId);
-
-            // Store session attributes
-            Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
-            if (sessionAttributes != null) {
-                sessionAttributes.put("roomId", roomId);
-                sessionAttributes.put("userId", userId);
+            String sessionId = headerAccessor.getSessionId();
+
+            // Back within the grace window: take the held membership over, the room hears nothing
+            String resumeToken = message.getResumeToken();
+            if (resumeToken != null && roomService.isUserInRoom(roomId, userId)
+                    && sessionResumption.resume(resumeToken, roomId, userId)) {
+                attachSession(headerAccessor, sessionId, roomId, userId);
+                // Version first, so a join in between shows up as a delta the client can apply again
+                long version = roomService.getRoomVersion(roomId);
+                RoomSnapshotMessage snapshot = new RoomSnapshotMessage(roomId, userId, version, roomService.getRoomMembers(roomId));
+                snapshot.setResumeToken(resumeToken);
+                snapshot.setTopology(roomService.getRoomTopology(roomId));
+                snapshot.setIceServers(iceServerCache.servers(message.getRegion()));
+                sendToUser(roomId, userId, snapshot);
+                // Whatever peers sent while the socket was gone
+                signalMailbox.flush(roomId, userId);
+                signalingMetrics.recordResumed();
+                signalingEventLog.resumed(roomId, userId);
+                return;
             }
 
             // Join the room
-            roomService.joinRoom(roomId, userId, userName);
-
-            // Send current room users to the new user first
-            RoomUsersMessage roomUsersMessage = new RoomUsersMessage(roomId, roomService.getRoomUsers(roomId));
-            messagingTemplate.convertAndSend("/topic/room/" + roomId, roomUsersMessage);
-
-            // Then notify others that a new user joined
-            UserJoinedMessage userJoinedMessage = new UserJoinedMessage(roomId, userId, userName);
+            JoinResult result = roomService.joinRoom(roomId, userId, userName);
+            if (!result.isJoined()) {
+                // Not registered for this session, so the disconnect listener leaves the room alone
+                JoinRejection rejection = result.rejection();
+                signalingMetrics.recordError(rejection.name());
+                signalingEventLog.rejected(MessageType.JOIN_ROOM, roomId, userId, rejection.name());
+                callJournal.error(roomId, userId, rejection.name());
+                if (sessionId != null) {
+                    sendToSession(sessionId, new ErrorMessage(roomId, userId, rejection.getMessage(), rejection.name()));
+                }
+                return;
+            }
+            long version = result.version();
+            attachSession(headerAccessor, sessionId, roomId, userId);
+
+            Map<String, String> members = roomService.getRoomMembers(roomId);
+            Topology topology = updateTopology(roomId, members.size());
+
+            // The new user gets the whole room on its own queue, with the token to resume it by
+            RoomSnapshotMessage snapshot = new RoomSnapshotMessage(roomId, userId, version, members);
+            snapshot.setResumeToken(sessionResumption.issue(roomId, userId));
+            snapshot.setTopology(topology);
+            snapshot.setIceServers(iceServerCache.servers(message.getRegion()));
+            sendToUser(roomId, userId, snapshot);
+            signalMailbox.flush(roomId, userId);
+
+            // Everybody else only the change, clients already up to date with this version ignore it
+            UserJoinedMessage userJoinedMessage = new UserJoinedMessage(roomId, userId, userName, version);
             messagingTemplate.convertAndSend("/topic/room/" + roomId, userJoinedMessage);
 
-            logger.info("User {} successfully joined room {}. Room size: {}", 
-                       userId, roomId, roomService.getRoomSize(roomId));
+            int roomSize = members.size();
+            signalingMetrics.recordRoomSize(roomSize);
+
+            signalingEventLog.joined(roomId, userId, roomSize);
 
         } catch (Exception e) {
             logger.error("Error joining room", e);
             sendErrorMessage(message.getRoomId(), message.getUserId(), 
                            "Failed to join room", "JOIN_ERROR");
+        } finally {
+            signalingMetrics.recordHandled(MessageType.JOIN_ROOM, start);
         }
     }
 
     @MessageMapping("/leave")
-    public void leaveRoom(@Payload LeaveRoomMessage message) {
+    public void leaveRoom(@Payload LeaveRoomMessage message, SimpMessageHeaderAccessor headerAccessor) {
+        long start = System.nanoTime();
         try {
             String roomId = message.getRoomId();
             String userId = message.getUserId();
 
-            logger.info("User {} leaving room {}", userId, roomId);
-
             // Leave the room
-            roomService.leaveRoom(roomId, userId);
+            long version = roomService.leaveRoom(roomId, userId);
+            detachSession(headerAccessor, roomId, userId);
+            sessionResumption.revoke(roomId, userId);
+            signalMailbox.discard(roomId, userId);
+            mediaForwarder.release(roomId, userId);
+            int roomSize = roomService.getRoomSize(roomId);
+            signalingMetrics.recordRoomSize(roomSize);
 
             // Notify other users in the room
-            UserLeftMessage userLeftMessage = new UserLeftMessage(roomId, userId);
+            UserLeftMessage userLeftMessage = new UserLeftMessage(roomId, userId, version);
             messagingTemplate.convertAndSend("/topic/room/" + roomId, userLeftMessage);
 
-            // Send updated room users list
-            RoomUsersMessage roomUsersMessage = new RoomUsersMessage(roomId, roomService.getRoomUsers(roomId));
-            messagingTemplate.convertAndSend("/topic/room/" + roomId, roomUsersMessage);
-
-            logger.info("User {} successfully left room {}", userId, roomId);
+            signalingEventLog.left(roomId, userId, roomSize);
+            if (roomSize == 0) {
+                signalingEventLog.roomClosed(roomId);
+            }
 
         } catch (Exception e) {
             logger.error("Error leaving room", e);
             sendErrorMessage(message.getRoomId(), message.getUserId(), 
                            "Failed to leave room", "LEAVE_ERROR");
+        } finally {
+            signalingMetrics.recordHandled(MessageType.LEAVE_ROOM, start);
         }
     }
 
     @MessageMapping("/offer")
     public void handleOffer(@Payload OfferMessage message) {
+        long start = System.nanoTime();
         try {
             String roomId = message.getRoomId();
             String userId = message.getUserId();
             String targetUserId = message.getTargetUserId();
 
-            logger.info("Handling offer from {} to {} in room {}", userId, targetUserId, roomId);
-
             if (!roomService.isUserInRoom(roomId, userId) || !roomService.isUserInRoom(roomId, targetUserId)) {
                 sendErrorMessage(roomId, userId, "User not in room", "USER_NOT_IN_ROOM");
                 return;
             }
+            // No new direct connections once the room uses the forwarder; answers and candidates
+            // still pass, so negotiations already under way can finish
+            if (roomService.getRoomTopology(roomId) == Topology.SFU) {
+                sendErrorMessage(roomId, userId, "Room uses the forwarder", "SFU_ROOM");
+                return;
+            }
 
-            // Send to the room topic - frontend will filter by targetUserId
-            messagingTemplate.convertAndSend("/topic/room/" + roomId, message);
+            // Candidates trickled before this frame go out ahead of it
+            iceCandidateCoalescer.flush(roomId, userId, targetUserId);
+            // Deliver only to the target peer's session
+            sendToUser(roomId, targetUserId, message);
 
-            logger.info("Offer forwarded from {} to {} in room {}", userId, targetUserId, roomId);
+            signalingEventLog.relayed(MessageType.OFFER, roomId, userId, targetUserId, 1, length(message.getOffer()));
+            negotiationTracer.offer(roomId, userId, targetUserId, message.getTimestamp(), start);
 
         } catch (Exception e) {
             logger.error("Error handling offer", e);
             sendErrorMessage(message.getRoomId(), message.getUserId(), 
                            "Failed to handle offer", "OFFER_ERROR");
+        } finally {
+            signalingMetrics.recordHandled(MessageType.OFFER, start);
         }
     }
 
     @MessageMapping("/answer")
     public void handleAnswer(@Payload AnswerMessage message) {
+        long start = System.nanoTime();
         try {
             String roomId = message.getRoomId();
             String userId = message.getUserId();
             String targetUserId = message.getTargetUserId();
 
-            logger.info("Handling answer from {} to {} in room {}", userId, targetUserId, roomId);
-
             if (!roomService.isUserInRoom(roomId, userId) || !roomService.isUserInRoom(roomId, targetUserId)) {
                 sendErrorMessage(roomId, userId, "User not in room", "USER_NOT_IN_ROOM");
                 return;
             }
 
-            // Send to the room topic - frontend will filter by targetUserId
-            messagingTemplate.convertAndSend("/topic/room/" + roomId, message);
+            // Candidates trickled before this frame go out ahead of it
+            iceCandidateCoalescer.flush(roomId, userId, targetUserId);
+            // Deliver only to the target peer's session
+            sendToUser(roomId, targetUserId, message);
 
-            logger.info("Answer forwarded from {} to {} in room {}", userId, targetUserId, roomId);
+            signalingEventLog.relayed(MessageType.ANSWER, roomId, userId, targetUserId, 1, length(message.getAnswer()));
+            long negotiated = negotiationTracer.answer(roomId, userId, targetUserId, message.getTimestamp(), start);
+            if (negotiated >= 0) {
+                callJournal.negotiation(roomId, targetUserId, userId, negotiated);
+            }
 
         } catch (Exception e) {
             logger.error("Error handling answer", e);
             sendErrorMessage(message.getRoomId(), message.getUserId(), 
                            "Failed to handle answer", "ANSWER_ERROR");
+        } finally {
+            signalingMetrics.recordHandled(MessageType.ANSWER, start);
         }
     }
 
     @MessageMapping("/ice-candidate")
     public void handleIceCandidate(@Payload IceCandidateMessage message) {
+        long start = System.nanoTime();
         try {
             String roomId = message.getRoomId();
             String userId = message.getUserId();
             String targetUserId = message.getTargetUserId();
 
-            logger.info("Handling ICE candidate from {} to {} in room {}", userId, targetUserId, roomId);
+            if (iceCandidateCoalescer.isEnabled()) {
+                // Trickled candidates are validated and forwarded once per batch
+                logger.debug("Queuing ICE candidate from {} to {} in room {}", userId, targetUserId, roomId);
+                iceCandidateCoalescer.add(message, this::forwardIceCandidateBatch);
+                negotiationTracer.candidate(roomId, userId, targetUserId, message.getTimestamp(), start, false);
+                return;
+            }
 
             if (!roomService.isUserInRoom(roomId, userId) || !roomService.isUserInRoom(roomId, targetUserId)) {
                 sendErrorMessage(roomId, userId, "User not in room", "USER_NOT_IN_ROOM");
                 return;
             }
 
-            // Send to the room topic - frontend will filter by targetUserId
-            messagingTemplate.convertAndSend("/topic/room/" + roomId, message);
+            // Deliver only to the target peer's session
+            sendToUser(roomId, targetUserId, message);
 
-            logger.info("ICE candidate forwarded from {} to {} in room {}", userId, targetUserId, roomId);
+            signalingEventLog.relayed(MessageType.ICE_CANDIDATE, roomId, userId, targetUserId, 1, length(message.getCandidate()));
+            negotiationTracer.candidate(roomId, userId, targetUserId, message.getTimestamp(), start, true);
 
         } catch (Exception e) {
             logger.error("Error handling ICE candidate", e);
             sendErrorMessage(message.getRoomId(), message.getUserId(), 
                            "Failed to handle ICE candidate", "ICE_CANDIDATE_ERROR");
+        } finally {
+            signalingMetrics.recordHandled(MessageType.ICE_CANDIDATE, start);
         }
     }
 
+    @MessageMapping("/sfu/offer")
+    public void handleSfuOffer(@Payload SfuOfferMessage message) {
+        long start = System.nanoTime();
+        try {
+            String roomId = message.getRoomId();
+            String userId = message.getUserId();
+
+            if (!isForwardedMember(roomId, userId)) {
+                return;
+            }
+
+            RawPayload answer = mediaForwarder.negotiate(roomId, userId, message.getOffer());
+            sendToUser(roomId, userId, new SfuAnswerMessage(roomId, userId, answer));
+
+            signalingEventLog.relayed(MessageType.SFU_OFFER, roomId, userId, null, 1, length(message.getOffer()));
+
+        } catch (Exception e) {
+            logger.error("Error handling forwarder offer", e);
+            sendErrorMessage(message.getRoomId(), message.getUserId(),
+                           "Failed to handle forwarder offer", "SFU_OFFER_ERROR");
+        } finally {
+            signalingMetrics.recordHandled(MessageType.SFU_OFFER, start);
+        }
+    }
+
+    @MessageMapping("/sfu/ice-candidate")
+    public void handleSfuIceCandidate(@Payload SfuIceCandidateMessage message) {
+        long start = System.nanoTime();
+        try {
+            String roomId = message.getRoomId();
+            String userId = message.getUserId();
+
+            if (!isForwardedMember(roomId, userId)) {
+                return;
+            }
+
+            mediaForwarder.addIceCandidate(roomId, userId, message.getCandidate());
+
+        } catch (Exception e) {
+            logger.error("Error handling forwarder ICE candidate", e);
+            sendErrorMessage(message.getRoomId(), message.getUserId(),
+                           "Failed to handle forwarder ICE candidate", "SFU_ICE_CANDIDATE_ERROR");
+        } finally {
+            signalingMetrics.recordHandled(MessageType.SFU_ICE_CANDIDATE, start);
+        }
+    }
+
+    private boolean isForwardedMember(String roomId, String userId) {
+        if (!roomService.isUserInRoom(roomId, userId)) {
+            sendErrorMessage(roomId, userId, "User not in room", "USER_NOT_IN_ROOM");
+            return false;
+        }
+        if (roomService.getRoomTopology(roomId) != Topology.SFU) {
+            sendErrorMessage(roomId, userId, "Room does not use the forwarder", "NOT_SFU_ROOM");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moves the room to the forwarder once a join takes it past the threshold, and tells the
+     * members already in it before they hear about the new one. Returns the room's topology.
+     */
+    private Topology updateTopology(String roomId, int roomSize) {
+        if (sfuThreshold > 0 && roomSize > sfuThreshold && roomService.promoteToSfu(roomId)) {
+            messagingTemplate.convertAndSend("/topic/room/" + roomId, new TopologyChangedMessage(roomId, Topology.SFU));
+            signalingMetrics.recordTopologyChanged(Topology.SFU);
+            signalingEventLog.topologyChanged(roomId, Topology.SFU, roomSize);
+            return Topology.SFU;
+        }
+        return roomService.getRoomTopology(roomId);
+    }
+
+    private void forwardIceCandidateBatch(IceCandidateBatchMessage batch) {
+        String roomId = batch.getRoomId();
+        String userId = batch.getUserId();
+        String targetUserId = batch.getTargetUserId();
+
+        if (!roomService.isUserInRoom(roomId, userId) || !roomService.isUserInRoom(roomId, targetUserId)) {
+            sendErrorMessage(roomId, userId, "User not in room", "USER_NOT_IN_ROOM");
+            return;
+        }
+
+        sendToUser(roomId, targetUserId, batch);
+
+        int bytes = 0;
+        for (RawPayload candidate : batch.getCandidates()) {
+            bytes += length(candidate);
+        }
+        signalingEventLog.relayed(MessageType.ICE_CANDIDATE_BATCH, roomId, userId, targetUserId,
+                batch.getCandidates().size(), bytes);
+    }
+
     private void sendErrorMessage(String roomId, String userId, String errorMessage, String errorCode) {
+        signalingMetrics.recordError(errorCode);
+        signalingEventLog.rejected(MessageType.ERROR, roomId, userId, errorCode);
+        callJournal.error(roomId, userId, errorCode);
         ErrorMessage error = new ErrorMessage(roomId, userId, errorMessage, errorCode);
-        messagingTemplate.convertAndSend("/topic/room/" + roomId, error);
+        sendToUser(roomId, userId, error);
+    }
+
+    private void sendToUser(String roomId, String userId, BaseMessage message) {
+        String sessionId = userId != null ? userSessionRegistry.getSessionId(roomId, userId) : null;
+        if (sessionId != null && !signalMailbox.isPending(roomId, userId, sessionId)) {
+            sendToSession(sessionId, message);
+            return;
+        }
+        // Not subscribed yet, or away within the resume window: held until the session can take it
+        if (userId != null && signalMailbox.deliver(roomId, userId, message, this::sendToSession)) {
+            return;
+        }
+        // Unknown session - fall back to the room topic, clients filter by targetUserId
+        signalingMetrics.recordRelayed(message.getType());
+        messagingTemplate.convertAndSend("/topic/room/" + roomId, message);
+    }
+
+    private void attachSession(SimpMessageHeaderAccessor headerAccessor, String sessionId, String roomId, String userId) {
+        // Store session attributes
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        if (sessionAttributes != null) {
+            sessionAttributes.put("roomId", roomId);
+            sessionAttributes.put("userId", userId);
+        }
+
+        // Remember which socket belongs to this user for targeted signaling
+        if (sessionId != null) {
+            userSessionRegistry.register(roomId, userId, sessionId);
+            sessionActivityTracker.track(sessionId, roomId, userId);
+        }
+    }
+
+    /**
+     * Undoes {@link #attachSession} after an explicit leave, so closing the socket later is a
+     * disconnect without a room rather than one whose membership is held and left again.
+     */
+    private void detachSession(SimpMessageHeaderAccessor headerAccessor, String roomId, String userId) {
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        if (sessionAttributes == null || !roomId.equals(sessionAttributes.get("roomId"))
+                || !userId.equals(sessionAttributes.get("userId"))) {
+            // Not the membership this socket joined with
+            return;
+        }
+        sessionAttributes.remove("roomId");
+        sessionAttributes.remove("userId");
+
+        String sessionId = headerAccessor.getSessionId();
+        if (sessionId != null) {
+            userSessionRegistry.unregister(roomId, userId, sessionId);
+            sessionActivityTracker.forget(sessionId);
+        }
+    }
+
+    private void sendToSession(String sessionId, BaseMessage message) {
+        signalingMetrics.recordRelayed(message.getType());
+        messagingTemplate.convertAndSendToUser(sessionId, SIGNAL_QUEUE, message, createSessionHeaders(sessionId));
+    }
+
+    private static int length(RawPayload payload) {
+        return payload != null ? payload.length() : 0;
+    }
+
+    private MessageHeaders createSessionHeaders(String sessionId) {
+        // A user destination whose name equals the session id header resolves to that session only,
+        // so no Principal is required
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        // Encoded with the codec the target session negotiated on CONNECT, JSON when unset
+        accessor.setContentType(signalingCodecRegistry.getContentType(sessionId));
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
     }
 }
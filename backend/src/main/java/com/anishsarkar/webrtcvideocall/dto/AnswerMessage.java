@@ -1,20 +1,18 @@
 package com.anishsarkar.webrtcvideocall.dto;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 public class AnswerMessage extends BaseMessage {
-    private JsonNode answer;
+    private RawPayload answer;
 
     public AnswerMessage() {
         super(MessageType.ANSWER, null, null);
     }
 
-    public AnswerMessage(String roomId, String userId, String targetUserId, JsonNode answer) {
+    public AnswerMessage(String roomId, String userId, String targetUserId, RawPayload answer) {
         super(MessageType.ANSWER, roomId, userId);
         setTargetUserId(targetUserId);
         this.answer = answer;
     }
 
-    public JsonNode getAnswer() { return answer; }
-    public void setAnswer(JsonNode answer) { this.answer = answer; }
+    public RawPayload getAnswer() { return answer; }
+    public void setAnswer(RawPayload answer) { this.answer = answer; }
 }
\ No newline at end of file
@@ -1,20 +1,29 @@
 package com.anishsarkar.webrtcvideocall.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonSubTypes;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import jakarta.validation.constraints.NotNull;
 
-@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+// The type id is the existing type property, so it is written once
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property = "type", visible = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonSubTypes({
     @JsonSubTypes.Type(value = JoinRoomMessage.class, name = "JOIN_ROOM"),
     @JsonSubTypes.Type(value = LeaveRoomMessage.class, name = "LEAVE_ROOM"),
     @JsonSubTypes.Type(value = OfferMessage.class, name = "OFFER"),
     @JsonSubTypes.Type(value = AnswerMessage.class, name = "ANSWER"),
     @JsonSubTypes.Type(value = IceCandidateMessage.class, name = "ICE_CANDIDATE"),
+    @JsonSubTypes.Type(value = IceCandidateBatchMessage.class, name = "ICE_CANDIDATE_BATCH"),
     @JsonSubTypes.Type(value = UserJoinedMessage.class, name = "USER_JOINED"),
     @JsonSubTypes.Type(value = UserLeftMessage.class, name = "USER_LEFT"),
     @JsonSubTypes.Type(value = ErrorMessage.class, name = "ERROR"),
-    @JsonSubTypes.Type(value = RoomUsersMessage.class, name = "ROOM_USERS")
+    @JsonSubTypes.Type(value = RoomSnapshotMessage.class, name = "ROOM_SNAPSHOT"),
+    @JsonSubTypes.Type(value = TopologyChangedMessage.class, name = "TOPOLOGY_CHANGED"),
+    @JsonSubTypes.Type(value = SfuOfferMessage.class, name = "SFU_OFFER"),
+    @JsonSubTypes.Type(value = SfuAnswerMessage.class, name = "SFU_ANSWER"),
+    @JsonSubTypes.Type(value = SfuIceCandidateMessage.class, name = "SFU_ICE_CANDIDATE"),
+    @JsonSubTypes.Type(value = MigrateMessage.class, name = "MIGRATE")
 })
 public abstract class BaseMessage {
     @NotNull
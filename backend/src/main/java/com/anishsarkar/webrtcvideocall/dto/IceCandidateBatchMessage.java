@@ -0,0 +1,20 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+import java.util.List;
+
+public class IceCandidateBatchMessage extends BaseMessage {
+    private List<RawPayload> candidates;
+
+    public IceCandidateBatchMessage() {
+        super(MessageType.ICE_CANDIDATE_BATCH, null, null);
+    }
+
+    public IceCandidateBatchMessage(String roomId, String userId, String targetUserId, List<RawPayload> candidates) {
+        super(MessageType.ICE_CANDIDATE_BATCH, roomId, userId);
+        setTargetUserId(targetUserId);
+        this.candidates = candidates;
+    }
+
+    public List<RawPayload> getCandidates() { return candidates; }
+    public void setCandidates(List<RawPayload> candidates) { this.candidates = candidates; }
+}
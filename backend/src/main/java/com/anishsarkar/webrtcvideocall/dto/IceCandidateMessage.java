@@ -1,20 +1,18 @@
 package com.anishsarkar.webrtcvideocall.dto;
 
-import com.fasterxml.jackson.databind.JsonNode;
-
 public class IceCandidateMessage extends BaseMessage {
-    private JsonNode candidate;
+    private RawPayload candidate;
 
     public IceCandidateMessage() {
         super(MessageType.ICE_CANDIDATE, null, null);
     }
 
-    public IceCandidateMessage(String roomId, String userId, String targetUserId, JsonNode candidate) {
+    public IceCandidateMessage(String roomId, String userId, String targetUserId, RawPayload candidate) {
         super(MessageType.ICE_CANDIDATE, roomId, userId);
         setTargetUserId(targetUserId);
         this.candidate = candidate;
     }
 
-    public JsonNode getCandidate() { return candidate; }
-    public void setCandidate(JsonNode candidate) { this.candidate = candidate; }
+    public RawPayload getCandidate() { return candidate; }
+    public void setCandidate(RawPayload candidate) { this.candidate = candidate; }
 }
@@ -0,0 +1,34 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One entry of a client's {@code RTCConfiguration.iceServers}. STUN entries have no
+ * credentials; TURN entries carry a time-limited username and its HMAC as the credential.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IceServer {
+    private List<String> urls;
+    private String username;
+    private String credential;
+
+    public IceServer() {
+    }
+
+    public IceServer(List<String> urls, String username, String credential) {
+        this.urls = urls;
+        this.username = username;
+        this.credential = credential;
+    }
+
+    public List<String> getUrls() { return urls; }
+    public void setUrls(List<String> urls) { this.urls = urls; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getCredential() { return credential; }
+    public void setCredential(String credential) { this.credential = credential; }
+}
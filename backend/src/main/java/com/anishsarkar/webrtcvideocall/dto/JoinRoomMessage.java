@@ -2,6 +2,10 @@ package com.anishsarkar.webrtcvideocall.dto;
 
 public class JoinRoomMessage extends BaseMessage {
     private String userName;
+    // From an earlier snapshot; takes over a membership held after the old socket dropped
+    private String resumeToken;
+    // Picks the ICE servers handed back in the snapshot; the default set when absent or unknown
+    private String region;
 
     public JoinRoomMessage() {
         super(MessageType.JOIN_ROOM, null, null);
@@ -14,4 +18,10 @@ public class JoinRoomMessage extends BaseMessage {
 
     public String getUserName() { return userName; }
     public void setUserName(String userName) { this.userName = userName; }
+
+    public String getResumeToken() { return resumeToken; }
+    public void setResumeToken(String resumeToken) { this.resumeToken = resumeToken; }
+
+    public String getRegion() { return region; }
+    public void setRegion(String region) { this.region = region; }
 }
\ No newline at end of file
@@ -6,8 +6,14 @@ public enum MessageType {
     OFFER,
     ANSWER,
     ICE_CANDIDATE,
+    ICE_CANDIDATE_BATCH,
     USER_JOINED,
     USER_LEFT,
     ERROR,
-    ROOM_USERS
+    ROOM_SNAPSHOT,
+    TOPOLOGY_CHANGED,
+    SFU_OFFER,
+    SFU_ANSWER,
+    SFU_ICE_CANDIDATE,
+    MIGRATE
 }
@@ -0,0 +1,23 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+/**
+ * Sent to each session of a node that is draining, and in reply to a join it refuses. The
+ * client reconnects after {@code reconnectDelayMs}, which is spread at random so the node
+ * taking over does not get every room at once.
+ */
+public class MigrateMessage extends BaseMessage {
+    private long reconnectDelayMs;
+
+    public MigrateMessage() {
+        super(MessageType.MIGRATE, null, null);
+    }
+
+    public MigrateMessage(String roomId, String targetUserId, long reconnectDelayMs) {
+        super(MessageType.MIGRATE, roomId, null);
+        setTargetUserId(targetUserId);
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    public long getReconnectDelayMs() { return reconnectDelayMs; }
+    public void setReconnectDelayMs(long reconnectDelayMs) { this.reconnectDelayMs = reconnectDelayMs; }
+}
@@ -0,0 +1,232 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An SDP or ICE candidate object the server only relays. Deserializing keeps a slice of the
+ * incoming frame instead of building a {@link JsonNode} tree, and serializing to JSON copies
+ * those bytes back out unchanged. Crossing between JSON and CBOR streams the tokens from one
+ * format to the other, still without a tree.
+ */
+@JsonSerialize(using = RawPayload.Serializer.class)
+@JsonDeserialize(using = RawPayload.Deserializer.class)
+public final class RawPayload {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final CBORFactory CBOR = new CBORFactory();
+    private static final ObjectMapper TREE_MAPPER = new ObjectMapper();
+
+    private final byte[] source;
+    private final int offset;
+    private final int length;
+    private final boolean cbor;
+
+    private RawPayload(byte[] source, int offset, int length, boolean cbor) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+        this.cbor = cbor;
+    }
+
+    public static RawPayload of(JsonNode node) {
+        try {
+            byte[] json = TREE_MAPPER.writeValueAsBytes(node);
+            return new RawPayload(json, 0, json.length, false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Parses the payload, for callers that need to look inside it.
+     */
+    public JsonNode toTree() {
+        try (JsonParser parser = parser()) {
+            return TREE_MAPPER.readTree(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private JsonParser parser() throws IOException {
+        return cbor ? CBOR.createParser(source, offset, length) : JSON.createParser(source, offset, length);
+    }
+
+    @Override
+    public String toString() {
+        return cbor ? toTree().toString() : new String(source, offset, length, StandardCharsets.UTF_8);
+    }
+
+    static class Serializer extends JsonSerializer<RawPayload> {
+        @Override
+        public void serialize(RawPayload value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            if (!value.cbor && gen instanceof UTF8JsonGenerator) {
+                gen.writeRawValue(value.new Utf8Slice());
+                return;
+            }
+            try (JsonParser parser = value.parser()) {
+                parser.nextToken();
+                gen.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    static class Deserializer extends JsonDeserializer<RawPayload> {
+        @Override
+        public RawPayload deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            // Visible type ids hand us a parser sequence, so ask the content reference for the format
+            JsonLocation start = p.currentTokenLocation();
+            boolean cbor = !start.contentReference().hasTextualContent();
+            int from = (int) start.getByteOffset();
+            if (start.contentReference().getRawContent() instanceof byte[] input && startsContainer(input, from, cbor)) {
+                p.skipChildren();
+                int to = (int) p.currentLocation().getByteOffset();
+                return new RawPayload(input, from, to - from, cbor);
+            }
+            // Scalars and other sources (strings, streams) have no byte slice to keep
+            return RawPayload.of(p.readValueAsTree());
+        }
+
+        private static boolean startsContainer(byte[] input, int from, boolean cbor) {
+            if (from < 0 || from >= input.length) {
+                return false;
+            }
+            if (cbor) {
+                // Major type 4 (array) or 5 (map)
+                int major = (input[from] & 0xFF) >> 5;
+                return major == 4 || major == 5;
+            }
+            return input[from] == '{' || input[from] == '[';
+        }
+    }
+
+    /**
+     * The JSON bytes as a raw value for {@link UTF8JsonGenerator}, which only appends or
+     * writes the unquoted UTF-8 form. The char and quoted forms are decoded from the bytes
+     * for any other caller.
+     */
+    private final class Utf8Slice implements SerializableString {
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int bufferOffset) {
+            if (bufferOffset + length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(source, offset, buffer, bufferOffset, length);
+            return length;
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return Arrays.copyOfRange(source, offset, offset + length);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(source, offset, length);
+            return length;
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            if (length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(source, offset, length);
+            return length;
+        }
+
+        @Override
+        public String getValue() {
+            return new String(source, offset, length, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int bufferOffset) {
+            return append(getValue().toCharArray(), buffer, bufferOffset);
+        }
+
+        // Quoted forms are for names and string values, not raw values; encoded on demand so a
+        // generator that asks for them still gets correct output
+        @Override
+        public char[] asQuotedChars() {
+            return JsonStringEncoder.getInstance().quoteAsString(getValue());
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int bufferOffset) {
+            byte[] quoted = asQuotedUTF8();
+            if (bufferOffset + quoted.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(quoted, 0, buffer, bufferOffset, quoted.length);
+            return quoted.length;
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int bufferOffset) {
+            return append(asQuotedChars(), buffer, bufferOffset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            byte[] quoted = asQuotedUTF8();
+            out.write(quoted);
+            return quoted.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            byte[] quoted = asQuotedUTF8();
+            if (quoted.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(quoted);
+            return quoted.length;
+        }
+
+        private static int append(char[] chars, char[] buffer, int bufferOffset) {
+            if (bufferOffset + chars.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(chars, 0, buffer, bufferOffset, chars.length);
+            return chars.length;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The whole room as of {@code version}, sent only to the user who just joined. Members
+ * already in the room get a {@link UserJoinedMessage} carrying the same version instead.
+ * Also sent, with no message to the others, to a session that resumed a membership.
+ * {@code topology} tells the joiner whether to connect to the members or to the forwarder,
+ * and {@code iceServers} what to connect through.
+ */
+public class RoomSnapshotMessage extends BaseMessage {
+    private long version;
+    private Map<String, String> members;
+    private String resumeToken;
+    private Topology topology;
+    private List<IceServer> iceServers;
+
+    public RoomSnapshotMessage() {
+        super(MessageType.ROOM_SNAPSHOT, null, null);
+    }
+
+    public RoomSnapshotMessage(String roomId, String targetUserId, long version, Map<String, String> members) {
+        super(MessageType.ROOM_SNAPSHOT, roomId, null);
+        setTargetUserId(targetUserId);
+        this.version = version;
+        this.members = members;
+    }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public Map<String, String> getMembers() { return members; }
+    public void setMembers(Map<String, String> members) { this.members = members; }
+
+    public String getResumeToken() { return resumeToken; }
+    public void setResumeToken(String resumeToken) { this.resumeToken = resumeToken; }
+
+    public Topology getTopology() { return topology; }
+    public void setTopology(Topology topology) { this.topology = topology; }
+
+    public List<IceServer> getIceServers() { return iceServers; }
+    public void setIceServers(List<IceServer> iceServers) { this.iceServers = iceServers; }
+}
@@ -0,0 +1,18 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+public class SfuAnswerMessage extends BaseMessage {
+    private RawPayload answer;
+
+    public SfuAnswerMessage() {
+        super(MessageType.SFU_ANSWER, null, null);
+    }
+
+    public SfuAnswerMessage(String roomId, String targetUserId, RawPayload answer) {
+        super(MessageType.SFU_ANSWER, roomId, null);
+        setTargetUserId(targetUserId);
+        this.answer = answer;
+    }
+
+    public RawPayload getAnswer() { return answer; }
+    public void setAnswer(RawPayload answer) { this.answer = answer; }
+}
@@ -0,0 +1,17 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+public class SfuIceCandidateMessage extends BaseMessage {
+    private RawPayload candidate;
+
+    public SfuIceCandidateMessage() {
+        super(MessageType.SFU_ICE_CANDIDATE, null, null);
+    }
+
+    public SfuIceCandidateMessage(String roomId, String userId, RawPayload candidate) {
+        super(MessageType.SFU_ICE_CANDIDATE, roomId, userId);
+        this.candidate = candidate;
+    }
+
+    public RawPayload getCandidate() { return candidate; }
+    public void setCandidate(RawPayload candidate) { this.candidate = candidate; }
+}
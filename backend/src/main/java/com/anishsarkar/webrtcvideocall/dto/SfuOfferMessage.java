@@ -0,0 +1,18 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+// A peer's offer to the room's forwarder; also sent again to renegotiate when members change
+public class SfuOfferMessage extends BaseMessage {
+    private RawPayload offer;
+
+    public SfuOfferMessage() {
+        super(MessageType.SFU_OFFER, null, null);
+    }
+
+    public SfuOfferMessage(String roomId, String userId, RawPayload offer) {
+        super(MessageType.SFU_OFFER, roomId, userId);
+        this.offer = offer;
+    }
+
+    public RawPayload getOffer() { return offer; }
+    public void setOffer(RawPayload offer) { this.offer = offer; }
+}
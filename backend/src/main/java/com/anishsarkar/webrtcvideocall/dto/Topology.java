@@ -0,0 +1,11 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+/**
+ * How the peers of a room exchange media. Every room starts as a mesh, where each peer has
+ * a connection to every other; a room that outgrows the mesh moves to a forwarding server,
+ * which each peer then has a single connection to.
+ */
+public enum Topology {
+    MESH,
+    SFU
+}
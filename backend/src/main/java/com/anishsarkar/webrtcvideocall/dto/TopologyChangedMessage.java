@@ -0,0 +1,21 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+/**
+ * Broadcast when a room moves to another topology. Peers connect to the forwarder first and
+ * close their direct connections once media arrives through it, so nobody drops out meanwhile.
+ */
+public class TopologyChangedMessage extends BaseMessage {
+    private Topology topology;
+
+    public TopologyChangedMessage() {
+        super(MessageType.TOPOLOGY_CHANGED, null, null);
+    }
+
+    public TopologyChangedMessage(String roomId, Topology topology) {
+        super(MessageType.TOPOLOGY_CHANGED, roomId, null);
+        this.topology = topology;
+    }
+
+    public Topology getTopology() { return topology; }
+    public void setTopology(Topology topology) { this.topology = topology; }
+}
@@ -2,16 +2,22 @@ package com.anishsarkar.webrtcvideocall.dto;
 
 public class UserJoinedMessage extends BaseMessage {
     private String userName;
+    // Room membership version after this join, lets clients spot missed updates
+    private long version;
 
     public UserJoinedMessage() {
         super(MessageType.USER_JOINED, null, null);
     }
 
-    public UserJoinedMessage(String roomId, String userId, String userName) {
+    public UserJoinedMessage(String roomId, String userId, String userName, long version) {
         super(MessageType.USER_JOINED, roomId, userId);
         this.userName = userName;
+        this.version = version;
     }
 
     public String getUserName() { return userName; }
     public void setUserName(String userName) { this.userName = userName; }
-}
\ No newline at end of file
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+}
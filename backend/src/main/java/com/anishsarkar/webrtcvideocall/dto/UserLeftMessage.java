@@ -1,11 +1,18 @@
 package com.anishsarkar.webrtcvideocall.dto;
 
 public class UserLeftMessage extends BaseMessage {
+    // Room membership version after this leave
+    private long version;
+
     public UserLeftMessage() {
         super(MessageType.USER_LEFT, null, null);
     }
 
-    public UserLeftMessage(String roomId, String userId) {
+    public UserLeftMessage(String roomId, String userId, long version) {
         super(MessageType.USER_LEFT, roomId, userId);
+        this.version = version;
     }
-}
\ No newline at end of file
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+}
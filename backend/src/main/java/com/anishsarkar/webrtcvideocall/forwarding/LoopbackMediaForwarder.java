@@ -0,0 +1,53 @@
+package com.anishsarkar.webrtcvideocall.forwarding;
+
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in forwarder with no media plane: each offer is answered with its own SDP, and
+ * endpoints and candidates are only counted. Enough for the signaling around a topology
+ * switch to be exercised end to end without a forwarding server.
+ */
+public class LoopbackMediaForwarder implements MediaForwarder {
+
+    private final Map<String, Set<String>> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger candidates = new AtomicInteger();
+
+    @Override
+    public RawPayload negotiate(String roomId, String userId, RawPayload offer) {
+        endpoints.computeIfAbsent(roomId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        JsonNode sdp = offer != null ? offer.toTree().path("sdp") : null;
+        ObjectNode answer = JsonNodeFactory.instance.objectNode().put("type", "answer");
+        answer.put("sdp", sdp != null && sdp.isTextual() ? sdp.asText() : "");
+        return RawPayload.of(answer);
+    }
+
+    @Override
+    public void addIceCandidate(String roomId, String userId, RawPayload candidate) {
+        candidates.incrementAndGet();
+    }
+
+    @Override
+    public void release(String roomId, String userId) {
+        endpoints.computeIfPresent(roomId, (id, users) -> {
+            users.remove(userId);
+            return users.isEmpty() ? null : users;
+        });
+    }
+
+    /** Peers of the room that have negotiated and not been released. */
+    public Set<String> endpoints(String roomId) {
+        return Set.copyOf(endpoints.getOrDefault(roomId, Set.of()));
+    }
+
+    public int candidates() {
+        return candidates.get();
+    }
+}
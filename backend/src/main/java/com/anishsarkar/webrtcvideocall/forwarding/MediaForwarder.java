@@ -0,0 +1,24 @@
+package com.anishsarkar.webrtcvideocall.forwarding;
+
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+
+/**
+ * The server-side endpoint peers of an SFU room negotiate with instead of with each other.
+ * Each peer offers once to publish its tracks and again whenever it wants the room's current
+ * set of tracks; the forwarder answers every offer. Its own candidates are expected in the
+ * answer, as ICE-lite forwarders send them, so candidates only flow from the peers.
+ * Implementations adapt an actual forwarding server; {@link LoopbackMediaForwarder} stands in
+ * for one where there is none.
+ */
+public interface MediaForwarder {
+
+    /**
+     * Takes the peer's offer, creating its endpoint on first use, and returns the answer.
+     */
+    RawPayload negotiate(String roomId, String userId, RawPayload offer);
+
+    void addIceCandidate(String roomId, String userId, RawPayload candidate);
+
+    /** The peer has left the room; frees its endpoint. Nothing happens if it had none. */
+    void release(String roomId, String userId);
+}
@@ -0,0 +1,253 @@
+package com.anishsarkar.webrtcvideocall.journal;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary record of joins, leaves, disconnects, error codes and negotiation times,
+ * kept for looking back at a node's calls after the fact with {@link JournalTool}. Records are
+ * copied into a memory-mapped segment file under a short lock; a background thread forces
+ * whatever was written since its last pass to disk every flush interval, so one sync covers all
+ * the records of the interval and no append waits for the disk. A full segment is forced and
+ * the next one is started. Any I/O failure turns the journal off rather than failing signaling.
+ *
+ * <p>A segment starts with {@link #MAGIC} and {@link #VERSION}; each record is its length and
+ * CRC32C, then type, epoch millis, room, user and detail as length-prefixed UTF-8, and a long
+ * value. The unwritten rest of a segment is zeros, so a zero length marks its end.
+ */
+@Component
+public class CallJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallJournal.class);
+
+    static final int MAGIC = 0x434A4E4C;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 8;
+    // Length and checksum in front of every record
+    static final int RECORD_PREFIX_BYTES = 8;
+    static final String SEGMENT_PREFIX = "calls-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    static final int MIN_SEGMENT_BYTES = 16 * 1024;
+    // Ids come from clients; longer ones are cut so a record always fits the scratch buffer
+    private static final int MAX_STRING_CHARS = 256;
+    private static final int MAX_RECORD_BYTES = RECORD_PREFIX_BYTES + 1 + 8 + 3 * (2 + 3 * MAX_STRING_CHARS) + 8;
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService flusher;
+    private final ThreadLocal<ByteBuffer> scratch = ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAX_RECORD_BYTES));
+    // Guarded by this; null once the journal is closed or has failed
+    private MappedByteBuffer segment;
+    private long sequence;
+    // How far the flusher has forced the current segment
+    private int forced;
+
+    @Autowired
+    public CallJournal(@Value("${signaling.journal.enabled:false}") boolean enabled,
+                       @Value("${signaling.journal.dir:journal}") String dir,
+                       @Value("${signaling.journal.segment-bytes:67108864}") int segmentBytes,
+                       @Value("${signaling.journal.flush-interval-ms:200}") long flushIntervalMillis) {
+        this(enabled, Paths.get(dir), segmentBytes, flushIntervalMillis, System::currentTimeMillis);
+    }
+
+    CallJournal(boolean enabled, Path dir, int segmentBytes, long flushIntervalMillis, LongSupplier clock) {
+        this.dir = dir;
+        this.segmentBytes = Math.max(segmentBytes, MIN_SEGMENT_BYTES);
+        this.clock = clock;
+        this.enabled = enabled && open();
+        if (this.enabled && flushIntervalMillis > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "call-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /** A journal that records nothing, for components built outside Spring. */
+    public static CallJournal disabled() {
+        return new CallJournal(false, null, 0, 0, System::currentTimeMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void join(String roomId, String userId) {
+        append(JournalEventType.JOIN, roomId, userId, null, 0);
+    }
+
+    public void leave(String roomId, String userId) {
+        append(JournalEventType.LEAVE, roomId, userId, null, 0);
+    }
+
+    public void disconnect(String roomId, String userId) {
+        append(JournalEventType.DISCONNECT, roomId, userId, null, 0);
+    }
+
+    public void error(String roomId, String userId, String errorCode) {
+        append(JournalEventType.ERROR, roomId, userId, errorCode, 0);
+    }
+
+    /** A finished offer/answer exchange and how long it took on the server, in nanoseconds. */
+    public void negotiation(String roomId, String offererId, String answererId, long nanos) {
+        append(JournalEventType.NEGOTIATION, roomId, offererId, answererId, nanos);
+    }
+
+    /** Forces everything appended so far to disk. */
+    public void flush() {
+        MappedByteBuffer target;
+        int from;
+        int to;
+        synchronized (this) {
+            if (segment == null) {
+                return;
+            }
+            target = segment;
+            from = forced;
+            to = segment.position();
+            forced = to;
+        }
+        // Outside the lock: appends go on while the range already written is synced
+        if (to > from) {
+            target.force(from, to - from);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            if (segment != null) {
+                segment.force();
+                segment = null;
+            }
+        }
+    }
+
+    private void append(JournalEventType type, String roomId, String userId, String detail, long value) {
+        if (!enabled) {
+            return;
+        }
+        // Encoded and checksummed before taking the lock, which only covers the copy
+        ByteBuffer record = scratch.get().clear().position(RECORD_PREFIX_BYTES);
+        record.put(type.code()).putLong(clock.getAsLong());
+        putString(record, roomId);
+        putString(record, userId);
+        putString(record, detail);
+        record.putLong(value);
+        int length = record.position() - RECORD_PREFIX_BYTES;
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_PREFIX_BYTES, length);
+        record.putInt(0, length).putInt(4, (int) crc.getValue()).flip();
+        synchronized (this) {
+            if (segment == null) {
+                return;
+            }
+            if (segment.remaining() < record.remaining()) {
+                try {
+                    segment.force();
+                    openSegment();
+                } catch (IOException | RuntimeException e) {
+                    logger.error("Call journal stopped: could not start a new segment in {}", dir, e);
+                    segment = null;
+                    return;
+                }
+            }
+            segment.put(record);
+        }
+    }
+
+    private boolean open() {
+        try {
+            Files.createDirectories(dir);
+            // Never written into again after a restart, a new segment follows the last one
+            try (Stream<Path> files = Files.list(dir)) {
+                sequence = files.mapToLong(CallJournal::sequenceOf).max().orElse(0);
+            }
+            synchronized (this) {
+                openSegment();
+            }
+            logger.info("Call journal writing to {}", segmentPath(dir, sequence).toAbsolutePath());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Call journal disabled: could not open {}", dir, e);
+            return false;
+        }
+    }
+
+    // Caller holds the lock
+    private void openSegment() throws IOException {
+        Path path = segmentPath(dir, sequence + 1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping outlives the channel
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        sequence++;
+        segment.putInt(MAGIC).putInt(VERSION);
+        forced = 0;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.warn("Call journal flush failed", e);
+        }
+    }
+
+    static Path segmentPath(Path dir, long sequence) {
+        return dir.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    /** @return the file's segment number, or 0 if it is not a segment */
+    static long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null || value.isEmpty()) {
+            buffer.putShort((short) 0);
+            return;
+        }
+        byte[] bytes = (value.length() > MAX_STRING_CHARS ? value.substring(0, MAX_STRING_CHARS) : value)
+                .getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+}
@@ -0,0 +1,34 @@
+package com.anishsarkar.webrtcvideocall.journal;
+
+/** What a journal record is about, stored as its one-byte code. */
+public enum JournalEventType {
+    JOIN(1),
+    LEAVE(2),
+    DISCONNECT(3),
+    ERROR(4),
+    // The offerer is the record's user, the answerer its detail, the value nanoseconds
+    NEGOTIATION(5);
+
+    private static final JournalEventType[] BY_CODE = new JournalEventType[6];
+
+    static {
+        for (JournalEventType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    JournalEventType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    /** @return the type with the code, or null for one this version does not know */
+    public static JournalEventType of(byte code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,107 @@
+package com.anishsarkar.webrtcvideocall.journal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Reads what {@link CallJournal} wrote, oldest segment first. A segment is read up to its end
+ * marker or up to the first record that is cut short or fails its checksum, as the last one
+ * written before a crash may be; the segments after it are still read.
+ */
+public final class JournalReader {
+
+    private JournalReader() {
+    }
+
+    /** The segments in a journal directory in the order they were written, or just the given file. */
+    public static List<Path> segments(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(file -> CallJournal.sequenceOf(file) > 0)
+                    .sorted(Comparator.comparingLong(CallJournal::sequenceOf))
+                    .toList();
+        }
+    }
+
+    /** Hands every record of the directory or segment to the consumer; returns how many there were. */
+    public static long read(Path path, Consumer<JournalRecord> consumer) throws IOException {
+        long count = 0;
+        for (Path segment : segments(path)) {
+            count += readSegment(segment, consumer);
+        }
+        return count;
+    }
+
+    static long readSegment(Path segment, Consumer<JournalRecord> consumer) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < CallJournal.HEADER_BYTES || buffer.getInt() != CallJournal.MAGIC) {
+            throw new IOException(segment + " is not a call journal segment");
+        }
+        int version = buffer.getInt();
+        if (version != CallJournal.VERSION) {
+            throw new IOException(segment + " has journal version " + version + ", expected " + CallJournal.VERSION);
+        }
+        long count = 0;
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= CallJournal.RECORD_PREFIX_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer body = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            JournalRecord record = decode(body);
+            if (record == null) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            consumer.accept(record);
+            count++;
+        }
+        return count;
+    }
+
+    private static JournalRecord decode(ByteBuffer body) {
+        try {
+            JournalEventType type = JournalEventType.of(body.get());
+            if (type == null) {
+                return null;
+            }
+            long timestamp = body.getLong();
+            String roomId = getString(body);
+            String userId = getString(body);
+            String detail = getString(body);
+            return new JournalRecord(type, timestamp, roomId, userId, detail, body.getLong());
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,10 @@
+package com.anishsarkar.webrtcvideocall.journal;
+
+/**
+ * One record read back from the journal. {@code detail} is the error code of an ERROR and the
+ * answerer of a NEGOTIATION, empty otherwise; {@code value} is a NEGOTIATION's duration in
+ * nanoseconds, 0 otherwise.
+ */
+public record JournalRecord(JournalEventType type, long timestampMillis, String roomId, String userId,
+                            String detail, long value) {
+}
@@ -0,0 +1,162 @@
+package com.anishsarkar.webrtcvideocall.journal;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Offline look at a journal directory or a single segment:
+ * <pre>
+ * java -cp app.jar -Dloader.main=com.anishsarkar.webrtcvideocall.journal.JournalTool \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher aggregate journal/
+ * </pre>
+ * {@code replay} prints every record in order, {@code aggregate} per-room joins, distinct users,
+ * peak membership, leaves, disconnects and errors, errors by code and negotiation percentiles.
+ */
+public final class JournalTool {
+
+    private JournalTool() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !("replay".equals(args[0]) || "aggregate".equals(args[0]))) {
+            System.err.println("usage: JournalTool replay|aggregate <journal dir or segment>");
+            System.exit(2);
+        }
+        Path path = Paths.get(args[1]);
+        if ("replay".equals(args[0])) {
+            replay(path, System.out);
+        } else {
+            aggregate(path).print(System.out);
+        }
+    }
+
+    static void replay(Path path, PrintStream out) throws IOException {
+        JournalReader.read(path, record -> {
+            StringBuilder line = new StringBuilder()
+                    .append(Instant.ofEpochMilli(record.timestampMillis())).append(' ')
+                    .append(record.type()).append(" room=").append(record.roomId())
+                    .append(" user=").append(record.userId());
+            switch (record.type()) {
+                case ERROR -> line.append(" code=").append(record.detail());
+                case NEGOTIATION -> line.append(" answerer=").append(record.detail())
+                        .append(" ms=").append(millis(record.value()));
+                default -> { }
+            }
+            out.println(line);
+        });
+    }
+
+    static Summary aggregate(Path path) throws IOException {
+        Summary summary = new Summary();
+        JournalReader.read(path, summary::add);
+        return summary;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1_000_000.0);
+    }
+
+    static final class Summary {
+        final Map<String, RoomSummary> rooms = new TreeMap<>();
+        final Map<String, Long> errors = new TreeMap<>();
+        private long[] negotiationNanos = new long[64];
+        private int negotiationCount;
+        private boolean sorted = true;
+        long records;
+        long firstMillis = Long.MAX_VALUE;
+        long lastMillis = Long.MIN_VALUE;
+
+        void add(JournalRecord record) {
+            records++;
+            firstMillis = Math.min(firstMillis, record.timestampMillis());
+            lastMillis = Math.max(lastMillis, record.timestampMillis());
+            RoomSummary room = rooms.computeIfAbsent(record.roomId(), id -> new RoomSummary());
+            switch (record.type()) {
+                case JOIN -> {
+                    room.joins++;
+                    room.users.add(record.userId());
+                    room.members.add(record.userId());
+                    room.peakMembers = Math.max(room.peakMembers, room.members.size());
+                }
+                case LEAVE -> {
+                    room.leaves++;
+                    room.members.remove(record.userId());
+                }
+                // The membership is held for a resume; a LEAVE follows if it is not
+                case DISCONNECT -> room.disconnects++;
+                case ERROR -> {
+                    room.errors++;
+                    errors.merge(record.detail(), 1L, Long::sum);
+                }
+                case NEGOTIATION -> {
+                    room.negotiations++;
+                    if (negotiationCount == negotiationNanos.length) {
+                        negotiationNanos = Arrays.copyOf(negotiationNanos, negotiationCount * 2);
+                    }
+                    negotiationNanos[negotiationCount++] = record.value();
+                    sorted = false;
+                }
+            }
+        }
+
+        /** Nearest-rank percentile of the negotiation times in nanoseconds, 0 without any. */
+        long negotiationPercentile(double percentile) {
+            if (negotiationCount == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(negotiationNanos, 0, negotiationCount);
+                sorted = true;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * negotiationCount);
+            return negotiationNanos[Math.max(0, rank - 1)];
+        }
+
+        long negotiationCount() {
+            return negotiationCount;
+        }
+
+        void print(PrintStream out) {
+            if (records == 0) {
+                out.println("no records");
+                return;
+            }
+            out.printf("%d records, %s .. %s%n", records, Instant.ofEpochMilli(firstMillis), Instant.ofEpochMilli(lastMillis));
+            out.printf("%-24s %8s %8s %6s %8s %12s %8s %13s%n",
+                    "room", "joins", "users", "peak", "leaves", "disconnects", "errors", "negotiations");
+            rooms.forEach((roomId, room) -> out.printf("%-24s %8d %8d %6d %8d %12d %8d %13d%n", roomId, room.joins,
+                    room.users.size(), room.peakMembers, room.leaves, room.disconnects, room.errors, room.negotiations));
+            if (!errors.isEmpty()) {
+                out.println();
+                out.println("errors by code");
+                errors.forEach((code, count) -> out.printf("  %-24s %8d%n", code, count));
+            }
+            long count = negotiationCount();
+            if (count > 0) {
+                out.println();
+                out.printf("negotiations %d, p50 %s ms, p99 %s ms, max %s ms%n", count, millis(negotiationPercentile(50)),
+                        millis(negotiationPercentile(99)), millis(negotiationPercentile(100)));
+            }
+        }
+    }
+
+    static final class RoomSummary {
+        final Set<String> users = new HashSet<>();
+        // Members as of the record read last
+        final Set<String> members = new HashSet<>();
+        long joins;
+        long leaves;
+        long disconnects;
+        long errors;
+        long negotiations;
+        int peakMembers;
+    }
+}
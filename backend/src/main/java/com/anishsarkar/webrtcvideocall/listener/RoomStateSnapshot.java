@@ -0,0 +1,291 @@
+package com.anishsarkar.webrtcvideocall.listener;
+
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.RoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.SavedRoom;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption.IssuedToken;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Lets a restarted node pick its rooms up where it left them. Every interval, and once more
+ * on shutdown, the rooms of the in-memory registry and the resume tokens handed out for them
+ * are written to a file, replacing the previous one in a single rename. On startup, before the
+ * WebSocket endpoint opens, a recent enough snapshot is read back and every membership in it is
+ * held as if its socket had just closed: a client that reconnects and joins with its token
+ * resumes without the room seeing a leave or a join, and members that do not come back within
+ * the restore grace window are removed as usual. STOMP sessions die with the process and are
+ * not saved. Nothing is saved for the clustered registry, which outlives any one node anyway.
+ */
+@Component
+public class RoomStateSnapshot implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomStateSnapshot.class);
+
+    private static final int MAGIC = 0x52534E50;
+    private static final int VERSION = 1;
+    private static final Topology[] TOPOLOGIES = Topology.values();
+
+    private final boolean enabled;
+    private final Path file;
+    private final long intervalMillis;
+    private final long maxAgeMillis;
+    private final long restoreGraceMillis;
+    private final InMemoryRoomRegistry registry;
+    private final SessionResumption sessionResumption;
+    private final UserSessionRegistry userSessionRegistry;
+    private final WebSocketEventListener webSocketEventListener;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+
+    @Autowired
+    public RoomStateSnapshot(@Value("${signaling.snapshot.enabled:false}") boolean enabled,
+                             @Value("${signaling.snapshot.file:room-state.snapshot}") String file,
+                             @Value("${signaling.snapshot.interval-ms:5000}") long intervalMillis,
+                             @Value("${signaling.snapshot.max-age-ms:120000}") long maxAgeMillis,
+                             @Value("${signaling.snapshot.restore-grace-ms:30000}") long restoreGraceMillis,
+                             RoomRegistry registry,
+                             SessionResumption sessionResumption,
+                             UserSessionRegistry userSessionRegistry,
+                             WebSocketEventListener webSocketEventListener) {
+        this(enabled, Paths.get(file), intervalMillis, maxAgeMillis, restoreGraceMillis, registry, sessionResumption,
+                userSessionRegistry, webSocketEventListener, System::currentTimeMillis);
+    }
+
+    RoomStateSnapshot(boolean enabled, Path file, long intervalMillis, long maxAgeMillis, long restoreGraceMillis,
+                      RoomRegistry registry, SessionResumption sessionResumption, UserSessionRegistry userSessionRegistry,
+                      WebSocketEventListener webSocketEventListener, LongSupplier clock) {
+        if (enabled && !(registry instanceof InMemoryRoomRegistry)) {
+            logger.info("Room state snapshots are off: the {} keeps rooms itself", registry.getClass().getSimpleName());
+        }
+        this.enabled = enabled && registry instanceof InMemoryRoomRegistry;
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+        this.maxAgeMillis = maxAgeMillis;
+        this.restoreGraceMillis = restoreGraceMillis;
+        this.registry = this.enabled ? (InMemoryRoomRegistry) registry : null;
+        this.sessionResumption = sessionResumption;
+        this.userSessionRegistry = userSessionRegistry;
+        this.webSocketEventListener = webSocketEventListener;
+        this.clock = clock;
+        this.scheduler = this.enabled && intervalMillis > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "room-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    // After every bean is ready and before the web server starts taking connections
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        restore();
+        if (scheduler != null) {
+            scheduler.scheduleWithFixedDelay(this::saveQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        // Whatever drain left held is what the next start can resume
+        saveQuietly();
+    }
+
+    /** Writes the rooms and their tokens; rewritten even when unchanged, the time in it says how fresh it is. */
+    public synchronized void save() throws IOException {
+        byte[] state = encodeState(registry.save(), sessionResumption.issued());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(clock.getAsLong());
+        out.write(state);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+            channel.force(false);
+        }
+        try {
+            // Resume tokens are as good as the membership they belong to
+            Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+        // Readers see the old snapshot or the new one, never half of one
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** @return the number of memberships restored and held */
+    int restore() {
+        long started = System.nanoTime();
+        Snapshot snapshot;
+        try {
+            snapshot = read(Files.readAllBytes(file));
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            logger.warn("Ignoring unreadable room snapshot {}: {}", file, e.getMessage());
+            return 0;
+        }
+        long age = clock.getAsLong() - snapshot.savedAtMillis;
+        if (age > maxAgeMillis) {
+            logger.info("Ignoring room snapshot {} written {} ms ago", file, age);
+            return 0;
+        }
+        int restored = registry.restore(snapshot.rooms);
+        Map<String, String> tokens = new HashMap<>();
+        for (IssuedToken token : snapshot.tokens) {
+            tokens.put(key(token.roomId(), token.userId()), token.token());
+        }
+        for (SavedRoom room : snapshot.rooms) {
+            for (SavedRoom.SavedMember member : room.members()) {
+                if (registry.isMember(room.roomId(), member.userId())) {
+                    hold(room.roomId(), member.userId(), tokens.get(key(room.roomId(), member.userId())));
+                }
+            }
+        }
+        logger.info("Restored {} rooms with {} members from a snapshot written {} ms ago in {} ms; holding them for {} ms",
+                snapshot.rooms.size(), restored, age, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+                restoreGraceMillis);
+        return restored;
+    }
+
+    private void hold(String roomId, String userId, String token) {
+        sessionResumption.restore(roomId, userId, token, restoreGraceMillis, () -> webSocketEventListener.onRoomLane(roomId, () -> {
+            try {
+                // Rejoined without the token; that session owns the membership now
+                if (userSessionRegistry.getSessionId(roomId, userId) != null) {
+                    return;
+                }
+                webSocketEventListener.removeFromRoom(null, roomId, userId);
+                logger.info("User {} did not come back to room {} after the restart", userId, roomId);
+            } catch (Exception e) {
+                logger.error("Error removing restored member {} from room {}", userId, roomId, e);
+            }
+        }));
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to write room snapshot {}", file, e);
+        }
+    }
+
+    private static byte[] encodeState(List<SavedRoom> rooms, List<IssuedToken> tokens) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(rooms.size());
+        for (SavedRoom room : rooms) {
+            out.writeUTF(room.roomId());
+            out.writeLong(room.version());
+            out.writeByte(room.topology().ordinal());
+            out.writeInt(room.members().size());
+            for (SavedRoom.SavedMember member : room.members()) {
+                out.writeUTF(member.userId());
+                out.writeBoolean(member.userName() != null);
+                if (member.userName() != null) {
+                    out.writeUTF(member.userName());
+                }
+                out.writeLong(member.joinedAt());
+            }
+        }
+        out.writeInt(tokens.size());
+        for (IssuedToken token : tokens) {
+            out.writeUTF(token.roomId());
+            out.writeUTF(token.userId());
+            out.writeUTF(token.token());
+        }
+        return bytes.toByteArray();
+    }
+
+    static Snapshot read(byte[] bytes) throws IOException {
+        if (bytes.length < 20) {
+            throw new IOException("too short");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt()) {
+            throw new IOException("checksum mismatch");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("not a version " + VERSION + " room snapshot");
+        }
+        long savedAt = in.readLong();
+        int roomCount = in.readInt();
+        List<SavedRoom> rooms = new ArrayList<>(roomCount);
+        for (int i = 0; i < roomCount; i++) {
+            String roomId = in.readUTF();
+            long version = in.readLong();
+            Topology topology = TOPOLOGIES[in.readByte()];
+            int memberCount = in.readInt();
+            List<SavedRoom.SavedMember> members = new ArrayList<>(memberCount);
+            for (int j = 0; j < memberCount; j++) {
+                String userId = in.readUTF();
+                String userName = in.readBoolean() ? in.readUTF() : null;
+                members.add(new SavedRoom.SavedMember(userId, userName, in.readLong()));
+            }
+            rooms.add(new SavedRoom(roomId, version, topology, members));
+        }
+        int tokenCount = in.readInt();
+        List<IssuedToken> tokens = new ArrayList<>(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            tokens.add(new IssuedToken(in.readUTF(), in.readUTF(), in.readUTF()));
+        }
+        return new Snapshot(savedAt, rooms, tokens);
+    }
+
+    private static String key(String roomId, String userId) {
+        return roomId + '\n' + userId;
+    }
+
+    record Snapshot(long savedAtMillis, List<SavedRoom> rooms, List<IssuedToken> tokens) {
+    }
+}
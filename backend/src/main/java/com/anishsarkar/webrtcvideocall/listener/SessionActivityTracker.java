@@ -0,0 +1,153 @@
+package com.anishsarkar.webrtcvideocall.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last time each session in a room was heard from. Sits on the client inbound channel, so
+ * every frame counts, STOMP heartbeats included; that path only writes a timestamp. Deadlines
+ * live in a {@link TimingWheel} that is checked once per tick: a session that was active
+ * since it was scheduled is put back at its new deadline, one that was not is stale.
+ */
+@Component
+public class SessionActivityTracker implements ChannelInterceptor {
+
+    private final Clock clock;
+    private final long idleTimeoutMillis;
+    private final Map<String, Presence> sessions = new ConcurrentHashMap<>();
+    private final TimingWheel<String> wheel;
+    // Sessions with an entry in the wheel, guarded by it. A session that leaves and joins again
+    // keeps its one entry, which finds the new presence when it comes due
+    private final Set<String> scheduled = new HashSet<>();
+
+    @Autowired
+    public SessionActivityTracker(@Value("${signaling.reaper.idle-timeout-ms:60000}") long idleTimeoutMillis,
+                                  @Value("${signaling.reaper.tick-ms:1000}") long tickMillis) {
+        this(Clock.systemUTC(), idleTimeoutMillis, tickMillis);
+    }
+
+    SessionActivityTracker(Clock clock, long idleTimeoutMillis, long tickMillis) {
+        this.clock = clock;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        long tick = Math.max(1, tickMillis);
+        // One turn of the wheel spans the timeout, so a fresh deadline never wraps
+        int slots = (int) Math.min(4096, Math.ceilDiv(idleTimeoutMillis, tick) + 1);
+        this.wheel = new TimingWheel<>(Math.max(2, slots), tick, clock.millis());
+    }
+
+    /**
+     * Starts watching a session that has joined a room; a rejoin from the same session just
+     * moves it to the new room.
+     */
+    public void track(String sessionId, String roomId, String userId) {
+        long now = clock.millis();
+        sessions.put(sessionId, new Presence(roomId, userId, now));
+        synchronized (wheel) {
+            if (scheduled.add(sessionId)) {
+                wheel.schedule(sessionId, now + idleTimeoutMillis);
+            }
+        }
+    }
+
+    public void forget(String sessionId) {
+        if (sessionId != null) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        forget(event.getSessionId());
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            Presence presence = sessions.get(sessionId);
+            if (presence != null) {
+                presence.lastSeen = clock.millis();
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Removes and returns the sessions that have been silent for the idle timeout.
+     */
+    public List<StaleSession> expire() {
+        long now = clock.millis();
+        List<StaleSession> stale = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(now, sessionId -> {
+                Presence presence = sessions.get(sessionId);
+                if (presence == null) {
+                    // Disconnected normally, or left without joining again
+                    scheduled.remove(sessionId);
+                    return;
+                }
+                long deadline = presence.lastSeen + idleTimeoutMillis;
+                if (deadline > now) {
+                    wheel.schedule(sessionId, deadline);
+                    return;
+                }
+                scheduled.remove(sessionId);
+                if (sessions.remove(sessionId, presence)) {
+                    stale.add(new StaleSession(sessionId, presence.roomId, presence.userId, now - presence.lastSeen));
+                }
+            });
+        }
+        return stale;
+    }
+
+    public int trackedSessions() {
+        return sessions.size();
+    }
+
+    int scheduledEntries() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    /** Every session currently in a room. */
+    public List<TrackedSession> sessions() {
+        List<TrackedSession> tracked = new ArrayList<>(sessions.size());
+        sessions.forEach((sessionId, presence) -> tracked.add(new TrackedSession(sessionId, presence.roomId, presence.userId)));
+        return tracked;
+    }
+
+    public record TrackedSession(String sessionId, String roomId, String userId) {
+    }
+
+    public record StaleSession(String sessionId, String roomId, String userId, long idleMillis) {
+    }
+
+    private static final class Presence {
+        final String roomId;
+        final String userId;
+        volatile long lastSeen;
+
+        Presence(String roomId, String userId, long lastSeen) {
+            this.roomId = roomId;
+            this.userId = userId;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.anishsarkar.webrtcvideocall.listener;
+
+import com.anishsarkar.webrtcvideocall.listener.SessionActivityTracker.StaleSession;
+import com.anishsarkar.webrtcvideocall.logging.SignalingEventLog;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cleans up after sessions whose disconnect never arrived, such as a half-open connection
+ * behind a restarted proxy. Once per tick it takes the members {@link SessionActivityTracker}
+ * reports as stale out of their rooms, with the same {@code USER_LEFT} broadcast as a normal
+ * disconnect, and once per idle timeout it drops rooms left without members.
+ */
+@Component
+public class StaleSessionReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaleSessionReaper.class);
+
+    private final SessionActivityTracker sessionActivityTracker;
+    private final WebSocketEventListener webSocketEventListener;
+    private final RoomService roomService;
+    private final UserSessionRegistry userSessionRegistry;
+    private final SignalingMetrics signalingMetrics;
+    private final SignalingEventLog signalingEventLog;
+    private final long tickMillis;
+    private final long ticksPerRoomSweep;
+    private final ScheduledExecutorService scheduler;
+    private long ticks;
+
+    public StaleSessionReaper(SessionActivityTracker sessionActivityTracker,
+                              WebSocketEventListener webSocketEventListener,
+                              RoomService roomService,
+                              UserSessionRegistry userSessionRegistry,
+                              SignalingMetrics signalingMetrics,
+                              SignalingEventLog signalingEventLog,
+                              @Value("${signaling.reaper.idle-timeout-ms:60000}") long idleTimeoutMillis,
+                              @Value("${signaling.reaper.tick-ms:1000}") long tickMillis) {
+        this.sessionActivityTracker = sessionActivityTracker;
+        this.webSocketEventListener = webSocketEventListener;
+        this.roomService = roomService;
+        this.userSessionRegistry = userSessionRegistry;
+        this.signalingMetrics = signalingMetrics;
+        this.signalingEventLog = signalingEventLog;
+        this.tickMillis = tickMillis;
+        this.ticksPerRoomSweep = Math.max(1, idleTimeoutMillis / Math.max(1, tickMillis));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        // 0 turns the reaper off
+        if (tickMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Evicts every member whose session has gone quiet for the idle timeout.
+     *
+     * @return the number of members evicted
+     */
+    public int reap() {
+        int evicted = 0;
+        for (StaleSession stale : sessionActivityTracker.expire()) {
+            try {
+                if (evict(stale)) {
+                    evicted++;
+                }
+            } catch (Exception e) {
+                logger.error("Error evicting user {} from room {}", stale.userId(), stale.roomId(), e);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the number of empty rooms dropped
+     */
+    public int sweepEmptyRooms() {
+        int removed = roomService.removeEmptyRooms();
+        if (removed > 0) {
+            signalingMetrics.recordEvictedRooms(removed);
+            logger.info("Dropped {} empty rooms", removed);
+        }
+        return removed;
+    }
+
+    private void tick() {
+        try {
+            reap();
+            if (++ticks % ticksPerRoomSweep == 0) {
+                sweepEmptyRooms();
+            }
+        } catch (Exception e) {
+            logger.error("Error during stale session sweep", e);
+        }
+    }
+
+    private boolean evict(StaleSession stale) {
+        String currentSession = userSessionRegistry.getSessionId(stale.roomId(), stale.userId());
+        if (currentSession != null && !currentSession.equals(stale.sessionId())) {
+            // The user is back on another session, which is tracked on its own
+            return false;
+        }
+        if (!roomService.isUserInRoom(stale.roomId(), stale.userId())) {
+            // Left through /app/leave and kept the session open
+            return false;
+        }
+        // On the room's lane, in order with the frames it is forwarding for the room
+        webSocketEventListener.onRoomLane(stale.roomId(), () -> {
+            try {
+                // Left while this waited for the lane
+                if (!roomService.isUserInRoom(stale.roomId(), stale.userId())) {
+                    return;
+                }
+                logger.info("Evicting user {} from room {} after {} ms without traffic",
+                        stale.userId(), stale.roomId(), stale.idleMillis());
+                webSocketEventListener.removeFromRoom(stale.sessionId(), stale.roomId(), stale.userId());
+                signalingMetrics.recordEvictedMember();
+                signalingEventLog.evicted(stale.roomId(), stale.userId(), stale.idleMillis());
+            } catch (Exception e) {
+                logger.error("Error evicting user {} from room {}", stale.userId(), stale.roomId(), e);
+            }
+        });
+        return true;
+    }
+}
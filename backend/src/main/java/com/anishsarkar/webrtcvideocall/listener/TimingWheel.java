@@ -0,0 +1,76 @@
+package com.anishsarkar.webrtcvideocall.listener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: deadlines are rounded up to a tick and kept in the slot for that
+ * tick, so scheduling is O(1) and each advance only looks at the slots it passes. Entries
+ * further out than one turn of the wheel wait in their slot until their tick comes round.
+ * Not thread-safe.
+ */
+final class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final ArrayDeque<Entry<T>>[] slots;
+    // Last tick whose slot has been processed
+    private long cursor;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(int slotCount, long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayDeque[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.cursor = nowMillis / tickMillis;
+    }
+
+    void schedule(T item, long deadlineMillis) {
+        long tick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), cursor + 1);
+        slots[slot(tick)].add(new Entry<>(item, tick));
+    }
+
+    /**
+     * Hands every entry due by {@code nowMillis} to {@code expired}, which may schedule again.
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        if (target <= cursor) {
+            return;
+        }
+        // After a long pause one pass over every slot covers all the ticks that were missed
+        long tick = Math.max(cursor + 1, target - slots.length + 1);
+        List<T> due = new ArrayList<>();
+        for (; tick <= target; tick++) {
+            Iterator<Entry<T>> entries = slots[slot(tick)].iterator();
+            while (entries.hasNext()) {
+                Entry<T> entry = entries.next();
+                if (entry.tick() <= tick) {
+                    entries.remove();
+                    due.add(entry.item());
+                }
+            }
+        }
+        cursor = target;
+        due.forEach(expired);
+    }
+
+    int size() {
+        int size = 0;
+        for (ArrayDeque<Entry<T>> slot : slots) {
+            size += slot.size();
+        }
+        return size;
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+
+    private record Entry<T>(T item, long tick) {
+    }
+}
@@ -1,16 +1,27 @@
 package com.anishsarkar.webrtcvideocall.listener;
 
 import com.anishsarkar.webrtcvideocall.dto.UserLeftMessage;
+import com.anishsarkar.webrtcvideocall.forwarding.MediaForwarder;
+import com.anishsarkar.webrtcvideocall.journal.CallJournal;
+import com.anishsarkar.webrtcvideocall.logging.SignalingEventLog;
+import com.anishsarkar.webrtcvideocall.messaging.RoomAffinityExecutor;
+import com.anishsarkar.webrtcvideocall.messaging.SignalMailbox;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
 import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Component
 public class WebSocketEventListener {
@@ -23,8 +34,38 @@ public class WebSocketEventListener {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private UserSessionRegistry userSessionRegistry;
+
+    @Autowired
+    private SignalingMetrics signalingMetrics;
+
+    @Autowired
+    private SignalingEventLog signalingEventLog;
+
+    @Autowired
+    private SessionResumption sessionResumption;
+
+    @Autowired
+    private SignalMailbox signalMailbox;
+
+    @Autowired
+    private MediaForwarder mediaForwarder;
+
+    @Autowired
+    private CallJournal callJournal;
+
+    @Autowired
+    private ObjectProvider<RoomAffinityExecutor> roomAffinityExecutor;
+
+    @EventListener
+    public void handleWebSocketConnectListener(SessionConnectedEvent event) {
+        signalingMetrics.sessionConnected(StompHeaderAccessor.wrap(event.getMessage()).getSessionId());
+    }
+
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
+        signalingMetrics.sessionDisconnected(event.getSessionId());
         try {
             StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
             Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
@@ -35,15 +76,8 @@ public class WebSocketEventListener {
 
                 if (roomId != null && userId != null) {
                     logger.info("User {} disconnected from room {}", userId, roomId);
-                    
-                    // Remove user from room
-                    roomService.leaveRoom(roomId, userId);
-                    
-                    // Notify other users
-                    UserLeftMessage userLeftMessage = new UserLeftMessage(roomId, userId);
-                    messagingTemplate.convertAndSend("/topic/room/" + roomId, userLeftMessage);
-                    
-                    logger.info("User {} cleanup completed for room {}", userId, roomId);
+                    callJournal.disconnect(roomId, userId);
+                    holdMembership(event.getSessionId(), roomId, userId);
                 } else {
                     logger.debug("Session disconnect event without roomId or userId in session attributes");
                 }
@@ -54,4 +88,68 @@ public class WebSocketEventListener {
             logger.error("Error during disconnect cleanup", e);
         }
     }
+
+    private void holdMembership(String sessionId, String roomId, String userId) {
+        String currentSession = userSessionRegistry.getSessionId(roomId, userId);
+        if (currentSession != null && !currentSession.equals(sessionId)) {
+            // A newer session has already taken the membership over
+            logger.info("User {} is still in room {} on another session", userId, roomId);
+            return;
+        }
+        userSessionRegistry.unregister(roomId, userId, sessionId);
+        sessionResumption.hold(roomId, userId, () -> onRoomLane(roomId, () -> {
+            try {
+                // Rejoined meanwhile without the token, on this node or, after a drain, another
+                String rejoined = userSessionRegistry.getSessionId(roomId, userId);
+                if (rejoined != null && !rejoined.equals(sessionId)) {
+                    logger.info("User {} is back in room {} on another session", userId, roomId);
+                    return;
+                }
+                removeFromRoom(sessionId, roomId, userId);
+                logger.info("User {} cleanup completed for room {}", userId, roomId);
+            } catch (Exception e) {
+                logger.error("Error during disconnect cleanup", e);
+            }
+        }));
+    }
+
+    /**
+     * Runs a membership change that does not come from a client frame on the room's lane, so it
+     * stays in order with the frames of that room. Runs it right away when inbound frames are
+     * not on room lanes.
+     */
+    public void onRoomLane(String roomId, Runnable task) {
+        RoomAffinityExecutor lanes = roomAffinityExecutor.getIfAvailable();
+        if (lanes == null) {
+            task.run();
+            return;
+        }
+        try {
+            lanes.execute(roomId, task);
+        } catch (RejectedExecutionException e) {
+            // Lanes stopped at shutdown; the room goes with the node
+            logger.debug("Lane rejected a membership change for room {}", roomId);
+        }
+    }
+
+    /**
+     * Takes the user out of the room and tells the members left behind. Used for closed
+     * sessions and for the ones the reaper finds stale.
+     */
+    public void removeFromRoom(String sessionId, String roomId, String userId) {
+        long version = roomService.leaveRoom(roomId, userId);
+        userSessionRegistry.unregister(roomId, userId, sessionId);
+        sessionResumption.revoke(roomId, userId);
+        signalMailbox.discard(roomId, userId);
+        mediaForwarder.release(roomId, userId);
+        int roomSize = roomService.getRoomSize(roomId);
+        signalingMetrics.recordRoomSize(roomSize);
+        if (roomSize == 0) {
+            signalingEventLog.roomClosed(roomId);
+        }
+
+        // Notify other users
+        UserLeftMessage userLeftMessage = new UserLeftMessage(roomId, userId, version);
+        messagingTemplate.convertAndSend("/topic/room/" + roomId, userLeftMessage);
+    }
 }
@@ -0,0 +1,46 @@
+package com.anishsarkar.webrtcvideocall.logging;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Switches full signaling event logging on for a single room at runtime.
+ * <pre>
+ * POST   /actuator/signalingdebug/{roomId}   log every event of the room
+ * DELETE /actuator/signalingdebug/{roomId}   back to sampling
+ * GET    /actuator/signalingdebug            rooms in debug mode and when their switch expires
+ * </pre>
+ */
+@Component
+@Endpoint(id = "signalingdebug")
+public class SignalingDebugEndpoint {
+
+    private final SignalingEventLog signalingEventLog;
+
+    public SignalingDebugEndpoint(SignalingEventLog signalingEventLog) {
+        this.signalingEventLog = signalingEventLog;
+    }
+
+    @ReadOperation
+    public Map<String, Long> debugRooms() {
+        return signalingEventLog.getDebugRooms();
+    }
+
+    @WriteOperation
+    public Map<String, Long> enable(@Selector String roomId) {
+        signalingEventLog.enableDebug(roomId);
+        return signalingEventLog.getDebugRooms();
+    }
+
+    @DeleteOperation
+    public Map<String, Long> disable(@Selector String roomId) {
+        signalingEventLog.disableDebug(roomId);
+        return signalingEventLog.getDebugRooms();
+    }
+}
@@ -0,0 +1,218 @@
+package com.anishsarkar.webrtcvideocall.logging;
+
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One structured line per signaling event on the {@code signaling.events} logger, which
+ * logback-spring.xml writes through an async appender. Each room gets a small per-type
+ * budget of lines per second and the rest are counted and reported on the next line that
+ * is written. Rooms switched to debug through the admin endpoint log every event until the
+ * switch expires. Room ids come from clients, so samplers of rooms gone quiet are dropped
+ * regularly, and past {@code signaling.log.max-rooms} the remaining rooms share one.
+ */
+@Component
+public class SignalingEventLog {
+
+    private static final Logger events = LoggerFactory.getLogger("signaling.events");
+    private static final int TYPES = MessageType.values().length;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SWEEP_INTERVAL = 4096;
+
+    private final int linesPerSecond;
+    private final long debugTtlMillis;
+    private final int maxRooms;
+    private final Map<String, RoomSampler> samplers = new ConcurrentHashMap<>();
+    // Rooms without an id, and rooms past maxRooms
+    private final RoomSampler shared = new RoomSampler(System.nanoTime());
+    private final AtomicLong admitted = new AtomicLong();
+    // roomId -> System.currentTimeMillis() the debug switch expires at
+    private final Map<String, Long> debugRooms = new ConcurrentHashMap<>();
+
+    public SignalingEventLog(@Value("${signaling.log.lines-per-second:5}") int linesPerSecond,
+                             @Value("${signaling.log.debug-ttl-minutes:30}") long debugTtlMinutes,
+                             @Value("${signaling.log.max-rooms:10000}") int maxRooms) {
+        this.linesPerSecond = linesPerSecond;
+        this.debugTtlMillis = TimeUnit.MINUTES.toMillis(debugTtlMinutes);
+        this.maxRooms = maxRooms;
+    }
+
+    public void joined(String roomId, String userId, int roomSize) {
+        int suppressed = admit(MessageType.JOIN_ROOM, roomId);
+        if (suppressed >= 0) {
+            events.info("event=joined room={} user={} size={} suppressed={}", roomId, userId, roomSize, suppressed);
+        }
+    }
+
+    public void resumed(String roomId, String userId) {
+        int suppressed = admit(MessageType.JOIN_ROOM, roomId);
+        if (suppressed >= 0) {
+            events.info("event=resumed room={} user={} suppressed={}", roomId, userId, suppressed);
+        }
+    }
+
+    public void left(String roomId, String userId, int roomSize) {
+        int suppressed = admit(MessageType.LEAVE_ROOM, roomId);
+        if (suppressed >= 0) {
+            events.info("event=left room={} user={} size={} suppressed={}", roomId, userId, roomSize, suppressed);
+        }
+    }
+
+    public void relayed(MessageType type, String roomId, String userId, String targetUserId, int count, int bytes) {
+        int suppressed = admit(type, roomId);
+        if (suppressed >= 0) {
+            events.info("event=relayed type={} room={} from={} to={} count={} bytes={} suppressed={}",
+                    type, roomId, userId, targetUserId, count, bytes, suppressed);
+        }
+    }
+
+    public void rejected(MessageType type, String roomId, String userId, String errorCode) {
+        int suppressed = admit(type, roomId);
+        if (suppressed >= 0) {
+            events.info("event=rejected type={} room={} user={} code={} suppressed={}",
+                    type, roomId, userId, errorCode, suppressed);
+        }
+    }
+
+    public void evicted(String roomId, String userId, long idleMillis) {
+        int suppressed = admit(MessageType.LEAVE_ROOM, roomId);
+        if (suppressed >= 0) {
+            events.info("event=evicted room={} user={} idle-ms={} suppressed={}", roomId, userId, idleMillis, suppressed);
+        }
+    }
+
+    public void topologyChanged(String roomId, Topology topology, int roomSize) {
+        int suppressed = admit(MessageType.TOPOLOGY_CHANGED, roomId);
+        if (suppressed >= 0) {
+            events.info("event=topology room={} topology={} size={} suppressed={}", roomId, topology, roomSize, suppressed);
+        }
+    }
+
+    /**
+     * Drops the sampling state of a room that has emptied.
+     */
+    public void roomClosed(String roomId) {
+        if (roomId != null) {
+            samplers.remove(roomId);
+        }
+    }
+
+    public void enableDebug(String roomId) {
+        debugRooms.put(roomId, System.currentTimeMillis() + debugTtlMillis);
+        events.info("event=debug-enabled room={} ttl-minutes={}", roomId, TimeUnit.MILLISECONDS.toMinutes(debugTtlMillis));
+    }
+
+    public void disableDebug(String roomId) {
+        if (debugRooms.remove(roomId) != null) {
+            events.info("event=debug-disabled room={}", roomId);
+        }
+    }
+
+    /**
+     * Rooms in debug mode with the time their switch expires, in epoch milliseconds.
+     */
+    public Map<String, Long> getDebugRooms() {
+        long now = System.currentTimeMillis();
+        debugRooms.values().removeIf(expiresAt -> expiresAt <= now);
+        return new TreeMap<>(debugRooms);
+    }
+
+    public boolean isDebug(String roomId) {
+        if (debugRooms.isEmpty() || roomId == null) {
+            return false;
+        }
+        Long expiresAt = debugRooms.get(roomId);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            debugRooms.remove(roomId, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of lines suppressed since the last one written for this room and
+     * type, or -1 if this one should be suppressed too.
+     */
+    private int admit(MessageType type, String roomId) {
+        if (!events.isInfoEnabled()) {
+            return -1;
+        }
+        if (isDebug(roomId)) {
+            return 0;
+        }
+        if (linesPerSecond <= 0) {
+            return -1;
+        }
+        long now = System.nanoTime();
+        if (admitted.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            samplers.values().removeIf(sampler -> sampler.isIdle(now));
+        }
+        return sampler(roomId, now).admit(type.ordinal(), now, linesPerSecond);
+    }
+
+    private RoomSampler sampler(String roomId, long now) {
+        if (roomId == null) {
+            return shared;
+        }
+        RoomSampler sampler = samplers.get(roomId);
+        if (sampler != null) {
+            return sampler;
+        }
+        if (samplers.size() >= maxRooms) {
+            return shared;
+        }
+        return samplers.computeIfAbsent(roomId, id -> new RoomSampler(now));
+    }
+
+    int samplerCount() {
+        return samplers.size();
+    }
+
+    private static final class RoomSampler {
+        private final long[] windowStart = new long[TYPES];
+        private final int[] written = new int[TYPES];
+        private final int[] suppressed = new int[TYPES];
+        private long lastUsed;
+
+        RoomSampler(long now) {
+            // nanoTime can be negative, so start with every window already expired
+            lastUsed = now;
+            Arrays.fill(windowStart, now - WINDOW_NANOS);
+        }
+
+        synchronized boolean isIdle(long now) {
+            return now - lastUsed >= IDLE_NANOS;
+        }
+
+        synchronized int admit(int type, long now, int limit) {
+            lastUsed = now;
+            if (now - windowStart[type] >= WINDOW_NANOS) {
+                windowStart[type] = now;
+                written[type] = 0;
+            }
+            if (written[type] >= limit) {
+                suppressed[type]++;
+                return -1;
+            }
+            written[type]++;
+            int dropped = suppressed[type];
+            suppressed[type] = 0;
+            return dropped;
+        }
+    }
+}
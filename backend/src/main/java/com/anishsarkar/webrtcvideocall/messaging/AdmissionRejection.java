@@ -0,0 +1,17 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+/** Why an inbound frame was dropped; the name doubles as the error code sent to the client. */
+public enum AdmissionRejection {
+    RATE_LIMITED("Too many messages, slow down"),
+    SERVER_BUSY("Server is busy, try again shortly");
+
+    private final String message;
+
+    AdmissionRejection(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
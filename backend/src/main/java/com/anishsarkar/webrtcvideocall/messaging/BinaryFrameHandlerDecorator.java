@@ -0,0 +1,59 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sends STOMP frames with a CBOR body as binary WebSocket messages. Spring's STOMP handler
+ * only does that for {@code application/octet-stream} and otherwise writes a text message,
+ * which would turn the CBOR bytes into invalid UTF-8 on the wire.
+ */
+public class BinaryFrameHandlerDecorator extends WebSocketHandlerDecorator {
+
+    private static final byte[] CBOR_CONTENT_TYPE =
+            ("\ncontent-type:" + CborMessageConverter.APPLICATION_CBOR).getBytes(StandardCharsets.UTF_8);
+
+    public BinaryFrameHandlerDecorator(WebSocketHandler delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        // The sub-protocol handler keeps this session and writes every outbound frame through it
+        super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+            @Override
+            public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                if (message instanceof TextMessage text && hasCborBody(text.asBytes())) {
+                    message = new BinaryMessage(text.asBytes());
+                }
+                super.sendMessage(message);
+            }
+        });
+    }
+
+    static boolean hasCborBody(byte[] frame) {
+        for (int i = 0; i < frame.length - 1; i++) {
+            if (frame[i] != '\n') {
+                continue;
+            }
+            // A blank line ends the headers
+            if (frame[i + 1] == '\n') {
+                return false;
+            }
+            int end = i + CBOR_CONTENT_TYPE.length;
+            if (end < frame.length && Arrays.equals(frame, i, end, CBOR_CONTENT_TYPE, 0, CBOR_CONTENT_TYPE.length)) {
+                return frame[end] == '\n' || frame[end] == ';';
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,20 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.MimeType;
+
+/**
+ * Jackson converter for {@code application/cbor} bodies. Only used when a frame carries that
+ * content type, so JSON stays the default in both directions.
+ */
+public class CborMessageConverter extends MappingJackson2MessageConverter {
+
+    public static final MimeType APPLICATION_CBOR = new MimeType("application", "cbor");
+
+    public CborMessageConverter() {
+        super(APPLICATION_CBOR);
+        setObjectMapper(new CBORMapper());
+        setStrictContentTypeMatch(true);
+    }
+}
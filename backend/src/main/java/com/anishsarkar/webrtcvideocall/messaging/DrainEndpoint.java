@@ -0,0 +1,36 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Drains this node ahead of a restart; there is no way back short of the restart.
+ * <pre>
+ * POST /actuator/drain   refuse joins and move every session elsewhere
+ * GET  /actuator/drain   whether draining, and the sessions and outbound frames left
+ * </pre>
+ */
+@Component
+@Endpoint(id = "drain")
+public class DrainEndpoint {
+
+    private final NodeDrain nodeDrain;
+
+    public DrainEndpoint(NodeDrain nodeDrain) {
+        this.nodeDrain = nodeDrain;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return nodeDrain.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> drain() {
+        return nodeDrain.start();
+    }
+}
@@ -0,0 +1,182 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.dto.MigrateMessage;
+import com.anishsarkar.webrtcvideocall.listener.SessionActivityTracker;
+import com.anishsarkar.webrtcvideocall.listener.SessionActivityTracker.TrackedSession;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Takes this node out of service without a thundering herd. Once draining, the node reports
+ * itself not ready, refuses {@code /app/join} on the client inbound channel and tells every
+ * session in a room to reconnect after a random delay within the spread, so the rooms arrive
+ * at the other nodes a few at a time. On shutdown it drains first and then waits, up to the
+ * timeout, for the sessions to go, for every frame already received to be handled and for the
+ * outbound backlog to be written, before the broker and the web server are stopped.
+ */
+@Component
+public class NodeDrain implements ChannelInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeDrain.class);
+    private static final long POLL_MILLIS = 50;
+
+    private final long spreadMillis;
+    private final long shutdownTimeoutMillis;
+    private final SessionActivityTracker sessionActivityTracker;
+    private final OutboundBacklog outboundBacklog;
+    private final ApplicationEventPublisher eventPublisher;
+    // Resolved on first use, like the admission interceptor's
+    private final ObjectProvider<RoomAffinityExecutor> roomAffinityExecutor;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final ObjectProvider<SignalingMetrics> signalingMetrics;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public NodeDrain(@Value("${signaling.drain.migrate-spread-ms:10000}") long spreadMillis,
+                     @Value("${signaling.drain.shutdown-timeout-ms:30000}") long shutdownTimeoutMillis,
+                     SessionActivityTracker sessionActivityTracker,
+                     OutboundBacklog outboundBacklog,
+                     ApplicationEventPublisher eventPublisher,
+                     ObjectProvider<RoomAffinityExecutor> roomAffinityExecutor,
+                     ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                     ObjectProvider<SignalingMetrics> signalingMetrics) {
+        this.spreadMillis = spreadMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.sessionActivityTracker = sessionActivityTracker;
+        this.outboundBacklog = outboundBacklog;
+        this.eventPublisher = eventPublisher;
+        this.roomAffinityExecutor = roomAffinityExecutor;
+        this.messagingTemplate = messagingTemplate;
+        this.signalingMetrics = signalingMetrics;
+    }
+
+    public boolean isDraining() {
+        return draining.get();
+    }
+
+    /** Starts draining; later calls only report the state. */
+    public Map<String, Object> start() {
+        if (draining.compareAndSet(false, true)) {
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            List<TrackedSession> sessions = sessionActivityTracker.sessions();
+            for (TrackedSession session : sessions) {
+                migrate(session.sessionId(), session.roomId(), session.userId());
+            }
+            signalingMetrics.getObject().recordMigrated(sessions.size());
+            logger.info("Draining: {} sessions told to reconnect within {} ms", sessions.size(), spreadMillis);
+        }
+        return status();
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("draining", draining.get());
+        status.put("sessions", sessionActivityTracker.trackedSessions());
+        status.put("outboundBacklog", outboundBacklog.pending());
+        return status;
+    }
+
+    /**
+     * Waits for the sessions in rooms to leave, then for the room lanes to run what they had
+     * queued and the outbound backlog to empty. Returns {@code false} if the timeout ran out first.
+     */
+    public boolean awaitQuiet(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (sessionActivityTracker.trackedSessions() > 0) {
+            if (!sleepUntil(deadline)) {
+                return false;
+            }
+        }
+        RoomAffinityExecutor lanes = roomAffinityExecutor.getIfAvailable();
+        if (lanes != null) {
+            try {
+                lanes.fence().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return false;
+            } catch (Exception e) {
+                logger.warn("Room lanes did not settle", e);
+            }
+        }
+        while (outboundBacklog.pending() > 0) {
+            if (!sleepUntil(deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Runs before any lifecycle bean is stopped, so sockets are still open while clients move
+    @EventListener
+    public void handleContextClosed(ContextClosedEvent event) throws InterruptedException {
+        if (shutdownTimeoutMillis <= 0) {
+            return;
+        }
+        start();
+        if (!awaitQuiet(shutdownTimeoutMillis)) {
+            logger.warn("Shutting down with {} sessions and {} outbound frames left after {} ms",
+                    sessionActivityTracker.trackedSessions(), outboundBacklog.pending(), shutdownTimeoutMillis);
+        }
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (!draining.get()) {
+            return message;
+        }
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE || sessionId == null
+                || !"/app/join".equals(SimpMessageHeaderAccessor.getDestination(headers))) {
+            return message;
+        }
+        // Not joined anywhere yet, so the user id only comes from an earlier join of the session
+        Map<String, Object> sessionAttributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        String userId = sessionAttributes != null ? (String) sessionAttributes.get("userId") : null;
+        signalingMetrics.getObject().recordRejected(MessageType.JOIN_ROOM, "DRAINING");
+        migrate(sessionId, RoomAffinityExecutor.roomId(message), userId);
+        return null;
+    }
+
+    private void migrate(String sessionId, String roomId, String userId) {
+        long delay = spreadMillis > 0 ? ThreadLocalRandom.current().nextLong(spreadMillis + 1) : 0;
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.getObject().convertAndSendToUser(sessionId, "/queue/signal",
+                new MigrateMessage(roomId, userId, delay), accessor.getMessageHeaders());
+    }
+
+    private static boolean sleepUntil(long deadline) throws InterruptedException {
+        long left = deadline - System.nanoTime();
+        if (left <= 0) {
+            return false;
+        }
+        Thread.sleep(Math.min(POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(left) + 1));
+        return true;
+    }
+}
@@ -0,0 +1,46 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Frames handed to the client outbound channel that have not been written to their socket
+ * yet. Counted around the channel rather than read off its executor's queue, so it works the
+ * same for the thread pool, virtual threads and ordered per-session publishing.
+ */
+@Component
+public class OutboundBacklog implements ExecutorChannelInterceptor {
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public int pending() {
+        return pending.get();
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        pending.incrementAndGet();
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(@NonNull Message<?> message, @NonNull MessageChannel channel, boolean sent,
+                                    Exception ex) {
+        // Never reaches the handler
+        if (!sent || ex != null) {
+            pending.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                    @NonNull MessageHandler handler, Exception ex) {
+        pending.decrementAndGet();
+    }
+}
@@ -0,0 +1,133 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for the client inbound channel that runs every message of a room on the same
+ * single-threaded lane, so join/offer/answer/ICE handling is FIFO per room without locks and
+ * a busy room only ever occupies one lane. Messages that cannot be tied to a room yet are
+ * sharded by session id.
+ */
+public class RoomAffinityExecutor implements TaskExecutor, DisposableBean {
+
+    // STOMP header clients put on SEND/SUBSCRIBE frames so the room is known before parsing the body
+    public static final String ROOM_ID_HEADER = "roomId";
+
+    private final ExecutorService[] lanes;
+
+    public RoomAffinityExecutor(int laneCount) {
+        this(laneCount, namedThreads("signaling-lane-"));
+    }
+
+    public RoomAffinityExecutor(int laneCount, ThreadFactory threadFactory) {
+        this.lanes = new ExecutorService[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        String key = task instanceof MessageHandlingRunnable runnable ? shardKey(runnable.getMessage()) : null;
+        lanes[laneFor(key)].execute(task);
+    }
+
+    /**
+     * Runs a task on the lane of the given room, behind every frame of that room queued so far.
+     */
+    public void execute(String roomId, Runnable task) {
+        lanes[laneFor(roomId)].execute(task);
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Completes once every lane has run what was queued on it before the call, so every frame
+     * received until then has been handled.
+     */
+    public CompletableFuture<Void> fence() {
+        CompletableFuture<?>[] fences = new CompletableFuture<?>[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            fences[i] = CompletableFuture.runAsync(() -> {}, lanes[i]);
+        }
+        return CompletableFuture.allOf(fences);
+    }
+
+    int laneFor(String key) {
+        if (key == null) {
+            return 0;
+        }
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    public static String shardKey(Message<?> message) {
+        String roomId = roomId(message);
+        return roomId != null ? roomId : SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+    }
+
+    /**
+     * The room a client frame belongs to, from its {@code roomId} header or else the room the
+     * session joined; {@code null} if neither is known.
+     */
+    public static String roomId(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+
+        @SuppressWarnings("unchecked")
+        Map<String, List<String>> nativeHeaders = headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS, Map.class);
+        if (nativeHeaders != null) {
+            List<String> roomIds = nativeHeaders.get(ROOM_ID_HEADER);
+            if (roomIds != null && !roomIds.isEmpty()) {
+                return roomIds.get(0);
+            }
+        }
+
+        return joinedRoomId(message);
+    }
+
+    /**
+     * The room the session joined, as recorded by the server; {@code null} before a join. Unlike
+     * the {@code roomId} header this cannot name a room the client is not in.
+     */
+    public static String joinedRoomId(Message<?> message) {
+        Map<String, Object> sessionAttributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        if (sessionAttributes != null && sessionAttributes.get("roomId") instanceof String roomId) {
+            return roomId;
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,301 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import com.anishsarkar.webrtcvideocall.dto.AnswerMessage;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateBatchMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds signaling for a room member who cannot receive it yet: one whose session has not
+ * confirmed its {@code /user/queue/signal} subscription, or whose membership is held for a
+ * reconnect and has no session at all. The messages wait in a bounded queue per member, up to
+ * a count, a byte size and an age, and are handed on in order once the member's current
+ * session is subscribed. A subscription counts as confirmed when the user destination handler
+ * has passed it to the broker, which for the simple broker means it is registered.
+ */
+@Component
+public class SignalMailbox implements ExecutorChannelInterceptor {
+
+    public static final String SIGNAL_DESTINATION = "/user/queue/signal";
+    // Room, user and envelope fields of a message, on top of its payload
+    private static final int MESSAGE_OVERHEAD_BYTES = 128;
+
+    private final long ttlNanos;
+    private final int maxMessages;
+    private final int maxBytes;
+    private final RoomService roomService;
+    private final UserSessionRegistry userSessionRegistry;
+    // Resolved on first use, like the admission interceptor's
+    private final ObjectProvider<SignalingMetrics> signalingMetrics;
+    private final LongSupplier nanoClock;
+    // Sessions of this node still waiting for their subscription, and members with messages
+    // held; both read without the lock
+    private final Set<String> unconfirmed = ConcurrentHashMap.newKeySet();
+    private final Set<Member> waiting = ConcurrentHashMap.newKeySet();
+    // Guarded by this
+    private final Map<Member, Queue> queues = new HashMap<>();
+    private long nextSweep;
+
+    @Autowired
+    public SignalMailbox(@Value("${signaling.mailbox.ttl-ms:10000}") long ttlMillis,
+                         @Value("${signaling.mailbox.max-messages:256}") int maxMessages,
+                         @Value("${signaling.mailbox.max-bytes:262144}") int maxBytes,
+                         RoomService roomService,
+                         UserSessionRegistry userSessionRegistry,
+                         ObjectProvider<SignalingMetrics> signalingMetrics) {
+        this(ttlMillis, maxMessages, maxBytes, roomService, userSessionRegistry, signalingMetrics, System::nanoTime);
+    }
+
+    SignalMailbox(long ttlMillis, int maxMessages, int maxBytes, RoomService roomService,
+                  UserSessionRegistry userSessionRegistry, ObjectProvider<SignalingMetrics> signalingMetrics,
+                  LongSupplier nanoClock) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.roomService = roomService;
+        this.userSessionRegistry = userSessionRegistry;
+        this.signalingMetrics = signalingMetrics;
+        this.nanoClock = nanoClock;
+        this.nextSweep = nanoClock.getAsLong() + ttlNanos;
+    }
+
+    @EventListener
+    public void handleSessionConnect(SessionConnectEvent event) {
+        String sessionId = event.getMessage().getHeaders().get(SimpMessageHeaderAccessor.SESSION_ID_HEADER, String.class);
+        if (sessionId != null) {
+            unconfirmed.add(sessionId);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        unconfirmed.remove(event.getSessionId());
+    }
+
+    /**
+     * Whether a message for the member's session has to go through {@link #deliver}, either to
+     * wait or to keep its place behind held ones. Sessions of other nodes never wait here.
+     */
+    public boolean isPending(String roomId, String userId, String sessionId) {
+        return unconfirmed.contains(sessionId) || waiting.contains(new Member(roomId, userId));
+    }
+
+    /**
+     * Hands the message to {@code sink} with the member's session if that session can take it
+     * now, after anything held before it, otherwise queues it for the member. Returns
+     * {@code false}, holding nothing, when the user is neither connected nor a member of the room.
+     */
+    public boolean deliver(String roomId, String userId, BaseMessage message, BiConsumer<String, BaseMessage> sink) {
+        long now = nanoClock.getAsLong();
+        String sessionId;
+        List<Held> ready;
+        synchronized (this) {
+            // Looked up again under the lock, a confirmation in between flushes what this holds
+            sessionId = userSessionRegistry.getSessionId(roomId, userId);
+            if (sessionId != null && !unconfirmed.contains(sessionId)) {
+                ready = take(new Member(roomId, userId), now);
+            } else if (sessionId == null && !roomService.isUserInRoom(roomId, userId)) {
+                return false;
+            } else {
+                hold(new Member(roomId, userId), message, sink, now);
+                return true;
+            }
+        }
+        // Sent outside the lock; the member's messages are handled one at a time on its room's lane
+        send(ready, sessionId);
+        sink.accept(sessionId, message);
+        return true;
+    }
+
+    /**
+     * Hands everything held for the member to its current session, if that session can take
+     * it. Called when a session joins or resumes the room.
+     */
+    public void flush(String roomId, String userId) {
+        String sessionId = userSessionRegistry.getSessionId(roomId, userId);
+        if (sessionId == null || unconfirmed.contains(sessionId)) {
+            return;
+        }
+        List<Held> ready;
+        synchronized (this) {
+            ready = take(new Member(roomId, userId), nanoClock.getAsLong());
+        }
+        send(ready, sessionId);
+    }
+
+    /** The member has left the room; whatever is held for it will not be wanted. */
+    public synchronized void discard(String roomId, String userId) {
+        Member member = new Member(roomId, userId);
+        Queue queue = queues.remove(member);
+        if (queue != null) {
+            waiting.remove(member);
+            metrics().recordMailboxDropped("left", queue.messages.size());
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(@NonNull Message<?> message, @NonNull MessageChannel channel,
+                                    @NonNull MessageHandler handler, Exception ex) {
+        if (!(handler instanceof UserDestinationMessageHandler) || ex != null
+                || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.SUBSCRIBE
+                || !SIGNAL_DESTINATION.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+            return;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        Map<String, Object> sessionAttributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        unconfirmed.remove(sessionId);
+        // Subscribed after joining: what was held goes out before anything sent from now on. A
+        // subscription after the join runs on the joined room's lane, like the sends it orders.
+        if (sessionAttributes != null && sessionAttributes.get("roomId") instanceof String roomId
+                && sessionAttributes.get("userId") instanceof String userId) {
+            flush(roomId, userId);
+        }
+    }
+
+    // Caller holds the lock
+    private void hold(Member member, BaseMessage message, BiConsumer<String, BaseMessage> sink, long now) {
+        if (now - nextSweep >= 0) {
+            sweep(now);
+        }
+        Queue queue = queues.computeIfAbsent(member, key -> new Queue());
+        waiting.add(member);
+        queue.add(new Held(message, size(message), now + ttlNanos, sink));
+        metrics().recordMailboxHeld();
+        int overflow = queue.trim(maxMessages, maxBytes);
+        if (overflow > 0) {
+            metrics().recordMailboxDropped("overflow", overflow);
+        }
+    }
+
+    // Caller holds the lock; the messages still in time, for the caller to send once it has let go
+    private List<Held> take(Member member, long now) {
+        Queue queue = queues.remove(member);
+        if (queue == null) {
+            return List.of();
+        }
+        waiting.remove(member);
+        int expired = queue.expire(now);
+        metrics().recordMailboxFlushed(queue.messages.size());
+        if (expired > 0) {
+            metrics().recordMailboxDropped("expired", expired);
+        }
+        return List.copyOf(queue.messages);
+    }
+
+    private static void send(List<Held> ready, String sessionId) {
+        for (Held held : ready) {
+            held.sink.accept(sessionId, held.message);
+        }
+    }
+
+    // Members that never came to collect their messages
+    private void sweep(long now) {
+        nextSweep = now + ttlNanos;
+        int expired = 0;
+        Iterator<Map.Entry<Member, Queue>> it = queues.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Member, Queue> entry = it.next();
+            expired += entry.getValue().expire(now);
+            if (entry.getValue().messages.isEmpty()) {
+                waiting.remove(entry.getKey());
+                it.remove();
+            }
+        }
+        if (expired > 0) {
+            metrics().recordMailboxDropped("expired", expired);
+        }
+    }
+
+    private SignalingMetrics metrics() {
+        return signalingMetrics.getObject();
+    }
+
+    private static int size(BaseMessage message) {
+        return MESSAGE_OVERHEAD_BYTES + switch (message) {
+            case OfferMessage offer -> length(offer.getOffer());
+            case AnswerMessage answer -> length(answer.getAnswer());
+            case IceCandidateMessage candidate -> length(candidate.getCandidate());
+            case IceCandidateBatchMessage batch -> {
+                int bytes = 0;
+                for (RawPayload candidate : batch.getCandidates()) {
+                    bytes += length(candidate);
+                }
+                yield bytes;
+            }
+            default -> 0;
+        };
+    }
+
+    private static int length(RawPayload payload) {
+        return payload != null ? payload.length() : 0;
+    }
+
+    private record Member(String roomId, String userId) {
+    }
+
+    private record Held(BaseMessage message, int bytes, long deadline, BiConsumer<String, BaseMessage> sink) {
+    }
+
+    /** Oldest first; over either bound the oldest are dropped, but never the newest. */
+    private static final class Queue {
+        final ArrayDeque<Held> messages = new ArrayDeque<>();
+        int bytes;
+
+        void add(Held held) {
+            messages.addLast(held);
+            bytes += held.bytes;
+        }
+
+        int trim(int maxMessages, int maxBytes) {
+            int dropped = 0;
+            while (messages.size() > 1 && (messages.size() > maxMessages || bytes > maxBytes)) {
+                bytes -= messages.removeFirst().bytes;
+                dropped++;
+            }
+            return dropped;
+        }
+
+        int expire(long now) {
+            int expired = 0;
+            while (!messages.isEmpty() && messages.peekFirst().deadline - now < 0) {
+                bytes -= messages.removeFirst().bytes;
+                expired++;
+            }
+            return expired;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import com.anishsarkar.webrtcvideocall.dto.ErrorMessage;
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Admission control on the client inbound channel, ahead of the room lanes. Each session and
+ * each joined room gets a token bucket per message type, and while the outbound backlog is above its
+ * limit every limited type is turned away. Rejected frames are dropped on the socket's own
+ * thread; the sender gets at most one {@link ErrorMessage} per second about it. Leaving a room
+ * is never limited, so cleanup always gets through.
+ */
+@Component
+public class SignalingAdmissionInterceptor implements ChannelInterceptor {
+
+    private static final Map<String, MessageType> DESTINATIONS = Map.of(
+            "/app/join", MessageType.JOIN_ROOM,
+            "/app/offer", MessageType.OFFER,
+            "/app/answer", MessageType.ANSWER,
+            "/app/ice-candidate", MessageType.ICE_CANDIDATE,
+            "/app/sfu/offer", MessageType.SFU_OFFER,
+            "/app/sfu/ice-candidate", MessageType.SFU_ICE_CANDIDATE);
+    private static final long NOTIFY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // Rooms come and go with their members, so idle room buckets are dropped regularly
+    private static final int ROOM_SWEEP_INTERVAL = 4096;
+
+    private final boolean enabled;
+    private final Map<MessageType, Limit> sessionLimits;
+    private final Map<MessageType, Limit> roomLimits;
+    private final int outboundBacklogLimit;
+    private final OutboundBacklog outboundBacklog;
+    // Resolved on first use; both depend on the channels this interceptor is registered on
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplate;
+    private final ObjectProvider<SignalingMetrics> signalingMetrics;
+    private final LongSupplier nanoClock;
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket[]> rooms = new ConcurrentHashMap<>();
+    private final AtomicLong admissions = new AtomicLong();
+
+    @Autowired
+    public SignalingAdmissionInterceptor(
+            @Value("${signaling.admission.enabled:true}") boolean enabled,
+            @Value("${signaling.admission.session-limits:JOIN_ROOM:2/5,OFFER:20/40,ANSWER:20/40,ICE_CANDIDATE:100/200,SFU_OFFER:20/40,SFU_ICE_CANDIDATE:100/200}") String sessionLimits,
+            @Value("${signaling.admission.room-limits:JOIN_ROOM:10/20,OFFER:80/160,ANSWER:80/160,ICE_CANDIDATE:400/800,SFU_OFFER:80/160,SFU_ICE_CANDIDATE:400/800}") String roomLimits,
+            @Value("${signaling.admission.outbound-backlog-limit:10000}") int outboundBacklogLimit,
+            OutboundBacklog outboundBacklog,
+            ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+            ObjectProvider<SignalingMetrics> signalingMetrics) {
+        this(enabled, sessionLimits, roomLimits, outboundBacklogLimit, outboundBacklog, messagingTemplate,
+                signalingMetrics, System::nanoTime);
+    }
+
+    SignalingAdmissionInterceptor(boolean enabled, String sessionLimits, String roomLimits, int outboundBacklogLimit,
+                                  OutboundBacklog outboundBacklog,
+                                  ObjectProvider<SimpMessagingTemplate> messagingTemplate,
+                                  ObjectProvider<SignalingMetrics> signalingMetrics,
+                                  LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.sessionLimits = parseLimits(sessionLimits);
+        this.roomLimits = parseLimits(roomLimits);
+        this.outboundBacklogLimit = outboundBacklogLimit;
+        this.outboundBacklog = outboundBacklog;
+        this.messagingTemplate = messagingTemplate;
+        this.signalingMetrics = signalingMetrics;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        if (!enabled) {
+            return message;
+        }
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (messageType == SimpMessageType.DISCONNECT) {
+            if (sessionId != null) {
+                sessions.remove(sessionId);
+            }
+            return message;
+        }
+        if (messageType != SimpMessageType.MESSAGE || sessionId == null) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        MessageType type = destination != null ? DESTINATIONS.get(destination) : null;
+        if (type == null) {
+            return message;
+        }
+
+        long now = nanoClock.getAsLong();
+        // The room the session joined, never the roomId header: a client could name any room there,
+        // draining another room's budget or dodging its own. Before a join only the session is limited
+        String roomId = RoomAffinityExecutor.joinedRoomId(message);
+        AdmissionRejection rejection = admit(type, sessionId, roomId, now);
+        if (rejection == null) {
+            return message;
+        }
+        reject(rejection, type, sessionId, roomId, headers, now);
+        return null;
+    }
+
+    private AdmissionRejection admit(MessageType type, String sessionId, String roomId, long now) {
+        if (admissions.incrementAndGet() % ROOM_SWEEP_INTERVAL == 0) {
+            rooms.values().removeIf(buckets -> isIdle(buckets, now));
+        }
+        if (outboundBacklogLimit > 0 && outboundBacklog.pending() > outboundBacklogLimit) {
+            return AdmissionRejection.SERVER_BUSY;
+        }
+        TokenBucket sessionBucket = session(sessionId, now).buckets[type.ordinal()];
+        if (sessionBucket != null && !sessionBucket.tryAcquire(now)) {
+            return AdmissionRejection.RATE_LIMITED;
+        }
+        if (roomId != null && roomLimits.containsKey(type)) {
+            TokenBucket roomBucket = rooms.computeIfAbsent(roomId, id -> buckets(roomLimits, now))[type.ordinal()];
+            if (!roomBucket.tryAcquire(now)) {
+                return AdmissionRejection.RATE_LIMITED;
+            }
+        }
+        return null;
+    }
+
+    private void reject(AdmissionRejection rejection, MessageType type, String sessionId, String roomId,
+                        MessageHeaders headers, long now) {
+        signalingMetrics.getObject().recordRejected(type, rejection.name());
+        if (!session(sessionId, now).shouldNotify(now)) {
+            return;
+        }
+        Map<String, Object> sessionAttributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        String userId = sessionAttributes != null ? (String) sessionAttributes.get("userId") : null;
+        ErrorMessage error = new ErrorMessage(roomId, userId, rejection.getMessage(), rejection.name());
+
+        // Same session-addressed user destination the controller replies on
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.getObject().convertAndSendToUser(sessionId, "/queue/signal", error, accessor.getMessageHeaders());
+    }
+
+    private SessionState session(String sessionId, long now) {
+        return sessions.computeIfAbsent(sessionId, id -> new SessionState(buckets(sessionLimits, now)));
+    }
+
+    /** One bucket per limited type, indexed by ordinal. */
+    private static TokenBucket[] buckets(Map<MessageType, Limit> limits, long now) {
+        TokenBucket[] buckets = new TokenBucket[MessageType.values().length];
+        limits.forEach((type, limit) -> buckets[type.ordinal()] = new TokenBucket(limit.perSecond(), limit.burst(), now));
+        return buckets;
+    }
+
+    private static boolean isIdle(TokenBucket[] buckets, long now) {
+        for (TokenBucket bucket : buckets) {
+            if (bucket != null && !bucket.isFull(now)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses {@code TYPE:perSecond/burst} entries separated by commas, e.g.
+     * {@code ICE_CANDIDATE:100/200,OFFER:20/40}. Types that are not listed are not limited.
+     */
+    static Map<MessageType, Limit> parseLimits(String spec) {
+        Map<MessageType, Limit> limits = new EnumMap<>(MessageType.class);
+        if (spec == null || spec.isBlank()) {
+            return limits;
+        }
+        for (String entry : spec.split(",")) {
+            String[] typeAndRate = entry.trim().split(":");
+            String[] rateAndBurst = typeAndRate.length == 2 ? typeAndRate[1].split("/") : new String[0];
+            if (rateAndBurst.length != 2) {
+                throw new IllegalArgumentException("Expected TYPE:perSecond/burst, got '" + entry.trim() + "'");
+            }
+            MessageType type = MessageType.valueOf(typeAndRate[0].trim());
+            if (type == MessageType.LEAVE_ROOM) {
+                throw new IllegalArgumentException("LEAVE_ROOM cannot be limited");
+            }
+            limits.put(type, new Limit(Double.parseDouble(rateAndBurst[0].trim()), Double.parseDouble(rateAndBurst[1].trim())));
+        }
+        return limits;
+    }
+
+    record Limit(double perSecond, double burst) {
+    }
+
+    private static final class SessionState {
+        final TokenBucket[] buckets;
+        // nanoTime can be negative, so 0 cannot stand for "never"
+        boolean notified;
+        long notifiedAt;
+
+        SessionState(TokenBucket[] buckets) {
+            this.buckets = buckets;
+        }
+
+        synchronized boolean shouldNotify(long now) {
+            if (notified && now - notifiedAt < NOTIFY_INTERVAL_NANOS) {
+                return false;
+            }
+            notified = true;
+            notifiedAt = now;
+            return true;
+        }
+    }
+}
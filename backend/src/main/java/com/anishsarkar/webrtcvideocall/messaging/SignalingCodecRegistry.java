@@ -0,0 +1,54 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which sessions asked for the binary codec in their CONNECT frame, so messages
+ * addressed to a single session can be encoded the way that client reads them. Broadcasts
+ * and sessions on other nodes stay JSON.
+ */
+@Component
+public class SignalingCodecRegistry {
+
+    // CONNECT header, e.g. accept-content-type:application/cbor
+    public static final String ACCEPT_CONTENT_TYPE_HEADER = "accept-content-type";
+
+    private final Map<String, MimeType> contentTypes = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void handleSessionConnect(SessionConnectEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        String sessionId = headerAccessor.getSessionId();
+        String accept = headerAccessor.getFirstNativeHeader(ACCEPT_CONTENT_TYPE_HEADER);
+        if (sessionId == null || accept == null) {
+            return;
+        }
+        for (MimeType mimeType : MimeTypeUtils.parseMimeTypes(accept)) {
+            if (CborMessageConverter.APPLICATION_CBOR.equalsTypeAndSubtype(mimeType)) {
+                contentTypes.put(sessionId, CborMessageConverter.APPLICATION_CBOR);
+                return;
+            }
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        contentTypes.remove(event.getSessionId());
+    }
+
+    /**
+     * Content type to encode messages for the session with, or {@code null} for the default JSON.
+     */
+    public MimeType getContentType(String sessionId) {
+        return sessionId != null ? contentTypes.get(sessionId) : null;
+    }
+}
@@ -0,0 +1,43 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+/**
+ * Admits up to {@code burst} messages at once and refills at {@code perSecond}, continuously
+ * rather than in whole-second steps.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double perSecond, double burst, long nowNanos) {
+        this.tokensPerNano = perSecond / 1e9;
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = nowNanos;
+    }
+
+    synchronized boolean tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /** A full bucket behaves like a new one, so it can be dropped. */
+    synchronized boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= burst;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - refilledAt;
+        if (elapsed > 0) {
+            tokens = Math.min(burst, tokens + elapsed * tokensPerNano);
+            refilledAt = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.anishsarkar.webrtcvideocall.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Negotiation timelines of a room, for looking into a call that is slow to connect.
+ * <pre>
+ * GET /actuator/negotiations/{roomId}   offer, answer and candidate timings per peer pair
+ * </pre>
+ */
+@Component
+@Endpoint(id = "negotiations")
+public class NegotiationTraceEndpoint {
+
+    private final NegotiationTracer negotiationTracer;
+
+    public NegotiationTraceEndpoint(NegotiationTracer negotiationTracer) {
+        this.negotiationTracer = negotiationTracer;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> room(@Selector String roomId) {
+        return negotiationTracer.dump(roomId);
+    }
+}
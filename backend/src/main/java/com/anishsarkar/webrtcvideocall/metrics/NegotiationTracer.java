@@ -0,0 +1,289 @@
+package com.anishsarkar.webrtcvideocall.metrics;
+
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Timelines of peer-to-peer negotiations per room, offerer and answerer: when the offer and the
+ * answer reached the server, how long each stayed before it was handed on, the delay from the
+ * client's own timestamp on it, and the span of the ICE candidates either peer sent. Traces sit
+ * in a fixed table of atomic slots picked by hashing the pair and are replaced whole by
+ * compare-and-set, so recording never blocks and memory stays fixed; a pair landing on an
+ * occupied slot takes it over. A trace is closed, and its candidate span recorded, when the
+ * pair offers again, when another pair takes the slot, or after the idle time without traffic.
+ * Closed traces stay readable in {@link #dump} until their slot is reused.
+ */
+@Component
+public class NegotiationTracer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NegotiationTracer.class);
+
+    private static final long NONE = Long.MIN_VALUE;
+    // Client clocks further off than this say nothing about the network
+    private static final long MAX_CLIENT_DELAY_MILLIS = 60_000;
+
+    private final AtomicReferenceArray<Trace> slots;
+    private final int mask;
+    private final long idleNanos;
+    private final SignalingMetrics signalingMetrics;
+    private final LongSupplier nanoClock;
+    private final ScheduledExecutorService sweeper;
+
+    @Autowired
+    public NegotiationTracer(@Value("${signaling.negotiation.trace-slots:4096}") int slots,
+                             @Value("${signaling.negotiation.idle-ms:10000}") long idleMillis,
+                             SignalingMetrics signalingMetrics) {
+        this(slots, idleMillis, signalingMetrics, System::nanoTime);
+    }
+
+    NegotiationTracer(int slots, long idleMillis, SignalingMetrics signalingMetrics, LongSupplier nanoClock) {
+        // Rounded up to a power of two; 0 keeps the histograms and drops the timelines
+        int size = slots > 0 ? Integer.highestOneBit(Math.max(1, slots - 1)) << 1 : 0;
+        this.slots = size > 0 ? new AtomicReferenceArray<>(size) : null;
+        this.mask = size - 1;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.signalingMetrics = signalingMetrics;
+        this.nanoClock = nanoClock;
+        this.sweeper = this.slots != null && idleMillis > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "negotiation-sweep");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (sweeper != null) {
+            long period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(idleNanos) / 2);
+            sweeper.scheduleWithFixedDelay(this::sweepQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * An offer has been handed on to the answerer; starts a new timeline for the pair.
+     *
+     * @param clientMillis  the offer's own timestamp
+     * @param receivedNanos when its handler started
+     */
+    public void offer(String roomId, String offererId, String answererId, long clientMillis, long receivedNanos) {
+        long dwell = nanoClock.getAsLong() - receivedNanos;
+        signalingMetrics.recordDwell(MessageType.OFFER, dwell);
+        long delay = clientDelay(MessageType.OFFER, clientMillis, dwell);
+        if (slots == null) {
+            return;
+        }
+        Trace previous = slots.getAndSet(index(roomId, offererId, answererId), new Trace(roomId, offererId, answererId,
+                System.currentTimeMillis(), receivedNanos, dwell, delay, NONE, 0, -1, NONE, NONE, 0, false));
+        if (previous != null) {
+            close(previous);
+        }
+    }
+
+    /**
+     * The answer to an offer has been handed back to the offerer.
+     *
+     * @return nanoseconds from the offer reaching the server to the answer reaching it, or -1
+     *         if there is no unanswered offer of the pair on record
+     */
+    public long answer(String roomId, String answererId, String offererId, long clientMillis, long receivedNanos) {
+        long dwell = nanoClock.getAsLong() - receivedNanos;
+        signalingMetrics.recordDwell(MessageType.ANSWER, dwell);
+        long delay = clientDelay(MessageType.ANSWER, clientMillis, dwell);
+        if (slots == null) {
+            return -1;
+        }
+        int index = index(roomId, offererId, answererId);
+        while (true) {
+            Trace current = slots.get(index);
+            if (current == null || current.closed || current.answerNanos != NONE
+                    || !current.is(roomId, offererId, answererId)) {
+                return -1;
+            }
+            if (slots.compareAndSet(index, current, current.answered(receivedNanos, dwell, delay))) {
+                long negotiated = receivedNanos - current.offerNanos;
+                signalingMetrics.recordOfferToAnswer(negotiated);
+                return negotiated;
+            }
+        }
+    }
+
+    /**
+     * An ICE candidate from either side of a negotiation. {@code forwarded} means it has been
+     * handed on already, so the time since it was received is its dwell; batched candidates
+     * wait for their batch on purpose and are not counted.
+     */
+    public void candidate(String roomId, String fromId, String toId, long clientMillis, long receivedNanos,
+                          boolean forwarded) {
+        long dwell = nanoClock.getAsLong() - receivedNanos;
+        if (forwarded) {
+            signalingMetrics.recordDwell(MessageType.ICE_CANDIDATE, dwell);
+        }
+        clientDelay(MessageType.ICE_CANDIDATE, clientMillis, dwell);
+        if (slots == null) {
+            return;
+        }
+        // The sender may have made the offer or be answering it
+        if (!addCandidate(roomId, fromId, toId, receivedNanos)) {
+            addCandidate(roomId, toId, fromId, receivedNanos);
+        }
+    }
+
+    /** Timelines of the room's negotiations still in the table, oldest first. */
+    public List<Map<String, Object>> dump(String roomId) {
+        List<Trace> traces = new ArrayList<>();
+        if (slots != null) {
+            for (int i = 0; i < slots.length(); i++) {
+                Trace trace = slots.get(i);
+                if (trace != null && trace.roomId.equals(roomId)) {
+                    traces.add(trace);
+                }
+            }
+        }
+        traces.sort(Comparator.comparingLong(Trace::offerNanos));
+        long now = nanoClock.getAsLong();
+        List<Map<String, Object>> dump = new ArrayList<>(traces.size());
+        for (Trace trace : traces) {
+            dump.add(trace.describe(now));
+        }
+        return dump;
+    }
+
+    /** Closes the traces idle for longer than the idle time; returns how many. */
+    int sweep() {
+        long now = nanoClock.getAsLong();
+        int closed = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            Trace trace = slots.get(i);
+            if (trace != null && !trace.closed && now - trace.lastActivity() > idleNanos
+                    && slots.compareAndSet(i, trace, trace.asClosed())) {
+                close(trace);
+                closed++;
+            }
+        }
+        return closed;
+    }
+
+    private boolean addCandidate(String roomId, String offererId, String answererId, long receivedNanos) {
+        int index = index(roomId, offererId, answererId);
+        while (true) {
+            Trace current = slots.get(index);
+            if (current == null || current.closed || !current.is(roomId, offererId, answererId)) {
+                return false;
+            }
+            if (slots.compareAndSet(index, current, current.withCandidate(receivedNanos))) {
+                return true;
+            }
+        }
+    }
+
+    // The one caller that took the trace out of play records it
+    private void close(Trace trace) {
+        if (!trace.closed && trace.candidates > 0) {
+            signalingMetrics.recordCandidateSpan(trace.lastCandidateNanos - trace.firstCandidateNanos);
+        }
+    }
+
+    private long clientDelay(MessageType type, long clientMillis, long dwellNanos) {
+        long receivedMillis = System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(dwellNanos);
+        long delay = receivedMillis - clientMillis;
+        if (clientMillis <= 0 || delay < 0 || delay > MAX_CLIENT_DELAY_MILLIS) {
+            return -1;
+        }
+        signalingMetrics.recordClientDelay(type, delay);
+        return delay;
+    }
+
+    private void sweepQuietly() {
+        try {
+            int closed = sweep();
+            logger.debug("Closed {} idle negotiation traces", closed);
+        } catch (RuntimeException e) {
+            logger.error("Error sweeping negotiation traces", e);
+        }
+    }
+
+    private int index(String roomId, String offererId, String answererId) {
+        int hash = (roomId.hashCode() * 31 + offererId.hashCode()) * 31 + answererId.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /** Immutable, so a slot always holds one consistent timeline. Times are server nanos. */
+    private record Trace(String roomId, String offererId, String answererId, long startedAtMillis,
+                         long offerNanos, long offerDwellNanos, long offerClientDelayMillis,
+                         long answerNanos, long answerDwellNanos, long answerClientDelayMillis,
+                         long firstCandidateNanos, long lastCandidateNanos, int candidates, boolean closed) {
+
+        boolean is(String room, String offerer, String answerer) {
+            return roomId.equals(room) && offererId.equals(offerer) && answererId.equals(answerer);
+        }
+
+        Trace answered(long nanos, long dwell, long delay) {
+            return new Trace(roomId, offererId, answererId, startedAtMillis, offerNanos, offerDwellNanos,
+                    offerClientDelayMillis, nanos, dwell, delay, firstCandidateNanos, lastCandidateNanos, candidates, false);
+        }
+
+        Trace withCandidate(long nanos) {
+            return new Trace(roomId, offererId, answererId, startedAtMillis, offerNanos, offerDwellNanos,
+                    offerClientDelayMillis, answerNanos, answerDwellNanos, answerClientDelayMillis,
+                    candidates == 0 ? nanos : firstCandidateNanos, nanos, candidates + 1, false);
+        }
+
+        Trace asClosed() {
+            return new Trace(roomId, offererId, answererId, startedAtMillis, offerNanos, offerDwellNanos,
+                    offerClientDelayMillis, answerNanos, answerDwellNanos, answerClientDelayMillis,
+                    firstCandidateNanos, lastCandidateNanos, candidates, true);
+        }
+
+        long lastActivity() {
+            return Math.max(offerNanos, Math.max(answerNanos, lastCandidateNanos));
+        }
+
+        Map<String, Object> describe(long now) {
+            Map<String, Object> timeline = new LinkedHashMap<>();
+            timeline.put("offererId", offererId);
+            timeline.put("answererId", answererId);
+            timeline.put("startedAt", Instant.ofEpochMilli(startedAtMillis).toString());
+            timeline.put("offerDwellMicros", TimeUnit.NANOSECONDS.toMicros(offerDwellNanos));
+            timeline.put("offerClientDelayMillis", offerClientDelayMillis >= 0 ? offerClientDelayMillis : null);
+            boolean answeredYet = answerNanos != NONE;
+            timeline.put("offerToAnswerMillis", answeredYet ? millis(answerNanos - offerNanos) : null);
+            timeline.put("answerDwellMicros", answeredYet ? TimeUnit.NANOSECONDS.toMicros(answerDwellNanos) : null);
+            timeline.put("answerClientDelayMillis", answerClientDelayMillis >= 0 ? answerClientDelayMillis : null);
+            timeline.put("candidates", candidates);
+            timeline.put("firstCandidateAfterOfferMillis", candidates > 0 ? millis(firstCandidateNanos - offerNanos) : null);
+            timeline.put("candidateSpanMillis", candidates > 0 ? millis(lastCandidateNanos - firstCandidateNanos) : null);
+            timeline.put("idleMillis", millis(now - lastActivity()));
+            timeline.put("closed", closed);
+            return timeline;
+        }
+
+        private static double millis(long nanos) {
+            return Math.round(nanos / 1_000.0) / 1_000.0;
+        }
+    }
+}
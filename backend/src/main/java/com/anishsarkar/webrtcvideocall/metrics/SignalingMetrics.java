@@ -0,0 +1,238 @@
+package com.anishsarkar.webrtcvideocall.metrics;
+
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Signaling counters, timers and gauges. Meters for every message type are registered up
+ * front so the recording path is a map lookup and an atomic add, with no tag or builder
+ * allocation per message.
+ */
+@Component
+public class SignalingMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<MessageType, Timer> handled = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Counter> relayed = new EnumMap<>(MessageType.class);
+    // Error codes are a handful of constants in the controller
+    private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+    // Rejection reasons per type, also a handful of constants
+    private final Map<MessageType, Map<String, Counter>> rejected = new EnumMap<>(MessageType.class);
+    private final DistributionSummary roomSize;
+    private final Counter evictedMembers;
+    private final Counter evictedRooms;
+    private final Counter resumed;
+    private final Counter migrated;
+    private final Map<Topology, Counter> topologyChanges = new EnumMap<>(Topology.class);
+    private final Counter mailboxFlushed;
+    private final Map<String, Counter> mailboxDropped = new ConcurrentHashMap<>();
+    private final AtomicLong mailboxDepth = new AtomicLong();
+    private final Timer offerToAnswer;
+    private final Timer candidateSpan;
+    // Offers, answers and candidates only
+    private final Map<MessageType, Timer> dwell = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Timer> clientDelay = new EnumMap<>(MessageType.class);
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+
+    public SignalingMetrics(MeterRegistry registry, RoomService roomService) {
+        this.registry = registry;
+        for (MessageType type : MessageType.values()) {
+            String tag = type.name().toLowerCase(Locale.ROOT);
+            handled.put(type, Timer.builder("signaling.messages.handled")
+                    .description("Inbound signaling messages and the time spent handling them")
+                    .tag("type", tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(registry));
+            relayed.put(type, Counter.builder("signaling.messages.relayed")
+                    .description("Signaling messages sent to a single target session or room topic")
+                    .tag("type", tag)
+                    .register(registry));
+            rejected.put(type, new ConcurrentHashMap<>());
+        }
+        roomSize = DistributionSummary.builder("signaling.room.size")
+                .description("Room size after each join or leave")
+                .serviceLevelObjectives(1, 2, 3, 4, 6, 8, 12, 16, 32, 64)
+                .register(registry);
+        evictedMembers = Counter.builder("signaling.evictions")
+                .description("Room members and empty rooms removed by the stale session reaper")
+                .tag("kind", "member")
+                .register(registry);
+        evictedRooms = Counter.builder("signaling.evictions")
+                .description("Room members and empty rooms removed by the stale session reaper")
+                .tag("kind", "room")
+                .register(registry);
+
+        resumed = Counter.builder("signaling.sessions.resumed")
+                .description("Memberships taken over by a reconnecting session within the grace window")
+                .register(registry);
+
+        migrated = Counter.builder("signaling.drain.migrated")
+                .description("Sessions told to reconnect to another node while this one drains")
+                .register(registry);
+
+        for (Topology topology : Topology.values()) {
+            topologyChanges.put(topology, Counter.builder("signaling.topology.changes")
+                    .description("Rooms moved to another topology mid-call")
+                    .tag("topology", topology.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+
+        offerToAnswer = Timer.builder("signaling.negotiation.offer.answer")
+                .description("From an offer reaching the server to the answer coming back for it")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        candidateSpan = Timer.builder("signaling.negotiation.candidates")
+                .description("From the first ICE candidate of a negotiation reaching the server to the last")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(registry);
+        for (MessageType type : new MessageType[]{MessageType.OFFER, MessageType.ANSWER, MessageType.ICE_CANDIDATE}) {
+            String tag = type.name().toLowerCase(Locale.ROOT);
+            dwell.put(type, Timer.builder("signaling.negotiation.dwell")
+                    .description("From a negotiation message reaching its handler to it being handed on to the target")
+                    .tag("type", tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(registry));
+            clientDelay.put(type, Timer.builder("signaling.negotiation.client.delay")
+                    .description("From the client's timestamp on a negotiation message to the server handling it, clock skew included")
+                    .tag("type", tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry));
+        }
+
+        mailboxFlushed = Counter.builder("signaling.mailbox.flushed")
+                .description("Held signaling messages delivered once their target could take them")
+                .register(registry);
+        Gauge.builder("signaling.mailbox.depth", mailboxDepth, AtomicLong::get)
+                .description("Signaling messages held for targets that are not subscribed yet")
+                .register(registry);
+
+        Gauge.builder("signaling.rooms.active", roomService, RoomService::getRoomCount)
+                .description("Rooms with at least one member")
+                .register(registry);
+        Gauge.builder("signaling.users.active", roomService, RoomService::getUserCount)
+                .description("Users in a room")
+                .register(registry);
+        Gauge.builder("signaling.sessions.active", sessions, Set::size)
+                .description("STOMP sessions connected to this node")
+                .register(registry);
+    }
+
+    public void recordHandled(MessageType type, long startNanos) {
+        handled.get(type).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRelayed(MessageType type) {
+        relayed.get(type).increment();
+    }
+
+    public void recordError(String errorCode) {
+        errors.computeIfAbsent(errorCode, code -> Counter.builder("signaling.errors")
+                .description("Error messages sent to clients")
+                .tag("code", code)
+                .register(registry)).increment();
+    }
+
+    public void recordRejected(MessageType type, String reason) {
+        rejected.get(type).computeIfAbsent(reason, code -> Counter.builder("signaling.messages.rejected")
+                .description("Inbound signaling messages dropped by admission control")
+                .tag("type", type.name().toLowerCase(Locale.ROOT))
+                .tag("reason", code)
+                .register(registry)).increment();
+    }
+
+    public void recordRoomSize(int size) {
+        roomSize.record(size);
+    }
+
+    public void recordResumed() {
+        resumed.increment();
+    }
+
+    public void recordMigrated(int sessions) {
+        migrated.increment(sessions);
+    }
+
+    public void recordTopologyChanged(Topology topology) {
+        topologyChanges.get(topology).increment();
+    }
+
+    public void recordOfferToAnswer(long nanos) {
+        offerToAnswer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCandidateSpan(long nanos) {
+        candidateSpan.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDwell(MessageType type, long nanos) {
+        dwell.get(type).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordClientDelay(MessageType type, long millis) {
+        clientDelay.get(type).record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordMailboxHeld() {
+        mailboxDepth.incrementAndGet();
+    }
+
+    public void recordMailboxFlushed(int count) {
+        mailboxDepth.addAndGet(-count);
+        mailboxFlushed.increment(count);
+    }
+
+    public void recordMailboxDropped(String reason, int count) {
+        mailboxDepth.addAndGet(-count);
+        mailboxDropped.computeIfAbsent(reason, code -> Counter.builder("signaling.mailbox.dropped")
+                .description("Held signaling messages dropped unsent")
+                .tag("reason", code)
+                .register(registry)).increment(count);
+    }
+
+    public void recordEvictedMember() {
+        evictedMembers.increment();
+    }
+
+    public void recordEvictedRooms(int count) {
+        evictedRooms.increment(count);
+    }
+
+    // Disconnect can be published more than once for a session, so track ids rather than a count
+    public void sessionConnected(String sessionId) {
+        if (sessionId != null) {
+            sessions.add(sessionId);
+        }
+    }
+
+    public void sessionDisconnected(String sessionId) {
+        if (sessionId != null) {
+            sessions.remove(sessionId);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lets every backend run its own in-process simple broker while rooms span nodes: messages
+ * the application sends to the broker channel are published to the cluster store, and
+ * messages published by other nodes are replayed into the local broker channel.
+ * User-destination messages for a session connected to this node never leave it.
+ */
+public class ClusterMessageBridge implements ChannelInterceptor, SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMessageBridge.class);
+
+    static final String RELAYED_HEADER = "clusterRelayed";
+
+    private final ClusterStore store;
+    private final String channel;
+    private final MessageChannel brokerChannel;
+    private final String userDestinationPrefix;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<String> localSessions = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    public ClusterMessageBridge(ClusterStore store, String channel, MessageChannel brokerChannel,
+                                String userDestinationPrefix) {
+        this.store = store;
+        this.channel = channel;
+        this.brokerChannel = brokerChannel;
+        this.userDestinationPrefix = userDestinationPrefix;
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel messageChannel) {
+        MessageHeaders headers = message.getHeaders();
+        if (!running || headers.containsKey(RELAYED_HEADER)
+                || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        boolean broadcast = destination != null && destination.startsWith("/topic/");
+        boolean remoteUser = destination != null && destination.startsWith(userDestinationPrefix)
+                && sessionId != null && !localSessions.contains(sessionId);
+
+        if (broadcast || remoteUser) {
+            try {
+                MimeType contentType = headers.get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+                store.publish(channel, encode(destination, remoteUser ? sessionId : null, contentType, payload));
+            } catch (Exception e) {
+                logger.error("Error publishing {} to the cluster", destination, e);
+            }
+        }
+        return message;
+    }
+
+    private void onRemoteMessage(byte[] envelope) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(envelope))) {
+            if (nodeId.equals(in.readUTF())) {
+                return;
+            }
+            String destination = in.readUTF();
+            String sessionId = in.readUTF();
+            String contentType = in.readUTF();
+            byte[] payload = in.readNBytes(in.readInt());
+
+            if (!sessionId.isEmpty() && !localSessions.contains(sessionId)) {
+                return;
+            }
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(destination);
+            if (!sessionId.isEmpty()) {
+                accessor.setSessionId(sessionId);
+            }
+            if (!contentType.isEmpty()) {
+                accessor.setContentType(MimeType.valueOf(contentType));
+            }
+            accessor.setHeader(RELAYED_HEADER, Boolean.TRUE);
+            brokerChannel.send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+        } catch (Exception e) {
+            logger.error("Error replaying cluster message", e);
+        }
+    }
+
+    private byte[] encode(String destination, String sessionId, MimeType contentType, byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + 128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(nodeId);
+            out.writeUTF(destination);
+            out.writeUTF(sessionId != null ? sessionId : "");
+            out.writeUTF(contentType != null ? contentType.toString() : "");
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    @EventListener
+    public void handleSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null) {
+            localSessions.add(sessionId);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        localSessions.remove(event.getSessionId());
+    }
+
+    @Override
+    public void start() {
+        store.subscribe(channel, this::onRemoteMessage);
+        running = true;
+        logger.info("Cluster message bridge started on node {}", nodeId);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
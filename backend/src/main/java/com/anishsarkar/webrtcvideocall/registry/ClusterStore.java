@@ -0,0 +1,48 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The small subset of a Redis-style key/value store the clustered registry needs:
+ * sets, hashes and pub/sub. Empty sets are expected to disappear on their own.
+ */
+public interface ClusterStore {
+
+    void addToSet(String key, String member);
+
+    /**
+     * Atomically adds the member unless the set already holds {@code maxSize} others.
+     * @return 1 if added, 0 if already a member, -1 if the set is full
+     */
+    int addToBoundedSet(String key, String member, int maxSize);
+
+    /** @return whether the member was in the set */
+    boolean removeFromSet(String key, String member);
+
+    Set<String> members(String key);
+
+    boolean isMember(String key, String member);
+
+    int setSize(String key);
+
+    void putField(String key, String field, String value);
+
+    String getField(String key, String field);
+
+    /** Values of the given fields in the same order, {@code null} where a field is missing. */
+    List<String> getFields(String key, List<String> fields);
+
+    void removeField(String key, String field);
+
+    /** Atomically adds to a numeric field, missing fields count as zero, and returns the result. */
+    long incrementField(String key, String field, long delta);
+
+    /** Removes the field only if it still holds the expected value. */
+    void removeFieldIfEquals(String key, String field, String expected);
+
+    void publish(String channel, byte[] payload);
+
+    void subscribe(String channel, Consumer<byte[]> listener);
+}
@@ -0,0 +1,180 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ClusteredRoomRegistry implements RoomRegistry {
+
+    private static final String USERS_FIELD = "users";
+
+    private final ClusterStore store;
+    private final String keyPrefix;
+    private final int maxRoomSize;
+
+    public ClusteredRoomRegistry(ClusterStore store, String keyPrefix, int maxRoomSize) {
+        this.store = store;
+        this.keyPrefix = keyPrefix;
+        this.maxRoomSize = maxRoomSize;
+    }
+
+    // Membership and capacity are decided by a single atomic set operation; names, version and
+    // counters follow in separate commands, so readers on other nodes can briefly see them lag
+
+    @Override
+    public JoinResult join(String roomId, String userId, String userName) {
+        int added = store.addToBoundedSet(roomKey(roomId), userId, maxRoomSize);
+        if (added < 0) {
+            return JoinResult.rejected(JoinRejection.ROOM_FULL);
+        }
+        if (added > 0) {
+            store.incrementField(statsKey(), USERS_FIELD, 1);
+        }
+        store.addToSet(roomsKey(), roomId);
+        if (userName != null) {
+            store.putField(namesKey(roomId), userId, userName);
+        }
+        return JoinResult.joined(store.incrementField(versionsKey(), roomId, 1));
+    }
+
+    @Override
+    public LeaveResult leave(String roomId, String userId) {
+        // The store drops the room key together with its last member
+        if (!store.removeFromSet(roomKey(roomId), userId)) {
+            return LeaveResult.notMember(getVersion(roomId));
+        }
+        store.incrementField(statsKey(), USERS_FIELD, -1);
+        store.removeField(namesKey(roomId), userId);
+        long version = store.incrementField(versionsKey(), roomId, 1);
+        // A join racing the last leave restarts the room's version, which its members see as a
+        // gap, and its topology. It must not lose the room from the index, hence the second look
+        if (store.setSize(roomKey(roomId)) == 0) {
+            store.removeFromSet(roomsKey(), roomId);
+            store.removeField(versionsKey(), roomId);
+            store.removeField(topologiesKey(), roomId);
+            if (store.setSize(roomKey(roomId)) > 0) {
+                store.addToSet(roomsKey(), roomId);
+            }
+        }
+        return LeaveResult.left(version);
+    }
+
+    @Override
+    public Set<String> getUsers(String roomId) {
+        return store.members(roomKey(roomId));
+    }
+
+    @Override
+    public Map<String, String> getMembers(String roomId) {
+        List<String> userIds = new ArrayList<>(store.members(roomKey(roomId)));
+        List<String> names = store.getFields(namesKey(roomId), userIds);
+        Map<String, String> members = new LinkedHashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            members.put(userIds.get(i), names.get(i));
+        }
+        return members;
+    }
+
+    @Override
+    public String getUserName(String roomId, String userId) {
+        return store.getField(namesKey(roomId), userId);
+    }
+
+    @Override
+    public long getVersion(String roomId) {
+        String version = store.getField(versionsKey(), roomId);
+        return version != null ? Long.parseLong(version) : 0;
+    }
+
+    @Override
+    public boolean isMember(String roomId, String userId) {
+        return store.isMember(roomKey(roomId), userId);
+    }
+
+    @Override
+    public Topology getTopology(String roomId) {
+        return store.getField(topologiesKey(), roomId) != null ? Topology.SFU : Topology.MESH;
+    }
+
+    @Override
+    public boolean promoteToSfu(String roomId) {
+        // The switch is one way, so the first increment is the one that made it
+        return store.setSize(roomKey(roomId)) > 0 && store.incrementField(topologiesKey(), roomId, 1) == 1;
+    }
+
+    @Override
+    public int size(String roomId) {
+        return store.setSize(roomKey(roomId));
+    }
+
+    @Override
+    public int roomCount() {
+        return store.setSize(roomsKey());
+    }
+
+    @Override
+    public int userCount() {
+        String users = store.getField(statsKey(), USERS_FIELD);
+        return users != null ? Integer.parseInt(users) : 0;
+    }
+
+    @Override
+    public int removeEmptyRooms() {
+        int removed = 0;
+        for (String roomId : store.members(roomsKey())) {
+            if (store.setSize(roomKey(roomId)) == 0 && store.removeFromSet(roomsKey(), roomId)) {
+                store.removeField(versionsKey(), roomId);
+                store.removeField(topologiesKey(), roomId);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void registerSession(String roomId, String userId, String sessionId) {
+        store.putField(sessionsKey(roomId), userId, sessionId);
+    }
+
+    @Override
+    public void unregisterSession(String roomId, String userId, String sessionId) {
+        store.removeFieldIfEquals(sessionsKey(roomId), userId, sessionId);
+    }
+
+    @Override
+    public String getSessionId(String roomId, String userId) {
+        return store.getField(sessionsKey(roomId), userId);
+    }
+
+    private String roomKey(String roomId) {
+        return keyPrefix + "room:" + roomId;
+    }
+
+    private String roomsKey() {
+        return keyPrefix + "rooms";
+    }
+
+    private String namesKey(String roomId) {
+        return keyPrefix + "room:" + roomId + ":names";
+    }
+
+    private String statsKey() {
+        return keyPrefix + "stats";
+    }
+
+    private String versionsKey() {
+        return keyPrefix + "versions";
+    }
+
+    private String topologiesKey() {
+        return keyPrefix + "topologies";
+    }
+
+    private String sessionsKey(String roomId) {
+        return keyPrefix + "room:" + roomId + ":sessions";
+    }
+}
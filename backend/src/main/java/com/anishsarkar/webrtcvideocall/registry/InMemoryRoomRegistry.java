@@ -0,0 +1,247 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Every room is an immutable {@link Room} swapped in through {@link ConcurrentHashMap#compute},
+ * so membership, names and version always change together and readers never take a lock.
+ */
+public class InMemoryRoomRegistry implements RoomRegistry {
+
+    public static final int DEFAULT_MAX_ROOM_SIZE = 8;
+
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<Member, String> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger userCount = new AtomicInteger();
+    private final int maxRoomSize;
+
+    public InMemoryRoomRegistry() {
+        this(DEFAULT_MAX_ROOM_SIZE);
+    }
+
+    public InMemoryRoomRegistry(int maxRoomSize) {
+        this.maxRoomSize = maxRoomSize;
+    }
+
+    @Override
+    public JoinResult join(String roomId, String userId, String userName) {
+        Room room = rooms.compute(roomId, (id, current) -> {
+            Room existing = current != null ? current : Room.empty(maxRoomSize);
+            if (!existing.members().contains(userId) && existing.isFull()) {
+                return current;
+            }
+            if (!existing.members().contains(userId)) {
+                userCount.incrementAndGet();
+            }
+            return existing.with(userId, userName, System.currentTimeMillis());
+        });
+        return room != null && room.members().contains(userId)
+                ? JoinResult.joined(room.version())
+                : JoinResult.rejected(JoinRejection.ROOM_FULL);
+    }
+
+    @Override
+    public LeaveResult leave(String roomId, String userId) {
+        boolean[] left = new boolean[1];
+        Room room = rooms.computeIfPresent(roomId, (id, current) -> {
+            if (!current.members().contains(userId)) {
+                return current;
+            }
+            userCount.decrementAndGet();
+            left[0] = true;
+            return current.without(userId);
+        });
+        if (room == null) {
+            return LeaveResult.notMember(0);
+        }
+        if (room.members().isEmpty()) {
+            // Only this exact instance; a join that got in first has already replaced it
+            rooms.remove(roomId, room);
+        }
+        return left[0] ? LeaveResult.left(room.version()) : LeaveResult.notMember(room.version());
+    }
+
+    @Override
+    public Set<String> getUsers(String roomId) {
+        Room room = rooms.get(roomId);
+        return room != null ? room.members().userIds() : Collections.emptySet();
+    }
+
+    @Override
+    public Map<String, String> getMembers(String roomId) {
+        Room room = rooms.get(roomId);
+        if (room == null) {
+            return Collections.emptyMap();
+        }
+        RoomMembers roomMembers = room.members();
+        Map<String, String> members = new LinkedHashMap<>();
+        for (int i = 0; i < roomMembers.size(); i++) {
+            members.put(roomMembers.userId(i), roomMembers.userName(i));
+        }
+        return members;
+    }
+
+    @Override
+    public String getUserName(String roomId, String userId) {
+        Room room = rooms.get(roomId);
+        int position = room != null ? room.members().indexOf(userId) : -1;
+        return position >= 0 ? room.members().userName(position) : null;
+    }
+
+    @Override
+    public long getVersion(String roomId) {
+        Room room = rooms.get(roomId);
+        return room != null ? room.version() : 0;
+    }
+
+    @Override
+    public boolean isMember(String roomId, String userId) {
+        Room room = rooms.get(roomId);
+        return room != null && room.members().contains(userId);
+    }
+
+    @Override
+    public Topology getTopology(String roomId) {
+        Room room = rooms.get(roomId);
+        return room != null ? room.topology() : Topology.MESH;
+    }
+
+    @Override
+    public boolean promoteToSfu(String roomId) {
+        boolean[] promoted = new boolean[1];
+        rooms.computeIfPresent(roomId, (id, current) -> {
+            if (current.topology() == Topology.SFU) {
+                return current;
+            }
+            promoted[0] = true;
+            return current.withTopology(Topology.SFU);
+        });
+        return promoted[0];
+    }
+
+    @Override
+    public int size(String roomId) {
+        Room room = rooms.get(roomId);
+        return room != null ? room.members().size() : 0;
+    }
+
+    @Override
+    public int roomCount() {
+        return rooms.size();
+    }
+
+    @Override
+    public int userCount() {
+        return userCount.get();
+    }
+
+    @Override
+    public int removeEmptyRooms() {
+        int removed = 0;
+        for (Map.Entry<String, Room> entry : rooms.entrySet()) {
+            // Conditional, so a room a join has just filled again stays
+            if (entry.getValue().members().isEmpty() && rooms.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /** Every room with members as it stands; each room is read whole, without a lock. */
+    public List<SavedRoom> save() {
+        List<SavedRoom> saved = new ArrayList<>(rooms.size());
+        rooms.forEach((roomId, room) -> {
+            if (room.members().isEmpty()) {
+                return;
+            }
+            RoomMembers roomMembers = room.members();
+            List<SavedRoom.SavedMember> members = new ArrayList<>(roomMembers.size());
+            for (int i = 0; i < roomMembers.size(); i++) {
+                members.add(new SavedRoom.SavedMember(roomMembers.userId(i), roomMembers.userName(i), roomMembers.joinedAt(i)));
+            }
+            saved.add(new SavedRoom(roomId, room.version(), room.topology(), members));
+        });
+        return saved;
+    }
+
+    /**
+     * Puts saved rooms back with their versions and topology. A room that already exists is
+     * left as it is; members past the current room size limit are dropped.
+     *
+     * @return the number of memberships restored
+     */
+    public int restore(List<SavedRoom> saved) {
+        int restored = 0;
+        for (SavedRoom room : saved) {
+            RoomMembers members = RoomMembers.EMPTY;
+            for (SavedRoom.SavedMember member : room.members()) {
+                if (members.size() < maxRoomSize) {
+                    members = members.with(member.userId(), member.userName(), member.joinedAt());
+                }
+            }
+            if (members.isEmpty()) {
+                continue;
+            }
+            Room next = new Room(members, maxRoomSize, room.version(), room.topology());
+            if (rooms.putIfAbsent(room.roomId(), next) == null) {
+                userCount.addAndGet(members.size());
+                restored += members.size();
+            }
+        }
+        return restored;
+    }
+
+    @Override
+    public void registerSession(String roomId, String userId, String sessionId) {
+        sessions.put(new Member(roomId, userId), sessionId);
+    }
+
+    @Override
+    public void unregisterSession(String roomId, String userId, String sessionId) {
+        // Only drop the mapping if it still points at this session (the user may have reconnected)
+        sessions.remove(new Member(roomId, userId), sessionId);
+    }
+
+    @Override
+    public String getSessionId(String roomId, String userId) {
+        return sessions.get(new Member(roomId, userId));
+    }
+
+    private record Member(String roomId, String userId) {
+    }
+
+    /** Members in join order; rooms are small, so copying on every change is cheap. */
+    private record Room(RoomMembers members, int capacity, long version, Topology topology) {
+
+        static Room empty(int capacity) {
+            return new Room(RoomMembers.EMPTY, capacity, 0, Topology.MESH);
+        }
+
+        boolean isFull() {
+            return members.size() >= capacity;
+        }
+
+        // A rejoin moves the user to the end with a fresh join time
+        Room with(String userId, String userName, long joinedAt) {
+            return new Room(members.with(userId, userName, joinedAt), capacity, version + 1, topology);
+        }
+
+        Room without(String userId) {
+            return new Room(members.without(userId), capacity, version + 1, topology);
+        }
+
+        // Not a membership change, so the version stays
+        Room withTopology(Topology next) {
+            return new Room(members, capacity, version, next);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+/** Reasons a join is refused; the name doubles as the error code sent to the client. */
+public enum JoinRejection {
+    ROOM_FULL("Room is full");
+
+    private final String message;
+
+    JoinRejection(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
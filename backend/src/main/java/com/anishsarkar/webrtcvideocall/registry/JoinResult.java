@@ -0,0 +1,20 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+/**
+ * Outcome of {@link RoomRegistry#join}: the room's membership version after the join, or
+ * why the user was turned away.
+ */
+public record JoinResult(long version, JoinRejection rejection) {
+
+    public static JoinResult joined(long version) {
+        return new JoinResult(version, null);
+    }
+
+    public static JoinResult rejected(JoinRejection rejection) {
+        return new JoinResult(0, rejection);
+    }
+
+    public boolean isJoined() {
+        return rejection == null;
+    }
+}
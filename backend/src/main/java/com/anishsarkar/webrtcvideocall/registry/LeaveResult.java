@@ -0,0 +1,16 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+/**
+ * Outcome of {@link RoomRegistry#leave}: the room's membership version after the leave, and
+ * whether the user was a member at all.
+ */
+public record LeaveResult(long version, boolean left) {
+
+    public static LeaveResult left(long version) {
+        return new LeaveResult(version, true);
+    }
+
+    public static LeaveResult notMember(long version) {
+        return new LeaveResult(version, false);
+    }
+}
@@ -0,0 +1,113 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class RedisClusterStore implements ClusterStore {
+
+    private static final RedisScript<Long> REMOVE_FIELD_IF_EQUALS = new DefaultRedisScript<>(
+            "if redis.call('hget', KEYS[1], ARGV[1]) == ARGV[2] then return redis.call('hdel', KEYS[1], ARGV[1]) end return 0",
+            Long.class);
+
+    private static final RedisScript<Long> ADD_TO_BOUNDED_SET = new DefaultRedisScript<>(
+            "if redis.call('sismember', KEYS[1], ARGV[1]) == 1 then return 0 end "
+                    + "if redis.call('scard', KEYS[1]) >= tonumber(ARGV[2]) then return -1 end "
+                    + "return redis.call('sadd', KEYS[1], ARGV[1])",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    public RedisClusterStore(RedisConnectionFactory connectionFactory, RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = new StringRedisTemplate(connectionFactory);
+        this.listenerContainer = listenerContainer;
+    }
+
+    @Override
+    public void addToSet(String key, String member) {
+        redisTemplate.opsForSet().add(key, member);
+    }
+
+    @Override
+    public int addToBoundedSet(String key, String member, int maxSize) {
+        Long result = redisTemplate.execute(ADD_TO_BOUNDED_SET, List.of(key), member, Integer.toString(maxSize));
+        return result != null ? result.intValue() : -1;
+    }
+
+    @Override
+    public boolean removeFromSet(String key, String member) {
+        Long removed = redisTemplate.opsForSet().remove(key, member);
+        return removed != null && removed > 0;
+    }
+
+    @Override
+    public Set<String> members(String key) {
+        Set<String> members = redisTemplate.opsForSet().members(key);
+        return members != null ? members : Collections.emptySet();
+    }
+
+    @Override
+    public boolean isMember(String key, String member) {
+        return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(key, member));
+    }
+
+    @Override
+    public int setSize(String key) {
+        Long size = redisTemplate.opsForSet().size(key);
+        return size != null ? size.intValue() : 0;
+    }
+
+    @Override
+    public void putField(String key, String field, String value) {
+        redisTemplate.opsForHash().put(key, field, value);
+    }
+
+    @Override
+    public String getField(String key, String field) {
+        Object value = redisTemplate.opsForHash().get(key, field);
+        return value != null ? value.toString() : null;
+    }
+
+    @Override
+    public List<String> getFields(String key, List<String> fields) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(key, List.copyOf(fields));
+        return values.stream().map(value -> value != null ? value.toString() : null).toList();
+    }
+
+    @Override
+    public void removeField(String key, String field) {
+        redisTemplate.opsForHash().delete(key, field);
+    }
+
+    @Override
+    public long incrementField(String key, String field, long delta) {
+        return redisTemplate.opsForHash().increment(key, field, delta);
+    }
+
+    @Override
+    public void removeFieldIfEquals(String key, String field, String expected) {
+        redisTemplate.execute(REMOVE_FIELD_IF_EQUALS, List.of(key), field, expected);
+    }
+
+    @Override
+    public void publish(String channel, byte[] payload) {
+        byte[] channelName = channel.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute(connection -> connection.publish(channelName, payload), true);
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<byte[]> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> listener.accept(message.getBody()),
+                new ChannelTopic(channel));
+    }
+}
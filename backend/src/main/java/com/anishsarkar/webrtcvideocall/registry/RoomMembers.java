@@ -0,0 +1,151 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The members of one room in join order, kept in parallel arrays. Rooms hold a handful of
+ * people, so a lookup scans the ids, which costs less than hashing and needs none of a map's
+ * tables and entries; only past {@link #INDEX_THRESHOLD} members is an id index built as well.
+ * Immutable: every change returns a new instance.
+ */
+final class RoomMembers {
+
+    static final int INDEX_THRESHOLD = 16;
+
+    static final RoomMembers EMPTY = new RoomMembers(new String[0], new String[0], new long[0]);
+
+    private final String[] userIds;
+    private final String[] userNames;
+    private final long[] joinedAt;
+    // Only for rooms larger than the threshold
+    private final Map<String, Integer> index;
+
+    private RoomMembers(String[] userIds, String[] userNames, long[] joinedAt) {
+        this.userIds = userIds;
+        this.userNames = userNames;
+        this.joinedAt = joinedAt;
+        this.index = userIds.length > INDEX_THRESHOLD ? indexOf(userIds) : null;
+    }
+
+    int size() {
+        return userIds.length;
+    }
+
+    boolean isEmpty() {
+        return userIds.length == 0;
+    }
+
+    boolean contains(String userId) {
+        return indexOf(userId) >= 0;
+    }
+
+    int indexOf(String userId) {
+        if (index != null) {
+            Integer position = index.get(userId);
+            return position != null ? position : -1;
+        }
+        for (int i = 0; i < userIds.length; i++) {
+            if (userIds[i].equals(userId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    String userId(int position) {
+        return userIds[position];
+    }
+
+    String userName(int position) {
+        return userNames[position];
+    }
+
+    long joinedAt(int position) {
+        return joinedAt[position];
+    }
+
+    /** Adds the member at the end; one already present is moved there with the new details. */
+    RoomMembers with(String userId, String userName, long joinedAtMillis) {
+        RoomMembers base = without(userId);
+        int size = base.userIds.length;
+        String[] ids = new String[size + 1];
+        String[] names = new String[size + 1];
+        long[] joined = new long[size + 1];
+        System.arraycopy(base.userIds, 0, ids, 0, size);
+        System.arraycopy(base.userNames, 0, names, 0, size);
+        System.arraycopy(base.joinedAt, 0, joined, 0, size);
+        ids[size] = userId;
+        names[size] = userName;
+        joined[size] = joinedAtMillis;
+        return new RoomMembers(ids, names, joined);
+    }
+
+    RoomMembers without(String userId) {
+        int position = indexOf(userId);
+        if (position < 0) {
+            return this;
+        }
+        int size = userIds.length - 1;
+        if (size == 0) {
+            return EMPTY;
+        }
+        String[] ids = new String[size];
+        String[] names = new String[size];
+        long[] joined = new long[size];
+        System.arraycopy(userIds, 0, ids, 0, position);
+        System.arraycopy(userNames, 0, names, 0, position);
+        System.arraycopy(joinedAt, 0, joined, 0, position);
+        System.arraycopy(userIds, position + 1, ids, position, size - position);
+        System.arraycopy(userNames, position + 1, names, position, size - position);
+        System.arraycopy(joinedAt, position + 1, joined, position, size - position);
+        return new RoomMembers(ids, names, joined);
+    }
+
+    /** Read-only view of the ids in join order. */
+    Set<String> userIds() {
+        return new AbstractSet<>() {
+            @Override
+            public boolean contains(Object userId) {
+                return userId instanceof String id && RoomMembers.this.contains(id);
+            }
+
+            @Override
+            public Iterator<String> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < userIds.length;
+                    }
+
+                    @Override
+                    public String next() {
+                        if (next >= userIds.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return userIds[next++];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return userIds.length;
+            }
+        };
+    }
+
+    private static Map<String, Integer> indexOf(String[] userIds) {
+        Map<String, Integer> index = new HashMap<>(userIds.length * 2);
+        for (int i = 0; i < userIds.length; i++) {
+            index.put(userIds[i], i);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,72 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage for room membership, display names and the STOMP session of every member.
+ * The in-memory implementation serves a single backend; the clustered one shares state
+ * between all backends behind the load balancer.
+ */
+public interface RoomRegistry {
+
+    /**
+     * Adds the user to the room, or refreshes the entry of a user already in it. Every join
+     * and leave advances the room's membership version by one; it starts over once the room
+     * is empty. A full room turns new users away.
+     */
+    JoinResult join(String roomId, String userId, String userName);
+
+    /**
+     * Removes the user from the room and returns the room's membership version, unchanged
+     * if the user was not a member, along with whether it was.
+     */
+    LeaveResult leave(String roomId, String userId);
+
+    Set<String> getUsers(String roomId);
+
+    /** Members of the room mapped to their display names, which may be {@code null}. */
+    Map<String, String> getMembers(String roomId);
+
+    String getUserName(String roomId, String userId);
+
+    /** The room's current membership version, 0 if the room does not exist. */
+    long getVersion(String roomId);
+
+    boolean isMember(String roomId, String userId);
+
+    /** How the room's peers connect; {@link Topology#MESH} for a room that does not exist. */
+    Topology getTopology(String roomId);
+
+    /**
+     * Moves an existing room to the forwarder, where it stays until it empties. Returns
+     * {@code true} only for the call that made the switch.
+     */
+    boolean promoteToSfu(String roomId);
+
+    int size(String roomId);
+
+    /** Rooms with at least one member, for metrics. */
+    int roomCount();
+
+    /** Room memberships, for metrics; a user in two rooms counts twice. */
+    int userCount();
+
+    /**
+     * Drops rooms that are still listed without any members, which a join racing the last
+     * leave can leave behind. Returns how many were dropped.
+     */
+    int removeEmptyRooms();
+
+    /**
+     * Records the session a member joined the room with. Keyed by room and user, so a user in
+     * several rooms keeps one session per room.
+     */
+    void registerSession(String roomId, String userId, String sessionId);
+
+    void unregisterSession(String roomId, String userId, String sessionId);
+
+    String getSessionId(String roomId, String userId);
+}
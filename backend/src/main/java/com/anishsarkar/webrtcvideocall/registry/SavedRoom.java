@@ -0,0 +1,15 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+
+import java.util.List;
+
+/**
+ * A room of {@link InMemoryRoomRegistry} as written to and read back from a snapshot, members
+ * in join order.
+ */
+public record SavedRoom(String roomId, long version, Topology topology, List<SavedMember> members) {
+
+    public record SavedMember(String userId, String userName, long joinedAt) {
+    }
+}
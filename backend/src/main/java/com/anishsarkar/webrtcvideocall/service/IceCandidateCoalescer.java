@@ -0,0 +1,153 @@
+package com.anishsarkar.webrtcvideocall.service;
+
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateBatchMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.messaging.RoomAffinityExecutor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects trickled ICE candidates per (roomId, userId, targetUserId) and hands them on
+ * as a single {@link IceCandidateBatchMessage} once the window elapses or the batch is full.
+ * A batch whose window elapses is handed to its room's lane, so it is checked and sent in
+ * order with the room's other frames rather than on the timer thread.
+ */
+@Service
+public class IceCandidateCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(IceCandidateCoalescer.class);
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final Map<BatchKey, Batch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    // null when inbound frames do not run on room lanes; batches are then sent from the timer
+    private final RoomAffinityExecutor lanes;
+
+    @Autowired
+    public IceCandidateCoalescer(@Value("${signaling.ice.batch-window-ms:20}") long windowMillis,
+                                 @Value("${signaling.ice.batch-max-size:16}") int maxBatchSize,
+                                 ObjectProvider<RoomAffinityExecutor> roomAffinityExecutor) {
+        this(windowMillis, maxBatchSize, roomAffinityExecutor.getIfAvailable());
+    }
+
+    public IceCandidateCoalescer(long windowMillis, int maxBatchSize) {
+        this(windowMillis, maxBatchSize, (RoomAffinityExecutor) null);
+    }
+
+    public IceCandidateCoalescer(long windowMillis, int maxBatchSize, RoomAffinityExecutor lanes) {
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lanes = lanes;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ice-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return windowMillis > 0;
+    }
+
+    public void add(IceCandidateMessage message, Consumer<IceCandidateBatchMessage> sink) {
+        BatchKey key = new BatchKey(message.getRoomId(), message.getUserId(), message.getTargetUserId());
+        Batch[] full = new Batch[1];
+
+        pending.compute(key, (k, batch) -> {
+            if (batch == null) {
+                Batch created = new Batch(sink);
+                created.flushTask = scheduler.schedule(() -> expire(k, created), windowMillis, TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.candidates.add(message.getCandidate());
+            if (batch.candidates.size() >= maxBatchSize) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+
+        if (full[0] != null) {
+            full[0].flushTask.cancel(false);
+            deliver(key, full[0]);
+        }
+    }
+
+    /**
+     * Sends what is held from userId to targetUserId right away. Called before relaying any
+     * other frame between the two, so it never overtakes candidates trickled before it.
+     */
+    public void flush(String roomId, String userId, String targetUserId) {
+        BatchKey key = new BatchKey(roomId, userId, targetUserId);
+        Batch batch = pending.remove(key);
+        if (batch != null) {
+            batch.flushTask.cancel(false);
+            deliver(key, batch);
+        }
+    }
+
+    private void expire(BatchKey key, Batch batch) {
+        if (lanes == null) {
+            flush(key, batch);
+            return;
+        }
+        try {
+            lanes.execute(key.roomId(), () -> flush(key, batch));
+        } catch (RejectedExecutionException e) {
+            // Lanes already stopped; shutdown() sends whatever is still pending
+            logger.debug("Lane rejected ICE candidate batch for room {}", key.roomId());
+        }
+    }
+
+    private void flush(BatchKey key, Batch batch) {
+        // Loses the race cleanly if the batch was already shipped because it filled up
+        if (pending.remove(key, batch)) {
+            deliver(key, batch);
+        }
+    }
+
+    private void deliver(BatchKey key, Batch batch) {
+        try {
+            batch.sink.accept(new IceCandidateBatchMessage(key.roomId(), key.userId(), key.targetUserId(), batch.candidates));
+        } catch (Exception e) {
+            logger.error("Error delivering ICE candidate batch from {} to {} in room {}",
+                    key.userId(), key.targetUserId(), key.roomId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pending.forEach((key, batch) -> flush(key, batch));
+    }
+
+    private record BatchKey(String roomId, String userId, String targetUserId) {}
+
+    private static final class Batch {
+        private final List<RawPayload> candidates = new ArrayList<>();
+        private final Consumer<IceCandidateBatchMessage> sink;
+        private ScheduledFuture<?> flushTask;
+
+        private Batch(Consumer<IceCandidateBatchMessage> sink) {
+            this.sink = sink;
+        }
+    }
+}
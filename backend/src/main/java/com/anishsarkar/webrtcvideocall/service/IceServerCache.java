@@ -0,0 +1,161 @@
+package com.anishsarkar.webrtcvideocall.service;
+
+import com.anishsarkar.webrtcvideocall.dto.IceServer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The ICE server list handed to clients on join, one per region, built ahead of time. TURN
+ * servers get a credential shared by every client until it is replaced; a new one is
+ * computed in the background once half of the current one's lifetime has passed, so a join
+ * only ever reads a finished list and every client gets at least half a lifetime out of it.
+ */
+@Service
+public class IceServerCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(IceServerCache.class);
+
+    public static final String DEFAULT_REGION = "default";
+    // "eu=turn:..." names a region; URLs themselves always have a colon before any '='
+    private static final Pattern REGION = Pattern.compile("^([\\w-]+)=(.*)$");
+
+    private final List<String> stunUrls;
+    private final Map<String, List<String>> turnUrls;
+    private final TurnCredentials credentials;
+    private final long ttlSeconds;
+    private final String username;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+    // Replaced whole on every refresh
+    private volatile Map<String, List<IceServer>> servers;
+    private volatile long expiresAtMillis = Long.MAX_VALUE;
+
+    @Autowired
+    public IceServerCache(@Value("${signaling.ice.stun-urls:stun:stun.l.google.com:19302,stun:stun1.l.google.com:19302}") String stunUrls,
+                          @Value("${signaling.ice.turn.urls:}") String turnUrls,
+                          @Value("${signaling.ice.turn.secret:}") String secret,
+                          @Value("${signaling.ice.turn.ttl-seconds:86400}") long ttlSeconds,
+                          @Value("${signaling.ice.turn.username:webrtc}") String username) {
+        this(stunUrls, turnUrls, secret, ttlSeconds, username, System::currentTimeMillis);
+    }
+
+    IceServerCache(String stunUrls, String turnUrls, String secret, long ttlSeconds, String username, LongSupplier clock) {
+        this.stunUrls = split(stunUrls, ",");
+        this.turnUrls = parseTurnUrls(turnUrls);
+        this.credentials = secret.isBlank() || this.turnUrls.isEmpty() ? null : new TurnCredentials(secret);
+        this.ttlSeconds = ttlSeconds;
+        this.username = username;
+        this.clock = clock;
+        refresh();
+        if (credentials != null) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ice-credentials");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1, ttlSeconds / 2);
+            scheduler.scheduleAtFixedRate(this::refreshQuietly, period, period, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /** The list for the region, or the default one when the region is missing or unknown. */
+    public List<IceServer> servers(String region) {
+        // Only if the refresher has fallen a whole half lifetime behind
+        if (clock.getAsLong() >= expiresAtMillis) {
+            refresh();
+        }
+        Map<String, List<IceServer>> current = servers;
+        List<IceServer> list = region != null ? current.get(region) : null;
+        return list != null ? list : current.get(DEFAULT_REGION);
+    }
+
+    synchronized void refresh() {
+        long now = clock.getAsLong();
+        IceServer turn = null;
+        if (credentials != null) {
+            long expiresAt = TimeUnit.MILLISECONDS.toSeconds(now) + ttlSeconds;
+            turn = credentials.issue(List.of(), expiresAt, username);
+            // Handed out until half its lifetime is left
+            expiresAtMillis = now + TimeUnit.SECONDS.toMillis(ttlSeconds) / 2;
+        }
+        Map<String, List<IceServer>> next = new HashMap<>();
+        next.put(DEFAULT_REGION, list(turn, turnUrls.get(DEFAULT_REGION)));
+        for (Map.Entry<String, List<String>> region : turnUrls.entrySet()) {
+            next.put(region.getKey(), list(turn, region.getValue()));
+        }
+        servers = Map.copyOf(next);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+            logger.debug("Refreshed TURN credentials for {} regions", turnUrls.size());
+        } catch (RuntimeException e) {
+            // Keep the schedule; joins refresh on their own once the current credential runs out
+            logger.error("Failed to refresh TURN credentials", e);
+        }
+    }
+
+    private List<IceServer> list(IceServer turn, List<String> urls) {
+        List<IceServer> list = new ArrayList<>(2);
+        if (!stunUrls.isEmpty()) {
+            list.add(new IceServer(stunUrls, null, null));
+        }
+        if (turn != null && urls != null) {
+            list.add(new IceServer(urls, turn.getUsername(), turn.getCredential()));
+        }
+        return List.copyOf(list);
+    }
+
+    /**
+     * {@code turn:a:3478 turns:a:5349,eu=turn:eu:3478}: regions separated by commas, URLs by
+     * spaces, and a region with no name is the default.
+     */
+    static Map<String, List<String>> parseTurnUrls(String spec) {
+        Map<String, List<String>> regions = new LinkedHashMap<>();
+        for (String entry : split(spec, ",")) {
+            Matcher matcher = REGION.matcher(entry);
+            String region = matcher.matches() ? matcher.group(1) : DEFAULT_REGION;
+            List<String> urls = split(matcher.matches() ? matcher.group(2) : entry, "\\s+");
+            if (urls.isEmpty() || regions.putIfAbsent(region, urls) != null) {
+                throw new IllegalArgumentException("Bad or repeated TURN region: " + entry);
+            }
+        }
+        return regions;
+    }
+
+    private static List<String> split(String value, String separator) {
+        List<String> parts = new ArrayList<>();
+        for (String part : value.trim().split(separator)) {
+            if (!part.isBlank()) {
+                parts.add(part.trim());
+            }
+        }
+        return List.copyOf(parts);
+    }
+}
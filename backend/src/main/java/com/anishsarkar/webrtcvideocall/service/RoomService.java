@@ -1,46 +1,98 @@
 package com.anishsarkar.webrtcvideocall.service;
 
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import com.anishsarkar.webrtcvideocall.journal.CallJournal;
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.JoinResult;
+import com.anishsarkar.webrtcvideocall.registry.LeaveResult;
+import com.anishsarkar.webrtcvideocall.registry.RoomRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class RoomService {
     
-    private final Map<String, Set<String>> rooms = new ConcurrentHashMap<>();
-    private final Map<String, String> userNames = new ConcurrentHashMap<>();
+    private final RoomRegistry registry;
+    private final CallJournal callJournal;
 
-    public void joinRoom(String roomId, String userId, String userName) {
-        rooms.computeIfAbsent(roomId, k -> ConcurrentHashMap.newKeySet()).add(userId);
-        userNames.put(userId, userName);
+    public RoomService() {
+        this(new InMemoryRoomRegistry());
     }
 
-    public void leaveRoom(String roomId, String userId) {
-        Set<String> roomUsers = rooms.get(roomId);
-        if (roomUsers != null) {
-            roomUsers.remove(userId);
-            if (roomUsers.isEmpty()) {
-                rooms.remove(roomId);
-            }
+    public RoomService(RoomRegistry registry) {
+        this(registry, CallJournal.disabled());
+    }
+
+    @Autowired
+    public RoomService(RoomRegistry registry, CallJournal callJournal) {
+        this.registry = registry;
+        this.callJournal = callJournal;
+    }
+
+    /** @return the room's membership version after the join, or why it was refused */
+    public JoinResult joinRoom(String roomId, String userId, String userName) {
+        JoinResult result = registry.join(roomId, userId, userName);
+        if (result.isJoined()) {
+            callJournal.join(roomId, userId);
         }
-        userNames.remove(userId);
+        return result;
+    }
+
+    /** @return the room's membership version after the leave */
+    public long leaveRoom(String roomId, String userId) {
+        LeaveResult result = registry.leave(roomId, userId);
+        // Repeated leaves, or an eviction of a user already gone, are not journaled again
+        if (result.left()) {
+            callJournal.leave(roomId, userId);
+        }
+        return result.version();
     }
 
     public Set<String> getRoomUsers(String roomId) {
-        return rooms.getOrDefault(roomId, Collections.emptySet());
+        return registry.getUsers(roomId);
+    }
+
+    /** User ids of the room mapped to display names. */
+    public Map<String, String> getRoomMembers(String roomId) {
+        return registry.getMembers(roomId);
+    }
+
+    public String getUserName(String roomId, String userId) {
+        return registry.getUserName(roomId, userId);
     }
 
-    public String getUserName(String userId) {
-        return userNames.get(userId);
+    public long getRoomVersion(String roomId) {
+        return registry.getVersion(roomId);
     }
 
     public boolean isUserInRoom(String roomId, String userId) {
-        Set<String> roomUsers = rooms.get(roomId);
-        return roomUsers != null && roomUsers.contains(userId);
+        return registry.isMember(roomId, userId);
+    }
+
+    public Topology getRoomTopology(String roomId) {
+        return registry.getTopology(roomId);
+    }
+
+    /** @return whether this call moved the room to the forwarder */
+    public boolean promoteToSfu(String roomId) {
+        return registry.promoteToSfu(roomId);
     }
 
     public int getRoomSize(String roomId) {
-        Set<String> roomUsers = rooms.get(roomId);
-        return roomUsers != null ? roomUsers.size() : 0;
+        return registry.size(roomId);
+    }
+
+    public int getRoomCount() {
+        return registry.roomCount();
+    }
+
+    public int getUserCount() {
+        return registry.userCount();
+    }
+
+    /** @return how many memberless rooms were dropped */
+    public int removeEmptyRooms() {
+        return registry.removeEmptyRooms();
     }
-}
\ No newline at end of file
+}
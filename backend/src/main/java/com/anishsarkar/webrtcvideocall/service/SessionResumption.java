@@ -0,0 +1,171 @@
+package com.anishsarkar.webrtcvideocall.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resume tokens and the grace window that goes with them. Every join hands the user a token;
+ * when the user's socket closes, the room membership is held for the grace window instead of
+ * being dropped, and a new session presenting the token within it takes the membership over
+ * without the rest of the room seeing a leave and a join. Tokens and held memberships live on
+ * the node that issued them, so with several nodes a reconnect has to land on the same one
+ * to resume.
+ */
+@Service
+public class SessionResumption {
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private final long graceMillis;
+    private final ScheduledExecutorService scheduler;
+    // Guarded by this; joins and disconnects are rare enough for one lock
+    private final Map<String, Member> members = new HashMap<>();
+    private final Map<Member, String> tokens = new HashMap<>();
+    private final Map<String, ScheduledFuture<?>> held = new HashMap<>();
+
+    public SessionResumption(@Value("${signaling.session.resume-grace-ms:15000}") long graceMillis) {
+        this.graceMillis = graceMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-resume");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * New token for a user who has just joined the room. A token issued earlier for the same
+     * membership stops working, and a membership held for it is kept.
+     */
+    public synchronized String issue(String roomId, String userId) {
+        String token = newToken();
+        Member member = new Member(roomId, userId);
+        members.put(token, member);
+        String previous = tokens.put(member, token);
+        if (previous != null) {
+            drop(previous);
+        }
+        return token;
+    }
+
+    /**
+     * Called when the user's session has closed: runs {@code removal} once the grace window
+     * has passed without the token being presented, or right away if there is no window or no
+     * token to resume with.
+     */
+    public void hold(String roomId, String userId, Runnable removal) {
+        synchronized (this) {
+            String token = tokens.get(new Member(roomId, userId));
+            if (graceMillis > 0 && token != null) {
+                ScheduledFuture<?> previous = held.put(token,
+                        scheduler.schedule(() -> expire(token, removal), graceMillis, TimeUnit.MILLISECONDS));
+                if (previous != null) {
+                    previous.cancel(false);
+                }
+                return;
+            }
+            revoke(roomId, userId);
+        }
+        removal.run();
+    }
+
+    /**
+     * Takes over a membership with its token. Succeeds for a held membership and also for one
+     * whose old session has not been noticed as closed yet.
+     */
+    public synchronized boolean resume(String token, String roomId, String userId) {
+        Member member = token != null ? members.get(token) : null;
+        if (member == null || !member.equals(new Member(roomId, userId))) {
+            return false;
+        }
+        ScheduledFuture<?> pending = held.remove(token);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        return true;
+    }
+
+    /** The user has left the room for good. */
+    public synchronized void revoke(String roomId, String userId) {
+        String token = tokens.remove(new Member(roomId, userId));
+        if (token != null) {
+            drop(token);
+        }
+    }
+
+    /** Every token still valid, for a snapshot of the node's rooms. */
+    public synchronized List<IssuedToken> issued() {
+        List<IssuedToken> issued = new ArrayList<>(tokens.size());
+        tokens.forEach((member, token) -> issued.add(new IssuedToken(member.roomId(), member.userId(), token)));
+        return issued;
+    }
+
+    /**
+     * Holds a membership restored from a snapshot as if its session had just closed: the token,
+     * when there is one, resumes it within {@code graceMillis}, otherwise {@code removal} runs.
+     */
+    public synchronized void restore(String roomId, String userId, String token, long graceMillis, Runnable removal) {
+        Member member = new Member(roomId, userId);
+        String restored = token != null ? token : newToken();
+        members.put(restored, member);
+        String previous = tokens.put(member, restored);
+        if (previous != null && !previous.equals(restored)) {
+            drop(previous);
+        }
+        ScheduledFuture<?> pending = held.put(restored,
+                scheduler.schedule(() -> expire(restored, removal), graceMillis, TimeUnit.MILLISECONDS));
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void expire(String token, Runnable removal) {
+        synchronized (this) {
+            // Resumed, rejoined or revoked in the meantime
+            if (held.remove(token) == null) {
+                return;
+            }
+            Member member = members.remove(token);
+            if (member != null) {
+                tokens.remove(member, token);
+            }
+        }
+        removal.run();
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private void drop(String token) {
+        members.remove(token);
+        ScheduledFuture<?> pending = held.remove(token);
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    public record IssuedToken(String roomId, String userId, String token) {
+    }
+
+    private record Member(String roomId, String userId) {
+    }
+}
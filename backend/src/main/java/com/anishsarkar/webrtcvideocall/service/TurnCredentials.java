@@ -0,0 +1,43 @@
+package com.anishsarkar.webrtcvideocall.service;
+
+import com.anishsarkar.webrtcvideocall.dto.IceServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Credentials in the form of the TURN REST API: the username is the expiry time in Unix
+ * seconds and a name, the credential the Base64 HMAC-SHA1 of the username under the secret
+ * the TURN servers are configured with ({@code static-auth-secret} in coturn). Nothing is
+ * stored anywhere; the TURN server recomputes the HMAC and checks the expiry itself.
+ */
+public class TurnCredentials {
+
+    private static final String ALGORITHM = "HmacSHA1";
+
+    // Mac instances are not thread-safe, and looking one up costs more than using it
+    private final ThreadLocal<Mac> macs;
+
+    public TurnCredentials(String secret) {
+        SecretKeySpec key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot set up " + ALGORITHM, e);
+            }
+        });
+    }
+
+    public IceServer issue(List<String> urls, long expiresAtSeconds, String name) {
+        String username = expiresAtSeconds + ":" + name;
+        byte[] hmac = macs.get().doFinal(username.getBytes(StandardCharsets.UTF_8));
+        return new IceServer(urls, username, Base64.getEncoder().encodeToString(hmac));
+    }
+}
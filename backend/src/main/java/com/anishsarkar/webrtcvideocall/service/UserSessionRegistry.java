@@ -0,0 +1,27 @@
+package com.anishsarkar.webrtcvideocall.service;
+
+import com.anishsarkar.webrtcvideocall.registry.RoomRegistry;
+import org.springframework.stereotype.Service;
+
+@Service
+public class UserSessionRegistry {
+
+    // (roomId, userId) -> STOMP session id of the socket that joined the room, shared across nodes when clustered
+    private final RoomRegistry registry;
+
+    public UserSessionRegistry(RoomRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void register(String roomId, String userId, String sessionId) {
+        registry.registerSession(roomId, userId, sessionId);
+    }
+
+    public void unregister(String roomId, String userId, String sessionId) {
+        registry.unregisterSession(roomId, userId, sessionId);
+    }
+
+    public String getSessionId(String roomId, String userId) {
+        return registry.getSessionId(roomId, userId);
+    }
+}
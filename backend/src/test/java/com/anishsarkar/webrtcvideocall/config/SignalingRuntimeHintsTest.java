@@ -0,0 +1,29 @@
+package com.anishsarkar.webrtcvideocall.config;
+
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceServer;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SignalingRuntimeHintsTest {
+
+    @Test
+    void everyMessageTypeAndWhatItCarriesCanBeBound() throws Exception {
+        RuntimeHints hints = new RuntimeHints();
+        new SignalingRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        for (JsonSubTypes.Type subtype : BaseMessage.class.getAnnotation(JsonSubTypes.class).value()) {
+            assertTrue(RuntimeHintsPredicates.reflection().onType(subtype.value()).test(hints),
+                    subtype.name() + " has no reflection hint");
+            assertTrue(RuntimeHintsPredicates.reflection().onConstructor(subtype.value().getDeclaredConstructor()).test(hints),
+                    subtype.name() + " cannot be created");
+        }
+        assertTrue(RuntimeHintsPredicates.reflection().onType(IceServer.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Class.forName(RawPayload.class.getName() + "$Deserializer")).test(hints));
+    }
+}
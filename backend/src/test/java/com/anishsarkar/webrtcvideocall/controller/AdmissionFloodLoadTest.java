@@ -0,0 +1,182 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * One client floods its room with ICE candidates as fast as its socket allows while a pair
+ * in another room exchanges a steady trickle of them; the quiet pair's relay latency is
+ * measured with admission control on and off.
+ */
+class AdmissionFloodLoadTest {
+
+    private static final int PROBES = 200;
+    private static final long PROBE_INTERVAL_MILLIS = 20;
+    private static final long P99_BOUND_MILLIS = 100;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void floodingClientDoesNotSlowDownOtherRooms() throws Exception {
+        FloodResult unlimited = runFlood(false);
+        FloodResult limited = runFlood(true);
+
+        System.out.printf("quiet room p99 under flood: %.1f ms without admission control (%d of %d flood frames relayed), "
+                        + "%.1f ms with it (%d of %d relayed, %d errors)%n",
+                unlimited.p99Millis(), unlimited.relayed, unlimited.sent,
+                limited.p99Millis(), limited.relayed, limited.sent, limited.errors);
+
+        assertEquals(PROBES, limited.latencies.getTotalCount(), "not all probes delivered");
+        assertTrue(limited.p99Millis() <= P99_BOUND_MILLIS, "p99 " + limited.p99Millis() + " ms");
+        assertTrue(limited.errors > 0, "flooder was never told it is rate limited");
+        assertTrue(limited.relayed * 10 < limited.sent, "relayed " + limited.relayed + " of " + limited.sent);
+    }
+
+    private FloodResult runFlood(boolean admission) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(VideoCallApplication.class)
+                .run("--server.port=0", "--signaling.ice.batch-window-ms=0", "--signaling.admission.enabled=" + admission)) {
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+
+            WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+            stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+                addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+            }});
+
+            Histogram latencies = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+            AtomicLong relayed = new AtomicLong();
+            AtomicLong errors = new AtomicLong();
+            List<StompSession> sessions = new ArrayList<>();
+            try {
+                StompSession flooder = join(stompClient, port, "flood-room", "flooder", sessions, node -> {
+                    if ("ERROR".equals(node.path("type").asText())) {
+                        errors.incrementAndGet();
+                    }
+                });
+                join(stompClient, port, "flood-room", "victim", sessions, node -> {
+                    if ("ICE_CANDIDATE".equals(node.path("type").asText())) {
+                        relayed.incrementAndGet();
+                    }
+                });
+                StompSession prober = join(stompClient, port, "quiet-room", "prober", sessions, node -> {});
+                join(stompClient, port, "quiet-room", "listener", sessions, node -> {
+                    if ("ICE_CANDIDATE".equals(node.path("type").asText())) {
+                        long sentAt = node.path("candidate").path("sentAt").asLong();
+                        synchronized (latencies) {
+                            latencies.recordValue(System.nanoTime() - sentAt);
+                        }
+                    }
+                });
+                // Joins are fire-and-forget here; let them land before the flood
+                Thread.sleep(500);
+
+                AtomicBoolean flooding = new AtomicBoolean(true);
+                AtomicLong sent = new AtomicLong();
+                Thread flood = Thread.startVirtualThread(() -> {
+                    byte[] frame = json(candidate("flood-room", "flooder", "victim", 0));
+                    while (flooding.get()) {
+                        send(flooder, "/app/ice-candidate", "flood-room", frame);
+                        sent.incrementAndGet();
+                    }
+                });
+
+                for (int i = 0; i < PROBES; i++) {
+                    Thread.sleep(PROBE_INTERVAL_MILLIS);
+                    send(prober, "/app/ice-candidate", "quiet-room", json(candidate("quiet-room", "prober", "listener", System.nanoTime())));
+                }
+                flooding.set(false);
+                flood.join();
+
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while (latencies.getTotalCount() < PROBES && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+                return new FloodResult(latencies, sent.get(), relayed.get(), errors.get());
+            } finally {
+                sessions.forEach(StompSession::disconnect);
+            }
+        }
+    }
+
+    private StompSession join(WebSocketStompClient stompClient, int port, String roomId, String userId,
+                              List<StompSession> sessions, Consumer<JsonNode> onSignal) throws Exception {
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        session.subscribe("/user/queue/signal", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    onSignal.accept(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        send(session, "/app/join", roomId, json(new JoinRoomMessage(roomId, userId, userId)));
+        sessions.add(session);
+        return session;
+    }
+
+    private IceCandidateMessage candidate(String roomId, String from, String to, long sentAt) {
+        return new IceCandidateMessage(roomId, from, to, RawPayload.of(objectMapper.createObjectNode()
+                .put("candidate", "candidate:1 1 udp 2122260223 192.168.1.20 50000 typ host")
+                .put("sdpMid", "0")
+                .put("sdpMLineIndex", 0)
+                .put("sentAt", sentAt)));
+    }
+
+    private byte[] json(BaseMessage message) {
+        try {
+            return objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(message);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void send(StompSession session, String destination, String roomId, byte[] payload) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        // As the frontend does, so the room is known before the body is parsed
+        headers.set("roomId", roomId);
+        session.send(headers, payload);
+    }
+
+    private record FloodResult(Histogram latencies, long sent, long relayed, long errors) {
+        double p99Millis() {
+            return latencies.getValueAtPercentile(99) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.messaging.NodeDrain;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A node holding a few dozen rooms is drained while another keeps running; every client
+ * follows its MIGRATE to the surviving node, and the peak rate of joins arriving there is
+ * measured with the reconnects spread out and with all of them at once.
+ */
+class DrainMigrationTest {
+
+    private static final int CLIENTS = 60;
+    private static final int ROOMS = 20;
+    private static final long SPREAD_MILLIS = 2000;
+    private static final long WINDOW_MILLIS = 200;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void drainedRoomsReachTheOtherNodeAFewAtATime() throws Exception {
+        MigrationResult herd = migrate(0);
+        MigrationResult spread = migrate(SPREAD_MILLIS);
+
+        System.out.printf("peak joins on the surviving node per %d ms: %d with every client told to reconnect at once, "
+                        + "%d with reconnects spread over %d ms (%d clients, drain quiet after %d ms)%n",
+                WINDOW_MILLIS, herd.peak, spread.peak, SPREAD_MILLIS, CLIENTS, spread.quietMillis);
+
+        // Uniform over the spread that is CLIENTS * WINDOW / SPREAD a window on average
+        long expected = CLIENTS * WINDOW_MILLIS / SPREAD_MILLIS;
+        assertTrue(spread.peak <= expected * 3, "peak " + spread.peak + " per window, expected about " + expected);
+        assertTrue(spread.peak < herd.peak, "spreading did not lower the peak: " + spread.peak + " vs " + herd.peak);
+    }
+
+    private MigrationResult migrate(long spreadMillis) throws Exception {
+        try (ConfigurableApplicationContext draining = start("--signaling.drain.migrate-spread-ms=" + spreadMillis);
+             ConfigurableApplicationContext surviving = start()) {
+            WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+            stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+                addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+            }});
+            ScheduledExecutorService reconnects = Executors.newScheduledThreadPool(8);
+            List<Long> rejoinedAt = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch joined = new CountDownLatch(CLIENTS);
+            CountDownLatch rejoined = new CountDownLatch(CLIENTS);
+            List<StompSession> sessions = Collections.synchronizedList(new ArrayList<>());
+            try {
+                for (int i = 0; i < CLIENTS; i++) {
+                    String roomId = "room-" + (i % ROOMS);
+                    String userId = "user-" + i;
+                    StompSession[] first = new StompSession[1];
+                    first[0] = join(stompClient, port(draining), roomId, userId, sessions, node -> {
+                        switch (node.path("type").asText()) {
+                            case "ROOM_SNAPSHOT" -> joined.countDown();
+                            // As the frontend does: leave the draining node, come back after the delay
+                            case "MIGRATE" -> reconnects.schedule(() -> {
+                                first[0].disconnect();
+                                join(stompClient, port(surviving), roomId, userId, sessions, again -> {
+                                    if ("ROOM_SNAPSHOT".equals(again.path("type").asText())) {
+                                        rejoinedAt.add(System.nanoTime());
+                                        rejoined.countDown();
+                                    }
+                                });
+                                return null;
+                            }, node.path("reconnectDelayMs").asLong(), TimeUnit.MILLISECONDS);
+                            default -> { }
+                        }
+                    });
+                }
+                assertTrue(joined.await(10, TimeUnit.SECONDS), "not everyone joined the first node");
+
+                long drainStarted = System.nanoTime();
+                HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:" + managementPort(draining) + "/actuator/drain"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(), HttpResponse.BodyHandlers.ofString());
+                assertEquals(200, response.statusCode(), response.body());
+                assertEquals(ReadinessState.REFUSING_TRAFFIC, draining.getBean(ApplicationAvailability.class).getReadinessState());
+
+                // Latecomers are sent on their way too
+                BlockingQueue<JsonNode> late = new LinkedBlockingQueue<>();
+                join(stompClient, port(draining), "room-late", "late", sessions, late::add);
+                JsonNode turnedAway = late.poll(5, TimeUnit.SECONDS);
+                assertNotNull(turnedAway);
+                assertEquals("MIGRATE", turnedAway.path("type").asText());
+
+                assertTrue(rejoined.await(SPREAD_MILLIS + 15_000, TimeUnit.MILLISECONDS),
+                        rejoined.getCount() + " clients never reached the surviving node");
+                assertTrue(draining.getBean(NodeDrain.class).awaitQuiet(5000), "drained node never went quiet");
+                long quietMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStarted);
+                return new MigrationResult(peak(rejoinedAt), quietMillis);
+            } finally {
+                reconnects.shutdownNow();
+                sessions.forEach(session -> {
+                    if (session.isConnected()) {
+                        session.disconnect();
+                    }
+                });
+            }
+        }
+    }
+
+    // Most joins inside any window of WINDOW_MILLIS
+    private static int peak(List<Long> times) {
+        List<Long> sorted = new ArrayList<>(times);
+        Collections.sort(sorted);
+        long window = TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+        int peak = 0;
+        for (int start = 0, end = 0; end < sorted.size(); end++) {
+            while (sorted.get(end) - sorted.get(start) >= window) {
+                start++;
+            }
+            peak = Math.max(peak, end - start + 1);
+        }
+        return peak;
+    }
+
+    private static ConfigurableApplicationContext start(String... args) {
+        List<String> all = new ArrayList<>(List.of(args));
+        all.add("--server.port=0");
+        return new SpringApplicationBuilder(VideoCallApplication.class).run(all.toArray(String[]::new));
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    private static int managementPort(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.management.port"));
+    }
+
+    private StompSession join(WebSocketStompClient stompClient, int port, String roomId, String userId,
+                              List<StompSession> sessions, Consumer<JsonNode> onSignal) throws Exception {
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        session.subscribe("/user/queue/signal", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    onSignal.accept(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/join");
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.set("roomId", roomId);
+        session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(new JoinRoomMessage(roomId, userId, userId)));
+        sessions.add(session);
+        return session;
+    }
+
+    private record MigrationResult(int peak, long quietMillis) {
+    }
+}
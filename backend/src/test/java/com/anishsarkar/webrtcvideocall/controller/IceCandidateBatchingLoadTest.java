@@ -0,0 +1,168 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Replays the candidate burst of a 4-peer room join (every peer trickles candidates to
+ * every other peer) against a backend with and without ICE batching, counting the
+ * frames delivered and the process CPU time spent.
+ */
+class IceCandidateBatchingLoadTest {
+
+    private static final int PEERS = 4;
+    private static final int CANDIDATES_PER_PAIR = 30;
+    private static final String ROOM = "ice-room";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void batchingReducesFramesDuringRoomJoin() throws Exception {
+        int totalCandidates = PEERS * (PEERS - 1) * CANDIDATES_PER_PAIR;
+
+        BurstResult unbatched = runJoinBurst(0);
+        BurstResult batched = runJoinBurst(20);
+
+        System.out.printf("%d candidates: unbatched %d frames / %.1f ms CPU, batched %d frames / %.1f ms CPU%n",
+                totalCandidates, unbatched.frames, unbatched.cpuNanos / 1e6, batched.frames, batched.cpuNanos / 1e6);
+
+        assertEquals(totalCandidates, unbatched.frames);
+        assertTrue(batched.frames * 4 <= totalCandidates,
+                "expected at least 4x fewer frames, got " + batched.frames);
+    }
+
+    private BurstResult runJoinBurst(long windowMillis) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(VideoCallApplication.class)
+                .run("--server.port=0", "--signaling.ice.batch-window-ms=" + windowMillis)) {
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+
+            WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+            stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+                addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+            }});
+
+            AtomicLong frames = new AtomicLong();
+            AtomicLong candidates = new AtomicLong();
+            List<StompSession> sessions = new ArrayList<>();
+            try {
+                for (int i = 0; i < PEERS; i++) {
+                    StompSession session = stompClient
+                            .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                            .get(5, TimeUnit.SECONDS);
+                    session.subscribe("/user/queue/signal", new StompFrameHandler() {
+                        @Override
+                        public Type getPayloadType(StompHeaders headers) {
+                            return byte[].class;
+                        }
+
+                        @Override
+                        public void handleFrame(StompHeaders headers, Object payload) {
+                            // The queue also carries this session's room snapshot
+                            long count = countCandidates((byte[]) payload);
+                            if (count > 0) {
+                                frames.incrementAndGet();
+                                candidates.addAndGet(count);
+                            }
+                        }
+                    });
+                    send(session, "/app/join", new JoinRoomMessage(ROOM, "peer" + i, "Peer " + i));
+                    sessions.add(session);
+                }
+                // Joins are fire-and-forget here; let them land before the burst
+                Thread.sleep(500);
+
+                long expected = (long) PEERS * (PEERS - 1) * CANDIDATES_PER_PAIR;
+                long cpuBefore = processCpuTime();
+
+                // Each peer gathers its candidates for all of its peer connections at once
+                List<Thread> senders = new ArrayList<>();
+                for (int from = 0; from < PEERS; from++) {
+                    int sender = from;
+                    senders.add(Thread.startVirtualThread(() -> {
+                        for (int to = 0; to < PEERS; to++) {
+                            for (int c = 0; to != sender && c < CANDIDATES_PER_PAIR; c++) {
+                                send(sessions.get(sender), "/app/ice-candidate", candidate("peer" + sender, "peer" + to, c));
+                            }
+                        }
+                    }));
+                }
+                for (Thread thread : senders) {
+                    thread.join();
+                }
+
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+                while (candidates.get() < expected && System.nanoTime() < deadline) {
+                    Thread.sleep(5);
+                }
+                long cpu = processCpuTime() - cpuBefore;
+
+                assertEquals(expected, candidates.get(), "not all candidates delivered");
+                return new BurstResult(frames.get(), cpu);
+            } finally {
+                sessions.forEach(StompSession::disconnect);
+            }
+        }
+    }
+
+    private IceCandidateMessage candidate(String from, String to, int index) {
+        return new IceCandidateMessage(ROOM, from, to, RawPayload.of(objectMapper.createObjectNode()
+                .put("candidate", "candidate:" + index + " 1 udp 2122260223 192.168.1.20 " + (50000 + index) + " typ host")
+                .put("sdpMid", "0")
+                .put("sdpMLineIndex", 0)));
+    }
+
+    private long countCandidates(byte[] payload) {
+        try {
+            JsonNode node = objectMapper.readTree(payload);
+            return switch (node.path("type").asText()) {
+                case "ICE_CANDIDATE" -> 1;
+                case "ICE_CANDIDATE_BATCH" -> node.path("candidates").size();
+                default -> 0;
+            };
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private void send(StompSession session, String destination, Object payload) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        try {
+            session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(payload));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long processCpuTime() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    private record BurstResult(long frames, long cpuNanos) {}
+}
@@ -0,0 +1,137 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.AnswerMessage;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A peer trickles a few candidates and answers straight away, well inside the batch window;
+ * the target must still see the candidates before the answer.
+ */
+class IceCandidateOrderingTest {
+
+    private static final int CANDIDATES = 5;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ConfigurableApplicationContext context;
+    private WebSocketStompClient stompClient;
+    private int port;
+
+    @BeforeEach
+    void startServer() {
+        context = new SpringApplicationBuilder(VideoCallApplication.class)
+                .run("--server.port=0", "--signaling.ice.batch-window-ms=500", "--signaling.ice.batch-max-size=100");
+        port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+        }});
+    }
+
+    @AfterEach
+    void stopServer() {
+        context.close();
+    }
+
+    @Test
+    void candidatesTrickledBeforeAnAnswerArriveBeforeIt() throws Exception {
+        Client bob = connect("bob");
+        Client alice = connect("alice");
+        bob.next("ROOM_SNAPSHOT");
+        alice.next("ROOM_SNAPSHOT");
+
+        for (int i = 0; i < CANDIDATES; i++) {
+            send(alice.session(), "/app/ice-candidate", new IceCandidateMessage("room1", "alice", "bob",
+                    RawPayload.of(objectMapper.createObjectNode().put("candidate", "candidate:" + i).put("sdpMLineIndex", 0))));
+        }
+        send(alice.session(), "/app/answer", new AnswerMessage("room1", "alice", "bob",
+                RawPayload.of(objectMapper.createObjectNode().put("sdp", "v=0"))));
+
+        int candidates = 0;
+        while (candidates < CANDIDATES) {
+            JsonNode frame = bob.next("ICE_CANDIDATE_BATCH", "ANSWER");
+            assertEquals("ICE_CANDIDATE_BATCH", frame.path("type").asText(),
+                    "answer overtook " + (CANDIDATES - candidates) + " candidates");
+            candidates += frame.path("candidates").size();
+        }
+        assertEquals(CANDIDATES, candidates);
+        assertEquals("ANSWER", bob.next("ICE_CANDIDATE_BATCH", "ANSWER").path("type").asText());
+    }
+
+    private Client connect(String userId) throws Exception {
+        BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        session.subscribe("/user/queue/signal", new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    received.add(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        send(session, "/app/join", new JoinRoomMessage("room1", userId, userId));
+        return new Client(session, received);
+    }
+
+    private void send(StompSession session, String destination, BaseMessage message) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.set("roomId", "room1");
+        try {
+            session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(message));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Client(StompSession session, BlockingQueue<JsonNode> received) {
+
+        /** Next frame of one of the given types, skipping everything else. */
+        JsonNode next(String... types) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                JsonNode node = received.poll(100, TimeUnit.MILLISECONDS);
+                if (node != null && List.of(types).contains(node.path("type").asText())) {
+                    return node;
+                }
+            }
+            throw new AssertionError("no " + String.join("/", types) + " within 5s");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.LeaveRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A client drops its socket and comes back with its resume token, once inside the grace
+ * window and once after it, while the other member of the room watches what it is told.
+ */
+class SessionResumeTest {
+
+    private static final long GRACE_MILLIS = 500;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ConfigurableApplicationContext context;
+    private WebSocketStompClient stompClient;
+    private int port;
+
+    @BeforeEach
+    void startServer() {
+        context = new SpringApplicationBuilder(VideoCallApplication.class)
+                .run("--server.port=0", "--signaling.session.resume-grace-ms=" + GRACE_MILLIS);
+        port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+        }});
+    }
+
+    @AfterEach
+    void stopServer() {
+        context.close();
+    }
+
+    @Test
+    void reconnectWithinTheWindowIsInvisibleToTheRoom() throws Exception {
+        Client bob = connect();
+        join(bob, "bob", null);
+        Client alice = connect();
+        join(alice, "alice", null);
+        JsonNode snapshot = alice.next("ROOM_SNAPSHOT", "alice");
+        String token = snapshot.path("resumeToken").asText();
+        assertFalse(token.isEmpty());
+        bob.next("USER_JOINED", "alice");
+
+        alice.session.disconnect();
+        Thread.sleep(GRACE_MILLIS / 5);
+        Client aliceAgain = connect();
+        join(aliceAgain, "alice", token);
+
+        JsonNode resumed = aliceAgain.next("ROOM_SNAPSHOT", "alice");
+        assertEquals(token, resumed.path("resumeToken").asText());
+        assertEquals(snapshot.path("version").asLong(), resumed.path("version").asLong());
+        assertTrue(resumed.path("members").has("bob"));
+
+        // Bob's offer reaches the new socket, and the window passing changes nothing
+        send(bob, "/app/offer", new OfferMessage("room1", "bob", "alice", RawPayload.of(objectMapper.createObjectNode().put("sdp", "v=0"))));
+        assertEquals("bob", aliceAgain.next("OFFER", "bob").path("userId").asText());
+        Thread.sleep(GRACE_MILLIS * 2);
+        assertNull(bob.poll(200), "bob was told about the reconnect");
+    }
+
+    @Test
+    void reconnectAfterTheWindowIsAFreshJoin() throws Exception {
+        Client bob = connect();
+        join(bob, "bob", null);
+        Client alice = connect();
+        join(alice, "alice", null);
+        String token = alice.next("ROOM_SNAPSHOT", "alice").path("resumeToken").asText();
+        bob.next("USER_JOINED", "alice");
+
+        alice.session.disconnect();
+        // Held for the window, then let go
+        long disconnected = System.nanoTime();
+        bob.next("USER_LEFT", "alice");
+        assertTrue(System.nanoTime() - disconnected >= TimeUnit.MILLISECONDS.toNanos(GRACE_MILLIS / 2));
+
+        Client aliceAgain = connect();
+        join(aliceAgain, "alice", token);
+        JsonNode snapshot = aliceAgain.next("ROOM_SNAPSHOT", "alice");
+        assertNotEquals(token, snapshot.path("resumeToken").asText());
+        bob.next("USER_JOINED", "alice");
+    }
+
+    @Test
+    void leaveThenCloseIsOnlyOneLeave() throws Exception {
+        Client bob = connect();
+        join(bob, "bob", null);
+        Client alice = connect();
+        join(alice, "alice", null);
+        alice.next("ROOM_SNAPSHOT", "alice");
+        bob.next("USER_JOINED", "alice");
+
+        send(alice, "/app/leave", new LeaveRoomMessage("room1", "alice"));
+        bob.next("USER_LEFT", "alice");
+
+        // The socket closing afterwards holds nothing, so the window passing says nothing either
+        alice.session.disconnect();
+        Thread.sleep(GRACE_MILLIS * 2);
+        assertNull(bob.poll(200), "bob was told alice left twice");
+    }
+
+    private Client connect() throws Exception {
+        BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        StompFrameHandler handler = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    received.add(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        session.subscribe("/user/queue/signal", handler);
+        session.subscribe("/topic/room/room1", handler);
+        return new Client(session, received);
+    }
+
+    private void join(Client client, String userId, String resumeToken) {
+        JoinRoomMessage message = new JoinRoomMessage("room1", userId, userId);
+        message.setResumeToken(resumeToken);
+        send(client, "/app/join", message);
+    }
+
+    private void send(Client client, String destination, BaseMessage message) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.set("roomId", "room1");
+        try {
+            client.session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(message));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Client(StompSession session, BlockingQueue<JsonNode> received) {
+
+        /** Next frame of the given type about the given user, skipping everything before it. */
+        JsonNode next(String type, String userId) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < deadline) {
+                JsonNode node = received.poll(100, TimeUnit.MILLISECONDS);
+                if (node != null && type.equals(node.path("type").asText()) && about(node, userId)) {
+                    return node;
+                }
+            }
+            throw new AssertionError("no " + type + " for " + userId + " within 5s");
+        }
+
+        private static boolean about(JsonNode node, String userId) {
+            // Snapshots name their recipient, deltas and relays their sender
+            return userId.equals(node.path("userId").asText()) || userId.equals(node.path("targetUserId").asText());
+        }
+
+        JsonNode poll(long millis) throws InterruptedException {
+            return received.poll(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
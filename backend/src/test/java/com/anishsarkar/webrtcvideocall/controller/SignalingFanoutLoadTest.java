@@ -0,0 +1,168 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.dto.AnswerMessage;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the frames and bytes every peer of a 10-peer room receives for one
+ * offer/answer/ICE negotiation between two of them. ICE batching is disabled so
+ * every signaling message maps to one frame.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"signaling.ice.batch-window-ms=0", "signaling.room.max-size=10"})
+class SignalingFanoutLoadTest {
+
+    private static final int PEERS = 10;
+    private static final int CANDIDATES = 4;
+    private static final String ROOM = "load-room";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<StompSession> sessions = new ArrayList<>();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile CountDownLatch expected = new CountDownLatch(0);
+
+    @AfterEach
+    void tearDown() {
+        sessions.forEach(StompSession::disconnect);
+    }
+
+    @Test
+    void negotiationIsDeliveredToTargetOnly() throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        // Raw JSON bytes in both directions so the counted size is the on-the-wire payload
+        stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+        }});
+
+        for (int i = 0; i < PEERS; i++) {
+            StompSession session = stompClient
+                    .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                    .get(5, TimeUnit.SECONDS);
+            session.subscribe("/topic/room/" + ROOM, new CountingHandler());
+            session.subscribe("/user/queue/signal", new CountingHandler());
+            sessions.add(session);
+
+            // The simple broker sends no receipts; observing the join round-trip also confirms the
+            // subscriptions sent before it. Each join produces a ROOM_SNAPSHOT for the joiner and USER_JOINED on the room
+            // topic for every member so far
+            expected = new CountDownLatch(i + 2);
+            send(session, "/app/join", new JoinRoomMessage(ROOM, "peer" + i, "Peer " + i));
+            assertTrue(expected.await(5, TimeUnit.SECONDS), "join of peer" + i + " not observed");
+        }
+
+        List<BaseMessage> negotiation = negotiation("peer0", "peer5");
+
+        // Unicast: every signaling message reaches exactly one socket
+        long[] unicast = measure(negotiation.size(), () -> {
+            for (BaseMessage message : negotiation) {
+                String destination = switch (message.getType()) {
+                    case OFFER -> "/app/offer";
+                    case ANSWER -> "/app/answer";
+                    default -> "/app/ice-candidate";
+                };
+                send(sessions.get(message.getUserId().equals("peer0") ? 0 : 5), destination, message);
+            }
+        });
+
+        // Baseline: the previous behaviour, room-wide broadcast filtered on the client
+        long[] broadcast = measure(negotiation.size() * PEERS, () -> {
+            for (BaseMessage message : negotiation) {
+                messagingTemplate.convertAndSend("/topic/room/" + ROOM, message);
+            }
+        });
+
+        System.out.printf("%d-peer room, %d messages per negotiation: broadcast %d frames / %d bytes, unicast %d frames / %d bytes%n",
+                PEERS, negotiation.size(), broadcast[0], broadcast[1], unicast[0], unicast[1]);
+
+        assertEquals(negotiation.size(), unicast[0]);
+        assertEquals((long) negotiation.size() * PEERS, broadcast[0]);
+        assertTrue(unicast[1] * (PEERS - 1) < broadcast[1]);
+    }
+
+    private List<BaseMessage> negotiation(String caller, String callee) {
+        List<BaseMessage> messages = new ArrayList<>();
+        messages.add(new OfferMessage(ROOM, caller, callee,
+                RawPayload.of(objectMapper.createObjectNode().put("type", "offer").put("sdp", "v=0\r\n".repeat(200)))));
+        messages.add(new AnswerMessage(ROOM, callee, caller,
+                RawPayload.of(objectMapper.createObjectNode().put("type", "answer").put("sdp", "v=0\r\n".repeat(200)))));
+        for (int i = 0; i < CANDIDATES; i++) {
+            messages.add(new IceCandidateMessage(ROOM, caller, callee, RawPayload.of(objectMapper.createObjectNode()
+                    .put("candidate", "candidate:" + i + " 1 udp 2122260223 192.168.0." + i + " 5400" + i + " typ host")
+                    .put("sdpMid", "0")
+                    .put("sdpMLineIndex", 0))));
+        }
+        return messages;
+    }
+
+    private long[] measure(int expectedFrames, ThrowingRunnable action) throws Exception {
+        frames.set(0);
+        bytes.set(0);
+        expected = new CountDownLatch(expectedFrames);
+        action.run();
+        assertTrue(expected.await(5, TimeUnit.SECONDS), "expected frames not delivered");
+        // Give stray deliveries a chance to show up before counting
+        Thread.sleep(300);
+        return new long[] {frames.get(), bytes.get()};
+    }
+
+    private void send(StompSession session, String destination, Object payload) throws Exception {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(payload));
+    }
+
+    private class CountingHandler implements StompFrameHandler {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            frames.incrementAndGet();
+            bytes.addAndGet(((byte[]) payload).length);
+            expected.countDown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
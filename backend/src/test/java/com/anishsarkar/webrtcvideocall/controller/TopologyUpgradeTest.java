@@ -0,0 +1,206 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.LeaveRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.dto.SfuOfferMessage;
+import com.anishsarkar.webrtcvideocall.forwarding.LoopbackMediaForwarder;
+import com.anishsarkar.webrtcvideocall.forwarding.MediaForwarder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two members talk over the mesh until a third joins past the threshold; the room moves to the
+ * loopback forwarder in the middle of the call, everyone negotiates with it, and nobody is
+ * dropped on the way.
+ */
+class TopologyUpgradeTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ConfigurableApplicationContext context;
+    private WebSocketStompClient stompClient;
+    private int port;
+
+    @BeforeEach
+    void startServer() {
+        context = new SpringApplicationBuilder(VideoCallApplication.class)
+                .run("--server.port=0", "--signaling.topology.sfu-threshold=2");
+        port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+        }});
+    }
+
+    @AfterEach
+    void stopServer() {
+        context.close();
+    }
+
+    @Test
+    void thirdMemberMovesTheCallToTheForwarder() throws Exception {
+        Client alice = connect();
+        join(alice, "alice");
+        assertEquals("MESH", alice.next("ROOM_SNAPSHOT", "alice").path("topology").asText());
+        Client bob = connect();
+        join(bob, "bob");
+        assertEquals("MESH", bob.next("ROOM_SNAPSHOT", "bob").path("topology").asText());
+        alice.next("USER_JOINED", "bob");
+
+        // A mesh call is under way
+        send(alice, "/app/offer", new OfferMessage("room1", "alice", "bob", sdp("v=0 mesh")));
+        bob.next("OFFER", "alice");
+
+        Client carol = connect();
+        join(carol, "carol");
+        assertEquals("SFU", carol.next("ROOM_SNAPSHOT", "carol").path("topology").asText());
+        for (Client member : List.of(alice, bob)) {
+            assertEquals("SFU", member.next("TOPOLOGY_CHANGED", null).path("topology").asText());
+            // Told about the new topology before the new member: nothing was skipped to get here
+            JsonNode joined = member.until("USER_JOINED", 5000);
+            assertNotNull(joined, member.userId + " was not told carol joined");
+            assertEquals("carol", joined.path("userId").asText());
+        }
+
+        // Everyone negotiates one connection with the forwarder
+        for (Client member : List.of(alice, bob, carol)) {
+            send(member, "/app/sfu/offer", new SfuOfferMessage("room1", member.userId, sdp("v=0 " + member.userId)));
+            JsonNode answer = member.next("SFU_ANSWER", member.userId);
+            assertEquals("answer", answer.path("answer").path("type").asText());
+            assertEquals("v=0 " + member.userId, answer.path("answer").path("sdp").asText());
+        }
+        LoopbackMediaForwarder forwarder = (LoopbackMediaForwarder) context.getBean(MediaForwarder.class);
+        assertEquals(Set.of("alice", "bob", "carol"), forwarder.endpoints("room1"));
+
+        // New peer connections are refused, the room stays whole
+        send(carol, "/app/offer", new OfferMessage("room1", "carol", "alice", sdp("v=0 mesh")));
+        assertEquals("SFU_ROOM", carol.next("ERROR", "carol").path("errorCode").asText());
+        for (Client member : List.of(alice, bob, carol)) {
+            assertNull(member.until("USER_LEFT", 300), member.userId + " saw someone leave");
+        }
+
+        send(bob, "/app/leave", new LeaveRoomMessage("room1", "bob"));
+        alice.next("USER_LEFT", "bob");
+        assertEquals(Set.of("alice", "carol"), forwarder.endpoints("room1"));
+    }
+
+    private RawPayload sdp(String sdp) {
+        return RawPayload.of(objectMapper.createObjectNode().put("type", "offer").put("sdp", sdp));
+    }
+
+    private Client connect() throws Exception {
+        BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        StompFrameHandler handler = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    received.add(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        session.subscribe("/user/queue/signal", handler);
+        session.subscribe("/topic/room/room1", handler);
+        return new Client(session, received);
+    }
+
+    private void join(Client client, String userId) {
+        client.userId = userId;
+        send(client, "/app/join", new JoinRoomMessage("room1", userId, userId));
+    }
+
+    private void send(Client client, String destination, BaseMessage message) {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.set("roomId", "room1");
+        try {
+            client.session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(message));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Client {
+        final StompSession session;
+        final BlockingQueue<JsonNode> received;
+        String userId;
+
+        Client(StompSession session, BlockingQueue<JsonNode> received) {
+            this.session = session;
+            this.received = received;
+        }
+
+        /** Next frame of the given type about the given user, or about nobody when it is null. */
+        JsonNode next(String type, String userId) throws InterruptedException {
+            JsonNode node = until(type, userId, 5000);
+            if (node == null) {
+                throw new AssertionError("no " + type + " for " + userId + " within 5s");
+            }
+            return node;
+        }
+
+        /** Next frame of the given type about anyone, or null if none comes in time. */
+        JsonNode until(String type, long millis) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            while (System.nanoTime() < deadline) {
+                JsonNode node = received.poll(50, TimeUnit.MILLISECONDS);
+                if (node != null && type.equals(node.path("type").asText())) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private JsonNode until(String type, String userId, long millis) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            while (System.nanoTime() < deadline) {
+                JsonNode node = received.poll(100, TimeUnit.MILLISECONDS);
+                if (node != null && type.equals(node.path("type").asText()) && about(node, userId)) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private static boolean about(JsonNode node, String userId) {
+            // Snapshots and forwarder answers name their recipient, deltas and relays their sender
+            return userId == null ? node.path("userId").isNull() || node.path("userId").isMissingNode()
+                    : userId.equals(node.path("userId").asText()) || userId.equals(node.path("targetUserId").asText());
+        }
+    }
+}
@@ -1,17 +1,51 @@
 package com.anishsarkar.webrtcvideocall.controller;
 
+import com.anishsarkar.webrtcvideocall.dto.ErrorMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceServer;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
 import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
 import com.anishsarkar.webrtcvideocall.dto.LeaveRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.dto.RoomSnapshotMessage;
+import com.anishsarkar.webrtcvideocall.dto.SfuAnswerMessage;
+import com.anishsarkar.webrtcvideocall.dto.SfuOfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import com.anishsarkar.webrtcvideocall.dto.TopologyChangedMessage;
+import com.anishsarkar.webrtcvideocall.dto.UserJoinedMessage;
+import com.anishsarkar.webrtcvideocall.dto.UserLeftMessage;
+import com.anishsarkar.webrtcvideocall.forwarding.MediaForwarder;
+import com.anishsarkar.webrtcvideocall.journal.CallJournal;
+import com.anishsarkar.webrtcvideocall.listener.SessionActivityTracker;
+import com.anishsarkar.webrtcvideocall.logging.SignalingEventLog;
+import com.anishsarkar.webrtcvideocall.messaging.CborMessageConverter;
+import com.anishsarkar.webrtcvideocall.messaging.SignalMailbox;
+import com.anishsarkar.webrtcvideocall.messaging.SignalingCodecRegistry;
+import com.anishsarkar.webrtcvideocall.metrics.NegotiationTracer;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import com.anishsarkar.webrtcvideocall.registry.JoinRejection;
+import com.anishsarkar.webrtcvideocall.registry.JoinResult;
+import com.anishsarkar.webrtcvideocall.service.IceCandidateCoalescer;
+import com.anishsarkar.webrtcvideocall.service.IceServerCache;
 import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import com.fasterxml.jackson.databind.node.TextNode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.HashMap;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 class VideoCallControllerTest {
@@ -25,6 +59,42 @@ class VideoCallControllerTest {
     @Mock
     private RoomService roomService;
 
+    @Mock
+    private UserSessionRegistry userSessionRegistry;
+
+    @Mock
+    private IceCandidateCoalescer iceCandidateCoalescer;
+
+    @Mock
+    private SignalingCodecRegistry signalingCodecRegistry;
+
+    @Mock
+    private SignalingMetrics signalingMetrics;
+
+    @Mock
+    private SignalingEventLog signalingEventLog;
+
+    @Mock
+    private SessionActivityTracker sessionActivityTracker;
+
+    @Mock
+    private SessionResumption sessionResumption;
+
+    @Mock
+    private SignalMailbox signalMailbox;
+
+    @Mock
+    private MediaForwarder mediaForwarder;
+
+    @Mock
+    private IceServerCache iceServerCache;
+
+    @Mock
+    private CallJournal callJournal;
+
+    @Mock
+    private NegotiationTracer negotiationTracer;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -39,13 +109,83 @@ class VideoCallControllerTest {
 
         SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
         accessor.setSessionAttributes(new HashMap<>());
+        accessor.setSessionId("session1");
 
-        when(roomService.getRoomUsers("room1")).thenReturn(Set.of("user1"));
+        when(roomService.joinRoom("room1", "user1", "Alice")).thenReturn(JoinResult.joined(3L));
+        when(roomService.getRoomMembers("room1")).thenReturn(Map.of("user0", "Bob", "user1", "Alice"));
+        when(userSessionRegistry.getSessionId("room1", "user1")).thenReturn("session1");
+        when(sessionResumption.issue("room1", "user1")).thenReturn("token1");
+        List<IceServer> iceServers = List.of(new IceServer(List.of("turn:turn.example.com:3478"), "1:webrtc", "secret"));
+        when(iceServerCache.servers(null)).thenReturn(iceServers);
 
         controller.joinRoom(message, accessor);
 
         verify(roomService).joinRoom("room1", "user1", "Alice");
-        verify(messagingTemplate, atLeastOnce()).convertAndSend(contains("/topic/room/room1"), (Object) any());
+        verify(userSessionRegistry).register("room1", "user1", "session1");
+        verify(sessionActivityTracker).track("session1", "room1", "user1");
+
+        // One snapshot for the joiner, one delta for the room
+        ArgumentCaptor<RoomSnapshotMessage> snapshot = ArgumentCaptor.forClass(RoomSnapshotMessage.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session1"), eq("/queue/signal"), snapshot.capture(), any(MessageHeaders.class));
+        assertEquals(3L, snapshot.getValue().getVersion());
+        assertEquals("Bob", snapshot.getValue().getMembers().get("user0"));
+        assertEquals("token1", snapshot.getValue().getResumeToken());
+        assertEquals(iceServers, snapshot.getValue().getIceServers());
+
+        ArgumentCaptor<UserJoinedMessage> joined = ArgumentCaptor.forClass(UserJoinedMessage.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/room/room1"), joined.capture());
+        assertEquals(3L, joined.getValue().getVersion());
+        assertEquals("Alice", joined.getValue().getUserName());
+    }
+
+    @Test
+    void joinRoomShouldTurnAwayUserWhenRoomIsFull() {
+        JoinRoomMessage message = new JoinRoomMessage("room1", "user9", "Ivan");
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionAttributes(new HashMap<>());
+        accessor.setSessionId("session9");
+
+        when(roomService.joinRoom("room1", "user9", "Ivan")).thenReturn(JoinResult.rejected(JoinRejection.ROOM_FULL));
+
+        controller.joinRoom(message, accessor);
+
+        ArgumentCaptor<ErrorMessage> error = ArgumentCaptor.forClass(ErrorMessage.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session9"), eq("/queue/signal"), error.capture(), any(MessageHeaders.class));
+        assertEquals("ROOM_FULL", error.getValue().getErrorCode());
+        verify(signalingMetrics).recordError("ROOM_FULL");
+        verify(callJournal).error("room1", "user9", "ROOM_FULL");
+        // Nothing to clean up when the socket closes
+        verify(userSessionRegistry, never()).register(anyString(), anyString(), anyString());
+        verifyNoInteractions(sessionActivityTracker);
+        assertTrue(accessor.getSessionAttributes().isEmpty());
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void joinRoomWithResumeTokenShouldTakeOverMembershipQuietly() {
+        JoinRoomMessage message = new JoinRoomMessage("room1", "user1", "Alice");
+        message.setResumeToken("token1");
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionAttributes(new HashMap<>());
+        accessor.setSessionId("session2");
+
+        when(roomService.isUserInRoom("room1", "user1")).thenReturn(true);
+        when(sessionResumption.resume("token1", "room1", "user1")).thenReturn(true);
+        when(roomService.getRoomVersion("room1")).thenReturn(5L);
+        when(roomService.getRoomMembers("room1")).thenReturn(Map.of("user0", "Bob", "user1", "Alice"));
+        when(userSessionRegistry.getSessionId("room1", "user1")).thenReturn("session2");
+
+        controller.joinRoom(message, accessor);
+
+        verify(roomService, never()).joinRoom(anyString(), anyString(), anyString());
+        verify(userSessionRegistry).register("room1", "user1", "session2");
+        assertEquals("room1", accessor.getSessionAttributes().get("roomId"));
+        ArgumentCaptor<RoomSnapshotMessage> snapshot = ArgumentCaptor.forClass(RoomSnapshotMessage.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session2"), eq("/queue/signal"), snapshot.capture(), any(MessageHeaders.class));
+        assertEquals(5L, snapshot.getValue().getVersion());
+        assertEquals("token1", snapshot.getValue().getResumeToken());
+        // Nothing for the rest of the room
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
     }
 
     @Test
@@ -54,11 +194,151 @@ class VideoCallControllerTest {
         message.setRoomId("room1");
         message.setUserId("user1");
 
-        when(roomService.getRoomUsers("room1")).thenReturn(Set.of());
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionAttributes(new HashMap<>(Map.of("roomId", "room1", "userId", "user1")));
+        accessor.setSessionId("session1");
+
+        when(roomService.leaveRoom("room1", "user1")).thenReturn(4L);
 
-        controller.leaveRoom(message);
+        controller.leaveRoom(message, accessor);
 
         verify(roomService).leaveRoom("room1", "user1");
-        verify(messagingTemplate, atLeastOnce()).convertAndSend(contains("/topic/room/room1"), any(Object.class));
+        ArgumentCaptor<UserLeftMessage> left = ArgumentCaptor.forClass(UserLeftMessage.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/room/room1"), left.capture());
+        assertEquals(4L, left.getValue().getVersion());
+        verify(sessionResumption).revoke("room1", "user1");
+        verify(mediaForwarder).release("room1", "user1");
+        // The socket no longer belongs to the room, closing it later leaves nothing behind
+        verify(userSessionRegistry).unregister("room1", "user1", "session1");
+        verify(sessionActivityTracker).forget("session1");
+        assertTrue(accessor.getSessionAttributes().isEmpty());
+    }
+
+    @Test
+    void offerShouldBeSentOnlyToTargetSession() {
+        OfferMessage message = new OfferMessage("room1", "user1", "user2", null);
+
+        when(roomService.isUserInRoom("room1", "user1")).thenReturn(true);
+        when(roomService.isUserInRoom("room1", "user2")).thenReturn(true);
+        when(userSessionRegistry.getSessionId("room1", "user2")).thenReturn("session2");
+
+        controller.handleOffer(message);
+
+        verify(messagingTemplate).convertAndSendToUser(eq("session2"), eq("/queue/signal"), eq(message), any(MessageHeaders.class));
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void offerShouldUseCodecNegotiatedByTargetSession() {
+        OfferMessage message = new OfferMessage("room1", "user1", "user2", null);
+
+        when(roomService.isUserInRoom("room1", "user1")).thenReturn(true);
+        when(roomService.isUserInRoom("room1", "user2")).thenReturn(true);
+        when(userSessionRegistry.getSessionId("room1", "user2")).thenReturn("session2");
+        when(signalingCodecRegistry.getContentType("session2")).thenReturn(CborMessageConverter.APPLICATION_CBOR);
+
+        controller.handleOffer(message);
+
+        ArgumentCaptor<MessageHeaders> headers = ArgumentCaptor.forClass(MessageHeaders.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session2"), eq("/queue/signal"), eq(message), headers.capture());
+        assertEquals(CborMessageConverter.APPLICATION_CBOR, headers.getValue().get(MessageHeaders.CONTENT_TYPE));
+    }
+
+    @Test
+    void offerShouldFallBackToRoomTopicWhenTargetSessionUnknown() {
+        OfferMessage message = new OfferMessage("room1", "user1", "user2", null);
+
+        when(roomService.isUserInRoom("room1", "user1")).thenReturn(true);
+        when(roomService.isUserInRoom("room1", "user2")).thenReturn(true);
+
+        controller.handleOffer(message);
+
+        verify(messagingTemplate).convertAndSend("/topic/room/room1", (Object) message);
+    }
+
+    @Test
+    void offerShouldWaitInMailboxUntilTargetIsSubscribed() {
+        OfferMessage message = new OfferMessage("room1", "user1", "user2", null);
+
+        when(roomService.isUserInRoom("room1", "user1")).thenReturn(true);
+        when(roomService.isUserInRoom("room1", "user2")).thenReturn(true);
+        when(userSessionRegistry.getSessionId("room1", "user2")).thenReturn("session2");
+        when(signalMailbox.isPending("room1", "user2", "session2")).thenReturn(true);
+        when(signalMailbox.deliver(eq("room1"), eq("user2"), eq(message), any())).thenReturn(true);
+
+        controller.handleOffer(message);
+
+        verify(signalMailbox).deliver(eq("room1"), eq("user2"), eq(message), any());
+        verify(messagingTemplate, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class), any(MessageHeaders.class));
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void joinPastThresholdShouldMoveRoomToForwarderBeforeAnnouncingJoin() {
+        ReflectionTestUtils.setField(controller, "sfuThreshold", 2);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionAttributes(new HashMap<>());
+        accessor.setSessionId("session3");
+
+        when(roomService.joinRoom("room1", "user3", "Carol")).thenReturn(JoinResult.joined(5L));
+        when(roomService.getRoomMembers("room1")).thenReturn(Map.of("user1", "Alice", "user2", "Bob", "user3", "Carol"));
+        when(roomService.promoteToSfu("room1")).thenReturn(true);
+        when(userSessionRegistry.getSessionId("room1", "user3")).thenReturn("session3");
+
+        controller.joinRoom(new JoinRoomMessage("room1", "user3", "Carol"), accessor);
+
+        InOrder order = inOrder(messagingTemplate);
+        order.verify(messagingTemplate).convertAndSend(eq("/topic/room/room1"), any(TopologyChangedMessage.class));
+        order.verify(messagingTemplate).convertAndSend(eq("/topic/room/room1"), any(UserJoinedMessage.class));
+        ArgumentCaptor<RoomSnapshotMessage> snapshot = ArgumentCaptor.forClass(RoomSnapshotMessage.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session3"), eq("/queue/signal"), snapshot.capture(), any(MessageHeaders.class));
+        assertEquals(Topology.SFU, snapshot.getValue().getTopology());
+        verify(signalingMetrics).recordTopologyChanged(Topology.SFU);
+    }
+
+    @Test
+    void forwarderRoomShouldAnswerSfuOffersAndRefusePeerOffers() {
+        RawPayload offer = RawPayload.of(TextNode.valueOf("v=0"));
+        RawPayload answer = RawPayload.of(TextNode.valueOf("v=0 answer"));
+
+        when(roomService.isUserInRoom(eq("room1"), anyString())).thenReturn(true);
+        when(roomService.getRoomTopology("room1")).thenReturn(Topology.SFU);
+        when(userSessionRegistry.getSessionId("room1", "user1")).thenReturn("session1");
+        when(mediaForwarder.negotiate("room1", "user1", offer)).thenReturn(answer);
+
+        controller.handleSfuOffer(new SfuOfferMessage("room1", "user1", offer));
+
+        ArgumentCaptor<SfuAnswerMessage> sent = ArgumentCaptor.forClass(SfuAnswerMessage.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session1"), eq("/queue/signal"), sent.capture(), any(MessageHeaders.class));
+        assertEquals(answer, sent.getValue().getAnswer());
+        assertEquals("user1", sent.getValue().getTargetUserId());
+
+        controller.handleOffer(new OfferMessage("room1", "user1", "user2", offer));
+
+        verify(signalingMetrics).recordError("SFU_ROOM");
+        verify(userSessionRegistry, never()).getSessionId("room1", "user2");
+    }
+
+    @Test
+    void iceCandidateShouldBeQueuedWhenBatchingEnabled() {
+        IceCandidateMessage message = new IceCandidateMessage("room1", "user1", "user2", null);
+
+        when(iceCandidateCoalescer.isEnabled()).thenReturn(true);
+
+        controller.handleIceCandidate(message);
+
+        verify(iceCandidateCoalescer).add(eq(message), any());
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    void offerFromUserOutsideRoomShouldCountErrorCode() {
+        OfferMessage message = new OfferMessage("room1", "user1", "user2", null);
+
+        controller.handleOffer(message);
+
+        verify(signalingMetrics).recordError("USER_NOT_IN_ROOM");
+        verify(signalingMetrics).recordRelayed(MessageType.ERROR);
+        verify(signalingMetrics).recordHandled(eq(MessageType.OFFER), anyLong());
     }
 }
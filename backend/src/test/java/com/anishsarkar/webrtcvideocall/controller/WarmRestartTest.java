@@ -0,0 +1,170 @@
+package com.anishsarkar.webrtcvideocall.controller;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A node with a few dozen members in calls is stopped and started again, and every client
+ * reconnects and joins with the resume token it had. With the snapshot the memberships are
+ * waiting for them and nobody in any room sees a join; without it every client rejoins from
+ * scratch and each room hears about all of them again.
+ */
+class WarmRestartTest {
+
+    private static final int CLIENTS = 40;
+    private static final int ROOMS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void restartedNodeTakesItsMembersBackWithoutARejoinStorm() throws Exception {
+        RestartResult cold = restart(false);
+        RestartResult warm = restart(true);
+
+        System.out.printf("restart of a node with %d members in %d rooms: without the snapshot ready in %d ms, "
+                        + "%d resumed, %d USER_JOINED sent to rooms; with it ready in %d ms, %d resumed, %d USER_JOINED%n",
+                CLIENTS, ROOMS, cold.readyMillis, cold.resumed, cold.userJoined,
+                warm.readyMillis, warm.resumed, warm.userJoined);
+
+        assertEquals(CLIENTS, warm.resumed);
+        assertEquals(0, warm.userJoined);
+        assertEquals(0, cold.resumed);
+        assertTrue(cold.userJoined > 0, "a cold restart should have members announced again");
+    }
+
+    private RestartResult restart(boolean snapshot) throws Exception {
+        String file = dir.resolve("rooms-" + snapshot + ".snapshot").toString();
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+        }});
+        Map<String, String> tokens = new ConcurrentHashMap<>();
+        List<StompSession> sessions = Collections.synchronizedList(new ArrayList<>());
+        try (ConfigurableApplicationContext first = start(snapshot, file)) {
+            CountDownLatch joined = new CountDownLatch(CLIENTS);
+            for (int i = 0; i < CLIENTS; i++) {
+                String userId = "user-" + i;
+                join(stompClient, port(first), "room-" + (i % ROOMS), userId, null, sessions, node -> {
+                    if ("ROOM_SNAPSHOT".equals(node.path("type").asText())) {
+                        tokens.put(userId, node.path("resumeToken").asText());
+                        joined.countDown();
+                    }
+                });
+            }
+            assertTrue(joined.await(10, TimeUnit.SECONDS), "not everyone joined before the restart");
+        }
+        sessions.clear();
+
+        long startedAt = System.nanoTime();
+        try (ConfigurableApplicationContext second = start(snapshot, file)) {
+            long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+            CountDownLatch rejoined = new CountDownLatch(CLIENTS);
+            AtomicInteger resumed = new AtomicInteger();
+            AtomicInteger userJoined = new AtomicInteger();
+            try {
+                for (int i = 0; i < CLIENTS; i++) {
+                    String userId = "user-" + i;
+                    String token = tokens.get(userId);
+                    join(stompClient, port(second), "room-" + (i % ROOMS), userId, token, sessions, node -> {
+                        switch (node.path("type").asText()) {
+                            case "ROOM_SNAPSHOT" -> {
+                                if (token.equals(node.path("resumeToken").asText())) {
+                                    resumed.incrementAndGet();
+                                }
+                                rejoined.countDown();
+                            }
+                            case "USER_JOINED" -> userJoined.incrementAndGet();
+                            default -> { }
+                        }
+                    });
+                }
+                assertTrue(rejoined.await(10, TimeUnit.SECONDS), rejoined.getCount() + " clients never got back in");
+                // Broadcasts that were still on their way
+                Thread.sleep(500);
+                return new RestartResult(readyMillis, resumed.get(), userJoined.get());
+            } finally {
+                sessions.forEach(session -> {
+                    if (session.isConnected()) {
+                        session.disconnect();
+                    }
+                });
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean snapshot, String file) {
+        return new SpringApplicationBuilder(VideoCallApplication.class).run("--server.port=0",
+                "--signaling.snapshot.enabled=" + snapshot, "--signaling.snapshot.file=" + file);
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+    }
+
+    private void join(WebSocketStompClient stompClient, int port, String roomId, String userId, String resumeToken,
+                      List<StompSession> sessions, Consumer<JsonNode> onFrame) throws Exception {
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        StompFrameHandler handler = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    onFrame.accept(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        session.subscribe("/user/queue/signal", handler);
+        session.subscribe("/topic/room/" + roomId, handler);
+        JoinRoomMessage message = new JoinRoomMessage(roomId, userId, userId);
+        message.setResumeToken(resumeToken);
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination("/app/join");
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.set("roomId", roomId);
+        session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(message));
+        sessions.add(session);
+    }
+
+    private record RestartResult(long readyMillis, int resumed, int userJoined) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.anishsarkar.webrtcvideocall.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawPayloadTest {
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ObjectMapper cbor = new CBORMapper();
+
+    // Odd spacing, escapes and field order must survive exactly as the client sent them
+    private static final String OFFER = "{\"type\":\"OFFER\",\"roomId\":\"r1\",\"userId\":\"alice\",\"targetUserId\":\"bob\","
+            + "\"offer\":  { \"sdp\" : \"v=0\\r\\no=- 1 2 IN IP4 127.0.0.1\\r\\n\\u00e9\" ,\"type\":\"offer\"},\"timestamp\":1}";
+
+    @Test
+    void jsonPayloadIsForwardedByteForByte() throws Exception {
+        OfferMessage message = (OfferMessage) json.readValue(OFFER.getBytes(StandardCharsets.UTF_8), BaseMessage.class);
+
+        String forwarded = new String(json.writerFor(BaseMessage.class).writeValueAsBytes(message), StandardCharsets.UTF_8);
+
+        assertTrue(forwarded.contains("\"offer\":{ \"sdp\" : \"v=0\\r\\no=- 1 2 IN IP4 127.0.0.1\\r\\n\\u00e9\" ,\"type\":\"offer\"}"),
+                forwarded);
+        assertEquals("alice", message.getUserId());
+        assertEquals("bob", message.getTargetUserId());
+    }
+
+    @Test
+    void payloadCrossesBetweenJsonAndCbor() throws Exception {
+        OfferMessage fromJson = (OfferMessage) json.readValue(OFFER.getBytes(StandardCharsets.UTF_8), BaseMessage.class);
+
+        byte[] asCbor = cbor.writerFor(BaseMessage.class).writeValueAsBytes(fromJson);
+        OfferMessage fromCbor = (OfferMessage) cbor.readValue(asCbor, BaseMessage.class);
+        byte[] backToJson = json.writerFor(BaseMessage.class).writeValueAsBytes(fromCbor);
+
+        assertEquals(json.readTree(OFFER).get("offer"), fromCbor.getOffer().toTree());
+        assertEquals(json.readTree(OFFER).get("offer"), json.readTree(backToJson).get("offer"));
+    }
+
+    @Test
+    void batchOfCandidatesRoundTrips() throws Exception {
+        IceCandidateBatchMessage batch = new IceCandidateBatchMessage("r1", "alice", "bob", List.of(
+                RawPayload.of(json.readTree("{\"candidate\":\"candidate:1 1 udp 1 10.0.0.1 5000 typ host\",\"sdpMLineIndex\":0}")),
+                RawPayload.of(json.readTree("{\"candidate\":\"candidate:2 1 udp 1 10.0.0.2 5001 typ host\",\"sdpMLineIndex\":0}"))));
+
+        for (ObjectMapper mapper : List.of(json, cbor)) {
+            byte[] encoded = mapper.writerFor(BaseMessage.class).writeValueAsBytes(batch);
+            IceCandidateBatchMessage decoded = (IceCandidateBatchMessage) mapper.readValue(encoded, BaseMessage.class);
+            assertEquals(2, decoded.getCandidates().size());
+            assertEquals("candidate:2 1 udp 1 10.0.0.2 5001 typ host",
+                    decoded.getCandidates().get(1).toTree().get("candidate").asText());
+        }
+    }
+
+    @Test
+    void nullAndNonByteSourcesStillDeserialize() throws Exception {
+        IceCandidateMessage noCandidate = (IceCandidateMessage) json.readValue(
+                "{\"type\":\"ICE_CANDIDATE\",\"roomId\":\"r1\",\"userId\":\"a\",\"candidate\":null}", BaseMessage.class);
+        assertNull(noCandidate.getCandidate());
+
+        // Parsed from a String, so there is no byte slice to keep
+        OfferMessage fromString = (OfferMessage) json.readValue(OFFER, BaseMessage.class);
+        assertEquals("offer", fromString.getOffer().toTree().get("type").asText());
+    }
+}
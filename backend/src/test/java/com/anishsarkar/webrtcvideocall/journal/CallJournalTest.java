@@ -0,0 +1,144 @@
+package com.anishsarkar.webrtcvideocall.journal;
+
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+
+    @Test
+    void recordsComeBackInOrderAcrossSegments() throws Exception {
+        CallJournal journal = journal();
+        for (int i = 0; i < 1000; i++) {
+            now.incrementAndGet();
+            if (i % 2 == 0) {
+                journal.join("room-" + (i % 7), "user-" + i);
+            } else {
+                journal.leave("room-" + (i % 7), "user-" + (i - 1));
+            }
+        }
+        journal.error("room-1", "user-1", "RATE_LIMITED");
+        journal.close();
+        // Closed: nothing more is written
+        journal.join("room-1", "late");
+
+        assertTrue(JournalReader.segments(dir).size() > 1, "1000 records should not fit one minimum segment");
+        List<JournalRecord> records = read();
+        assertEquals(1001, records.size());
+        for (int i = 0; i < 1000; i++) {
+            JournalRecord record = records.get(i);
+            assertEquals(i % 2 == 0 ? JournalEventType.JOIN : JournalEventType.LEAVE, record.type());
+            assertEquals(1_700_000_000_001L + i, record.timestampMillis());
+            assertEquals("room-" + (i % 7), record.roomId());
+            assertEquals("user-" + (i - i % 2), record.userId());
+        }
+        assertEquals(new JournalRecord(JournalEventType.ERROR, now.get(), "room-1", "user-1", "RATE_LIMITED", 0),
+                records.get(1000));
+    }
+
+    @Test
+    void damagedRecordEndsItsSegmentAndRestartsBeginANewOne() throws Exception {
+        CallJournal journal = journal();
+        journal.join("room1", "alice");
+        journal.join("room1", "bob");
+        journal.join("room1", "carol");
+        journal.close();
+
+        // As if the node died while bob's record was being written
+        Path segment = JournalReader.segments(dir).get(0);
+        int alicesRecord = CallJournal.RECORD_PREFIX_BYTES + 1 + 8 + (2 + 5) + (2 + 5) + 2 + 8;
+        int bobsRoomId = CallJournal.HEADER_BYTES + alicesRecord + CallJournal.RECORD_PREFIX_BYTES + 1 + 8 + 2;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("X".getBytes()), bobsRoomId);
+        }
+        assertEquals(List.of("alice"), read().stream().map(JournalRecord::userId).toList());
+
+        CallJournal restarted = journal();
+        restarted.join("room1", "dave");
+        restarted.flush();
+        assertEquals(2, JournalReader.segments(dir).size());
+        assertEquals(List.of("alice", "dave"), read().stream().map(JournalRecord::userId).toList());
+        restarted.close();
+    }
+
+    @Test
+    void aggregateFollowsTheRoomThroughRoomService() throws Exception {
+        CallJournal journal = journal();
+        RoomService roomService = new RoomService(new InMemoryRoomRegistry(), journal);
+        roomService.joinRoom("room1", "alice", "Alice");
+        roomService.joinRoom("room1", "bob", "Bob");
+        journal.negotiation("room1", "alice", "bob", 42_000_000);
+        roomService.leaveRoom("room1", "bob");
+        journal.disconnect("room1", "alice");
+        roomService.joinRoom("room1", "carol", "Carol");
+        roomService.joinRoom("room2", "dave", "Dave");
+        journal.error("room2", "dave", "SFU_ROOM");
+        journal.error("room2", "dave", "SFU_ROOM");
+        journal.close();
+
+        JournalTool.Summary summary = JournalTool.aggregate(dir);
+        assertEquals(9, summary.records);
+        JournalTool.RoomSummary room1 = summary.rooms.get("room1");
+        assertEquals(3, room1.joins);
+        assertEquals(3, room1.users.size());
+        assertEquals(2, room1.peakMembers);
+        assertEquals(1, room1.leaves);
+        assertEquals(1, room1.disconnects);
+        assertEquals(1, room1.negotiations);
+        assertEquals(2, summary.rooms.get("room2").errors);
+        assertEquals(2L, summary.errors.get("SFU_ROOM"));
+        assertEquals(1, summary.negotiationCount());
+        assertTrue(summary.negotiationPercentile(99) > 0);
+    }
+
+    @Test
+    void onlyALeaveThatRemovedSomebodyIsJournaled() throws Exception {
+        CallJournal journal = journal();
+        RoomService roomService = new RoomService(new InMemoryRoomRegistry(), journal);
+        roomService.joinRoom("room1", "alice", "Alice");
+        roomService.joinRoom("room1", "bob", "Bob");
+        roomService.leaveRoom("room1", "bob");
+        // Sent twice, then evicted again after the grace window
+        roomService.leaveRoom("room1", "bob");
+        roomService.leaveRoom("room1", "bob");
+        roomService.leaveRoom("room2", "carol");
+        journal.close();
+
+        assertEquals(List.of(JournalEventType.JOIN, JournalEventType.JOIN, JournalEventType.LEAVE),
+                read().stream().map(JournalRecord::type).toList());
+    }
+
+    @Test
+    void disabledJournalTouchesNothing() throws Exception {
+        CallJournal journal = new CallJournal(false, dir, 0, 0, now::get);
+        journal.join("room1", "alice");
+        journal.close();
+        assertTrue(JournalReader.segments(dir).isEmpty());
+    }
+
+    private CallJournal journal() {
+        return new CallJournal(true, dir, CallJournal.MIN_SEGMENT_BYTES, 0, now::get);
+    }
+
+    private List<JournalRecord> read() throws Exception {
+        List<JournalRecord> records = new ArrayList<>();
+        JournalReader.read(dir, records::add);
+        return records;
+    }
+}
@@ -0,0 +1,113 @@
+package com.anishsarkar.webrtcvideocall.listener;
+
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RoomStateSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final List<SessionResumption> resumptions = new ArrayList<>();
+
+    @AfterEach
+    void shutDown() {
+        resumptions.forEach(SessionResumption::shutdown);
+    }
+
+    @Test
+    void roomsComeBackWithTheirVersionsTopologyAndTokens() throws Exception {
+        Node before = node(30_000);
+        before.registry.join("room1", "alice", "Alice");
+        before.registry.join("room1", "bob", null);
+        before.registry.promoteToSfu("room1");
+        before.registry.join("room2", "carol", "Carol");
+        String alicesToken = before.resumption.issue("room1", "alice");
+        before.resumption.issue("room1", "bob");
+        before.snapshot.save();
+
+        Node after = node(30_000);
+        assertEquals(3, after.snapshot.restore());
+        assertEquals("Alice", after.registry.getUserName("room1", "alice"));
+        assertEquals(List.of("alice", "bob"), List.copyOf(after.registry.getMembers("room1").keySet()));
+        assertNull(after.registry.getUserName("room1", "bob"));
+        assertEquals(before.registry.getVersion("room1"), after.registry.getVersion("room1"));
+        assertEquals(Topology.SFU, after.registry.getTopology("room1"));
+        assertEquals(3, after.registry.userCount());
+        // The token from before the restart still resumes
+        assertTrue(after.resumption.resume(alicesToken, "room1", "alice"));
+        assertFalse(after.resumption.resume(alicesToken, "room1", "bob"));
+    }
+
+    @Test
+    void membersWhoDoNotComeBackAreRemovedAfterTheGraceWindow() throws Exception {
+        Node before = node(100);
+        before.registry.join("room1", "alice", "Alice");
+        before.registry.join("room1", "bob", "Bob");
+        String alicesToken = before.resumption.issue("room1", "alice");
+        before.resumption.issue("room1", "bob");
+        before.snapshot.save();
+
+        Node after = node(100);
+        after.snapshot.restore();
+        assertTrue(after.resumption.resume(alicesToken, "room1", "alice"));
+        after.sessions.register("room1", "alice", "session-a");
+
+        verify(after.listener, timeout(2000)).removeFromRoom(null, "room1", "bob");
+        Thread.sleep(200);
+        verify(after.listener, never()).removeFromRoom(any(), eq("room1"), eq("alice"));
+    }
+
+    @Test
+    void staleOrDamagedSnapshotsAreIgnored() throws Exception {
+        Node before = node(30_000);
+        before.registry.join("room1", "alice", "Alice");
+        before.snapshot.save();
+
+        now.addAndGet(120_001);
+        assertEquals(0, node(30_000).snapshot.restore());
+        now.addAndGet(-120_001);
+
+        Path file = dir.resolve("rooms.snapshot");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        Node after = node(30_000);
+        assertEquals(0, after.snapshot.restore());
+        assertEquals(0, after.registry.roomCount());
+    }
+
+    private Node node(long restoreGraceMillis) {
+        InMemoryRoomRegistry registry = new InMemoryRoomRegistry();
+        SessionResumption resumption = new SessionResumption(15_000);
+        resumptions.add(resumption);
+        UserSessionRegistry sessions = new UserSessionRegistry(registry);
+        WebSocketEventListener listener = mock(WebSocketEventListener.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(listener).onRoomLane(anyString(), any());
+        RoomStateSnapshot snapshot = new RoomStateSnapshot(true, dir.resolve("rooms.snapshot"), 0, 120_000,
+                restoreGraceMillis, registry, resumption, sessions, listener, now::get);
+        return new Node(registry, resumption, sessions, listener, snapshot);
+    }
+
+    private record Node(InMemoryRoomRegistry registry, SessionResumption resumption, UserSessionRegistry sessions,
+                        WebSocketEventListener listener, RoomStateSnapshot snapshot) {
+    }
+}
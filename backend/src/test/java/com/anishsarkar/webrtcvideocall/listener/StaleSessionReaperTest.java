@@ -0,0 +1,225 @@
+package com.anishsarkar.webrtcvideocall.listener;
+
+import com.anishsarkar.webrtcvideocall.dto.UserLeftMessage;
+import com.anishsarkar.webrtcvideocall.forwarding.MediaForwarder;
+import com.anishsarkar.webrtcvideocall.journal.CallJournal;
+import com.anishsarkar.webrtcvideocall.logging.SignalingEventLog;
+import com.anishsarkar.webrtcvideocall.messaging.RoomAffinityExecutor;
+import com.anishsarkar.webrtcvideocall.messaging.SignalMailbox;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import com.anishsarkar.webrtcvideocall.registry.ClusteredRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.LocalClusterStore;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.SessionResumption;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.*;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StaleSessionReaperTest {
+
+    private static final long IDLE_TIMEOUT = 60_000;
+
+    private final MutableClock clock = new MutableClock();
+    private final LocalClusterStore store = new LocalClusterStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private RoomService roomService = new RoomService(new ClusteredRoomRegistry(store, "test:", 8));
+
+    @Spy
+    private UserSessionRegistry userSessionRegistry = new UserSessionRegistry(new ClusteredRoomRegistry(store, "test:", 8));
+
+    @Spy
+    private SignalingMetrics signalingMetrics = new SignalingMetrics(meterRegistry, roomService);
+
+    @Spy
+    private SessionResumption sessionResumption = new SessionResumption(0);
+
+    @Mock
+    private SignalMailbox signalMailbox;
+
+    @Mock
+    private MediaForwarder mediaForwarder;
+
+    @Mock
+    private CallJournal callJournal;
+
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Mock
+    private SignalingEventLog signalingEventLog;
+
+    @Mock
+    private ObjectProvider<RoomAffinityExecutor> roomAffinityExecutor;
+
+    @InjectMocks
+    private WebSocketEventListener webSocketEventListener;
+
+    private SessionActivityTracker tracker;
+    private StaleSessionReaper reaper;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        tracker = new SessionActivityTracker(clock, IDLE_TIMEOUT, 1000);
+        reaper = new StaleSessionReaper(tracker, webSocketEventListener, roomService, userSessionRegistry,
+                signalingMetrics, signalingEventLog, IDLE_TIMEOUT, 1000);
+    }
+
+    @Test
+    void silentMemberIsEvictedAndTheRoomIsTold() {
+        join("session-a", "alice");
+        join("session-b", "bob");
+
+        clock.advance(Duration.ofSeconds(30));
+        heartbeat("session-b");
+        clock.advance(Duration.ofSeconds(29));
+        assertEquals(0, reaper.reap());
+
+        clock.advance(Duration.ofSeconds(2));
+        assertEquals(1, reaper.reap());
+        assertEquals(Set.of("bob"), roomService.getRoomUsers("room1"));
+        assertNull(userSessionRegistry.getSessionId("room1", "alice"));
+        ArgumentCaptor<UserLeftMessage> left = ArgumentCaptor.forClass(UserLeftMessage.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/room/room1"), left.capture());
+        assertEquals("alice", left.getValue().getUserId());
+        assertEquals(3L, left.getValue().getVersion());
+        assertEquals(1.0, meterRegistry.get("signaling.evictions").tag("kind", "member").counter().count());
+
+        // Bob's heartbeat moved his deadline to 90s
+        clock.advance(Duration.ofSeconds(30));
+        assertEquals(1, reaper.reap());
+        assertEquals(0, roomService.getRoomCount());
+        assertEquals(0, tracker.trackedSessions());
+    }
+
+    @Test
+    void closedAndReconnectedSessionsAreLeftAlone() {
+        join("session-a", "alice");
+        join("session-b", "bob");
+        tracker.forget("session-a");
+        // Bob's socket dropped without a disconnect and he came back on a new one
+        clock.advance(Duration.ofSeconds(10));
+        join("session-b2", "bob");
+
+        clock.advance(Duration.ofSeconds(55));
+        assertEquals(0, reaper.reap());
+        assertEquals(Set.of("alice", "bob"), roomService.getRoomUsers("room1"));
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void leavingAndJoiningAgainKeepsOneWheelEntryPerSession() {
+        join("session-a", "alice");
+        for (int i = 0; i < 20; i++) {
+            clock.advance(Duration.ofSeconds(1));
+            roomService.leaveRoom("room1", "alice");
+            tracker.forget("session-a");
+            reaper.reap();
+            join("session-a", "alice");
+        }
+        assertEquals(1, tracker.scheduledEntries());
+
+        // The one entry still finds the session once it goes quiet
+        clock.advance(Duration.ofSeconds(61));
+        assertEquals(1, reaper.reap());
+        assertEquals(0, tracker.scheduledEntries());
+    }
+
+    @Test
+    void sessionsAreStillEvictedAfterTheReaperFellBehind() {
+        join("session-a", "alice");
+
+        clock.advance(Duration.ofMinutes(10));
+        assertEquals(1, reaper.reap());
+        assertEquals(0, roomService.getRoomCount());
+    }
+
+    @Test
+    void evictionRunsOnTheRoomsLane() throws Exception {
+        RoomAffinityExecutor lanes = new RoomAffinityExecutor(2);
+        when(roomAffinityExecutor.getIfAvailable()).thenReturn(lanes);
+        CompletableFuture<String> broadcastThread = new CompletableFuture<>();
+        doAnswer(invocation -> broadcastThread.complete(Thread.currentThread().getName()))
+                .when(messagingTemplate).convertAndSend(eq("/topic/room/room1"), any(Object.class));
+        try {
+            join("session-a", "alice");
+            clock.advance(Duration.ofSeconds(61));
+            assertEquals(1, reaper.reap());
+
+            assertTrue(broadcastThread.get(2, TimeUnit.SECONDS).startsWith("signaling-lane-"));
+            lanes.fence().get(2, TimeUnit.SECONDS);
+            assertFalse(roomService.isUserInRoom("room1", "alice"));
+        } finally {
+            lanes.destroy();
+        }
+    }
+
+    @Test
+    void emptyRoomsAreSwept() {
+        join("session-a", "alice");
+        // What a join racing the last leave can leave in the room index
+        store.addToSet("test:rooms", "ghost");
+        assertEquals(2, roomService.getRoomCount());
+
+        assertEquals(1, reaper.sweepEmptyRooms());
+        assertEquals(1, roomService.getRoomCount());
+        assertEquals(1.0, meterRegistry.get("signaling.evictions").tag("kind", "room").counter().count());
+    }
+
+    private void join(String sessionId, String userId) {
+        roomService.joinRoom("room1", userId, userId);
+        userSessionRegistry.register("room1", userId, sessionId);
+        tracker.track(sessionId, "room1", userId);
+    }
+
+    private void heartbeat(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.HEARTBEAT);
+        accessor.setSessionId(sessionId);
+        tracker.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), mock(MessageChannel.class));
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
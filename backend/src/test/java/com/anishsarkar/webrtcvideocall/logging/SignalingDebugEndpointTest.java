@@ -0,0 +1,63 @@
+package com.anishsarkar.webrtcvideocall.logging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SignalingDebugEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private SignalingEventLog signalingEventLog;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void debugModeIsSwitchedPerRoom() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> enabled = restTemplate.postForEntity(actuator("signalingdebug/room-7"),
+                new HttpEntity<>(headers), String.class);
+        assertEquals(HttpStatus.OK, enabled.getStatusCode());
+        assertTrue(enabled.getBody().contains("\"room-7\""), enabled.getBody());
+        assertTrue(signalingEventLog.isDebug("room-7"));
+        assertFalse(signalingEventLog.isDebug("room-8"));
+
+        String listed = restTemplate.getForObject(actuator("signalingdebug"), String.class);
+        assertTrue(listed.contains("\"room-7\""), listed);
+
+        restTemplate.exchange(actuator("signalingdebug/room-7"), HttpMethod.DELETE, null, String.class);
+        assertFalse(signalingEventLog.isDebug("room-7"));
+    }
+
+    @Test
+    void debugModeCannotBeSwitchedFromTheApplicationPort() {
+        ResponseEntity<String> response = restTemplate.postForEntity(
+                "http://localhost:" + serverPort + "/actuator/signalingdebug/room-9", null, String.class);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        assertFalse(signalingEventLog.isDebug("room-9"));
+    }
+
+    private String actuator(String path) {
+        return "http://localhost:" + managementPort + "/actuator/" + path;
+    }
+}
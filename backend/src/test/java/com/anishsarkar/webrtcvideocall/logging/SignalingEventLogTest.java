@@ -0,0 +1,112 @@
+package com.anishsarkar.webrtcvideocall.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignalingEventLogTest {
+
+    private final Logger events = (Logger) LoggerFactory.getLogger("signaling.events");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        events.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        events.detachAppender(appender);
+    }
+
+    @Test
+    void eachRoomAndTypeGetsItsOwnBudget() {
+        SignalingEventLog log = new SignalingEventLog(2, 30, 100);
+
+        for (int i = 0; i < 10; i++) {
+            log.relayed(MessageType.ICE_CANDIDATE, "room1", "alice", "bob", 1, 100);
+        }
+        log.relayed(MessageType.OFFER, "room1", "alice", "bob", 1, 5000);
+        log.relayed(MessageType.ICE_CANDIDATE, "room2", "carol", "dave", 1, 100);
+
+        assertEquals(2, lines("type=ICE_CANDIDATE room=room1").size());
+        assertEquals(1, lines("type=OFFER room=room1").size());
+        assertEquals(1, lines("type=ICE_CANDIDATE room=room2").size());
+    }
+
+    @Test
+    void suppressedLinesAreReportedOnTheNextWrittenOne() throws Exception {
+        SignalingEventLog log = new SignalingEventLog(1, 30, 100);
+
+        for (int i = 0; i < 5; i++) {
+            log.relayed(MessageType.ICE_CANDIDATE, "room1", "alice", "bob", 1, 100);
+        }
+        Thread.sleep(1100);
+        log.relayed(MessageType.ICE_CANDIDATE, "room1", "alice", "bob", 1, 100);
+
+        List<String> lines = lines("room=room1");
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith("suppressed=0"), lines.get(0));
+        assertTrue(lines.get(1).endsWith("suppressed=4"), lines.get(1));
+    }
+
+    @Test
+    void debugRoomLogsEveryEventUntilDisabled() {
+        SignalingEventLog log = new SignalingEventLog(1, 30, 100);
+        log.enableDebug("room1");
+
+        for (int i = 0; i < 10; i++) {
+            log.relayed(MessageType.ICE_CANDIDATE, "room1", "alice", "bob", 1, 100);
+            log.relayed(MessageType.ICE_CANDIDATE, "room2", "carol", "dave", 1, 100);
+        }
+        assertEquals(10, lines("room=room1").stream().filter(line -> line.startsWith("event=relayed")).count());
+        assertEquals(1, lines("room=room2").size());
+        assertTrue(log.getDebugRooms().containsKey("room1"));
+
+        log.disableDebug("room1");
+        log.relayed(MessageType.ICE_CANDIDATE, "room1", "alice", "bob", 1, 100);
+        assertFalse(log.isDebug("room1"));
+        assertTrue(log.getDebugRooms().isEmpty());
+    }
+
+    @Test
+    void debugSwitchExpires() {
+        SignalingEventLog log = new SignalingEventLog(1, 0, 100);
+        log.enableDebug("room1");
+
+        assertFalse(log.isDebug("room1"));
+        assertTrue(log.getDebugRooms().isEmpty());
+    }
+
+    @Test
+    void madeUpRoomsCannotGrowTheSamplers() {
+        SignalingEventLog log = new SignalingEventLog(1, 30, 10);
+
+        for (int i = 0; i < 50; i++) {
+            log.rejected(MessageType.ERROR, "made-up-" + i, "mallory", "USER_NOT_IN_ROOM");
+        }
+        assertEquals(10, log.samplerCount());
+
+        log.roomClosed("made-up-0");
+        log.relayed(MessageType.OFFER, "room1", "alice", "bob", 1, 5000);
+        assertEquals(10, log.samplerCount());
+        assertEquals(1, lines("room=room1 ").size());
+    }
+
+    private List<String> lines(String fragment) {
+        return appender.list.stream()
+                .map(ILoggingEvent::getFormattedMessage)
+                .filter(line -> line.contains(fragment))
+                .toList();
+    }
+}
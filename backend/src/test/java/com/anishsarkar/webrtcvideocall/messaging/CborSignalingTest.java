@@ -0,0 +1,171 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.WebSocketClient;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A JSON client and a CBOR client exchanging an offer with a full SDP blob: each one
+ * receives it in the codec it negotiated on CONNECT, with the SDP intact.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CborSignalingTest {
+
+    private static final String ROOM = "codec-room";
+
+    @LocalServerPort
+    private int port;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new CBORMapper();
+    private final List<StompSession> sessions = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        sessions.forEach(StompSession::disconnect);
+    }
+
+    @Test
+    void offerIsDeliveredInEachSessionsCodec() throws Exception {
+        String sdp = new ClassPathResource("sdp/chrome-offer.sdp").getContentAsString(StandardCharsets.UTF_8)
+                .replace("\n", "\r\n");
+
+        BlockingQueue<Received> alice = connect("alice", null);
+        BlockingQueue<Received> bob = connect("bob", CborMessageConverter.APPLICATION_CBOR);
+
+        // JSON in, CBOR out
+        send(sessions.get(0), MimeTypeUtils.APPLICATION_JSON, offer("alice", "bob", sdp));
+        Received toBob = awaitType(bob, "OFFER");
+        assertEquals(CborMessageConverter.APPLICATION_CBOR, toBob.contentType());
+        assertEquals(sdp, cborMapper.readTree(toBob.body()).path("offer").path("sdp").asText());
+
+        // CBOR in, JSON out
+        send(sessions.get(1), CborMessageConverter.APPLICATION_CBOR, offer("bob", "alice", sdp));
+        Received toAlice = awaitType(alice, "OFFER");
+        assertTrue(MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(toAlice.contentType()));
+        assertEquals(sdp, jsonMapper.readTree(toAlice.body()).path("offer").path("sdp").asText());
+
+        System.out.printf("Offer with %d-byte SDP: JSON %d bytes, CBOR %d bytes%n",
+                sdp.length(), toAlice.body().length, toBob.body().length);
+        assertTrue(toBob.body().length < toAlice.body().length);
+    }
+
+    private BlockingQueue<Received> connect(String userId, MimeType accept) throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new BinaryFrameWebSocketClient());
+        stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON, CborMessageConverter.APPLICATION_CBOR);
+        }});
+
+        StompHeaders connectHeaders = new StompHeaders();
+        if (accept != null) {
+            connectHeaders.add(SignalingCodecRegistry.ACCEPT_CONTENT_TYPE_HEADER, accept.toString());
+        }
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                        new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        sessions.add(session);
+
+        BlockingQueue<Received> received = new LinkedBlockingQueue<>();
+        StompFrameHandler handler = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add(new Received(headers.getContentType(), (byte[]) payload));
+            }
+        };
+        session.subscribe("/user/queue/signal", handler);
+        session.subscribe("/topic/room/" + ROOM, handler);
+
+        // Membership broadcasts stay JSON for everyone
+        send(session, MimeTypeUtils.APPLICATION_JSON, new JoinRoomMessage(ROOM, userId, userId));
+        awaitType(received, "USER_JOINED");
+        return received;
+    }
+
+    private Received awaitType(BlockingQueue<Received> queue, String type) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            Received next = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (next != null && type.equals(next.tree(this).path("type").asText())) {
+                return next;
+            }
+        }
+        return fail(type + " not received");
+    }
+
+    private OfferMessage offer(String from, String to, String sdp) {
+        return new OfferMessage(ROOM, from, to,
+                RawPayload.of(jsonMapper.createObjectNode().put("type", "offer").put("sdp", sdp)));
+    }
+
+    private void send(StompSession session, MimeType contentType, BaseMessage message) throws Exception {
+        ObjectMapper mapper = CborMessageConverter.APPLICATION_CBOR.equals(contentType) ? cborMapper : jsonMapper;
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(message instanceof OfferMessage ? "/app/offer" : "/app/join");
+        headers.setContentType(contentType);
+        session.send(headers, mapper.writerFor(BaseMessage.class).writeValueAsBytes(message));
+    }
+
+    /**
+     * Like a browser client, sends CBOR frames as binary WebSocket messages.
+     */
+    private static class BinaryFrameWebSocketClient implements WebSocketClient {
+        private final WebSocketClient delegate = new StandardWebSocketClient();
+
+        @Override
+        public CompletableFuture<WebSocketSession> execute(WebSocketHandler handler, String uriTemplate, Object... uriVariables) {
+            return delegate.execute(new BinaryFrameHandlerDecorator(handler), uriTemplate, uriVariables);
+        }
+
+        @Override
+        public CompletableFuture<WebSocketSession> execute(WebSocketHandler handler, WebSocketHttpHeaders headers, URI uri) {
+            return delegate.execute(new BinaryFrameHandlerDecorator(handler), headers, uri);
+        }
+    }
+
+    private record Received(MimeType contentType, byte[] body) {
+        JsonNode tree(CborSignalingTest test) throws Exception {
+            boolean cbor = CborMessageConverter.APPLICATION_CBOR.equalsTypeAndSubtype(contentType);
+            return (cbor ? test.cborMapper : test.jsonMapper).readTree(body);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The application port is the one clients reach; admin endpoints live only on the management port
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DrainEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private NodeDrain nodeDrain;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void drainIsNotReachableOnTheApplicationPort() {
+        assertNotEquals(serverPort, managementPort);
+
+        assertEquals(HttpStatus.NOT_FOUND, restTemplate.postForEntity(
+                "http://localhost:" + serverPort + "/actuator/drain", null, String.class).getStatusCode());
+        assertFalse(nodeDrain.isDraining());
+
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(
+                "http://localhost:" + managementPort + "/actuator/drain", String.class).getStatusCode());
+    }
+}
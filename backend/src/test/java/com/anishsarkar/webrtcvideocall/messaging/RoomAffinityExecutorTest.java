@@ -0,0 +1,99 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomAffinityExecutorTest {
+
+    private final RoomAffinityExecutor executor = new RoomAffinityExecutor(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    void testMessagesOfARoomAreHandledInSendOrder() throws InterruptedException {
+        int rooms = 200;
+        int perRoom = 50;
+        Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(rooms * perRoom);
+
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+        MessageHandler handler = message -> {
+            String roomId = RoomAffinityExecutor.shardKey(message);
+            // Unsynchronized list: safe only because a room never runs on two threads at once
+            handled.computeIfAbsent(roomId, k -> new ArrayList<>()).add((Integer) message.getPayload());
+            done.countDown();
+        };
+        channel.subscribe(handler);
+
+        // Several producers, each owning a slice of the rooms
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            producers.add(Thread.startVirtualThread(() -> {
+                for (int seq = 0; seq < perRoom; seq++) {
+                    for (int room = producer; room < rooms; room += 4) {
+                        channel.send(message("room" + room, "session" + room, null, seq));
+                    }
+                }
+            }));
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(rooms, handled.size());
+        for (List<Integer> sequence : handled.values()) {
+            assertEquals(perRoom, sequence.size());
+            for (int i = 0; i < perRoom; i++) {
+                assertEquals(i, sequence.get(i));
+            }
+        }
+    }
+
+    @Test
+    void testShardKeyPrefersRoomHeaderThenSessionRoomThenSession() {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("roomId", "joinedRoom");
+
+        assertEquals("headerRoom", RoomAffinityExecutor.shardKey(message("headerRoom", "s1", attributes, 0)));
+        assertEquals("joinedRoom", RoomAffinityExecutor.shardKey(message(null, "s1", attributes, 0)));
+        assertEquals("s1", RoomAffinityExecutor.shardKey(message(null, "s1", new HashMap<>(), 0)));
+    }
+
+    @Test
+    void testSameKeyAlwaysMapsToSameLane() {
+        assertEquals(executor.laneFor("room42"), executor.laneFor("room42"));
+        assertTrue(executor.laneFor("room42") < executor.laneCount());
+        assertEquals(0, executor.laneFor(null));
+    }
+
+    private static Message<Integer> message(String roomHeader, String sessionId, Map<String, Object> attributes, int payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSessionAttributes(attributes);
+        if (roomHeader != null) {
+            accessor.setNativeHeader(RoomAffinityExecutor.ROOM_ID_HEADER, roomHeader);
+        }
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
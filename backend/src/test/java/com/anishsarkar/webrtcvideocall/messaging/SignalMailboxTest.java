@@ -0,0 +1,190 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.anishsarkar.webrtcvideocall.service.UserSessionRegistry;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SignalMailboxTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final InMemoryRoomRegistry registry = new InMemoryRoomRegistry();
+    private final RoomService roomService = new RoomService(registry);
+    private final UserSessionRegistry userSessionRegistry = new UserSessionRegistry(registry);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SignalingMetrics signalingMetrics = new SignalingMetrics(meterRegistry, roomService);
+    private final List<String> delivered = new ArrayList<>();
+
+    @Test
+    void messagesWaitForTheSubscriptionAndGoOutInOrder() {
+        SignalMailbox mailbox = mailbox(10_000, 100, 100_000);
+        connect(mailbox, "session-b");
+        roomService.joinRoom("room1", "bob", "Bob");
+        userSessionRegistry.register("room1", "bob", "session-b");
+
+        assertTrue(mailbox.isPending("room1", "bob", "session-b"));
+        assertTrue(mailbox.deliver("room1", "bob", offer("v=0"), this::sink));
+        assertTrue(mailbox.deliver("room1", "bob", candidate("c1"), this::sink));
+        assertTrue(delivered.isEmpty());
+        assertEquals(2.0, meterRegistry.get("signaling.mailbox.depth").gauge().value());
+
+        // A subscription to anything else confirms nothing
+        mailbox.afterMessageHandled(subscribe("session-b", "/topic/room/room1"), mock(MessageChannel.class),
+                mock(UserDestinationMessageHandler.class), null);
+        assertTrue(delivered.isEmpty());
+
+        mailbox.afterMessageHandled(subscribe("session-b", SignalMailbox.SIGNAL_DESTINATION), mock(MessageChannel.class),
+                mock(UserDestinationMessageHandler.class), null);
+        assertEquals(List.of("session-b:OFFER", "session-b:ICE_CANDIDATE"), delivered);
+        assertFalse(mailbox.isPending("room1", "bob", "session-b"));
+        assertEquals(0.0, meterRegistry.get("signaling.mailbox.depth").gauge().value());
+        assertEquals(2.0, meterRegistry.get("signaling.mailbox.flushed").counter().count());
+
+        // Straight through from now on
+        assertTrue(mailbox.deliver("room1", "bob", candidate("c2"), this::sink));
+        assertEquals(3, delivered.size());
+    }
+
+    @Test
+    void memberAwayFromTheRoomGetsItsMessagesOnRejoin() {
+        SignalMailbox mailbox = mailbox(10_000, 100, 100_000);
+        roomService.joinRoom("room1", "bob", "Bob");
+
+        // No session at all, as while the membership is held for a reconnect
+        assertTrue(mailbox.deliver("room1", "bob", offer("v=0"), this::sink));
+        // Neither connected nor a member: left to the caller
+        assertFalse(mailbox.deliver("room1", "carol", offer("v=0"), this::sink));
+
+        userSessionRegistry.register("room1", "bob", "session-b2");
+        mailbox.flush("room1", "bob");
+        assertEquals(List.of("session-b2:OFFER"), delivered);
+    }
+
+    @Test
+    void leavingOneRoomKeepsWhatIsHeldForAnother() {
+        SignalMailbox mailbox = mailbox(10_000, 100, 100_000);
+        roomService.joinRoom("room1", "bob", "Bob");
+        roomService.joinRoom("room2", "bob", "Bob");
+        mailbox.deliver("room1", "bob", offer("v=0"), this::sink);
+        mailbox.deliver("room2", "bob", candidate("c1"), this::sink);
+
+        userSessionRegistry.register("room2", "bob", "session-b");
+        mailbox.discard("room1", "bob");
+        assertFalse(mailbox.isPending("room1", "bob", "session-b"));
+        // Still has to queue behind the held candidate
+        assertTrue(mailbox.isPending("room2", "bob", "session-b"));
+
+        mailbox.flush("room2", "bob");
+        assertEquals(List.of("session-b:ICE_CANDIDATE"), delivered);
+        assertFalse(mailbox.isPending("room2", "bob", "session-b"));
+    }
+
+    @Test
+    void sendsHappenOutsideTheMailboxLock() {
+        SignalMailbox mailbox = mailbox(10_000, 100, 100_000);
+        roomService.joinRoom("room1", "bob", "Bob");
+        BiConsumer<String, BaseMessage> sink = (sessionId, message) -> {
+            assertFalse(Thread.holdsLock(mailbox), "sent while holding the mailbox");
+            sink(sessionId, message);
+        };
+        mailbox.deliver("room1", "bob", offer("v=0"), sink);
+
+        userSessionRegistry.register("room1", "bob", "session-b");
+        assertTrue(mailbox.deliver("room1", "bob", candidate("c1"), sink));
+        assertEquals(List.of("session-b:OFFER", "session-b:ICE_CANDIDATE"), delivered);
+    }
+
+    @Test
+    void boundsDropTheOldestAndTheExpired() {
+        SignalMailbox mailbox = mailbox(1_000, 3, 100_000);
+        roomService.joinRoom("room1", "bob", "Bob");
+        for (int i = 0; i < 5; i++) {
+            mailbox.deliver("room1", "bob", candidate("c" + i), this::sink);
+        }
+        assertEquals(2.0, dropped("overflow"));
+
+        // One large offer pushes the held candidates out by size
+        SignalMailbox small = mailbox(1_000, 100, 1_000);
+        roomService.joinRoom("room2", "dave", "Dave");
+        small.deliver("room2", "dave", candidate("c"), this::sink);
+        small.deliver("room2", "dave", offer("v=0 " + "a".repeat(900)), this::sink);
+        assertEquals(3.0, dropped("overflow"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        userSessionRegistry.register("room1", "bob", "session-b");
+        mailbox.flush("room1", "bob");
+        assertTrue(delivered.isEmpty());
+        assertEquals(3.0, dropped("expired"));
+
+        small.discard("room2", "dave");
+        assertEquals(1.0, dropped("left"));
+        assertEquals(0.0, meterRegistry.get("signaling.mailbox.depth").gauge().value());
+    }
+
+    private SignalMailbox mailbox(long ttlMillis, int maxMessages, int maxBytes) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<SignalingMetrics> metrics = mock(ObjectProvider.class);
+        when(metrics.getObject()).thenReturn(signalingMetrics);
+        return new SignalMailbox(ttlMillis, maxMessages, maxBytes, roomService, userSessionRegistry, metrics, now::get);
+    }
+
+    private void sink(String sessionId, BaseMessage message) {
+        delivered.add(sessionId + ":" + message.getType());
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("signaling.mailbox.dropped").tag("reason", reason).counter().count();
+    }
+
+    private static void connect(SignalMailbox mailbox, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        mailbox.handleSessionConnect(new SessionConnectEvent(mailbox,
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders())));
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        Map<String, Object> sessionAttributes = new HashMap<>();
+        sessionAttributes.put("roomId", "room1");
+        sessionAttributes.put("userId", "bob");
+        accessor.setSessionAttributes(sessionAttributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static OfferMessage offer(String sdp) {
+        return new OfferMessage("room1", "alice", "bob", RawPayload.of(TextNode.valueOf(sdp)));
+    }
+
+    private static IceCandidateMessage candidate(String candidate) {
+        return new IceCandidateMessage("room1", "alice", "bob", RawPayload.of(TextNode.valueOf(candidate)));
+    }
+}
@@ -0,0 +1,145 @@
+package com.anishsarkar.webrtcvideocall.messaging;
+
+import com.anishsarkar.webrtcvideocall.dto.ErrorMessage;
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.metrics.SignalingMetrics;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SignalingAdmissionInterceptorTest {
+
+    private final AtomicLong now = new AtomicLong(-TimeUnit.SECONDS.toNanos(100));
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final SignalingMetrics signalingMetrics = mock(SignalingMetrics.class);
+    private final OutboundBacklog outboundBacklog = new OutboundBacklog();
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @Test
+    void sessionOverItsBudgetIsDroppedAndToldOncePerSecond() {
+        SignalingAdmissionInterceptor admission = admission("ICE_CANDIDATE:10/5", "", 0);
+
+        assertEquals(5, admitted(admission, 8, "/app/ice-candidate", "session1", "room1"));
+        ArgumentCaptor<ErrorMessage> error = ArgumentCaptor.forClass(ErrorMessage.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("session1"), eq("/queue/signal"), error.capture(), any(MessageHeaders.class));
+        assertEquals("RATE_LIMITED", error.getValue().getErrorCode());
+        assertEquals("alice", error.getValue().getUserId());
+        verify(signalingMetrics, times(3)).recordRejected(MessageType.ICE_CANDIDATE, "RATE_LIMITED");
+
+        // 10 per second refills one token every 100 ms
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, admitted(admission, 2, "/app/ice-candidate", "session1", "room1"));
+        // Other sessions and unlimited types are unaffected
+        assertEquals(5, admitted(admission, 5, "/app/ice-candidate", "session2", "room1"));
+        assertEquals(5, admitted(admission, 5, "/app/offer", "session1", "room1"));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        admitted(admission, 10, "/app/ice-candidate", "session1", "room1");
+        verify(messagingTemplate, times(2)).convertAndSendToUser(eq("session1"), anyString(), any(ErrorMessage.class), any(MessageHeaders.class));
+    }
+
+    @Test
+    void roomBudgetIsSharedByItsMembers() {
+        SignalingAdmissionInterceptor admission = admission("", "OFFER:1/3", 0);
+
+        assertEquals(2, admitted(admission, 2, "/app/offer", "session1", "room1"));
+        assertEquals(1, admitted(admission, 2, "/app/offer", "session2", "room1"));
+        assertEquals(3, admitted(admission, 3, "/app/offer", "session3", "room2"));
+    }
+
+    @Test
+    void roomBudgetFollowsTheJoinedRoomNotTheHeader() {
+        SignalingAdmissionInterceptor admission = admission("", "OFFER:1/3", 0);
+
+        // Joined room2, claims room1 in the header: room2's budget pays
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(admission.preSend(message("/app/offer", "mallory", "room2", "room1"), channel));
+        }
+        assertNull(admission.preSend(message("/app/offer", "mallory", "room2", "room1"), channel));
+        assertEquals(3, admitted(admission, 3, "/app/offer", "session1", "room1"));
+
+        // Not joined yet: the header names no budget at all, so room1 being spent does not matter
+        assertEquals(5, admitted(admission, 5, "/app/offer", "session2", null, "room1"));
+    }
+
+    @Test
+    void outboundBacklogTurnsAwayEverythingButLeave() {
+        SignalingAdmissionInterceptor admission = admission("", "", 2);
+        for (int i = 0; i < 3; i++) {
+            outboundBacklog.preSend(message("/topic/room/room1", "session9", "room1"), channel);
+        }
+
+        assertEquals(0, admitted(admission, 1, "/app/join", "session1", "room1"));
+        assertEquals(1, admitted(admission, 1, "/app/leave", "session1", "room1"));
+        verify(signalingMetrics).recordRejected(MessageType.JOIN_ROOM, "SERVER_BUSY");
+
+        outboundBacklog.afterSendCompletion(message("/topic/room/room1", "session9", "room1"), channel, false, null);
+        assertEquals(1, admitted(admission, 1, "/app/join", "session1", "room1"));
+    }
+
+    @Test
+    void leaveCannotBeLimited() {
+        assertThrows(IllegalArgumentException.class, () -> SignalingAdmissionInterceptor.parseLimits("LEAVE_ROOM:1/1"));
+        assertThrows(IllegalArgumentException.class, () -> SignalingAdmissionInterceptor.parseLimits("OFFER:5"));
+    }
+
+    private SignalingAdmissionInterceptor admission(String sessionLimits, String roomLimits, int backlogLimit) {
+        return new SignalingAdmissionInterceptor(true, sessionLimits, roomLimits, backlogLimit, outboundBacklog,
+                provider(messagingTemplate), provider(signalingMetrics), now::get);
+    }
+
+    private int admitted(SignalingAdmissionInterceptor admission, int count, String destination, String sessionId, String roomId) {
+        return admitted(admission, count, destination, sessionId, roomId, roomId);
+    }
+
+    private int admitted(SignalingAdmissionInterceptor admission, int count, String destination, String sessionId,
+                         String joinedRoomId, String headerRoomId) {
+        int admitted = 0;
+        for (int i = 0; i < count; i++) {
+            if (admission.preSend(message(destination, sessionId, joinedRoomId, headerRoomId), channel) != null) {
+                admitted++;
+            }
+        }
+        return admitted;
+    }
+
+    private static Message<byte[]> message(String destination, String sessionId, String roomId) {
+        return message(destination, sessionId, roomId, roomId);
+    }
+
+    private static Message<byte[]> message(String destination, String sessionId, String joinedRoomId, String headerRoomId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader(RoomAffinityExecutor.ROOM_ID_HEADER, headerRoomId);
+        Map<String, Object> sessionAttributes = new HashMap<>();
+        sessionAttributes.put("userId", "alice");
+        if (joinedRoomId != null) {
+            sessionAttributes.put("roomId", joinedRoomId);
+        }
+        accessor.setSessionAttributes(sessionAttributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ObjectProvider<T> provider(T bean) {
+        ObjectProvider<T> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(bean);
+        return provider;
+    }
+}
@@ -0,0 +1,138 @@
+package com.anishsarkar.webrtcvideocall.metrics;
+
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NegotiationTracerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * MS);
+    private SimpleMeterRegistry registry;
+    private NegotiationTracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        tracer = new NegotiationTracer(64, 10_000, new SignalingMetrics(registry, new RoomService()), now::get);
+    }
+
+    @Test
+    void offerAnswerAndCandidatesMakeOneTimeline() {
+        long sent = System.currentTimeMillis() - 50;
+        long offerAt = now.get();
+        now.addAndGet(2 * MS);
+        tracer.offer("room1", "alice", "bob", sent, offerAt);
+        now.addAndGet(3 * MS);
+        // Candidates come from both sides
+        tracer.candidate("room1", "alice", "bob", sent, now.get(), true);
+        now.addAndGet(40 * MS);
+        long answerAt = now.get();
+        now.addAndGet(MS);
+        assertEquals(45 * MS, tracer.answer("room1", "bob", "alice", sent, answerAt));
+        tracer.candidate("room1", "bob", "alice", sent, now.get(), false);
+        now.addAndGet(20 * MS);
+        tracer.candidate("room1", "alice", "bob", sent, now.get(), true);
+
+        // The answer only counts once
+        assertEquals(-1, tracer.answer("room1", "bob", "alice", sent, now.get()));
+        assertEquals(-1, tracer.answer("room1", "alice", "bob", sent, now.get()));
+
+        List<Map<String, Object>> dump = tracer.dump("room1");
+        assertEquals(1, dump.size());
+        Map<String, Object> timeline = dump.get(0);
+        assertEquals("alice", timeline.get("offererId"));
+        assertEquals("bob", timeline.get("answererId"));
+        assertEquals(45.0, timeline.get("offerToAnswerMillis"));
+        assertEquals(2000L, timeline.get("offerDwellMicros"));
+        assertEquals(1000L, timeline.get("answerDwellMicros"));
+        assertEquals(3, timeline.get("candidates"));
+        assertEquals(5.0, timeline.get("firstCandidateAfterOfferMillis"));
+        assertEquals(61.0, timeline.get("candidateSpanMillis"));
+        assertEquals(false, timeline.get("closed"));
+        assertTrue(tracer.dump("room2").isEmpty());
+
+        assertEquals(1, registry.get("signaling.negotiation.offer.answer").timer().count());
+        assertEquals(45.0, registry.get("signaling.negotiation.offer.answer").timer().totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(1, registry.get("signaling.negotiation.dwell").tag("type", "offer").timer().count());
+        // Batched candidates wait for their batch on purpose
+        assertEquals(2, registry.get("signaling.negotiation.dwell").tag("type", "ice_candidate").timer().count());
+        assertEquals(1, registry.get("signaling.negotiation.client.delay").tag("type", "offer").timer().count());
+        // The span is recorded once the negotiation is over
+        assertEquals(0, registry.get("signaling.negotiation.candidates").timer().count());
+    }
+
+    @Test
+    void idleAndRenegotiatedTracesAreClosedOnce() {
+        tracer.offer("room1", "alice", "bob", 0, now.get());
+        tracer.candidate("room1", "bob", "alice", 0, now.get(), true);
+        now.addAndGet(30 * MS);
+        tracer.candidate("room1", "bob", "alice", 0, now.get(), true);
+        tracer.offer("room1", "carol", "alice", 0, now.get());
+
+        now.addAndGet(10_001 * MS);
+        assertEquals(2, tracer.sweep());
+        assertEquals(0, tracer.sweep());
+        // Late traffic does not reopen a closed trace
+        tracer.candidate("room1", "bob", "alice", 0, now.get(), true);
+        assertEquals(-1, tracer.answer("room1", "bob", "alice", 0, now.get()));
+        assertTrue(tracer.dump("room1").stream().allMatch(timeline -> (Boolean) timeline.get("closed")));
+
+        tracer.offer("room1", "alice", "bob", 0, now.get());
+        tracer.candidate("room1", "alice", "bob", 0, now.get(), true);
+        now.addAndGet(5 * MS);
+        tracer.candidate("room1", "alice", "bob", 0, now.get(), true);
+        // An ICE restart starts over and closes the timeline it replaces
+        tracer.offer("room1", "alice", "bob", 0, now.get());
+
+        assertEquals(2, registry.get("signaling.negotiation.candidates").timer().count());
+        assertEquals(35.0, registry.get("signaling.negotiation.candidates").timer().totalTime(TimeUnit.MILLISECONDS));
+        assertEquals(0, registry.get("signaling.negotiation.client.delay").tag("type", "offer").timer().count());
+    }
+
+    @Test
+    void tableStaysTheSameSizeWhateverThePairs() {
+        for (int i = 0; i < 1000; i++) {
+            tracer.offer("room-" + (i % 10), "user-" + i, "user-" + (i + 1), 0, now.get());
+        }
+        int traced = 0;
+        for (int i = 0; i < 10; i++) {
+            traced += tracer.dump("room-" + i).size();
+        }
+        assertTrue(traced <= 64, traced + " traces in 64 slots");
+
+        NegotiationTracer off = new NegotiationTracer(0, 10_000, new SignalingMetrics(registry, new RoomService()), now::get);
+        off.offer("room1", "alice", "bob", 0, now.get());
+        assertEquals(-1, off.answer("room1", "bob", "alice", 0, now.get()));
+        assertTrue(off.dump("room1").isEmpty());
+    }
+
+    @Test
+    void concurrentCandidatesAreAllCounted() throws Exception {
+        tracer.offer("room1", "alice", "bob", 0, now.get());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String from = t % 2 == 0 ? "alice" : "bob";
+            String to = t % 2 == 0 ? "bob" : "alice";
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    tracer.candidate("room1", from, to, 0, now.get(), true);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, tracer.dump("room1").get(0).get("candidates"));
+    }
+}
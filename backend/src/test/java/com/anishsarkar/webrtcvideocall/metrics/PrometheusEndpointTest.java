@@ -0,0 +1,44 @@
+package com.anishsarkar.webrtcvideocall.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Metrics export is off in tests unless asked for
+@AutoConfigureObservability(tracing = false)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PrometheusEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Test
+    void signalingMetricsAreScrapeable() {
+        ResponseEntity<String> response = restTemplate.getForEntity(actuator("prometheus"), String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String body = response.getBody();
+        assertTrue(body.contains("signaling_messages_handled_seconds_count{type=\"offer\""), body);
+        assertTrue(body.contains("signaling_rooms_active"), body);
+        assertTrue(body.contains("signaling_sessions_active"), body);
+        assertTrue(body.contains("signaling_channel_queue_depth{channel=\"clientOutboundChannel\""), body);
+        assertTrue(body.contains("signaling_outbound_backlog"), body);
+
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity(actuator("health"), String.class).getStatusCode());
+    }
+
+    private String actuator(String path) {
+        return "http://localhost:" + managementPort + "/actuator/" + path;
+    }
+}
@@ -0,0 +1,74 @@
+package com.anishsarkar.webrtcvideocall.metrics;
+
+import com.anishsarkar.webrtcvideocall.dto.MessageType;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SignalingMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private RoomService roomService;
+    private SignalingMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        roomService = new RoomService();
+        metrics = new SignalingMetrics(registry, roomService);
+    }
+
+    @Test
+    void messagesAreCountedPerType() {
+        metrics.recordHandled(MessageType.OFFER, System.nanoTime());
+        metrics.recordHandled(MessageType.OFFER, System.nanoTime());
+        metrics.recordHandled(MessageType.ICE_CANDIDATE, System.nanoTime());
+        metrics.recordRelayed(MessageType.ICE_CANDIDATE_BATCH);
+
+        assertEquals(2, registry.get("signaling.messages.handled").tag("type", "offer").timer().count());
+        assertEquals(1, registry.get("signaling.messages.handled").tag("type", "ice_candidate").timer().count());
+        assertEquals(0, registry.get("signaling.messages.handled").tag("type", "answer").timer().count());
+        assertEquals(1.0, registry.get("signaling.messages.relayed").tag("type", "ice_candidate_batch").counter().count());
+    }
+
+    @Test
+    void errorsAreCountedPerCode() {
+        metrics.recordError("USER_NOT_IN_ROOM");
+        metrics.recordError("USER_NOT_IN_ROOM");
+        metrics.recordError("OFFER_ERROR");
+
+        assertEquals(2.0, registry.get("signaling.errors").tag("code", "USER_NOT_IN_ROOM").counter().count());
+        assertEquals(1.0, registry.get("signaling.errors").tag("code", "OFFER_ERROR").counter().count());
+    }
+
+    @Test
+    void gaugesFollowRoomsUsersAndSessions() {
+        roomService.joinRoom("room1", "alice", "Alice");
+        roomService.joinRoom("room1", "bob", "Bob");
+        roomService.joinRoom("room2", "carol", "Carol");
+        metrics.sessionConnected("s1");
+        metrics.sessionConnected("s2");
+        metrics.sessionDisconnected("s2");
+        // Spring may publish the disconnect event twice for one session
+        metrics.sessionDisconnected("s2");
+
+        assertEquals(2.0, registry.get("signaling.rooms.active").gauge().value());
+        assertEquals(3.0, registry.get("signaling.users.active").gauge().value());
+        assertEquals(1.0, registry.get("signaling.sessions.active").gauge().value());
+
+        roomService.leaveRoom("room2", "carol");
+        assertEquals(1.0, registry.get("signaling.rooms.active").gauge().value());
+    }
+
+    @Test
+    void roomSizesAreRecorded() {
+        metrics.recordRoomSize(2);
+        metrics.recordRoomSize(4);
+
+        assertEquals(2, registry.get("signaling.room.size").summary().count());
+        assertEquals(4.0, registry.get("signaling.room.size").summary().max());
+    }
+}
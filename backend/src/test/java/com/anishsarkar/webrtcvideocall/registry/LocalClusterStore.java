@@ -0,0 +1,135 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM stand-in for Redis: several application contexts sharing one instance behave
+ * like backend nodes sharing one Redis server. Pub/sub delivery is asynchronous and
+ * ordered, as with a real subscriber connection.
+ */
+public class LocalClusterStore implements ClusterStore {
+
+    private final Map<String, Set<String>> sets = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, List<Consumer<byte[]>>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "local-cluster-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void addToSet(String key, String member) {
+        // Under the key's lock, so a concurrent removal of the last member cannot drop the set
+        sets.compute(key, (k, members) -> {
+            Set<String> set = members != null ? members : ConcurrentHashMap.newKeySet();
+            set.add(member);
+            return set;
+        });
+    }
+
+    @Override
+    public int addToBoundedSet(String key, String member, int maxSize) {
+        int[] result = new int[1];
+        sets.compute(key, (k, members) -> {
+            Set<String> set = members != null ? members : ConcurrentHashMap.newKeySet();
+            if (set.contains(member)) {
+                result[0] = 0;
+            } else if (set.size() >= maxSize) {
+                result[0] = -1;
+            } else {
+                set.add(member);
+                result[0] = 1;
+            }
+            return set.isEmpty() ? null : set;
+        });
+        return result[0];
+    }
+
+    @Override
+    public boolean removeFromSet(String key, String member) {
+        boolean[] removed = new boolean[1];
+        sets.computeIfPresent(key, (k, members) -> {
+            removed[0] = members.remove(member);
+            return members.isEmpty() ? null : members;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public Set<String> members(String key) {
+        Set<String> members = sets.get(key);
+        return members != null ? Set.copyOf(members) : Collections.emptySet();
+    }
+
+    @Override
+    public boolean isMember(String key, String member) {
+        Set<String> members = sets.get(key);
+        return members != null && members.contains(member);
+    }
+
+    @Override
+    public int setSize(String key) {
+        Set<String> members = sets.get(key);
+        return members != null ? members.size() : 0;
+    }
+
+    @Override
+    public void putField(String key, String field, String value) {
+        hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(field, value);
+    }
+
+    @Override
+    public String getField(String key, String field) {
+        Map<String, String> hash = hashes.get(key);
+        return hash != null ? hash.get(field) : null;
+    }
+
+    @Override
+    public List<String> getFields(String key, List<String> fields) {
+        Map<String, String> hash = hashes.getOrDefault(key, Map.of());
+        return fields.stream().map(hash::get).toList();
+    }
+
+    @Override
+    public void removeField(String key, String field) {
+        Map<String, String> hash = hashes.get(key);
+        if (hash != null) {
+            hash.remove(field);
+        }
+    }
+
+    @Override
+    public long incrementField(String key, String field, long delta) {
+        String value = hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>())
+                .merge(field, Long.toString(delta), (current, d) -> Long.toString(Long.parseLong(current) + Long.parseLong(d)));
+        return Long.parseLong(value);
+    }
+
+    @Override
+    public void removeFieldIfEquals(String key, String field, String expected) {
+        Map<String, String> hash = hashes.get(key);
+        if (hash != null) {
+            hash.remove(field, expected);
+        }
+    }
+
+    @Override
+    public void publish(String channel, byte[] payload) {
+        List<Consumer<byte[]>> listeners = subscribers.getOrDefault(channel, List.of());
+        publisher.execute(() -> listeners.forEach(listener -> listener.accept(payload)));
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<byte[]> listener) {
+        subscribers.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+}
@@ -0,0 +1,159 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import com.anishsarkar.webrtcvideocall.VideoCallApplication;
+import com.anishsarkar.webrtcvideocall.dto.BaseMessage;
+import com.anishsarkar.webrtcvideocall.dto.JoinRoomMessage;
+import com.anishsarkar.webrtcvideocall.dto.OfferMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.service.RoomService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two backend nodes in one JVM sharing a {@link LocalClusterStore}; one peer connects to
+ * each node and they join the same room.
+ */
+class MultiNodeSignalingTest {
+
+    private static final String ROOM = "cluster-room";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LocalClusterStore clusterStore = new LocalClusterStore();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private final List<StompSession> sessions = new ArrayList<>();
+
+    @BeforeEach
+    void startNodes() {
+        nodes.add(startNode());
+        nodes.add(startNode());
+    }
+
+    @AfterEach
+    void stopNodes() {
+        sessions.forEach(StompSession::disconnect);
+        nodes.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void roomSpansNodes() throws Exception {
+        BlockingQueue<JsonNode> aliceInbox = new LinkedBlockingQueue<>();
+        BlockingQueue<JsonNode> bobInbox = new LinkedBlockingQueue<>();
+        StompSession alice = connect(nodes.get(0), aliceInbox);
+        StompSession bob = connect(nodes.get(1), bobInbox);
+
+        send(alice, "/app/join", new JoinRoomMessage(ROOM, "alice", "Alice"));
+        awaitType(aliceInbox, "USER_JOINED");
+        send(bob, "/app/join", new JoinRoomMessage(ROOM, "bob", "Bob"));
+
+        // Bob's join is broadcast by node 2 and reaches Alice on node 1
+        JsonNode joined = awaitType(aliceInbox, "USER_JOINED");
+        assertEquals("bob", joined.get("userId").asText());
+        // Versions are shared too, Bob's snapshot from node 2 continues Alice's numbering
+        JsonNode snapshot = awaitType(bobInbox, "ROOM_SNAPSHOT");
+        assertEquals(2, snapshot.get("version").asLong());
+        assertEquals(2, joined.get("version").asLong());
+        assertEquals("Alice", snapshot.get("members").get("alice").asText());
+
+        // Membership is shared, so both nodes see both peers
+        for (ConfigurableApplicationContext node : nodes) {
+            RoomService roomService = node.getBean(RoomService.class);
+            assertEquals(2, roomService.getRoomSize(ROOM));
+            assertEquals("Alice", roomService.getUserName(ROOM, "alice"));
+        }
+
+        // Bob's offer is handled by node 2 and delivered to Alice's session on node 1 only
+        send(bob, "/app/offer", new OfferMessage(ROOM, "bob", "alice",
+                RawPayload.of(objectMapper.createObjectNode().put("type", "offer").put("sdp", "v=0"))));
+        JsonNode offer = awaitType(aliceInbox, "OFFER");
+        assertEquals("bob", offer.get("userId").asText());
+        assertEquals("v=0", offer.get("offer").get("sdp").asText());
+        assertTrue(bobInbox.stream().noneMatch(m -> "OFFER".equals(m.get("type").asText())));
+
+        // Leaving on one node removes the peer for everybody
+        bob.disconnect();
+        sessions.remove(bob);
+        JsonNode left = awaitType(aliceInbox, "USER_LEFT");
+        assertEquals("bob", left.get("userId").asText());
+        assertEquals(3, left.get("version").asLong());
+        assertEquals(1, nodes.get(0).getBean(RoomService.class).getRoomSize(ROOM));
+    }
+
+    private ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(VideoCallApplication.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton("clusterStore", clusterStore))
+                // A closed socket leaves the room at once instead of waiting to be resumed
+                .run("--server.port=0", "--signaling.registry.type=cluster", "--signaling.ice.batch-window-ms=0",
+                        "--signaling.session.resume-grace-ms=0");
+    }
+
+    private StompSession connect(ConfigurableApplicationContext node, BlockingQueue<JsonNode> inbox) throws Exception {
+        int port = Integer.parseInt(node.getEnvironment().getProperty("local.server.port"));
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new ByteArrayMessageConverter() {{
+            addSupportedMimeTypes(MimeTypeUtils.APPLICATION_JSON);
+        }});
+        StompSession session = stompClient
+                .connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {})
+                .get(5, TimeUnit.SECONDS);
+        StompFrameHandler handler = new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                try {
+                    inbox.add(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        session.subscribe("/topic/room/" + ROOM, handler);
+        session.subscribe("/user/queue/signal", handler);
+        sessions.add(session);
+        return session;
+    }
+
+    private JsonNode awaitType(BlockingQueue<JsonNode> inbox, String type) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            JsonNode message = inbox.poll(100, TimeUnit.MILLISECONDS);
+            if (message != null && type.equals(message.get("type").asText())) {
+                return message;
+            }
+        }
+        fail("No " + type + " message received");
+        return null;
+    }
+
+    private void send(StompSession session, String destination, Object payload) throws Exception {
+        StompHeaders headers = new StompHeaders();
+        headers.setDestination(destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        session.send(headers, objectMapper.writerFor(BaseMessage.class).writeValueAsBytes(payload));
+    }
+}
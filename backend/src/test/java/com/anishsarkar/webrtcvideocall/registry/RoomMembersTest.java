@@ -0,0 +1,50 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomMembersTest {
+
+    @Test
+    void membersKeepJoinOrderAndARejoinMovesToTheEnd() {
+        RoomMembers members = RoomMembers.EMPTY
+                .with("alice", "Alice", 1)
+                .with("bob", null, 2)
+                .with("carol", "Carol", 3)
+                .with("alice", "Alice again", 4);
+
+        assertEquals(List.of("bob", "carol", "alice"), List.copyOf(members.userIds()));
+        assertEquals(Set.of("alice", "bob", "carol"), members.userIds());
+        assertEquals("Alice again", members.userName(members.indexOf("alice")));
+        assertEquals(4, members.joinedAt(members.indexOf("alice")));
+        assertNull(members.userName(members.indexOf("bob")));
+
+        RoomMembers left = members.without("carol");
+        assertEquals(List.of("bob", "alice"), List.copyOf(left.userIds()));
+        assertFalse(left.contains("carol"));
+        assertSame(left, left.without("carol"));
+        assertTrue(left.without("bob").without("alice").isEmpty());
+        // The instance changed from stays as it was
+        assertEquals(3, members.size());
+    }
+
+    @Test
+    void largeRoomsAreIndexed() {
+        RoomMembers members = RoomMembers.EMPTY;
+        int size = RoomMembers.INDEX_THRESHOLD * 2;
+        for (int i = 0; i < size; i++) {
+            members = members.with("user-" + i, "User " + i, i);
+        }
+        members = members.without("user-3");
+
+        assertEquals(size - 1, members.size());
+        assertEquals(-1, members.indexOf("user-3"));
+        assertEquals(3, members.indexOf("user-4"));
+        assertEquals("User 31", members.userName(members.indexOf("user-31")));
+        assertEquals(size - 3, members.without("user-0").indexOf("user-31"));
+    }
+}
@@ -0,0 +1,182 @@
+package com.anishsarkar.webrtcvideocall.registry;
+
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads hammering one registry at once; afterwards every update must be visible.
+ * Runs against the in-memory registry and the clustered one on a {@link LocalClusterStore}.
+ */
+class RoomRegistryStressTest {
+
+    private static final int THREADS = 16;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    static Stream<Arguments> registries() {
+        IntFunction<RoomRegistry> inMemory = InMemoryRoomRegistry::new;
+        IntFunction<RoomRegistry> clustered = maxRoomSize -> new ClusteredRoomRegistry(new LocalClusterStore(), "test:", maxRoomSize);
+        return Stream.of(Arguments.of("memory", inMemory), Arguments.of("cluster", clustered));
+    }
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("registries")
+    void concurrentJoinsAndLeavesLoseNoUpdates(String name, IntFunction<RoomRegistry> factory) throws Exception {
+        int usersPerThread = 4;
+        int rounds = 500;
+        RoomRegistry registry = factory.apply(THREADS * usersPerThread + 1);
+        // Keeps the room, and so its version, alive for the whole run
+        registry.join("room", "resident", "Resident");
+
+        runConcurrently(thread -> {
+            for (int round = 0; round < rounds; round++) {
+                for (int user = 0; user < usersPerThread; user++) {
+                    String userId = "user-" + thread + "-" + user;
+                    assertTrue(registry.join("room", userId, userId).isJoined());
+                    // Odd users leave again in the final round
+                    if (round < rounds - 1 || user % 2 == 1) {
+                        registry.leave("room", userId);
+                    }
+                }
+            }
+        });
+
+        Set<String> expected = new HashSet<>(Set.of("resident"));
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int user = 0; user < usersPerThread; user += 2) {
+                expected.add("user-" + thread + "-" + user);
+            }
+        }
+        assertEquals(expected, registry.getUsers("room"));
+        assertEquals(expected, registry.getMembers("room").keySet());
+        assertEquals(expected.size(), registry.userCount());
+        // One version step per join and per leave, none lost
+        long leaves = (long) THREADS * usersPerThread * rounds - (long) THREADS * usersPerThread / 2;
+        long joins = 1 + (long) THREADS * usersPerThread * rounds;
+        LeaveResult nobody = registry.leave("room", "nobody");
+        assertFalse(nobody.left());
+        assertEquals(joins + leaves, nobody.version());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("registries")
+    void joinRacingTheLastLeaveIsNeverLost(String name, IntFunction<RoomRegistry> factory) throws Exception {
+        int rooms = 2000;
+        RoomRegistry registry = factory.apply(8);
+        CyclicBarrier barrier = new CyclicBarrier(2);
+
+        Future<?> leaver = executor.submit(() -> {
+            for (int room = 0; room < rooms; room++) {
+                registry.join("room-" + room, "alice", "Alice");
+                barrier.await();
+                registry.leave("room-" + room, "alice");
+                barrier.await();
+            }
+            return null;
+        });
+        Future<?> joiner = executor.submit(() -> {
+            for (int room = 0; room < rooms; room++) {
+                barrier.await();
+                registry.join("room-" + room, "bob", "Bob");
+                barrier.await();
+            }
+            return null;
+        });
+        leaver.get(60, TimeUnit.SECONDS);
+        joiner.get(60, TimeUnit.SECONDS);
+
+        for (int room = 0; room < rooms; room++) {
+            assertEquals(Set.of("bob"), registry.getUsers("room-" + room), "room-" + room);
+            assertEquals("Bob", registry.getUserName("room-" + room, "bob"));
+        }
+        assertEquals(rooms, registry.roomCount());
+        assertEquals(rooms, registry.userCount());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("registries")
+    void capacityHoldsUnderContention(String name, IntFunction<RoomRegistry> factory) throws Exception {
+        int capacity = 5;
+        RoomRegistry registry = factory.apply(capacity);
+        List<JoinResult> results = new ArrayList<>();
+
+        runConcurrently(thread -> {
+            JoinResult result = registry.join("room", "user-" + thread, "User " + thread);
+            synchronized (results) {
+                results.add(result);
+            }
+        });
+
+        assertEquals(capacity, results.stream().filter(JoinResult::isJoined).count());
+        assertEquals(THREADS - capacity, results.stream().filter(result -> result.rejection() == JoinRejection.ROOM_FULL).count());
+        assertEquals(capacity, registry.size("room"));
+        assertEquals(capacity, registry.userCount());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("registries")
+    void onlyOneJoinMovesTheRoomToTheForwarder(String name, IntFunction<RoomRegistry> factory) throws Exception {
+        RoomRegistry registry = factory.apply(THREADS);
+        AtomicInteger promotions = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            registry.join("room", "user-" + thread, "User " + thread);
+            if (registry.promoteToSfu("room")) {
+                promotions.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, promotions.get());
+        assertEquals(Topology.SFU, registry.getTopology("room"));
+        for (int thread = 0; thread < THREADS; thread++) {
+            registry.leave("room", "user-" + thread);
+        }
+        assertEquals(Topology.MESH, registry.getTopology("room"));
+    }
+
+    private void runConcurrently(ThreadBody body) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < THREADS; thread++) {
+            int index = thread;
+            futures.add(executor.submit((Callable<Void>) () -> {
+                start.await();
+                body.run(index);
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+}
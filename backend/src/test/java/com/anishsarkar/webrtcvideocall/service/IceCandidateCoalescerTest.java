@@ -0,0 +1,121 @@
+package com.anishsarkar.webrtcvideocall.service;
+
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateBatchMessage;
+import com.anishsarkar.webrtcvideocall.dto.IceCandidateMessage;
+import com.anishsarkar.webrtcvideocall.dto.RawPayload;
+import com.anishsarkar.webrtcvideocall.messaging.RoomAffinityExecutor;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IceCandidateCoalescerTest {
+
+    private IceCandidateCoalescer coalescer;
+    private final List<IceCandidateBatchMessage> delivered = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void testCandidatesWithinWindowAreDeliveredAsOneBatch() throws InterruptedException {
+        coalescer = new IceCandidateCoalescer(50, 100);
+        for (int i = 0; i < 10; i++) {
+            coalescer.add(candidate("user1", "user2", i), delivered::add);
+        }
+        assertTrue(delivered.isEmpty());
+
+        awaitBatches(1);
+        IceCandidateBatchMessage batch = delivered.get(0);
+        assertEquals("room1", batch.getRoomId());
+        assertEquals("user1", batch.getUserId());
+        assertEquals("user2", batch.getTargetUserId());
+        assertEquals(10, batch.getCandidates().size());
+        assertEquals(0, batch.getCandidates().get(0).toTree().get("sdpMLineIndex").asInt());
+        assertEquals(9, batch.getCandidates().get(9).toTree().get("sdpMLineIndex").asInt());
+    }
+
+    @Test
+    void testFullBatchIsDeliveredImmediately() {
+        coalescer = new IceCandidateCoalescer(10_000, 4);
+        for (int i = 0; i < 9; i++) {
+            coalescer.add(candidate("user1", "user2", i), delivered::add);
+        }
+        assertEquals(2, delivered.size());
+        assertEquals(4, delivered.get(0).getCandidates().size());
+        assertEquals(4, delivered.get(1).getCandidates().size());
+    }
+
+    @Test
+    void testPeerPairsAreBatchedSeparately() throws InterruptedException {
+        coalescer = new IceCandidateCoalescer(30, 100);
+        coalescer.add(candidate("user1", "user2", 0), delivered::add);
+        coalescer.add(candidate("user1", "user3", 0), delivered::add);
+        coalescer.add(candidate("user2", "user1", 0), delivered::add);
+        coalescer.add(candidate("user1", "user2", 1), delivered::add);
+
+        awaitBatches(3);
+        assertEquals(3, delivered.size());
+        assertEquals(4, delivered.stream().mapToInt(b -> b.getCandidates().size()).sum());
+    }
+
+    @Test
+    void testExpiredBatchIsSentFromTheRoomLane() throws InterruptedException {
+        RoomAffinityExecutor lanes = new RoomAffinityExecutor(2);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        coalescer = new IceCandidateCoalescer(20, 100, lanes);
+        try {
+            coalescer.add(candidate("user1", "user2", 0), batch -> {
+                threads.add(Thread.currentThread().getName());
+                delivered.add(batch);
+            });
+
+            awaitBatches(1);
+            assertEquals(1, delivered.size());
+            assertTrue(threads.get(0).startsWith("signaling-lane-"), threads.get(0));
+        } finally {
+            lanes.destroy();
+        }
+    }
+
+    @Test
+    void testFlushSendsThePairRightAway() {
+        coalescer = new IceCandidateCoalescer(10_000, 100);
+        coalescer.add(candidate("user1", "user2", 0), delivered::add);
+        coalescer.add(candidate("user1", "user3", 0), delivered::add);
+
+        coalescer.flush("room1", "user1", "user2");
+        assertEquals(1, delivered.size());
+        assertEquals("user2", delivered.get(0).getTargetUserId());
+
+        coalescer.flush("room1", "user1", "user2");
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    void testZeroWindowDisablesBatching() {
+        coalescer = new IceCandidateCoalescer(0, 16);
+        assertFalse(coalescer.isEnabled());
+    }
+
+    private IceCandidateMessage candidate(String from, String to, int index) {
+        return new IceCandidateMessage("room1", from, to, RawPayload.of(JsonNodeFactory.instance.objectNode()
+                .put("candidate", "candidate:" + index + " 1 udp 2122260223 10.0.0.1 5000" + index + " typ host")
+                .put("sdpMid", "0")
+                .put("sdpMLineIndex", index)));
+    }
+
+    private void awaitBatches(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (delivered.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.anishsarkar.webrtcvideocall.service;
+
+import com.anishsarkar.webrtcvideocall.dto.IceServer;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IceServerCacheTest {
+
+    private static final String STUN = "stun:stun.example.com:3478";
+    private static final String TURN = "turn:turn.example.com:3478?transport=udp turns:turn.example.com:5349,eu=turn:eu.example.com:3478";
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toMillis(1_700_000_000));
+
+    @Test
+    void regionsGetTheirOwnServersWithACredentialTheTurnServerAccepts() throws Exception {
+        IceServerCache cache = new IceServerCache(STUN, TURN, "s3cret", 600, "webrtc", now::get);
+
+        List<IceServer> defaults = cache.servers(null);
+        assertEquals(List.of(STUN), defaults.get(0).getUrls());
+        assertNull(defaults.get(0).getCredential());
+        IceServer turn = defaults.get(1);
+        assertEquals(List.of("turn:turn.example.com:3478?transport=udp", "turns:turn.example.com:5349"), turn.getUrls());
+        assertEquals("1700000600:webrtc", turn.getUsername());
+        assertEquals(hmac("s3cret", turn.getUsername()), turn.getCredential());
+
+        assertEquals(List.of("turn:eu.example.com:3478"), cache.servers("eu").get(1).getUrls());
+        assertSame(defaults, cache.servers("mars"));
+        cache.shutdown();
+    }
+
+    @Test
+    void credentialIsReplacedBeforeItRunsOut() {
+        IceServerCache cache = new IceServerCache(STUN, TURN, "s3cret", 600, "webrtc", now::get);
+        List<IceServer> first = cache.servers(null);
+
+        // Lists are built ahead of time and shared until the refresh
+        now.addAndGet(TimeUnit.SECONDS.toMillis(299));
+        assertSame(first, cache.servers(null));
+
+        cache.refresh();
+        assertEquals("1700000899:webrtc", cache.servers(null).get(1).getUsername());
+
+        // A refresher that has stalled is caught up by the next join
+        now.addAndGet(TimeUnit.SECONDS.toMillis(301));
+        assertEquals("1700001200:webrtc", cache.servers(null).get(1).getUsername());
+        cache.shutdown();
+    }
+
+    @Test
+    void withoutASecretOnlyStunIsHandedOut() {
+        IceServerCache cache = new IceServerCache(STUN, TURN, "", 600, "webrtc", now::get);
+        assertEquals(1, cache.servers("eu").size());
+        assertThrows(IllegalArgumentException.class, () -> IceServerCache.parseTurnUrls("eu=turn:a:3478,eu=turn:b:3478"));
+    }
+
+    private static String hmac(String secret, String username) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(username.getBytes(StandardCharsets.UTF_8)));
+    }
+}
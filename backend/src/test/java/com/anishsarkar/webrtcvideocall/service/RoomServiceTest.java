@@ -1,8 +1,17 @@
 package com.anishsarkar.webrtcvideocall.service;
 
+import com.anishsarkar.webrtcvideocall.dto.Topology;
+import com.anishsarkar.webrtcvideocall.registry.ClusteredRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.InMemoryRoomRegistry;
+import com.anishsarkar.webrtcvideocall.registry.JoinRejection;
+import com.anishsarkar.webrtcvideocall.registry.JoinResult;
+import com.anishsarkar.webrtcvideocall.registry.LocalClusterStore;
+import com.anishsarkar.webrtcvideocall.registry.RoomRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,7 +29,7 @@ class RoomServiceTest {
     void testJoinRoomAddsUser() {
         roomService.joinRoom("room1", "user1", "Alice");
         assertTrue(roomService.isUserInRoom("room1", "user1"));
-        assertEquals("Alice", roomService.getUserName("user1"));
+        assertEquals("Alice", roomService.getUserName("room1", "user1"));
     }
 
     @Test
@@ -28,7 +37,7 @@ class RoomServiceTest {
         roomService.joinRoom("room1", "user1", "Alice");
         roomService.leaveRoom("room1", "user1");
         assertFalse(roomService.isUserInRoom("room1", "user1"));
-        assertNull(roomService.getUserName("user1"));
+        assertNull(roomService.getUserName("room1", "user1"));
     }
 
     @Test
@@ -56,4 +65,86 @@ class RoomServiceTest {
         roomService.leaveRoom("room1", "user1");
         assertEquals(0, roomService.getRoomSize("room1"));
     }
+
+    @Test
+    void testRoomVersionAdvancesOnEveryChange() {
+        assertEquals(1, roomService.joinRoom("room1", "user1", "Alice").version());
+        assertEquals(2, roomService.joinRoom("room1", "user2", "Bob").version());
+        assertEquals(1, roomService.joinRoom("room2", "user3", "Carol").version());
+        assertEquals(3, roomService.leaveRoom("room1", "user1"));
+        assertEquals(Map.of("user2", "Bob"), roomService.getRoomMembers("room1"));
+
+        // Numbering starts over once the room has closed
+        roomService.leaveRoom("room1", "user2");
+        assertEquals(1, roomService.joinRoom("room1", "user1", "Alice").version());
+    }
+
+    @Test
+    void testLeavingRoomUserIsNotInKeepsVersion() {
+        roomService.joinRoom("room1", "user1", "Alice");
+        assertEquals(1, roomService.leaveRoom("room1", "user2"));
+        assertEquals(0, roomService.leaveRoom("room2", "user1"));
+    }
+
+    @Test
+    void testSameUserInTwoRoomsKeepsBothNames() {
+        roomService.joinRoom("room1", "user1", "Alice");
+        roomService.joinRoom("room2", "user1", "Alice (phone)");
+        roomService.leaveRoom("room2", "user1");
+
+        assertEquals("Alice", roomService.getUserName("room1", "user1"));
+        assertNull(roomService.getUserName("room2", "user1"));
+        assertEquals(1, roomService.getUserCount());
+    }
+
+    @Test
+    void testSameUserInTwoRoomsKeepsASessionPerRoom() {
+        for (RoomRegistry registry : List.of(new InMemoryRoomRegistry(), new ClusteredRoomRegistry(
+                new LocalClusterStore(), "test:", InMemoryRoomRegistry.DEFAULT_MAX_ROOM_SIZE))) {
+            UserSessionRegistry sessions = new UserSessionRegistry(registry);
+            sessions.register("room1", "user1", "session1");
+            sessions.register("room2", "user1", "session2");
+            sessions.unregister("room2", "user1", "session2");
+
+            assertEquals("session1", sessions.getSessionId("room1", "user1"));
+            assertNull(sessions.getSessionId("room2", "user1"));
+        }
+    }
+
+    @Test
+    void testFullRoomRejectsNewUsersButNotRejoins() {
+        RoomService twoSeats = new RoomService(new InMemoryRoomRegistry(2));
+        twoSeats.joinRoom("room1", "user1", "Alice");
+        twoSeats.joinRoom("room1", "user2", "Bob");
+
+        JoinResult rejected = twoSeats.joinRoom("room1", "user3", "Carol");
+        assertFalse(rejected.isJoined());
+        assertEquals(JoinRejection.ROOM_FULL, rejected.rejection());
+        assertFalse(twoSeats.isUserInRoom("room1", "user3"));
+
+        assertTrue(twoSeats.joinRoom("room1", "user2", "Bob").isJoined());
+        twoSeats.leaveRoom("room1", "user1");
+        assertTrue(twoSeats.joinRoom("room1", "user3", "Carol").isJoined());
+    }
+
+    @Test
+    void testRoomMovesToForwarderOnceUntilItEmpties() {
+        assertFalse(roomService.promoteToSfu("room1"));
+        roomService.joinRoom("room1", "user1", "Alice");
+        roomService.joinRoom("room1", "user2", "Bob");
+        long version = roomService.getRoomVersion("room1");
+        assertEquals(Topology.MESH, roomService.getRoomTopology("room1"));
+
+        assertTrue(roomService.promoteToSfu("room1"));
+        assertFalse(roomService.promoteToSfu("room1"));
+        assertEquals(Topology.SFU, roomService.getRoomTopology("room1"));
+        assertEquals(version, roomService.getRoomVersion("room1"));
+
+        // Membership changes keep it; the room emptying starts the next call as a mesh
+        roomService.leaveRoom("room1", "user2");
+        assertEquals(Topology.SFU, roomService.getRoomTopology("room1"));
+        roomService.leaveRoom("room1", "user1");
+        roomService.joinRoom("room1", "user1", "Alice");
+        assertEquals(Topology.MESH, roomService.getRoomTopology("room1"));
+    }
 }
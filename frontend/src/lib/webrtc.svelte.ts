@@ -4,14 +4,21 @@ import {
 	type AnswerMessage,
 	type IceCandidateMessage,
 	type WebSocketMessage,
-	type RoomUsersMessage
+	type RoomSnapshotMessage,
+	type SfuAnswerMessage,
+	type TopologyChangedMessage
 } from './websocket.svelte';
 
 class WebRTCService {
 	private peerConnections = $state<Map<string, RTCPeerConnection>>(new Map());
 	private localStream = $state<MediaStream | null>(null);
 	private remoteStreams = $state<Map<string, MediaStream>>(new Map());
+	// The single connection to the media forwarder once the room has moved to it
+	private forwarder: RTCPeerConnection | null = null;
+	// Someone joined while an offer to the forwarder was still unanswered
+	private forwarderRenegotiate = false;
 
+	// Replaced by the servers in the room snapshot, which include TURN
 	private configuration: RTCConfiguration = {
 		iceServers: [
 			{ urls: 'stun:stun.l.google.com:19302' },
@@ -44,6 +51,13 @@ class WebRTCService {
 
 		switch (message.type) {
 			case 'USER_JOINED':
+				// The forwarder carries the new member's tracks; renegotiate to receive them
+				if (this.forwarder) {
+					if (message.userId !== webSocketService.getUserId()) {
+						this.createForwarderOffer();
+					}
+					break;
+				}
 				// Only create offer if this is not our own join message
 				if (message.userId !== webSocketService.getUserId()) {
 					console.log('New user joined, creating peer connection:', message.userId);
@@ -55,11 +69,18 @@ class WebRTCService {
 				}
 				break;
 
-			case 'ROOM_USERS': {
+			case 'ROOM_SNAPSHOT': {
 				// Handle existing users in room when we join
-				const roomUsers = message as RoomUsersMessage;
+				const snapshot = message as RoomSnapshotMessage;
+				if (snapshot.iceServers?.length) {
+					this.configuration = { iceServers: snapshot.iceServers };
+				}
+				if (snapshot.topology === 'SFU') {
+					this.connectToForwarder();
+					break;
+				}
 				const currentUserId = webSocketService.getUserId();
-				roomUsers.userIds.forEach((userId) => {
+				Object.keys(snapshot.members).forEach((userId) => {
 					if (userId !== currentUserId && !this.peerConnections.has(userId)) {
 						console.log('Creating peer connection for existing user:', userId);
 						this.createPeerConnection(userId);
@@ -84,6 +105,16 @@ class WebRTCService {
 				this.handleIceCandidate(message as IceCandidateMessage);
 				break;
 
+			case 'TOPOLOGY_CHANGED':
+				if ((message as TopologyChangedMessage).topology === 'SFU') {
+					this.connectToForwarder();
+				}
+				break;
+
+			case 'SFU_ANSWER':
+				this.handleForwarderAnswer(message as SfuAnswerMessage);
+				break;
+
 			case 'USER_LEFT':
 				console.log('User left, closing peer connection:', message.userId);
 				this.closePeerConnection(message.userId);
@@ -262,6 +293,86 @@ class WebRTCService {
 		);
 	}
 
+	// Make before break: the mesh connections stay up until the forwarder's is connected
+	private connectToForwarder() {
+		if (this.forwarder) return;
+
+		console.log('Room moved to the forwarder, connecting to it');
+		const pc = new RTCPeerConnection(this.configuration);
+		this.localStream?.getTracks().forEach((track) => {
+			if (this.localStream) {
+				pc.addTrack(track, this.localStream);
+			}
+		});
+
+		// The forwarder labels each member's stream with their user id
+		pc.ontrack = (event) => {
+			const remoteStream = event.streams[0];
+			if (remoteStream) {
+				const newRemoteStreams = new Map(this.remoteStreams);
+				newRemoteStreams.set(remoteStream.id, remoteStream);
+				this.remoteStreams = newRemoteStreams;
+			}
+		};
+
+		pc.onicecandidate = (event) => {
+			if (event.candidate) {
+				webSocketService.sendSfuIceCandidate(event.candidate.toJSON());
+			}
+		};
+
+		pc.onconnectionstatechange = () => {
+			console.log('Connection state with the forwarder:', pc.connectionState);
+			if (pc.connectionState === 'connected') {
+				Array.from(this.peerConnections.keys()).forEach((userId) => {
+					this.closePeerConnection(userId);
+				});
+			} else if (pc.connectionState === 'failed') {
+				pc.restartIce();
+			}
+		};
+
+		this.forwarder = pc;
+		this.createForwarderOffer();
+	}
+
+	private async createForwarderOffer() {
+		const pc = this.forwarder;
+		if (!pc) return;
+		if (pc.signalingState !== 'stable') {
+			this.forwarderRenegotiate = true;
+			return;
+		}
+
+		try {
+			const offer = await pc.createOffer({
+				offerToReceiveAudio: true,
+				offerToReceiveVideo: true
+			});
+			await pc.setLocalDescription(offer);
+			webSocketService.sendSfuOffer(offer);
+		} catch (error) {
+			console.error('Error creating offer for the forwarder:', error);
+		}
+	}
+
+	private async handleForwarderAnswer(message: SfuAnswerMessage) {
+		if (!this.forwarder) {
+			console.error('Answer from the forwarder without a connection to it');
+			return;
+		}
+
+		try {
+			await this.forwarder.setRemoteDescription(message.answer);
+			if (this.forwarderRenegotiate) {
+				this.forwarderRenegotiate = false;
+				this.createForwarderOffer();
+			}
+		} catch (error) {
+			console.error('Error handling answer from the forwarder:', error);
+		}
+	}
+
 	// Public method to manually create connections for existing users
 	async connectToExistingUsers(userIds: string[]) {
 		const currentUserId = webSocketService.getUserId();
@@ -302,6 +413,9 @@ class WebRTCService {
 			pc.close();
 		});
 		this.peerConnections.clear();
+		this.forwarder?.close();
+		this.forwarder = null;
+		this.forwarderRenegotiate = false;
 		this.remoteStreams = new Map();
 
 		if (this.localStream) {
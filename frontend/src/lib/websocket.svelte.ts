@@ -1,7 +1,15 @@
-import { Client } from '@stomp/stompjs';
+import { Client, type IMessage } from '@stomp/stompjs';
+import { Encoder } from 'cbor-x';
 
 const WEBSOCKET_URL = import.meta.env.VITE_WEBSOCKET_URL || 'ws://localhost:8000/ws';
 
+// 'cbor' opts in to the binary signaling codec, JSON stays the default
+const USE_CBOR = import.meta.env.VITE_SIGNALING_CODEC === 'cbor';
+const CBOR_CONTENT_TYPE = 'application/cbor';
+const cbor = new Encoder({ useRecords: false, mapsAsObjects: true });
+// Which of the server's ICE server sets to use; the server's default when unset
+const ICE_REGION = import.meta.env.VITE_ICE_REGION || undefined;
+
 export interface BaseMessage {
 	type: string;
 	roomId: string;
@@ -13,15 +21,20 @@ export interface BaseMessage {
 export interface JoinRoomMessage extends BaseMessage {
 	type: 'JOIN_ROOM';
 	userName: string;
+	// Present when reconnecting, to take the held membership back
+	resumeToken?: string;
+	region?: string;
 }
 
 export interface UserJoinedMessage extends BaseMessage {
 	type: 'USER_JOINED';
 	userName: string;
+	version: number;
 }
 
 export interface UserLeftMessage extends BaseMessage {
 	type: 'USER_LEFT';
+	version: number;
 }
 
 export interface OfferMessage extends BaseMessage {
@@ -39,15 +52,48 @@ export interface IceCandidateMessage extends BaseMessage {
 	candidate: RTCIceCandidateInit;
 }
 
+export interface IceCandidateBatchMessage extends BaseMessage {
+	type: 'ICE_CANDIDATE_BATCH';
+	candidates: RTCIceCandidateInit[];
+}
+
 export interface ErrorMessage extends BaseMessage {
 	type: 'ERROR';
 	errorMessage: string;
 	errorCode: string;
 }
 
-export interface RoomUsersMessage extends BaseMessage {
-	type: 'ROOM_USERS';
-	userIds: string[];
+// MESH: every pair of members has its own connection. SFU: each member has one connection,
+// to the server's media forwarder
+export type Topology = 'MESH' | 'SFU';
+
+// Sent to this session only, right after it joins
+export interface RoomSnapshotMessage extends BaseMessage {
+	type: 'ROOM_SNAPSHOT';
+	version: number;
+	members: Record<string, string | null>;
+	resumeToken?: string;
+	topology?: Topology;
+	// STUN and TURN servers to connect through, TURN credentials included
+	iceServers?: RTCIceServer[];
+}
+
+// The room moved to the forwarder mid-call; sent before the join that caused it
+export interface TopologyChangedMessage extends BaseMessage {
+	type: 'TOPOLOGY_CHANGED';
+	topology: Topology;
+}
+
+// The forwarder's answer to this session's offer, its candidates included
+export interface SfuAnswerMessage extends BaseMessage {
+	type: 'SFU_ANSWER';
+	answer: RTCSessionDescriptionInit;
+}
+
+// This backend is draining: reconnect after the delay, and the load balancer sends us elsewhere
+export interface MigrateMessage extends BaseMessage {
+	type: 'MIGRATE';
+	reconnectDelayMs: number;
 }
 
 export type WebSocketMessage =
@@ -57,14 +103,24 @@ export type WebSocketMessage =
 	| OfferMessage
 	| AnswerMessage
 	| IceCandidateMessage
+	| IceCandidateBatchMessage
 	| ErrorMessage
-	| RoomUsersMessage;
+	| RoomSnapshotMessage
+	| TopologyChangedMessage
+	| SfuAnswerMessage
+	| MigrateMessage;
 
 class WebSocketService {
 	private client: Client | null = $state(null);
 	private roomId: string = $state('');
 	private userId: string = $state('');
 	private userName: string = $state('');
+	// Membership version of the last snapshot or delta applied
+	private roomVersion = 0;
+	// Lets a reconnect within the server's grace window keep this room membership
+	private resumeToken: string | null = null;
+	// Set while moving off a draining backend, so the next connect joins the room again
+	private migrating = false;
 
 	setRoomId(roomId: string) {
 		this.roomId = roomId;
@@ -73,8 +129,10 @@ class WebSocketService {
 	// Reactive state
 	connected = $state(false);
 	users = $state<string[]>([]);
+	userNames = $state<Record<string, string | null>>({});
 	messages = $state<WebSocketMessage[]>([]);
 	errors = $state<ErrorMessage[]>([]);
+	topology = $state<Topology>('MESH');
 
 	// Message handlers
 	private messageHandlers = new Set<(message: WebSocketMessage) => void>();
@@ -82,7 +140,8 @@ class WebSocketService {
 	constructor() {
 		this.client = new Client({
 			brokerURL: WEBSOCKET_URL,
-			connectHeaders: {},
+			// Asks the server to encode messages addressed to this session as CBOR
+			connectHeaders: USE_CBOR ? { 'accept-content-type': CBOR_CONTENT_TYPE } : {},
 			debug: (str) => {
 				console.log('STOMP Debug:', str);
 			},
@@ -94,6 +153,12 @@ class WebSocketService {
 		this.client.onConnect = (frame) => {
 			console.log('Connected:', frame);
 			this.connected = true;
+			// Came back after a dropped socket: rejoin quietly with the token
+			if (this.roomId && this.userId && (this.resumeToken || this.migrating)) {
+				this.migrating = false;
+				this.subscribeToTopics();
+				this.sendJoin(this.resumeToken ?? undefined);
+			}
 		};
 
 		this.client.onDisconnect = () => {
@@ -135,27 +200,88 @@ class WebSocketService {
 
 		console.log('Subscribing to room topic:', this.roomId);
 
-		// Subscribe to room updates - ALL messages come through here now
-		this.client.subscribe(`/topic/room/${this.roomId}`, (message) => {
-			const data: WebSocketMessage = JSON.parse(message.body);
-
-			// Filter messages: only handle if it's for everyone OR specifically for this user
-			if (!data.targetUserId || data.targetUserId === this.userId) {
-				this.handleMessage(data);
-			} else {
-				console.log(
-					'Ignoring message not for this user:',
-					data.type,
-					'from:',
-					data.userId,
-					'to:',
-					data.targetUserId
-				);
-			}
-		});
+		// Offers, answers, ICE candidates and errors addressed to this session only
+		this.client.subscribe(
+			'/user/queue/signal',
+			(message) => {
+				this.handleMessage(this.decodeMessage(message));
+			},
+			this.roomHeaders()
+		);
+
+		// Subscribe to room updates (membership broadcasts, and signaling when the server
+		// cannot resolve the target's session)
+		this.client.subscribe(
+			`/topic/room/${this.roomId}`,
+			(message) => {
+				const data = this.decodeMessage(message);
+
+				// Filter messages: only handle if it's for everyone OR specifically for this user
+				if (!data.targetUserId || data.targetUserId === this.userId) {
+					this.handleMessage(data);
+				} else {
+					console.log(
+						'Ignoring message not for this user:',
+						data.type,
+						'from:',
+						data.userId,
+						'to:',
+						data.targetUserId
+					);
+				}
+			},
+			this.roomHeaders()
+		);
+	}
+
+	// Lets the server route every frame of a room to the same processing lane without parsing the body
+	private roomHeaders(): Record<string, string> {
+		return { roomId: this.roomId };
+	}
+
+	// Broadcasts are always JSON; messages to this session use the codec negotiated on CONNECT
+	private decodeMessage(message: IMessage): WebSocketMessage {
+		if (message.headers['content-type']?.startsWith(CBOR_CONTENT_TYPE)) {
+			return cbor.decode(message.binaryBody) as WebSocketMessage;
+		}
+		return JSON.parse(message.body);
+	}
+
+	private publish(destination: string, message: object) {
+		if (!this.client) return;
+
+		if (USE_CBOR) {
+			this.client.publish({
+				destination,
+				headers: { ...this.roomHeaders(), 'content-type': CBOR_CONTENT_TYPE },
+				binaryBody: cbor.encode(message)
+			});
+		} else {
+			this.client.publish({
+				destination,
+				headers: this.roomHeaders(),
+				body: JSON.stringify(message)
+			});
+		}
 	}
 
 	private handleMessage(message: WebSocketMessage) {
+		// The server coalesces trickled candidates; hand them on one by one
+		if (message.type === 'ICE_CANDIDATE_BATCH') {
+			const batchMsg = message as IceCandidateBatchMessage;
+			batchMsg.candidates.forEach((candidate) => {
+				this.handleMessage({
+					type: 'ICE_CANDIDATE',
+					roomId: batchMsg.roomId,
+					userId: batchMsg.userId,
+					targetUserId: batchMsg.targetUserId,
+					candidate,
+					timestamp: batchMsg.timestamp
+				});
+			});
+			return;
+		}
+
 		console.log(
 			'Handling message:',
 			message.type,
@@ -178,6 +304,8 @@ class WebSocketService {
 		switch (message.type) {
 			case 'USER_JOINED': {
 				const joinedMsg = message as UserJoinedMessage;
+				if (!this.applyVersion(joinedMsg.version)) break;
+				this.userNames = { ...this.userNames, [joinedMsg.userId]: joinedMsg.userName };
 				if (!this.users.includes(joinedMsg.userId)) {
 					this.users = [...this.users, joinedMsg.userId];
 					console.log('User joined:', joinedMsg.userId, 'Total users:', this.users.length);
@@ -187,7 +315,11 @@ class WebSocketService {
 
 			case 'USER_LEFT': {
 				const leftMsg = message as UserLeftMessage;
+				if (!this.applyVersion(leftMsg.version)) break;
 				this.users = this.users.filter((id) => id !== leftMsg.userId);
+				const names = { ...this.userNames };
+				delete names[leftMsg.userId];
+				this.userNames = names;
 				console.log('User left:', leftMsg.userId, 'Remaining users:', this.users.length);
 				break;
 			}
@@ -198,13 +330,51 @@ class WebSocketService {
 				break;
 			}
 
-			case 'ROOM_USERS': {
-				const roomUsersMsg = message as RoomUsersMessage;
-				this.users = [...roomUsersMsg.userIds];
-				console.log('Room users updated:', this.users);
+			case 'ROOM_SNAPSHOT': {
+				const snapshotMsg = message as RoomSnapshotMessage;
+				this.roomVersion = snapshotMsg.version;
+				this.resumeToken = snapshotMsg.resumeToken ?? null;
+				this.userNames = { ...snapshotMsg.members };
+				this.users = Object.keys(snapshotMsg.members);
+				this.topology = snapshotMsg.topology ?? 'MESH';
+				console.log('Room snapshot at version', snapshotMsg.version, ':', this.users);
+				break;
+			}
+
+			case 'MIGRATE': {
+				this.migrate((message as MigrateMessage).reconnectDelayMs);
 				break;
 			}
+
+			case 'TOPOLOGY_CHANGED': {
+				this.topology = (message as TopologyChangedMessage).topology;
+				console.log('Room topology is now', this.topology);
+				break;
+			}
+		}
+	}
+
+	// Peer connections carry the media and stay up; only the signaling socket moves
+	private migrate(delayMs: number) {
+		if (this.migrating || !this.client) return;
+		this.migrating = true;
+		console.log('Backend is draining, reconnecting in', delayMs, 'ms');
+		setTimeout(async () => {
+			if (!this.client) return;
+			await this.client.deactivate();
+			this.client.activate();
+		}, delayMs);
+	}
+
+	// Deltas at or below the current version are already part of the snapshot. Joins and
+	// leaves apply cleanly in any order, so a gap is only reported
+	private applyVersion(version: number): boolean {
+		if (version <= this.roomVersion) return false;
+		if (this.roomVersion > 0 && version > this.roomVersion + 1) {
+			console.warn('Missed room updates between versions', this.roomVersion, 'and', version);
 		}
+		this.roomVersion = version;
+		return true;
 	}
 
 	joinRoom(roomId: string, userId: string, userName: string) {
@@ -216,23 +386,28 @@ class WebSocketService {
 		this.roomId = roomId;
 		this.userId = userId;
 		this.userName = userName;
+		this.roomVersion = 0;
+		this.resumeToken = null;
+		this.topology = 'MESH';
 
 		// Subscribe to topics now that we have roomId
 		this.subscribeToTopics();
+		this.sendJoin();
+	}
 
+	private sendJoin(resumeToken?: string) {
 		const message: JoinRoomMessage = {
 			type: 'JOIN_ROOM',
-			roomId,
-			userId,
-			userName,
+			roomId: this.roomId,
+			userId: this.userId,
+			userName: this.userName,
+			resumeToken,
+			region: ICE_REGION,
 			timestamp: Date.now()
 		};
 
 		console.log('Sending join room message:', message);
-		this.client.publish({
-			destination: '/app/join',
-			body: JSON.stringify(message)
-		});
+		this.publish('/app/join', message);
 	}
 
 	leaveRoom() {
@@ -245,10 +420,8 @@ class WebSocketService {
 			timestamp: Date.now()
 		};
 
-		this.client.publish({
-			destination: '/app/leave',
-			body: JSON.stringify(message)
-		});
+		this.resumeToken = null;
+		this.publish('/app/leave', message);
 	}
 
 	sendOffer(targetUserId: string, offer: RTCSessionDescriptionInit) {
@@ -264,10 +437,7 @@ class WebSocketService {
 		};
 
 		console.log('Sending offer to:', targetUserId);
-		this.client.publish({
-			destination: '/app/offer',
-			body: JSON.stringify(message)
-		});
+		this.publish('/app/offer', message);
 	}
 
 	sendAnswer(targetUserId: string, answer: RTCSessionDescriptionInit) {
@@ -283,10 +453,7 @@ class WebSocketService {
 		};
 
 		console.log('Sending answer to:', targetUserId);
-		this.client.publish({
-			destination: '/app/answer',
-			body: JSON.stringify(message)
-		});
+		this.publish('/app/answer', message);
 	}
 
 	sendIceCandidate(targetUserId: string, candidate: RTCIceCandidateInit) {
@@ -301,9 +468,31 @@ class WebSocketService {
 			timestamp: Date.now()
 		};
 
-		this.client.publish({
-			destination: '/app/ice-candidate',
-			body: JSON.stringify(message)
+		this.publish('/app/ice-candidate', message);
+	}
+
+	sendSfuOffer(offer: RTCSessionDescriptionInit) {
+		if (!this.client || !this.connected) return;
+
+		console.log('Sending offer to the forwarder');
+		this.publish('/app/sfu/offer', {
+			type: 'SFU_OFFER',
+			roomId: this.roomId,
+			userId: this.userId,
+			offer,
+			timestamp: Date.now()
+		});
+	}
+
+	sendSfuIceCandidate(candidate: RTCIceCandidateInit) {
+		if (!this.client || !this.connected) return;
+
+		this.publish('/app/sfu/ice-candidate', {
+			type: 'SFU_ICE_CANDIDATE',
+			roomId: this.roomId,
+			userId: this.userId,
+			candidate,
+			timestamp: Date.now()
 		});
 	}
 